@@ -39,6 +39,7 @@ import java.io.StringReader;
 import java.io.Writer;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.StringTokenizer;
 import java.util.Vector;
 
 
@@ -187,6 +188,15 @@ public class XMLElement
     private String contents;
 
 
+    /**
+     * The #PCDATA content of the object as an array of ints (set by
+     * {@link #setContent(int[])}).  The content string is only created
+     * from this if it is asked for, so binary encodings can write the
+     * ints directly.
+     */
+    private int [] intContents;
+
+
     /**
      * Conversion table for &amp;...; entities. The keys are the entity names
      * without the &amp; and ; delimiters.
@@ -258,6 +268,21 @@ public class XMLElement
     private int parserLineNr;
 
 
+    /**
+     * The basic entities (amp, quot, apos, lt and gt) which are shared by
+     * every element created with {@link #XMLElement()} or
+     * {@link #XMLElement(String)}.  This is never changed.
+     */
+    private static final Hashtable BASIC_ENTITIES = new Hashtable();
+    static {
+        BASIC_ENTITIES.put("amp", new char[] { '&' });
+        BASIC_ENTITIES.put("quot", new char[] { '"' });
+        BASIC_ENTITIES.put("apos", new char[] { '\'' });
+        BASIC_ENTITIES.put("lt", new char[] { '<' });
+        BASIC_ENTITIES.put("gt", new char[] { '>' });
+    }
+
+
     /**
      * Creates and initializes a new XML element.
      * Calling the construction is equivalent to:
@@ -282,8 +307,9 @@ public class XMLElement
      */
     public XMLElement()
     {
-        // NOTE: Changes by Bob Marks to ensure case isn't ignored
-        this(new Hashtable(), false, true, false);
+        // NOTE: Changes by Bob Marks to ensure case isn't ignored (and to
+        // share the basic entities rather than create them every time).
+        this(BASIC_ENTITIES, false, false, false);
     }
     
     /**
@@ -293,7 +319,7 @@ public class XMLElement
      * @param name
      */
     public XMLElement (String name) {
-        this(new Hashtable(), false, true, false);
+        this(BASIC_ENTITIES, false, false, false);
         
         setName(name);
     }    
@@ -491,10 +517,14 @@ public class XMLElement
         this.ignoreCase = ignoreCase;
         this.name = null;
         this.contents = "";
+        this.intContents = null;
         this.attributes = new Hashtable();
         this.children = new Vector();
         this.entities = entities;
         this.lineNr = 0;
+        if (entities == BASIC_ENTITIES) {
+            return;
+        }
         Enumeration e = this.entities.keys();
         while (e.hasMoreElements()) {
             Object key = e.nextElement();
@@ -900,10 +930,50 @@ public class XMLElement
      */
     public String getContent()
     {
+        if (this.contents == null && this.intContents != null) {
+            StringBuffer sb = new StringBuffer (this.intContents.length * 3);
+            for (int i = 0; i < this.intContents.length; i++) {
+                if (i > 0)
+                    sb.append (' ');
+                sb.append (this.intContents [i]);
+            }
+            this.contents = sb.toString();
+        }
         return this.contents;
     }
 
 
+    /**
+     * Returns the PCDATA content of the object as an array of ints.  If the
+     * content was set as a string it must be a space delimited list of
+     * ints.  If there is no such content, <CODE>null</CODE> is returned.
+     *
+     * @see nanoxml.XMLElement#setContent(int[])
+     *         setContent(int[])
+     */
+    public int [] getIntArrayContent()
+    {
+        if (this.intContents == null && this.contents != null) {
+            StringTokenizer st = new StringTokenizer (this.contents, " ");
+            int [] values = new int [st.countTokens()];
+            for (int i = 0; i < values.length; i++)
+                values [i] = Integer.parseInt (st.nextToken().trim());
+            this.intContents = values;
+        }
+        return this.intContents;
+    }
+
+
+    /**
+     * Returns true if the content is held as an array of ints (i.e. it was
+     * set or read as one since it was last set as a string).
+     */
+    public boolean hasIntArrayContent()
+    {
+        return this.intContents != null;
+    }
+
+
     /**
      * Returns the line nr in the source data on which the element is found.
      * This method returns <code>0</code> there is no associated source data.
@@ -2103,6 +2173,21 @@ public class XMLElement
     public void setContent(String content)
     {
         this.contents = content;
+        this.intContents = null;
+    }
+
+
+    /**
+     * Changes the content to an array of ints.  This is written as a space
+     * delimited string in XML.
+     *
+     * @param content
+     *     The new content.
+     */
+    public void setContent(int [] content)
+    {
+        this.intContents = content;
+        this.contents = null;
     }
 
 
@@ -2195,7 +2280,7 @@ public class XMLElement
         throws IOException
     {
         if (this.name == null) {
-            this.writeEncoded(writer, this.contents);
+            this.writeEncoded(writer, this.getContent());
             return;
         }
         writer.write('<');
@@ -2212,9 +2297,10 @@ public class XMLElement
                 writer.write('"');
             }
         }
-        if ((this.contents != null) && (this.contents.length() > 0)) {
+        String contents = this.getContent();
+        if ((contents != null) && (contents.length() > 0)) {
             writer.write('>');
-            this.writeEncoded(writer, this.contents);
+            this.writeEncoded(writer, contents);
             writer.write('<'); writer.write('/');
             writer.write(this.name);
             writer.write('>');
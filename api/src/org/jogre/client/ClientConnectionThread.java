@@ -28,8 +28,10 @@ import org.jogre.common.ClientCommDataReceiver;
 import org.jogre.common.Game;
 import org.jogre.common.TableList;
 import org.jogre.common.UserList;
+import org.jogre.common.comm.Comm;
 import org.jogre.common.comm.CommGameMessage;
 import org.jogre.common.comm.CommNewUserMessage;
+import org.jogre.common.comm.CommRequestData;
 import org.jogre.common.comm.CommTableMessage;
 
 /**
@@ -92,6 +94,11 @@ public class ClientConnectionThread extends AbstractConnectionThread {
 	 * @see org.jogre.common.AbstractConnectionThread#parse(nanoxml.XMLElement)
 	 */
 	public void parse (XMLElement message) {
+		// If a change to the user / table lists has been missed then ask the
+		// server for the whole game (which will bring the lists up to date)
+		if (commDataReceiver != null && !commDataReceiver.checkSequence (message))
+			send (new CommRequestData (Comm.GAME));
+
 		// Update data first of all		
 		String sTableNum = message.getStringAttribute (CommTableMessage.XML_ATT_TABLE_NUM); 
 			
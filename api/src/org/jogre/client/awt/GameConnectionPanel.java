@@ -98,6 +98,9 @@ public class GameConnectionPanel extends ConnectionPanel {
         else
             commConnect = new CommGameConnect
                 (username, password, GameProperties.getGameID());
+
+        // Ask for the binary protocol if the game would like it
+        commConnect.setProtocol (GameProperties.getProtocol());
                     
         // Send connect message to the server.
         conn.send (commConnect);
@@ -19,9 +19,7 @@
  */
 package org.jogre.common;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.net.Socket;
 import java.net.SocketException;
@@ -29,14 +27,16 @@ import java.net.SocketException;
 import nanoxml.XMLElement;
 import nanoxml.XMLParseException;
 
+import org.jogre.common.comm.BinaryCodec;
 import org.jogre.common.comm.ITransmittable;
 import org.jogre.common.util.JogreLogger;
 
 /**
  * Abstract connection thread which is spawned with each client.  This extends a
- * thread and stores a Socket to the client, and a BufferedReader and PrintStream
- * which can read/write Strings to the user/server.  Also the username of the
- * client is stored in the username String.
+ * thread and stores a Socket to the client, and a MessageReader and PrintStream
+ * which can read/write messages to the user/server.  Messages are lines of XML
+ * or, once both ends have agreed to it, binary frames (see BinaryCodec).  Also
+ * the username of the client is stored in the username String.
  *
  * @author  Bob Marks
  * @version Alpha 0.2.3
@@ -49,12 +49,15 @@ public abstract class AbstractConnectionThread extends Thread {
 	/** Socket between the server and the user. */
 	protected Socket socket;
 
-	/** Buffered input. */
-	protected BufferedReader in;
+	/** Reads lines of XML and binary frames. */
+	protected MessageReader in;
 
 	/** PrintStream for the output. */
 	private PrintStream out;
 
+	/** Parser which is reused for every line received. */
+	private MessageParser parser = new MessageParser ();
+
 	/** Username of the client. */
 	protected String username;
 
@@ -65,6 +68,9 @@ public abstract class AbstractConnectionThread extends Thread {
 	 *  (although they can still recieve/transfer logon information). */
 	protected boolean connected = false;
 
+	/** True if messages are sent as binary frames instead of XML. */
+	protected volatile boolean binaryProtocol = false;
+
 	/**
 	 * This abstract method must be overwritten by a child which extends this
 	 * class.
@@ -105,7 +111,7 @@ public abstract class AbstractConnectionThread extends Thread {
 	    this.socket = socket;
 
 	    if (socket != null) {
-		    in = new BufferedReader (new InputStreamReader (socket.getInputStream()));
+		    in = new MessageReader (socket.getInputStream());
 		    out = new PrintStream (socket.getOutputStream());
 		}
 	}
@@ -122,43 +128,21 @@ public abstract class AbstractConnectionThread extends Thread {
 		try {
 			while (loop) {
 				// listen for input from the user
-				String inString = "";
-
-				while (loop && inString!=null && inString.equals("")) {
-					if (in == null) {
-						cleanup ();
-						return;
-					}
-					inString = in.readLine();
-				}
-
-				// Check input.
 				if (in == null) {
 					cleanup ();
 					return;
 				}
+				Object message = in.readMessage ();
 
-				// Ensure that the communication is XML (starts with a '<' character)
-				// as any sort of client could send communication to the server.
-				if (inString != null) {
-					if (inString.startsWith("<")) {
-	
-						// Starts with an '<' so try and parse this XML
-						XMLElement message = new XMLElement ();
-	
-						try {
-						    message.parseString (inString);
-	
-						    // parse this element
-							if (message != null)
-							    parse (message);
-						}
-						catch (XMLParseException xmlParseEx) {
-							logger.error ("run", "problem parsing: " + inString);
-							logger.stacktrace (xmlParseEx);
-						}
-					}
-				}
+				// End of the stream (the other end has gone)
+				if (message == null)
+					break;
+
+				// Parse the line or binary frame
+				if (message instanceof String)
+					receive ((String)message);
+				else
+					receive ((byte [])message);
 			}
 		}
 		catch (SocketException sEx) {
@@ -179,6 +163,56 @@ public abstract class AbstractConnectionThread extends Thread {
 		cleanup ();
 	}
 
+	/**
+	 * Receive a single line of communication.  This is called from the run
+	 * method but can also be called from a transport which reads the lines
+	 * itself (e.g. a non-blocking server).
+	 *
+	 * @param inString   Line of text as received from the socket.
+	 * @throws TransmissionException  This is thrown if there is a problem parsing the String.
+	 */
+	public void receive (String inString) throws TransmissionException {
+		// Ensure that the communication is XML (starts with a '<' character)
+		// as any sort of client could send communication to the server.
+		if (inString.startsWith("<")) {
+
+			// Starts with an '<' so try and parse this XML
+			try {
+			    XMLElement message = parser.parseElement (inString);
+
+			    // parse this element
+				if (message != null)
+				    parse (message);
+			}
+			catch (XMLParseException xmlParseEx) {
+				logger.error ("receive", "problem parsing: " + inString);
+				logger.stacktrace (xmlParseEx);
+			}
+		}
+	}
+
+	/**
+	 * Receive the payload of a single binary frame.  The other end can
+	 * clearly read binary so any replies are sent as binary too.
+	 *
+	 * @param payload   Payload as received from the socket.
+	 * @throws TransmissionException  This is thrown if there is a problem parsing the message.
+	 */
+	public void receive (byte [] payload) throws TransmissionException {
+		XMLElement message;
+		try {
+			message = BinaryCodec.decode (payload, 0, payload.length);
+		}
+		catch (TransmissionException tEx) {
+			logger.error ("receive", "problem decoding binary message");
+			logger.stacktrace (tEx);
+			return;
+		}
+
+		binaryProtocol = true;
+		parse (message);
+	}
+
 	/**
 	 * Stop the loop.
 	 */
@@ -200,13 +234,67 @@ public abstract class AbstractConnectionThread extends Thread {
 	 * @param transObject
 	 */
 	protected void send (ITransmittable transObject) {
-		// Retrieve XMLElement from the object and flatten to a String.
-		String message = transObject.flatten().toString();
+		// Retrieve XMLElement from the object
+		XMLElement message = transObject.flatten();
 
-		// Send down the socket to the receiving end
+		// Send down the socket to the receiving end as binary or a String
+		if (binaryProtocol)
+			write (BinaryCodec.encode (message));
+		else
+			write (message.toString());
+	}
+
+	/**
+	 * Write a single line of communication to the receiving end.  Sub classes
+	 * which don't use a blocking socket (e.g. non-blocking server connections)
+	 * can override this.
+	 *
+	 * @param message   Flattened message.
+	 */
+	protected void write (String message) {
 		out.println (message);
 	}
 
+	/**
+	 * Write a single line of communication (or binary frame) which has already
+	 * been encoded (including the line terminator).  The bytes are never modified so the
+	 * same array can be written to many connections.
+	 *
+	 * @param line   Encoded message.
+	 */
+	protected void write (byte [] line) {
+		out.write (line, 0, line.length);
+		out.flush ();
+	}
+
+	/**
+	 * Set the protocol of messages sent from this connection.
+	 *
+	 * @param binaryProtocol  True to send binary frames, false for XML.
+	 */
+	public void setBinaryProtocol (boolean binaryProtocol) {
+		this.binaryProtocol = binaryProtocol;
+	}
+
+	/**
+	 * Return true if messages are sent as binary frames.
+	 *
+	 * @return
+	 */
+	public boolean isBinaryProtocol () {
+		return binaryProtocol;
+	}
+
+	/**
+	 * Return true if the loop is still running i.e. stopLoop () hasn't
+	 * been called.
+	 *
+	 * @return
+	 */
+	public boolean isLooping () {
+		return loop;
+	}
+
 	/**
 	 * Returns the username.
 	 *
@@ -45,6 +45,9 @@ public class ClientCommDataReceiver {
 
 	private Game game = null;			// Game object.
 
+	/** True if a delta has been missed and a snapshot has been requested. */
+	private boolean resyncing = false;
+
 	/**
 	 * Constructor which takes a game object.
 	 *
@@ -55,6 +58,37 @@ public class ClientCommDataReceiver {
 		this.game = game;
 	}
 
+	/**
+	 * Check the sequence number of a message against the last delta
+	 * received.  Messages without a sequence number are always fine.  If a
+	 * delta has been missed (e.g. the server dropped it because this client
+	 * was too slow) then false is returned once and the client should ask
+	 * the server for the whole game.  Deltas are still applied until the
+	 * snapshot arrives.
+	 * 
+	 * <p>A delta which took the place of older ones in the server's queue
+	 * says which sequence number it starts from and may arrive before
+	 * deltas with lower numbers, so the highest number is kept.</p>
+	 *
+	 * @param message  Message from the server.
+	 * @return         False if the client should request a snapshot.
+	 */
+	public boolean checkSequence (XMLElement message) {
+		int seq = message.getIntAttribute (Game.XML_ATT_SEQUENCE, -1);
+		if (seq == -1 || message.getName().equals (Comm.GAME))
+			return true;
+
+		int from = message.getIntAttribute (Game.XML_ATT_SEQUENCE_FROM, seq);
+		int expected = game.getSequence() + 1;
+		game.setSequence (Math.max (seq, game.getSequence()));
+
+		if (from > expected && !resyncing) {
+			resyncing = true;
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Receive game message.
 	 *
@@ -77,6 +111,11 @@ public class ClientCommDataReceiver {
 				User user = new User (message);
 				game.getUserList().addUser (user);
 			}
+			else if (messageType.equals (Comm.GAME)) {
+				// Snapshot of the whole game
+				game.resync (new Game (message));
+				resyncing = false;
+			}
 			else if (messageType.equals (Comm.DISCONNECT)) {
 				CommDisconnect commDisconnect = new CommDisconnect (message);
 				String user = commDisconnect.getUsername();
@@ -99,6 +138,10 @@ public class ClientCommDataReceiver {
 		String messageType = message.getName();
 		Table table = game.getTableList().getTable(tableNum);
 
+		// Table has gone (only happens while resyncing)
+		if (table == null && !messageType.equals (Comm.EXIT_TABLE))
+			return;
+
 		if (messageType.equals (Comm.JOIN_TABLE)) {
 			receiveJoinTable (new CommJoinTable (message), username, table);
 		}
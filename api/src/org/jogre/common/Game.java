@@ -40,6 +40,19 @@ public class Game extends Observable implements ITransmittable {
     private static final String XML_ATT_MIN_PLAYERS = "minPlayers";
     private static final String XML_ATT_MAX_PLAYERS = "maxPlayers";
 	private static final String XML_CUSTOM_GAME_PROPS = "customGameProperties";
+
+	/**
+	 * Sequence number attribute which is added to the game and to every
+	 * change to the user / table lists (a delta) which is broadcast.
+	 */
+	public static final String XML_ATT_SEQUENCE = "seq";
+
+	/**
+	 * First sequence number a delta covers if it took the place of older
+	 * deltas which weren't sent (e.g. a newer state of the same table).
+	 */
+	public static final String XML_ATT_SEQUENCE_FROM = "seqFrom";
+
 	private XMLElement customGamePropertiesTree = null;
 
 	/** Game key <game title>-<version> e.g. chess. */
@@ -54,6 +67,9 @@ public class Game extends Observable implements ITransmittable {
 	/** Minimum and maximum number of players on table. */
 	private int minNumOfPlayers, maxNumOfPlayers;
 
+	/** Sequence number of the last change to the user / table lists. */
+	private int sequence = 0;
+
 	/**
 	 * Constructor to a Game object.
 	 *
@@ -84,6 +100,7 @@ public class Game extends Observable implements ITransmittable {
 	    // Set min / max number of players
 		this.minNumOfPlayers = message.getIntAttribute (XML_ATT_MIN_PLAYERS);
 		this.maxNumOfPlayers = message.getIntAttribute (XML_ATT_MAX_PLAYERS);
+		this.sequence = message.getIntAttribute (XML_ATT_SEQUENCE, 0);
 
 	    // Read child elements - userlist and tablelist
 		Enumeration e = message.enumerateChildren();
@@ -200,6 +217,48 @@ public class Game extends Observable implements ITransmittable {
 		customGamePropertiesTree = custProperties;
 	}
 
+	/**
+	 * Return the sequence number of the last change to the user / table
+	 * lists.
+	 *
+	 * @return   Sequence number.
+	 */
+	public synchronized int getSequence () {
+		return sequence;
+	}
+
+	/**
+	 * Set the sequence number (used by the client as each delta arrives).
+	 *
+	 * @param sequence   Sequence number.
+	 */
+	public synchronized void setSequence (int sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Return the sequence number for the next delta (used by the server).
+	 *
+	 * @return   New sequence number.
+	 */
+	public synchronized int nextSequence () {
+		return ++sequence;
+	}
+
+	/**
+	 * Bring the user / table lists up to date from a snapshot of the game
+	 * (sent by the server when a client has missed a delta).  The existing
+	 * list objects are kept so that observers don't need to be added again.
+	 *
+	 * @param snapshot   Game from the server.
+	 */
+	public void resync (Game snapshot) {
+		userList.resync (snapshot.getUserList());
+		tableList.resync (snapshot.getTableList(), userList);
+
+		setSequence (snapshot.getSequence());
+	}
+
 	/**
 	 * Return the game as a String.
 	 *
@@ -220,6 +279,7 @@ public class Game extends Observable implements ITransmittable {
         message.setAttribute    (XML_ATT_GAME_KEY, gameKey);
         message.setIntAttribute (XML_ATT_MIN_PLAYERS, minNumOfPlayers);
         message.setIntAttribute (XML_ATT_MAX_PLAYERS, maxNumOfPlayers);
+        message.setIntAttribute (XML_ATT_SEQUENCE, getSequence());
 
         if (userList.size() > 0)
             message.addChild (userList.flatten());
@@ -62,6 +62,15 @@ public interface IJogre {
 	/** Default number of tables per user */
 	public static final int DEFAULT_MAX_NUM_OF_TABLES_PER_USER = 2;
 	
+	/** Default number of I/O threads for the non-blocking server transport. */
+	public static final int DEFAULT_NUM_OF_IO_THREADS = 2;
+	
+	/** Default maximum number of messages waiting to be sent to a client. */
+	public static final int DEFAULT_OUT_QUEUE_SIZE = 1000;
+	
+	/** Default maximum number of bytes waiting to be sent to a client. */
+	public static final int DEFAULT_OUT_QUEUE_BYTES = 1024 * 1024;
+	
 	/** Default ELO starting rating for new users. */ 
 	public static final int DEFAULT_ELO_START_RATING = 1200; 
 
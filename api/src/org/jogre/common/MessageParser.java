@@ -0,0 +1,559 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - API
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.common;
+
+import nanoxml.XMLElement;
+import nanoxml.XMLParseException;
+
+/**
+ * <p>Low allocation pull parser for the subset of XML which JOGRE messages
+ * use (elements, attributes, text content and children with the standard
+ * entities).  A parser is reused for every line received on a connection
+ * so its buffers and the element / attribute names are only created once.</p>
+ *
+ * <p>It can be used in two ways:</p>
+ *
+ * <ul>
+ *   <li>Pull - call next () for each START_ELEMENT, CONTENT and END_ELEMENT
+ *       event and read the name, attributes or content of it.  Attribute
+ *       values can be read as ints without creating a String so a caller
+ *       can fill its own (reusable) objects.</li>
+ *   <li>Compatible - call parseElement () to build the same XMLElement that
+ *       XMLElement.parseString () would, so the existing Comm constructors
+ *       keep working.  Anything outside the subset (comments, CDATA,
+ *       processing instructions) is handed to nanoxml instead.</li>
+ * </ul>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class MessageParser {
+
+	/** Event - start of an element (attributes can be read). */
+	public static final int START_ELEMENT = 1;
+
+	/** Event - text content of the current element. */
+	public static final int CONTENT = 2;
+
+	/** Event - end of the current element. */
+	public static final int END_ELEMENT = 3;
+
+	/** Event - end of the message. */
+	public static final int END_DOCUMENT = 4;
+
+	/** Size of the name cache (must be a power of 2). */
+	private static final int NAME_CACHE_SIZE = 256;
+
+	/** Characters of the current message. */
+	private char [] buf = new char [256];
+
+	/** Length of the current message and current position. */
+	private int length, pos;
+
+	/** Names of the open elements. */
+	private String [] stack = new String [8];
+
+	/** Number of open elements. */
+	private int depth;
+
+	/** Name of the current element. */
+	private String name;
+
+	/** Current content. */
+	private String content;
+
+	// Attributes of the current start element - start and end of each value
+	private String [] attNames = new String [8];
+	private int [] attStarts = new int [8];
+	private int [] attEnds = new int [8];
+	private boolean [] attEntities = new boolean [8];
+	private int numOfAttributes;
+
+	/** True once the root element has been started. */
+	private boolean started;
+
+	/** True if the current start element was closed with "/>". */
+	private boolean emptyElement;
+
+	/** True if the current element can still have content. */
+	private boolean contentAllowed;
+
+	/** Names which have been seen before. */
+	private String [] nameCache = new String [NAME_CACHE_SIZE];
+
+	/**
+	 * Start parsing a new message.
+	 *
+	 * @param message   Message (one line).
+	 */
+	public void setInput (String message) {
+		length = message.length ();
+		if (length > buf.length)
+			buf = new char [Math.max (length, buf.length * 2)];
+		message.getChars (0, length, buf, 0);
+
+		pos = 0;
+		depth = 0;
+		numOfAttributes = 0;
+		started = false;
+		emptyElement = false;
+		contentAllowed = false;
+		name = null;
+		content = null;
+	}
+
+	/**
+	 * Move to the next event.
+	 *
+	 * @return   START_ELEMENT, CONTENT, END_ELEMENT or END_DOCUMENT.
+	 * @throws XMLParseException  If the message isn't in the supported subset.
+	 */
+	public int next () throws XMLParseException {
+		numOfAttributes = 0;
+		content = null;
+
+		if (emptyElement) {
+			emptyElement = false;
+			name = stack [--depth];
+			return END_ELEMENT;
+		}
+
+		if (depth == 0) {
+			if (started)
+				return END_DOCUMENT;
+			started = true;
+
+			skipWhitespace ();
+			if (peek (0) != '<' || !isNameChar (peek (1)))
+				throw error ("Expected an element");
+			return readStartTag ();
+		}
+
+		int whitespace = pos;
+		skipWhitespace ();
+
+		if (peek (0) != '<') {
+			if (!contentAllowed)
+				throw error ("Unexpected content");
+			return readContent (whitespace, '<');
+		}
+		else if (peek (1) == '/') {
+			if (contentAllowed && pos > whitespace)
+				return readContent (whitespace, '<');	// whitespace only content
+			return readEndTag ();
+		}
+		else if (!isNameChar (peek (1)))
+			throw error ("Expected an element");
+
+		contentAllowed = false;
+		return readStartTag ();
+	}
+
+	/**
+	 * Return the name of the current element.
+	 *
+	 * @return
+	 */
+	public String getName () {
+		return name;
+	}
+
+	/**
+	 * Return the content read by the last CONTENT event.
+	 *
+	 * @return
+	 */
+	public String getContent () {
+		return content;
+	}
+
+	/**
+	 * Return the number of attributes of the current start element.
+	 *
+	 * @return
+	 */
+	public int getAttributeCount () {
+		return numOfAttributes;
+	}
+
+	/**
+	 * Return the name of an attribute.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public String getAttributeName (int index) {
+		return attNames [index];
+	}
+
+	/**
+	 * Return the value of an attribute.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public String getAttributeValue (int index) {
+		return text (attStarts [index], attEnds [index], attEntities [index]);
+	}
+
+	/**
+	 * Return the value of an attribute or null if it isn't set.
+	 *
+	 * @param attName
+	 * @return
+	 */
+	public String getAttributeValue (String attName) {
+		int index = indexOf (attName);
+		return index == -1 ? null : getAttributeValue (index);
+	}
+
+	/**
+	 * Return the value of an attribute as an int without creating a String.
+	 *
+	 * @param attName        Name of the attribute.
+	 * @param defaultValue   Value if the attribute isn't set.
+	 * @return
+	 * @throws NumberFormatException  If the value isn't an int.
+	 */
+	public int getIntAttribute (String attName, int defaultValue) {
+		int index = indexOf (attName);
+		if (index == -1)
+			return defaultValue;
+
+		int start = attStarts [index], end = attEnds [index];
+		boolean negative = start < end && buf [start] == '-';
+		if (negative)
+			start++;
+		if (start == end || end - start > 10 || attEntities [index])
+			return Integer.parseInt (getAttributeValue (index));
+
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			char ch = buf [i];
+			if (ch < '0' || ch > '9')
+				throw new NumberFormatException (getAttributeValue (index));
+			value = value * 10 + (ch - '0');
+		}
+		if (negative)
+			value = -value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE)
+			throw new NumberFormatException (getAttributeValue (index));
+
+		return (int)value;
+	}
+
+	/**
+	 * Parse a message into an XMLElement (exactly as XMLElement.parseString
+	 * would).
+	 *
+	 * @param message   Message (one line).
+	 * @return          Element.
+	 * @throws XMLParseException  If the message isn't valid XML.
+	 */
+	public XMLElement parseElement (String message) throws XMLParseException {
+		try {
+			setInput (message);
+			next ();
+			return readElement ();
+		}
+		catch (XMLParseException xmlParseEx) {
+			// Outside the subset so let nanoxml have a go
+			XMLElement element = new XMLElement ();
+			element.parseString (message);
+			return element;
+		}
+	}
+
+	/**
+	 * Build an element from the current START_ELEMENT event up to its
+	 * END_ELEMENT.
+	 */
+	private XMLElement readElement () {
+		XMLElement element = new XMLElement (name);
+		for (int i = 0; i < numOfAttributes; i++)
+			element.setAttribute (attNames [i], getAttributeValue (i));
+
+		while (true) {
+			int event = next ();
+			if (event == END_ELEMENT)
+				return element;
+			else if (event == CONTENT)
+				element.setContent (content);
+			else if (event == START_ELEMENT)
+				element.addChild (readElement ());
+			else
+				throw error ("Unexpected end");
+		}
+	}
+
+	/**
+	 * Read a start tag (pos is at the '<').
+	 */
+	private int readStartTag () {
+		pos++;
+		name = readName ();
+
+		while (true) {
+			boolean space = skipWhitespace ();
+			char ch = peek (0);
+			if (ch == '>') {
+				pos++;
+				break;
+			}
+			else if (ch == '/') {
+				if (peek (1) != '>')
+					throw error ("Expected >");
+				pos += 2;
+				emptyElement = true;
+				break;
+			}
+			else if (!space)
+				throw error ("Expected whitespace");
+
+			// Attribute
+			String attName = readName ();
+			skipWhitespace ();
+			if (peek (0) != '=')
+				throw error ("Expected =");
+			pos++;
+			skipWhitespace ();
+
+			char delimiter = peek (0);
+			if (delimiter != '"' && delimiter != '\'')
+				throw error ("Expected ' or \"");
+			int start = ++pos;
+			boolean entities = false;
+			while (pos < length && buf [pos] != delimiter) {
+				if (buf [pos] == '&')
+					entities = true;
+				pos++;
+			}
+			if (pos == length)
+				throw error ("Unexpected end");
+
+			addAttribute (attName, start, pos++, entities);
+		}
+
+		if (depth == stack.length) {
+			String [] newStack = new String [depth * 2];
+			System.arraycopy (stack, 0, newStack, 0, depth);
+			stack = newStack;
+		}
+		stack [depth++] = name;
+		contentAllowed = !emptyElement;
+
+		return START_ELEMENT;
+	}
+
+	/**
+	 * Read an end tag (pos is at the "</").
+	 */
+	private int readEndTag () {
+		pos += 2;
+		skipWhitespace ();
+		String endName = readName ();
+		skipWhitespace ();
+		if (peek (0) != '>')
+			throw error ("Expected >");
+		pos++;
+
+		name = stack [--depth];
+		if (!name.equals (endName))
+			throw error ("Expected " + name);
+
+		contentAllowed = false;
+		return END_ELEMENT;
+	}
+
+	/**
+	 * Read text content from start up to the delimiter.
+	 */
+	private int readContent (int start, char delimiter) {
+		boolean entities = false;
+		pos = start;
+		while (pos < length && buf [pos] != delimiter) {
+			if (buf [pos] == '&')
+				entities = true;
+			pos++;
+		}
+		if (pos == length || peek (1) != '/')
+			throw error ("Expected </");
+
+		content = text (start, pos, entities);
+		contentAllowed = false;
+		return CONTENT;
+	}
+
+	/**
+	 * Read a name (reusing the String if it has been seen before).
+	 */
+	private String readName () {
+		int start = pos;
+		int hash = 0;
+		while (pos < length && isNameChar (buf [pos]))
+			hash = 31 * hash + buf [pos++];
+		if (pos == start)
+			throw error ("Expected a name");
+
+		int index = hash & (NAME_CACHE_SIZE - 1);
+		String cached = nameCache [index];
+		if (cached != null && cached.length () == pos - start) {
+			int i = 0;
+			while (i < cached.length () && cached.charAt (i) == buf [start + i])
+				i++;
+			if (i == cached.length ())
+				return cached;
+		}
+
+		String newName = new String (buf, start, pos - start);
+		nameCache [index] = newName;
+		return newName;
+	}
+
+	/**
+	 * Add an attribute of the current start element (a repeated attribute
+	 * replaces the earlier one as it does in nanoxml).
+	 */
+	private void addAttribute (String attName, int start, int end, boolean entities) {
+		int index = indexOf (attName);
+		if (index == -1) {
+			if (numOfAttributes == attNames.length) {
+				int size = numOfAttributes * 2;
+				String [] newNames = new String [size];
+				int [] newStarts = new int [size], newEnds = new int [size];
+				boolean [] newEntities = new boolean [size];
+				System.arraycopy (attNames, 0, newNames, 0, numOfAttributes);
+				System.arraycopy (attStarts, 0, newStarts, 0, numOfAttributes);
+				System.arraycopy (attEnds, 0, newEnds, 0, numOfAttributes);
+				System.arraycopy (attEntities, 0, newEntities, 0, numOfAttributes);
+				attNames = newNames;
+				attStarts = newStarts;
+				attEnds = newEnds;
+				attEntities = newEntities;
+			}
+			index = numOfAttributes++;
+			attNames [index] = attName;
+		}
+		attStarts [index] = start;
+		attEnds [index] = end;
+		attEntities [index] = entities;
+	}
+
+	/**
+	 * Return the index of an attribute of the current start element or -1.
+	 */
+	private int indexOf (String attName) {
+		for (int i = 0; i < numOfAttributes; i++)
+			if (attNames [i] == attName || attNames [i].equals (attName))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Create the text between start and end, resolving any entities.
+	 */
+	private String text (int start, int end, boolean entities) {
+		if (!entities)
+			return new String (buf, start, end - start);
+
+		StringBuffer sb = new StringBuffer (end - start);
+		for (int i = start; i < end; i++) {
+			char ch = buf [i];
+			if (ch != '&') {
+				sb.append (ch);
+				continue;
+			}
+
+			int semiColon = i + 1;
+			while (semiColon < end && buf [semiColon] != ';')
+				semiColon++;
+			if (semiColon == end)
+				throw error ("Unterminated entity");
+
+			sb.append (entity (i + 1, semiColon));
+			i = semiColon;
+		}
+		return sb.toString ();
+	}
+
+	/**
+	 * Resolve the entity between start and end (without the '&' and ';').
+	 */
+	private char entity (int start, int end) {
+		String entity = new String (buf, start, end - start);
+		if (entity.equals ("amp"))
+			return '&';
+		else if (entity.equals ("lt"))
+			return '<';
+		else if (entity.equals ("gt"))
+			return '>';
+		else if (entity.equals ("quot"))
+			return '"';
+		else if (entity.equals ("apos"))
+			return '\'';
+		else if (entity.length () > 1 && entity.charAt (0) == '#') {
+			try {
+				if (entity.charAt (1) == 'x')
+					return (char)Integer.parseInt (entity.substring (2), 16);
+				return (char)Integer.parseInt (entity.substring (1), 10);
+			}
+			catch (NumberFormatException nfEx) {}
+		}
+		throw error ("Unknown entity " + entity);
+	}
+
+	/**
+	 * Skip whitespace and return true if there was any.
+	 */
+	private boolean skipWhitespace () {
+		int start = pos;
+		while (pos < length) {
+			char ch = buf [pos];
+			if (ch != ' ' && ch != '\t' && ch != '\n' && ch != '\r')
+				break;
+			pos++;
+		}
+		return pos > start;
+	}
+
+	/**
+	 * Return the character offset from the current position (or 0 if it
+	 * is past the end).
+	 */
+	private char peek (int offset) {
+		return pos + offset < length ? buf [pos + offset] : '\0';
+	}
+
+	/**
+	 * Return true if a character can be part of a name (as in nanoxml).
+	 */
+	private static boolean isNameChar (char ch) {
+		return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z') ||
+		       (ch >= '0' && ch <= '9') || ch == '_' || ch == '.' ||
+		       ch == ':' || ch == '-' || ch > '~';
+	}
+
+	/**
+	 * Create a parse exception.
+	 */
+	private XMLParseException error (String message) {
+		return new XMLParseException (name, message + " at " + pos);
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - API
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.common;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.jogre.common.comm.BinaryCodec;
+
+/**
+ * Reads messages from a socket where each message is either a line of XML
+ * or a binary frame (see BinaryCodec).  The first byte of each message
+ * says which it is so the two can be mixed freely.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class MessageReader {
+
+	/** Buffered input. */
+	private InputStream in;
+
+	/** Bytes of the current message. */
+	private byte [] buffer = new byte [256];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param in   Input stream of the socket.
+	 */
+	public MessageReader (InputStream in) {
+		this.in = new BufferedInputStream (in);
+	}
+
+	/**
+	 * Read the next message.  Empty lines are skipped.
+	 *
+	 * @return  A line of text (String) or the payload of a binary frame
+	 *          (byte []) or null if the end of the stream has been reached.
+	 * @throws IOException
+	 */
+	public Object readMessage () throws IOException {
+		int b = in.read ();
+		while (b == '\n' || b == '\r')
+			b = in.read ();
+
+		if (b == -1)
+			return null;
+		else if (b == BinaryCodec.FRAME_MARKER)
+			return readFrame ();
+
+		// Line of text
+		int count = 0;
+		while (b != -1 && b != '\n') {
+			if (count == buffer.length)
+				grow (count + 1);
+			buffer [count++] = (byte)b;
+			b = in.read ();
+		}
+		if (count > 0 && buffer [count - 1] == '\r')
+			count--;
+
+		return new String (buffer, 0, count);
+	}
+
+	/**
+	 * Read the length and payload of a binary frame.
+	 */
+	private byte [] readFrame () throws IOException {
+		int length = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.read ();
+			if (b == -1)
+				throw new EOFException ();
+			else if (shift > 28)
+				throw new IOException ("Invalid frame length");
+
+			length |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				break;
+		}
+
+		if (length < 0 || length > BinaryCodec.MAX_FRAME_LENGTH)
+			throw new IOException ("Frame too long: " + length);
+
+		byte [] payload = new byte [length];
+		int offset = 0;
+		while (offset < length) {
+			int read = in.read (payload, offset, length - offset);
+			if (read == -1)
+				throw new EOFException ();
+			offset += read;
+		}
+
+		return payload;
+	}
+
+	/**
+	 * Make the line buffer bigger.
+	 */
+	private void grow (int size) {
+		byte [] newBuffer = new byte [Math.max (buffer.length * 2, size)];
+		System.arraycopy (buffer, 0, newBuffer, 0, buffer.length);
+		buffer = newBuffer;
+	}
+}
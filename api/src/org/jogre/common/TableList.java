@@ -118,7 +118,7 @@ public class TableList extends Observable implements ITransmittable {
 	 * @param properties  Properties of this table.
 	 * @return            The new table.
 	 */
-	public Table addTable (User creator, boolean isPublic, JogrePropertyHash properties) {
+	public synchronized Table addTable (User creator, boolean isPublic, JogrePropertyHash properties) {
 	    // Generate new table number.
 		Integer newTableNum = computeNewTableNum();
 
@@ -142,7 +142,7 @@ public class TableList extends Observable implements ITransmittable {
 	 *
 	 * @param tableNum  Number of the table to be removed.
 	 */
-	public void removeTable (int tableNum) {
+	public synchronized void removeTable (int tableNum) {
 		Integer iTableNum = new Integer (tableNum);
 		tablelist.remove (iTableNum);
 
@@ -166,7 +166,7 @@ public class TableList extends Observable implements ITransmittable {
 	 * @param player    The name of the player to remove.
 	 * @return true if the player was removed succesfully.
 	 */
-	public boolean removePlayer (int tableNum, String player) {
+	public synchronized boolean removePlayer (int tableNum, String player) {
 		Table table = getTable (tableNum);
 
 		// Verify that table & player exist
@@ -197,7 +197,7 @@ public class TableList extends Observable implements ITransmittable {
 	 *
 	 * @param player
 	 */
-	public void removeUserFromTables (String player) {
+	public synchronized void removeUserFromTables (String player) {
 		Vector keys = new Vector (tablelist.keySet());
 
 		// Loop through each table and remove the player
@@ -217,7 +217,7 @@ public class TableList extends Observable implements ITransmittable {
 	 * @param tableNum   Table number.
 	 * @return           Table object if exists.
 	 */
-	public Table getTable (int tableNum) {
+	public synchronized Table getTable (int tableNum) {
 		return (Table)tablelist.get(new Integer(tableNum));
 	}
 
@@ -226,7 +226,7 @@ public class TableList extends Observable implements ITransmittable {
 	 *
 	 * @return   Array of integer table numbers.
 	 */
-	public int [] getTablesNumbers () {
+	public synchronized int [] getTablesNumbers () {
 		Vector keys = new Vector (tablelist.keySet());
 		Collections.sort(keys);
 
@@ -246,7 +246,7 @@ public class TableList extends Observable implements ITransmittable {
 	 * @param tableNum
 	 * @param table
 	 */
-	public void updateTable (int tableNum, Table table) {
+	public synchronized void updateTable (int tableNum, Table table) {
 		int tableCount = tablelist.size();
 		tablelist.put (new Integer(tableNum), table);
 
@@ -259,12 +259,49 @@ public class TableList extends Observable implements ITransmittable {
 		notifyObservers (notify);
 	}
 
+	/**
+	 * Replace the tables with those of another table list (e.g. a snapshot
+	 * from the server).  Tables which are in both lists keep the same Table
+	 * object so that open table frames carry on working.  Observers are
+	 * notified once.
+	 *
+	 * @param snapshot  Table list to copy.
+	 * @param userList  Users (to fill in the user of each player).
+	 */
+	public void resync (TableList snapshot, UserList userList) {
+		synchronized (this) {
+			HashMap newTablelist = new HashMap ();
+
+			int [] tableNums = snapshot.getTablesNumbers();
+			for (int i = 0; i < tableNums.length; i++) {
+				Integer key = new Integer (tableNums [i]);
+				Table newTable = snapshot.getTable (tableNums [i]);
+				Table table = (Table)tablelist.get (key);
+
+				newTable.getPlayerList().updateUsers (userList);
+				if (table != null) {
+					table.setPlayerList (newTable.getPlayerList());
+					table.getProperties().putAll (newTable.getProperties());
+					table.refreshObservers();
+					newTable = table;
+				}
+				newTablelist.put (key, newTable);
+			}
+
+			tablelist = newTablelist;
+			unusedTableNumbers = new Vector (snapshot.unusedTableNumbers);
+			highestTableNum = snapshot.highestTableNum;
+		}
+
+		refreshObservers();
+	}
+
 	/**
 	 * Return the size of the table list.
 	 *
 	 * @return   Number of Table objects in TableList.
 	 */
-	public int size () {
+	public synchronized int size () {
 		return tablelist.size();
 	}
 
@@ -274,7 +311,7 @@ public class TableList extends Observable implements ITransmittable {
 	 * @param username
 	 * @return
 	 */
-	public int [] getTableNumsForUser (String username) {
+	public synchronized int [] getTableNumsForUser (String username) {
 
 		int [] tableNums = getTablesNumbers();
 		int [] userTableNumsTemp = new int [tableNums.length];
@@ -300,7 +337,7 @@ public class TableList extends Observable implements ITransmittable {
 	 * @param username   Username to check.
 	 * @return           Number of tables this user is owner of.
 	 */
-	public int getNumOfTablesUserOwns (String username) {
+	public synchronized int getNumOfTablesUserOwns (String username) {
 		int [] tableNums = getTablesNumbers();
 
 		int count = 0;
@@ -318,7 +355,7 @@ public class TableList extends Observable implements ITransmittable {
 	 *
 	 * @return  Unique table number.
 	 */
-	public Integer computeNewTableNum () {
+	public synchronized Integer computeNewTableNum () {
 		if (unusedTableNumbers.size() == 0) {
 			// No table numbers are available to recycle, so all tables from
 			// 1 to highestTableNum are being used.  Therefore, our new table
@@ -336,7 +373,7 @@ public class TableList extends Observable implements ITransmittable {
 	 *
 	 * @see org.jogre.common.comm.ITransmittable#flatten()
 	 */
-	public XMLElement flatten ()  {
+	public synchronized XMLElement flatten ()  {
 		XMLElement message = new XMLElement (Comm.TABLE_LIST);
 
 		int [] tableNums = getTablesNumbers();
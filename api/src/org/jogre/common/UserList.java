@@ -79,7 +79,7 @@ public class UserList extends Observable implements ITransmittable {
 	 * @param username Username of User.
 	 * @param rating   Rating of this user.
 	 */
-	public void addUser (User user) {
+	public synchronized void addUser (User user) {
 	    // Add to hash
 	    String username = user.getUsername();
 		userlist.put (user.getUsername(), user);
@@ -94,7 +94,7 @@ public class UserList extends Observable implements ITransmittable {
 	 *
 	 * @param username
 	 */
-	public void removeUser (String username) {
+	public synchronized void removeUser (String username) {
 	    // Remove user from hash
 		userlist.remove (username);
 
@@ -103,13 +103,27 @@ public class UserList extends Observable implements ITransmittable {
 		notifyObservers ("-U " + username);
 	}
 
+	/**
+	 * Replace the users with those of another user list (e.g. a snapshot from
+	 * the server).  Observers are notified once.
+	 *
+	 * @param snapshot  User list to copy.
+	 */
+	public void resync (UserList snapshot) {
+		synchronized (this) {
+			userlist = new HashMap (snapshot.userlist);
+		}
+
+		refreshObservers();
+	}
+
 	/**
 	 * Return true if the user list contains this user.
 	 *
 	 * @param username  Username to check for in the list.
 	 * @return          True if list contains the username as a key.
 	 */
-	public boolean containsUser (String username) {
+	public synchronized boolean containsUser (String username) {
 		return userlist.containsKey (username);
 	}
 
@@ -118,7 +132,7 @@ public class UserList extends Observable implements ITransmittable {
 	 *
 	 * @return  List of users as Strings in a Vector.
 	 */
-	public Vector getUsers () {
+	public synchronized Vector getUsers () {
 		return new Vector (userlist.keySet());
 	}
 
@@ -127,7 +141,7 @@ public class UserList extends Observable implements ITransmittable {
 	 *
 	 * @return
 	 */
-	public Vector getUserObjects () {
+	public synchronized Vector getUserObjects () {
 	    return new Vector (userlist.values());
 	}
 
@@ -137,7 +151,7 @@ public class UserList extends Observable implements ITransmittable {
      * @param username  Username to search on
      * @return          User object if found.
      */
-	public User getUser (String username) {
+	public synchronized User getUser (String username) {
 	    return (User)userlist.get(username);
 	}
 
@@ -146,7 +160,7 @@ public class UserList extends Observable implements ITransmittable {
 	 *
 	 * @see org.jogre.common.comm.ITransmittable#flatten()
 	 */
-	public XMLElement flatten ()  {
+	public synchronized XMLElement flatten ()  {
 		XMLElement message = new XMLElement (Comm.USER_LIST);
 
 		Set usernames = userlist.keySet();		// get all usernames
@@ -164,7 +178,7 @@ public class UserList extends Observable implements ITransmittable {
 	 *
 	 * @return   Number of users (between 0 and GameProperties.getMaxNumOfUsers()).
 	 */
-	public int size () {
+	public synchronized int size () {
 		return userlist.size();
 	}
 
@@ -173,7 +187,7 @@ public class UserList extends Observable implements ITransmittable {
 	 *
 	 * @see java.lang.Object#toString()
 	 */
-	public String toString () {
+	public synchronized String toString () {
 	    return userlist.keySet().toString();
 	}
 
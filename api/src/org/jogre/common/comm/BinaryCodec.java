@@ -0,0 +1,418 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - API
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.common.comm;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import nanoxml.XMLElement;
+
+import org.jogre.common.Game;
+import org.jogre.common.TransmissionException;
+
+/**
+ * <p>Compact binary encoding of the flattened communication objects.  A
+ * client asks for it by setting the protocol of its CommGameConnect /
+ * CommAdminConnect to PROTOCOL.  The server then sends binary frames to
+ * that client and the client sends binary frames once it has received
+ * one.  XML lines are always understood so either end can fall back.</p>
+ *
+ * <p>A frame is the FRAME_MARKER byte (which can never start an XML line),
+ * the length of the payload as a varint and then the payload which is an
+ * element encoded as:</p>
+ *
+ * <pre>
+ *   element   = name, varint (num of attributes), (name, value)*,
+ *               content, varint (num of children), element*
+ *   name      = varint (index into NAMES + 1) | 0, string
+ *   value     = TYPE_INT, zigzag varint | TYPE_STRING, string
+ *   content   = TYPE_NONE | TYPE_STRING, string |
+ *               TYPE_INT_ARRAY, varint (length), zigzag varint*
+ *   string    = varint (length in bytes), UTF-8 bytes
+ * </pre>
+ *
+ * <p>Attribute values which are ints are written as varints, which are
+ * shorter than their text.  XMLElement holds every attribute as a String
+ * so they are still converted to and from a String at each end.  Int array
+ * content (see XMLElement.setContent (int [])) is held as an int [] and is
+ * written as numbers without going through a String.  NAMES must only ever
+ * be added to, otherwise PROTOCOL must change.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class BinaryCodec {
+
+	/** Protocol name used when connecting. */
+	public static final String PROTOCOL = "binary1";
+
+	/** First byte of a binary frame. */
+	public static final int FRAME_MARKER = 0x01;
+
+	/** Largest payload which will be accepted. */
+	public static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+	// Value types
+	private static final int TYPE_NONE      = 0;
+	private static final int TYPE_STRING    = 1;
+	private static final int TYPE_INT       = 2;
+	private static final int TYPE_INT_ARRAY = 3;
+
+	/** Element and attribute names which are sent as a single byte. */
+	private static final String [] NAMES = {
+		// Elements
+		Comm.GAME_LIST, Comm.GAME, Comm.USER_LIST, Comm.USER, Comm.TABLE_LIST,
+		Comm.TABLE, Comm.MODEL, Comm.PLAYER_LIST, Comm.PLAYER,
+		Comm.ADMIN_CONNECT, Comm.ADMIN_GAME_MESSAGE, Comm.ADMIN_DATA_MESSAGE,
+		Comm.ADMIN_SERVER_PROPERTIES, Comm.ADMIN_ICON_DATA, Comm.ADMIN_CLIENT_DATA,
+		Comm.CHAT_GAME, Comm.CHAT_PRIVATE, Comm.CHAT_TABLE, Comm.GAME_CONNECT,
+		Comm.GAME_NEWUSER, Comm.MASTER_SERVER_CONNECT, Comm.MASTER_SERVER_MESSAGE,
+		Comm.CONTROLLER_PROPERTY, Comm.CONTROLLER_OBJECT, Comm.DISCONNECT,
+		Comm.ERROR, Comm.EXIT_TABLE, Comm.GAME_OVER, Comm.INVITE, Comm.JOIN_TABLE,
+		Comm.NEW_TABLE, Comm.NEXT_PLAYER, Comm.OFFER_DRAW, Comm.PLAYER_STATE,
+		Comm.READY_TO_START, Comm.REQUEST_DATA, Comm.SERVER_PROPERTIES,
+		Comm.SIT_DOWN, Comm.STAND_UP, Comm.START_GAME, Comm.TABLE_PROPERTY,
+		Comm.ADMIN_TEST_CONNECTION, Comm.PROP_PLAYERS,
+
+		// Attributes
+		"username", "seat", "password", "value", "usernameTo", "tableNum",
+		"status", "state", "serverName", "key", "game_id", "gameID",
+		"curPlayer", "wins", "vis", "url", "timeStarted", "suit",
+		"stringValue", "streak", "sn", "results", "requestType", "rating",
+		"properties", "position", "owner", "oldRatings", "newRatings",
+		"name", "minPlayers", "maxPlayers", "loses", "is_recv", "isPublic",
+		"intValue", "icon", "gameKey", "faceUp", "driver", "draws",
+		"description", "data_type", "dataType", "protocol", Game.XML_ATT_SEQUENCE
+	};
+
+	/** Index of each name in NAMES. */
+	private static final Hashtable NAME_INDEX = new Hashtable ();
+	static {
+		for (int i = 0; i < NAMES.length; i++)
+			NAME_INDEX.put (NAMES [i], new Integer (i));
+	}
+
+	/** Deepest nesting of elements which will be decoded. */
+	private static final int MAX_DEPTH = 64;
+
+	/** Character set of strings. */
+	private static final String UTF8 = "UTF-8";
+
+	/**
+	 * Encode an element as a complete frame (marker, length and payload).
+	 *
+	 * @param element   Flattened message.
+	 * @return          Frame ready to be written to a socket.
+	 */
+	public static byte [] encode (XMLElement element) {
+		Buffer payload = new Buffer ();
+		writeElement (payload, element);
+
+		Buffer frame = new Buffer (payload.count + 6);
+		frame.write (FRAME_MARKER);
+		frame.writeVarInt (payload.count);
+		frame.write (payload.data, 0, payload.count);
+
+		return frame.toByteArray ();
+	}
+
+	/**
+	 * Decode the payload of a frame (i.e. without the marker and length).
+	 *
+	 * @param data     Data.
+	 * @param offset   Start of the payload.
+	 * @param length   Length of the payload.
+	 * @return         Element.
+	 * @throws TransmissionException  If the payload isn't a valid element.
+	 */
+	public static XMLElement decode (byte [] data, int offset, int length) throws TransmissionException {
+		Reader reader = new Reader (data, offset, offset + length);
+		try {
+			XMLElement element = reader.readElement (0);
+			if (reader.pos != reader.limit)
+				throw new TransmissionException ("Trailing bytes in binary message");
+
+			return element;
+		}
+		catch (ArrayIndexOutOfBoundsException aEx) {
+			throw new TransmissionException ("Truncated binary message");
+		}
+		catch (UnsupportedEncodingException ueEx) {
+			throw new TransmissionException (ueEx.getMessage ());
+		}
+	}
+
+	/**
+	 * Write an element and its children.
+	 */
+	private static void writeElement (Buffer out, XMLElement element) {
+		writeName (out, element.getName ());
+
+		// Attributes
+		out.writeVarInt (element.countAttributes ());
+		Enumeration e = element.enumerateAttributeNames ();
+		while (e.hasMoreElements ()) {
+			String name = (String)e.nextElement ();
+			String value = element.getStringAttribute (name);
+			writeName (out, name);
+			if (isInt (value)) {
+				out.write (TYPE_INT);
+				out.writeSignedVarInt (Integer.parseInt (value));
+			}
+			else {
+				out.write (TYPE_STRING);
+				out.writeString (value);
+			}
+		}
+
+		// Content
+		if (element.hasIntArrayContent ()) {
+			int [] values = element.getIntArrayContent ();
+			out.write (TYPE_INT_ARRAY);
+			out.writeVarInt (values.length);
+			for (int i = 0; i < values.length; i++)
+				out.writeSignedVarInt (values [i]);
+		}
+		else {
+			String content = element.getContent ();
+			if (content == null || content.length () == 0)
+				out.write (TYPE_NONE);
+			else {
+				out.write (TYPE_STRING);
+				out.writeString (content);
+			}
+		}
+
+		// Children
+		out.writeVarInt (element.countChildren ());
+		e = element.enumerateChildren ();
+		while (e.hasMoreElements ())
+			writeElement (out, (XMLElement)e.nextElement ());
+	}
+
+	/**
+	 * Write a name as its index if it is known or as a string if not.
+	 */
+	private static void writeName (Buffer out, String name) {
+		Integer index = (Integer)NAME_INDEX.get (name);
+		if (index != null)
+			out.writeVarInt (index.intValue () + 1);
+		else {
+			out.writeVarInt (0);
+			out.writeString (name);
+		}
+	}
+
+	/**
+	 * Return true if a value is an int which is written exactly as
+	 * Integer.toString () would write it (so it can be sent as a number
+	 * and turned back into the same String).
+	 */
+	private static boolean isInt (String value) {
+		int length = value.length ();
+		int start = (length > 0 && value.charAt (0) == '-') ? 1 : 0;
+		if (length == start || length - start > 10)
+			return false;
+		if (value.charAt (start) == '0' && (length > start + 1 || start == 1))
+			return false;
+
+		for (int i = start; i < length; i++) {
+			char c = value.charAt (i);
+			if (c < '0' || c > '9')
+				return false;
+		}
+
+		if (length - start < 10)
+			return true;
+
+		long number = Long.parseLong (value);
+		return number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Growable byte array.
+	 */
+	private static class Buffer {
+
+		private byte [] data;
+		private int count = 0;
+
+		private Buffer () {
+			this (256);
+		}
+
+		private Buffer (int size) {
+			data = new byte [size];
+		}
+
+		private void ensure (int extra) {
+			if (count + extra > data.length) {
+				byte [] newData = new byte [Math.max (data.length * 2, count + extra)];
+				System.arraycopy (data, 0, newData, 0, count);
+				data = newData;
+			}
+		}
+
+		private void write (int b) {
+			ensure (1);
+			data [count++] = (byte)b;
+		}
+
+		private void write (byte [] bytes, int offset, int length) {
+			ensure (length);
+			System.arraycopy (bytes, offset, data, count, length);
+			count += length;
+		}
+
+		private void writeVarInt (int value) {
+			ensure (5);
+			while ((value & ~0x7F) != 0) {
+				data [count++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			data [count++] = (byte)value;
+		}
+
+		private void writeSignedVarInt (int value) {
+			writeVarInt ((value << 1) ^ (value >> 31));
+		}
+
+		private void writeString (String value) {
+			try {
+				byte [] bytes = value.getBytes (UTF8);
+				writeVarInt (bytes.length);
+				write (bytes, 0, bytes.length);
+			}
+			catch (UnsupportedEncodingException ueEx) {
+				throw new IllegalStateException (ueEx.getMessage ());
+			}
+		}
+
+		private byte [] toByteArray () {
+			if (count == data.length)
+				return data;
+
+			byte [] bytes = new byte [count];
+			System.arraycopy (data, 0, bytes, 0, count);
+			return bytes;
+		}
+	}
+
+	/**
+	 * Reads the payload of a frame.
+	 */
+	private static class Reader {
+
+		private byte [] data;
+		private int pos, limit;
+
+		private Reader (byte [] data, int pos, int limit) {
+			this.data  = data;
+			this.pos   = pos;
+			this.limit = limit;
+		}
+
+		private int read () {
+			if (pos >= limit)
+				throw new ArrayIndexOutOfBoundsException (pos);
+			return data [pos++] & 0xFF;
+		}
+
+		private int readVarInt () throws TransmissionException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				int b = read ();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new TransmissionException ("Invalid varint in binary message");
+		}
+
+		private int readSignedVarInt () throws TransmissionException {
+			int value = readVarInt ();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		private int readLength () throws TransmissionException {
+			int length = readVarInt ();
+			if (length < 0 || length > limit - pos)
+				throw new TransmissionException ("Invalid length in binary message");
+			return length;
+		}
+
+		private String readString () throws TransmissionException, UnsupportedEncodingException {
+			int length = readLength ();
+			String value = new String (data, pos, length, UTF8);
+			pos += length;
+			return value;
+		}
+
+		private String readName () throws TransmissionException, UnsupportedEncodingException {
+			int index = readVarInt ();
+			if (index == 0)
+				return readString ();
+			else if (index > NAMES.length)
+				throw new TransmissionException ("Unknown name in binary message");
+			return NAMES [index - 1];
+		}
+
+		private XMLElement readElement (int depth) throws TransmissionException, UnsupportedEncodingException {
+			if (depth > MAX_DEPTH)
+				throw new TransmissionException ("Binary message is nested too deeply");
+
+			XMLElement element = new XMLElement (readName ());
+
+			// Attributes
+			int numOfAttributes = readLength ();
+			for (int i = 0; i < numOfAttributes; i++) {
+				String name = readName ();
+				int type = read ();
+				if (type == TYPE_INT)
+					element.setIntAttribute (name, readSignedVarInt ());
+				else if (type == TYPE_STRING)
+					element.setAttribute (name, readString ());
+				else
+					throw new TransmissionException ("Invalid attribute in binary message");
+			}
+
+			// Content
+			int type = read ();
+			if (type == TYPE_STRING)
+				element.setContent (readString ());
+			else if (type == TYPE_INT_ARRAY) {
+				int [] values = new int [readLength ()];
+				for (int i = 0; i < values.length; i++)
+					values [i] = readSignedVarInt ();
+				element.setContent (values);
+			}
+			else if (type != TYPE_NONE)
+				throw new TransmissionException ("Invalid content in binary message");
+
+			// Children
+			int numOfChildren = readLength ();
+			for (int i = 0; i < numOfChildren; i++)
+				element.addChild (readElement (depth + 1));
+
+			return element;
+		}
+	}
+}
@@ -41,6 +41,8 @@ public class CommAdminClientData extends CommGameMessage {
 	private static final String XML_ATT_DATA_TYPE = "data_type";	
 	private static final String XML_ATT_REQUEST_TYPE = "requestType";
 	private static final String XML_ATT_PARAM_DATA = "param_data";
+	private static final String XML_ATT_CURSOR = "cursor";
+	private static final String XML_ATT_NEXT_CURSOR = "next_cursor";
 	
 	public static final char RETRIEVE = 'R';
 	public static final char NEW = 'N';
@@ -52,6 +54,7 @@ public class CommAdminClientData extends CommGameMessage {
 	private char requestType;
 	private String [][] data = null;
 	private String [] paramData = null;	
+	private String cursor = null, nextCursor = null;
 	
 	/**
 	 * Constructor which takes a 2D array of String data which will be displayed in table format at the other end.
@@ -67,13 +70,40 @@ public class CommAdminClientData extends CommGameMessage {
 		this.requestType = RETRIEVE;
 	}
 	
+	/**
+	 * Constructor which takes a page of data.
+	 * 
+	 * @param data
+	 * @param dataType
+	 * @param cursor       Cursor the page was requested with (null for the first page).
+	 * @param nextCursor   Cursor of the next page (null if this is the last page).
+	 */
+	public CommAdminClientData (String [][] data, String dataType, String cursor, String nextCursor) {
+		this (data, dataType);
+		
+		this.cursor = cursor;
+		this.nextCursor = nextCursor;
+	}
+	
 	/**
 	 * Constructor which is used to request a 2D array of data.
 	 * 
 	 * @param dataType
 	 */
 	public CommAdminClientData (String dataType) {
-		this (null, dataType);
+		this ((String [][])null, dataType);
+	}
+	
+	/**
+	 * Constructor which is used to request a page of data.
+	 * 
+	 * @param dataType
+	 * @param cursor     Next cursor of the previous page.
+	 */
+	public CommAdminClientData (String dataType, String cursor) {
+		this ((String [][])null, dataType);
+		
+		this.cursor = cursor;
 	}
 	
 	/**
@@ -96,6 +126,8 @@ public class CommAdminClientData extends CommGameMessage {
 	 */
 	public CommAdminClientData (XMLElement message) {
 		this.dataType     = message.getStringAttribute (XML_ATT_DATA_TYPE);
+		this.cursor       = message.getStringAttribute (XML_ATT_CURSOR);
+		this.nextCursor   = message.getStringAttribute (XML_ATT_NEXT_CURSOR);
 		
 		// Read request items
 		this.requestType = (message.getStringAttribute (XML_ATT_REQUEST_TYPE).charAt(0));
@@ -147,6 +179,24 @@ public class CommAdminClientData extends CommGameMessage {
 		return this.requestType;
 	}
 	
+	/**
+	 * Return the cursor of this page (or of the page being requested).
+	 * 
+	 * @return   Cursor or null for the first page.
+	 */
+	public String getCursor () {
+		return this.cursor;
+	}
+	
+	/**
+	 * Return the cursor of the page after this one.
+	 * 
+	 * @return   Cursor or null if this is the last page.
+	 */
+	public String getNextCursor () {
+		return this.nextCursor;
+	}
+	
 	/**
 	 * Return parameter data.
 	 * 
@@ -163,6 +213,10 @@ public class CommAdminClientData extends CommGameMessage {
 		XMLElement message = super.flatten (Comm.ADMIN_CLIENT_DATA);
 		message.setAttribute    (XML_ATT_DATA_TYPE,      dataType);
 		message.setAttribute    (XML_ATT_REQUEST_TYPE, String.valueOf(requestType));
+		if (cursor != null)
+			message.setAttribute (XML_ATT_CURSOR,      cursor);
+		if (nextCursor != null)
+			message.setAttribute (XML_ATT_NEXT_CURSOR, nextCursor);
 		
 		// Add data if applicable
 		if (data != null) {
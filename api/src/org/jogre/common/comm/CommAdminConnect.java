@@ -62,7 +62,9 @@ public class CommAdminConnect extends CommGameConnect {
 	public XMLElement flatten () {
 	    XMLElement message = super.flatten (Comm.ADMIN_CONNECT);
 	    message.setAttribute (XML_ATT_PASSWORD, password);
-	    
+	    if (protocol != null)
+	        message.setAttribute (XML_ATT_PROTOCOL, protocol);
+
 	    return message;
 	}
 }
@@ -34,7 +34,8 @@ public class CommGameConnect extends CommGameMessage {
 
 	// XML attribute name
     protected static final String XML_ATT_PASSWORD = "password";
-    protected static final String XML_ATT_GAME_ID  = "gameID";
+    public static final String XML_ATT_GAME_ID  = "gameID";
+    public static final String XML_ATT_PROTOCOL = "protocol";
 
     /** Game ID of game client is playing. */
     protected String gameID = null;
@@ -42,6 +43,9 @@ public class CommGameConnect extends CommGameMessage {
 	/** Password if connecting to the JOGRE master server. */
 	protected String password = null;
 
+	/** Wire protocol the client would like to use (null for XML). */
+	protected String protocol = null;
+
 	/**
 	 * Used by server to inform other clients that someone has
 	 * logged onto a game.
@@ -90,6 +94,7 @@ public class CommGameConnect extends CommGameMessage {
 
 		this.gameID   = message.getStringAttribute (XML_ATT_GAME_ID);
 		this.password = message.getStringAttribute (XML_ATT_PASSWORD);
+		this.protocol = message.getStringAttribute (XML_ATT_PROTOCOL);
 	}
 
 	/**
@@ -110,6 +115,25 @@ public class CommGameConnect extends CommGameMessage {
 		return this.password;
 	}
 
+	/**
+	 * Return the wire protocol the client would like to use (e.g.
+	 * BinaryCodec.PROTOCOL) or null if it only speaks XML.
+	 *
+	 * @return  Protocol
+	 */
+	public String getProtocol () {
+		return this.protocol;
+	}
+
+	/**
+	 * Set the wire protocol the client would like to use.
+	 *
+	 * @param protocol  Protocol (e.g. BinaryCodec.PROTOCOL) or null for XML.
+	 */
+	public void setProtocol (String protocol) {
+		this.protocol = protocol;
+	}
+
 	/**
 	 * Flatten the connect object into a XML communication object.
 	 *
@@ -122,6 +146,8 @@ public class CommGameConnect extends CommGameMessage {
 	        message.setAttribute (XML_ATT_PASSWORD, password);
 	    if (gameID != null)
 	        message.setAttribute (XML_ATT_GAME_ID,  gameID);
+	    if (protocol != null)
+	        message.setAttribute (XML_ATT_PROTOCOL, protocol);
 
 	    return message;
 	}
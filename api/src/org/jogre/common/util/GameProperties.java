@@ -55,6 +55,7 @@ public class GameProperties extends AbstractProperties implements IJogre {
 	private static final String IMAGE_LABEL            = "image.";
 	private static final String KEY_MAX_NUM_OF_TABLES_PER_USER = "tables.per.user";
 	private static final String KEY_RULES_FILENAME     = "rules.file";
+	private static final String KEY_PROTOCOL           = "protocol";
 	private static final String KEY_TABLE_PLAYER_HIGHLIGHT_COLOR = "table.current.player.highlight.colour";
 	private static final String KEY_TABLE_PLAYER_TEXT_COLOR = "table.current.player.text.colour";
 
@@ -198,6 +199,16 @@ public class GameProperties extends AbstractProperties implements IJogre {
 	    return getInstance().get (KEY_RULES_FILENAME, (String) null);
 	}
 
+	/**
+	 * Return the wire protocol the game would like to use with the server
+	 * (e.g. "binary1") or null to always use XML.
+	 *
+	 * @return   Protocol
+	 */
+	public static String getProtocol () {
+	    return getInstance().get (KEY_PROTOCOL, (String) null);
+	}
+
 	/**
 	 * Return the color to use to highlight the current player in the table list.
 	 *
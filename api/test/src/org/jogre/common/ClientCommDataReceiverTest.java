@@ -0,0 +1,178 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - API
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.common;
+
+import java.util.Observable;
+import java.util.Observer;
+
+import junit.framework.TestCase;
+import nanoxml.XMLElement;
+
+import org.jogre.common.comm.CommDisconnect;
+import org.jogre.common.comm.CommExitTable;
+import org.jogre.common.comm.CommTableMessage;
+import org.jogre.common.comm.ITransmittable;
+import org.jogre.common.util.JogrePropertyHash;
+
+/**
+ * Test case for keeping the client user / table lists in step with the
+ * server using sequence numbered deltas.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ClientCommDataReceiverTest extends TestCase {
+
+	private Game server, client;
+	private ClientCommDataReceiver receiver;
+
+	/** Number of times the client table list observers were told. */
+	private int tableListUpdates = 0;
+
+	/**
+	 * Create a server game and a client copy of it.
+	 */
+	protected void setUp () throws Exception {
+		server = new Game ("chess", 2, 2);
+		addUser ("bob");
+		addUser ("dave");
+		server.getTableList().addTable (server.getUserList().getUser ("bob"), true, new JogrePropertyHash ());
+
+		client = new Game (server.flatten ());
+		receiver = new ClientCommDataReceiver (client);
+
+		client.getTableList().addObserver (new Observer () {
+			public void update (Observable observable, Object arg) {
+				tableListUpdates++;
+			}
+		});
+	}
+
+	private User addUser (String username) {
+		User user = new User (username, 1200, 0, 0, 0, 0);
+		server.getUserList().addUser (user);
+		return user;
+	}
+
+	/**
+	 * Flatten a delta with the next server sequence number and give it to
+	 * the client as the server would.
+	 *
+	 * @return  Result of checkSequence.
+	 */
+	private boolean receive (ITransmittable delta) {
+		return receive (delta, server.nextSequence ());
+	}
+
+	private boolean receive (ITransmittable delta, int sequence) {
+		XMLElement message = delta.flatten ();
+		message.setIntAttribute (Game.XML_ATT_SEQUENCE, sequence);
+
+		boolean ok = receiver.checkSequence (message);
+		String tableNum = message.getStringAttribute (CommTableMessage.XML_ATT_TABLE_NUM);
+		if (tableNum == null)
+			receiver.receiveGameMessage (message, "dave");
+		else
+			receiver.receiveTableMessage (message, "dave", Integer.parseInt (tableNum));
+		return ok;
+	}
+
+	/**
+	 * Test deltas in order are applied.
+	 */
+	public void testDeltas () throws Exception {
+		assertEquals (2, client.getUserList ().size ());
+		assertEquals (1, client.getTableList ().size ());
+
+		assertTrue (receive (addUser ("sarah")));
+		assertTrue (receive (server.getTableList ().addTable (server.getUserList ().getUser ("sarah"), false, new JogrePropertyHash ())));
+		assertTrue (receive (new CommExitTable (1, "bob")));
+		assertTrue (receive (new CommDisconnect ("bob")));
+
+		assertEquals (4, client.getSequence ());
+		assertEquals (2, client.getUserList ().size ());
+		assertNull (client.getTableList ().getTable (1));
+		assertTrue (client.getTableList ().getTable (2).containsPlayer ("sarah"));
+	}
+
+	/**
+	 * Test a missed delta asks for a snapshot once and the snapshot brings
+	 * the lists up to date without replacing them.
+	 */
+	public void testResync () throws Exception {
+		TableList tableList = client.getTableList ();
+		Table table = tableList.getTable (1);
+
+		assertTrue (receive (addUser ("sarah")));
+		server.nextSequence ();							// missed
+		assertFalse (receive (addUser ("mike")));
+		assertTrue (receive (addUser ("jane")));		// already resyncing
+
+		// Meanwhile on the server
+		server.getTableList ().getTable (1).addPlayer (server.getUserList ().getUser ("dave"));
+		server.getTableList ().addTable (server.getUserList ().getUser ("mike"), true, new JogrePropertyHash ());
+		server.nextSequence ();
+		server.nextSequence ();
+
+		int updates = tableListUpdates;
+		receiver.receiveGameMessage (server.flatten (), "dave");
+		assertEquals (updates + 1, tableListUpdates);
+
+		assertSame (tableList, client.getTableList ());
+		assertSame (table, tableList.getTable (1));
+		assertTrue (table.containsPlayer ("dave"));
+		assertNotNull (table.getPlayerList ().getPlayer ("dave").getUser ());
+		assertEquals (2, tableList.size ());
+		assertEquals (5, client.getUserList ().size ());
+		assertEquals (server.getSequence (), client.getSequence ());
+
+		// Back in step so the next gap is spotted again
+		assertTrue (receive (addUser ("tom")));
+		assertFalse (receive (addUser ("ann"), server.getSequence () + 2));
+	}
+
+	/**
+	 * Test a delta which took the place of older ones in the server's queue
+	 * (and so arrives before lower sequence numbers) isn't seen as a gap.
+	 */
+	public void testCoalescedDelta () {
+		XMLElement table = new CommDisconnect ("bob").flatten ();
+		table.setIntAttribute (Game.XML_ATT_SEQUENCE, 3);
+		table.setIntAttribute (Game.XML_ATT_SEQUENCE_FROM, 1);
+		assertTrue (receiver.checkSequence (table));
+
+		XMLElement user = new CommDisconnect ("sarah").flatten ();
+		user.setIntAttribute (Game.XML_ATT_SEQUENCE, 2);
+		assertTrue (receiver.checkSequence (user));
+		assertEquals (3, client.getSequence ());
+
+		XMLElement next = new CommDisconnect ("dave").flatten ();
+		next.setIntAttribute (Game.XML_ATT_SEQUENCE, 4);
+		assertTrue (receiver.checkSequence (next));
+	}
+
+	/**
+	 * Test messages without a sequence number (older servers) are fine.
+	 */
+	public void testNoSequence () {
+		assertTrue (receiver.checkSequence (new CommDisconnect ("bob").flatten ()));
+		assertEquals (0, client.getSequence ());
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - API
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nanoxml.XMLElement;
+
+/**
+ * <p>Benchmark which compares the throughput of nanoxml's parseString with
+ * the MessageParser (building XMLElements and pull only) over the captured
+ * messages in test/data/messages.txt.  The messages are split into moves,
+ * chat and table / game state so each kind can be compared.  This is not a
+ * JUnit test so it must be run by hand from the api directory e.g.</p>
+ *
+ * <code>java org.jogre.common.MessageParserBenchmark -rounds=2000</code>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class MessageParserBenchmark {
+
+	private int numOfRounds = 2000;
+	private String corpus = MessageParserTest.CORPUS;
+
+	/** Stops the JIT removing the work. */
+	private long checksum = 0;
+
+	private MessageParser parser = new MessageParser ();
+
+	/**
+	 * Parse the command line arguments.
+	 *
+	 * @param args
+	 */
+	private void parseArguments (String [] args) {
+		for (int i = 0; i < args.length; i++) {
+			String value = args [i].substring (args [i].indexOf ("=") + 1);
+			if (args [i].startsWith ("-rounds="))
+				numOfRounds = Integer.parseInt (value);
+			else if (args [i].startsWith ("-corpus="))
+				corpus = value;
+		}
+	}
+
+	/**
+	 * Parse with nanoxml.
+	 */
+	private void parseNanoXML (String [] messages) {
+		for (int i = 0; i < messages.length; i++) {
+			XMLElement element = new XMLElement ();
+			element.parseString (messages [i]);
+			checksum += element.countAttributes ();
+		}
+	}
+
+	/**
+	 * Parse into XMLElements with the message parser.
+	 */
+	private void parseElements (String [] messages) {
+		for (int i = 0; i < messages.length; i++)
+			checksum += parser.parseElement (messages [i]).countAttributes ();
+	}
+
+	/**
+	 * Read the events only (as a caller filling its own objects would).
+	 */
+	private void parsePull (String [] messages) {
+		for (int i = 0; i < messages.length; i++) {
+			parser.setInput (messages [i]);
+			int event;
+			while ((event = parser.next ()) != MessageParser.END_DOCUMENT) {
+				if (event == MessageParser.START_ELEMENT)
+					checksum += parser.getIntAttribute ("table", 0);
+			}
+		}
+	}
+
+	/**
+	 * Time each parser over a set of messages and print messages / second.
+	 *
+	 * @param name
+	 * @param messages
+	 */
+	private void run (String name, String [] messages) {
+		// Warm up
+		for (int i = 0; i < numOfRounds / 4; i++) {
+			parseNanoXML (messages);
+			parseElements (messages);
+			parsePull (messages);
+		}
+
+		long nano = 0, elements = 0, pull = 0;
+		for (int i = 0; i < numOfRounds; i++) {
+			long start = System.nanoTime ();
+			parseNanoXML (messages);
+			nano += System.nanoTime () - start;
+
+			start = System.nanoTime ();
+			parseElements (messages);
+			elements += System.nanoTime () - start;
+
+			start = System.nanoTime ();
+			parsePull (messages);
+			pull += System.nanoTime () - start;
+		}
+
+		long total = (long)messages.length * numOfRounds;
+		System.out.println (pad (name + " (" + messages.length + ")", 18) +
+		                    pad (perSecond (total, nano), 14) +
+		                    pad (perSecond (total, elements), 14) +
+		                    pad (perSecond (total, pull), 14) +
+		                    (nano / Math.max (1, elements)) + "x");
+	}
+
+	/**
+	 * Return messages per second.
+	 */
+	private static String perSecond (long messages, long nanos) {
+		return String.valueOf (messages * 1000000000L / Math.max (1, nanos));
+	}
+
+	/**
+	 * Pad a string to a width.
+	 */
+	private static String pad (String s, int width) {
+		StringBuffer sb = new StringBuffer (s);
+		while (sb.length () < width)
+			sb.append (' ');
+		return sb.toString ();
+	}
+
+	/**
+	 * Return the messages whose names start with one of the prefixes.
+	 */
+	private static String [] select (List messages, String [] prefixes) {
+		List selected = new ArrayList ();
+		for (int i = 0; i < messages.size (); i++) {
+			String message = (String)messages.get (i);
+			for (int j = 0; j < prefixes.length; j++) {
+				if (message.startsWith ("<" + prefixes [j])) {
+					selected.add (message);
+					break;
+				}
+			}
+		}
+		return (String [])selected.toArray (new String [selected.size ()]);
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 */
+	public static void main (String [] args) throws Exception {
+		MessageParserBenchmark benchmark = new MessageParserBenchmark ();
+		benchmark.parseArguments (args);
+
+		List messages = MessageParserTest.readCorpus (benchmark.corpus);
+		String [] all = (String [])messages.toArray (new String [messages.size ()]);
+
+		System.out.println ("Rounds: " + benchmark.numOfRounds + ", corpus: " + benchmark.corpus);
+		System.out.println ("Messages          nanoxml/s     elements/s    pull/s        Speed up");
+		benchmark.run ("moves", select (messages, new String [] {"chess_move", "next_player", "tetris"}));
+		benchmark.run ("chat", select (messages, new String [] {"chat_"}));
+		benchmark.run ("tables", select (messages, new String [] {"game ", "table", "join_table", "user"}));
+		benchmark.run ("all", all);
+		System.out.println ("(checksum " + benchmark.checksum + ")");
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - API
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.common;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import nanoxml.XMLElement;
+import nanoxml.XMLParseException;
+
+/**
+ * Test case for the message parser.  Every message must give the same
+ * XMLElement as nanoxml.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class MessageParserTest extends TestCase {
+
+	/** File of captured messages. */
+	public static final String CORPUS = "test/data/messages.txt";
+
+	private MessageParser parser = new MessageParser ();
+
+	/**
+	 * Read the captured messages.
+	 *
+	 * @return  List of Strings.
+	 * @throws IOException
+	 */
+	public static List readCorpus (String filename) throws IOException {
+		List messages = new ArrayList ();
+		BufferedReader in = new BufferedReader (new FileReader (filename));
+		String line;
+		while ((line = in.readLine ()) != null) {
+			if (line.startsWith ("<"))
+				messages.add (line);
+		}
+		in.close ();
+
+		return messages;
+	}
+
+	/**
+	 * Check a message parses to the same element as nanoxml.
+	 */
+	private void assertSameAsNanoXML (String message) {
+		XMLElement expected = new XMLElement ();
+		expected.parseString (message);
+
+		XMLElement actual = parser.parseElement (message);
+		assertEquals (message, expected.toString (), actual.toString ());
+		assertEquals (message, expected.getContent (), actual.getContent ());
+	}
+
+	/**
+	 * Test every captured message.
+	 */
+	public void testCorpus () throws Exception {
+		List messages = readCorpus (CORPUS);
+		assertTrue (messages.size () > 10);
+
+		for (int i = 0; i < messages.size (); i++)
+			assertSameAsNanoXML ((String)messages.get (i));
+	}
+
+	/**
+	 * Test the awkward parts of the subset.
+	 */
+	public void testSubset () {
+		assertSameAsNanoXML ("<a/>");
+		assertSameAsNanoXML ("  <a  x = 'single'  y=\"double\" />  ");
+		assertSameAsNanoXML ("<a x=\"1\" x=\"2\"/>");
+		assertSameAsNanoXML ("<a x=\"&lt;&amp;&gt;&quot;&apos;&#65;&#x42;\">&#x263a; &amp; text </a>");
+		assertSameAsNanoXML ("<a>   </a>");
+		assertSameAsNanoXML ("<a>  text</a >");
+		assertSameAsNanoXML ("<a>\n  <b x=\"1\"/>\n  <c><d>deep</d></c>\n</a>");
+		assertSameAsNanoXML ("<a x=\"with > and / inside\"></a>");
+	}
+
+	/**
+	 * Test that anything outside the subset still goes to nanoxml.
+	 */
+	public void testFallBack () {
+		assertSameAsNanoXML ("<?xml version=\"1.0\"?><a x=\"1\"/>");
+		assertSameAsNanoXML ("<a><!-- comment --><b/></a>");
+		assertSameAsNanoXML ("<a><![CDATA[<raw>]]></a>");
+		assertSameAsNanoXML ("<a x=\"1\"y=\"2\"/>");
+
+		try {
+			parser.parseElement ("<a><b></a>");
+			fail ("Mismatched end tag was parsed");
+		}
+		catch (XMLParseException xmlParseEx) {}
+
+		try {
+			parser.parseElement ("<a x=\"&unknown;\"/>");
+			fail ("Unknown entity was parsed");
+		}
+		catch (XMLParseException xmlParseEx) {}
+	}
+
+	/**
+	 * Test the pull events.
+	 */
+	public void testPull () {
+		parser.setInput ("<table_list><table tableNum=\"12\" vis=\"pub\"/><chat_table table=\"-3\">hi</chat_table></table_list>");
+
+		assertEquals (MessageParser.START_ELEMENT, parser.next ());
+		assertEquals ("table_list", parser.getName ());
+		assertEquals (0, parser.getAttributeCount ());
+
+		assertEquals (MessageParser.START_ELEMENT, parser.next ());
+		assertEquals ("table", parser.getName ());
+		assertEquals (12, parser.getIntAttribute ("tableNum", 0));
+		assertEquals (99, parser.getIntAttribute ("missing", 99));
+		assertEquals ("pub", parser.getAttributeValue ("vis"));
+		assertEquals (MessageParser.END_ELEMENT, parser.next ());
+		assertEquals ("table", parser.getName ());
+
+		assertEquals (MessageParser.START_ELEMENT, parser.next ());
+		assertEquals (-3, parser.getIntAttribute ("table", 0));
+		assertEquals (MessageParser.CONTENT, parser.next ());
+		assertEquals ("hi", parser.getContent ());
+		assertEquals (MessageParser.END_ELEMENT, parser.next ());
+
+		assertEquals (MessageParser.END_ELEMENT, parser.next ());
+		assertEquals ("table_list", parser.getName ());
+		assertEquals (MessageParser.END_DOCUMENT, parser.next ());
+
+		// Names are reused between messages
+		parser.setInput ("<table tableNum=\"1\"/>");
+		parser.next ();
+		String name = parser.getName ();
+		parser.setInput ("<table tableNum=\"2\"/>");
+		parser.next ();
+		assertSame (name, parser.getName ());
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - API
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.common.comm;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Enumeration;
+
+import junit.framework.TestCase;
+import nanoxml.XMLElement;
+
+import org.jogre.common.MessageReader;
+import org.jogre.common.TransmissionException;
+
+/**
+ * Test case for the binary protocol.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class BinaryCodecTest extends TestCase {
+
+	/**
+	 * Encode and decode an element.
+	 */
+	private XMLElement roundTrip (XMLElement element) throws Exception {
+		byte [] frame = BinaryCodec.encode (element);
+		assertEquals (BinaryCodec.FRAME_MARKER, frame [0]);
+
+		Object message = new MessageReader (new ByteArrayInputStream (frame)).readMessage ();
+		byte [] payload = (byte [])message;
+		return BinaryCodec.decode (payload, 0, payload.length);
+	}
+
+	/**
+	 * Check two elements have the same name, attributes, content and
+	 * children (attribute order can change).
+	 */
+	private void assertSameElement (XMLElement expected, XMLElement actual) {
+		assertEquals (expected.getName (), actual.getName ());
+		assertEquals (expected.countAttributes (), actual.countAttributes ());
+		Enumeration e = expected.enumerateAttributeNames ();
+		while (e.hasMoreElements ()) {
+			String name = (String)e.nextElement ();
+			assertEquals (expected.getStringAttribute (name), actual.getStringAttribute (name));
+		}
+		assertEquals (expected.getContent (), actual.getContent ());
+
+		assertEquals (expected.countChildren (), actual.countChildren ());
+		for (int i = 0; i < expected.countChildren (); i++)
+			assertSameElement ((XMLElement)expected.getChildren ().get (i),
+			                   (XMLElement)actual.getChildren ().get (i));
+	}
+
+	/**
+	 * Test known and unknown names, ints and strings which only look like
+	 * ints.
+	 */
+	public void testAttributes () throws Exception {
+		XMLElement element = new XMLElement ("my_game_move");
+		element.setAttribute ("username", "bob");
+		element.setIntAttribute ("tableNum", 3);
+		element.setIntAttribute ("rating", -1200);
+		element.setIntAttribute ("max", Integer.MAX_VALUE);
+		element.setIntAttribute ("min", Integer.MIN_VALUE);
+		element.setAttribute ("zero", "0");
+		element.setAttribute ("padded", "007");
+		element.setAttribute ("negativeZero", "-0");
+		element.setAttribute ("tooBig", "2147483648");
+		element.setAttribute ("text", "caf\u00e9 & <chips>");
+		element.setAttribute ("empty", "");
+
+		assertSameElement (element, roundTrip (element));
+	}
+
+	/**
+	 * Test content and children.
+	 */
+	public void testContentAndChildren () throws Exception {
+		XMLElement element = new XMLElement (Comm.CHAT_TABLE);
+		element.setContent ("Good game \u263a");
+
+		XMLElement parent = new XMLElement (Comm.TABLE_LIST);
+		for (int i = 0; i < 3; i++) {
+			XMLElement child = new XMLElement (Comm.TABLE);
+			child.setIntAttribute ("tableNum", i);
+			parent.addChild (child);
+		}
+		parent.addChild (element);
+
+		assertSameElement (parent, roundTrip (parent));
+	}
+
+	/**
+	 * Test int array content goes through without a String.
+	 */
+	public void testIntArrayContent () throws Exception {
+		int [] data = {0, 1, -1, 12, 300, -70000, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		XMLElement element = new XMLElement ("tetris_player_state");
+		element.setIntAttribute ("seat", 1);
+		element.setContent (data);
+
+		XMLElement decoded = roundTrip (element);
+		assertTrue (decoded.hasIntArrayContent ());
+		int [] decodedData = decoded.getIntArrayContent ();
+		assertEquals (data.length, decodedData.length);
+		for (int i = 0; i < data.length; i++)
+			assertEquals (data [i], decodedData [i]);
+
+		// XML still sees a space delimited String
+		XMLElement parsed = new XMLElement ();
+		parsed.parseString (element.toString ());
+		assertEquals ("0 1 -1 12 300 -70000 2147483647 -2147483648", parsed.getContent ());
+		assertEquals (300, parsed.getIntArrayContent () [4]);
+
+		// Binary is a lot smaller for a typical grid of small values
+		int [] grid = new int [200];
+		for (int i = 0; i < grid.length; i++)
+			grid [i] = i % 20;
+		element.setContent (grid);
+		assertTrue (BinaryCodec.encode (element).length < element.toString ().length () / 2);
+	}
+
+	/**
+	 * Test lines and frames can be mixed on the same stream.
+	 */
+	public void testMessageReader () throws Exception {
+		XMLElement element = new XMLElement (Comm.SIT_DOWN);
+		element.setIntAttribute ("seat", 2);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream ();
+		out.write ("<chat_game>hello</chat_game>\r\n\n".getBytes ());
+		out.write (BinaryCodec.encode (element));
+		out.write ("<disconnect/>\n".getBytes ());
+
+		MessageReader reader = new MessageReader (new ByteArrayInputStream (out.toByteArray ()));
+		assertEquals ("<chat_game>hello</chat_game>", reader.readMessage ());
+		byte [] payload = (byte [])reader.readMessage ();
+		assertSameElement (element, BinaryCodec.decode (payload, 0, payload.length));
+		assertEquals ("<disconnect/>", reader.readMessage ());
+		assertNull (reader.readMessage ());
+	}
+
+	/**
+	 * Test bad payloads are rejected.
+	 */
+	public void testInvalid () throws Exception {
+		XMLElement element = new XMLElement (Comm.TABLE);
+		element.setAttribute ("username", "bob");
+		byte [] frame = BinaryCodec.encode (element);
+
+		try {
+			BinaryCodec.decode (frame, 2, frame.length - 3);
+			fail ("Truncated payload was decoded");
+		}
+		catch (TransmissionException tEx) {}
+
+		try {
+			BinaryCodec.decode (new byte [] {(byte)0xFF, 0, 0, 0}, 0, 4);
+			fail ("Unknown name was decoded");
+		}
+		catch (TransmissionException tEx) {}
+	}
+}
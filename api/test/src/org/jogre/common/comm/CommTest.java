@@ -56,4 +56,22 @@ public class CommTest extends TestCase {
 		String str2 = comm2.toString();
 		assertEquals (str1, str2);		// test flatten methods are same
 	}
-}
+	
+	/**
+	 * Test CommAdminClientData comm object - Test 3 (a page of data).
+	 * 
+	 * @throws Exception
+	 */
+	public void testCommAdminClientData3 () throws Exception { 
+		String [][] data = {{"bob", "bob123"}, {"dave", "dave123"}};
+		CommAdminClientData comm1 = new CommAdminClientData (data, "users", "0 2", "0 4");
+		CommAdminClientData comm2 = new CommAdminClientData (comm1.flatten());
+		assertEquals (comm1.toString(), comm2.toString());
+		assertEquals ("0 2", comm2.getCursor());
+		assertEquals ("0 4", comm2.getNextCursor());
+		
+		comm2 = new CommAdminClientData (new CommAdminClientData ("users").flatten());
+		assertNull (comm2.getCursor());
+		assertNull (comm2.getNextCursor());
+	}
+}
\ No newline at end of file
@@ -53,14 +53,36 @@ public class CheckersServerController extends ServerController {
     /**
      * Receive checkers object.
      * 
-     * @see org.jogre.server.ServerController#receiveObject(org.jogre.common.JogreModel, nanoxml.XMLElement)
+     * @see org.jogre.server.ServerController#receiveObject(org.jogre.common.JogreModel, nanoxml.XMLElement, int)
      */
-    public void receiveObject (JogreModel model, XMLElement object) { 
+    public void receiveObject (JogreModel model, XMLElement object, int tableNum) { 
 	    if (object.getName().equals(CommCheckersMove.XML_NAME)) {
 			CommCheckersMove move = new CommCheckersMove (object);
 			((CheckersModel)model).executeMove (move);
+			recordMove (tableNum, packMove (move));
 		}
     }
+    
+    /**
+     * Pack a move into an int for the game record (start index in bits
+     * 0-5 and end index in bits 6-11).
+     * 
+     * @param move
+     * @return
+     */
+    public static int packMove (CommCheckersMove move) {
+    	return move.getStart() | move.getEnd() << 6;
+    }
+    
+    /**
+     * Unpack a move from a game record.
+     * 
+     * @param move
+     * @return
+     */
+    public static CommCheckersMove unpackMove (int move) {
+    	return new CommCheckersMove (move & 63, (move >> 6) & 63);
+    }
 
     /**
      * Declare that the game is over.
@@ -0,0 +1,618 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Chess
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.chess.client;
+
+/**
+ * <p>Bitboard chess position with a legal move generator.  Each piece type
+ * and each colour has a 64 bit board where bit (y * 8 + x) is set if the
+ * square is occupied (the same index as the ChessModel so y = 0 is black's
+ * back rank).</p>
+ *
+ * <p>Knight, king and pawn attacks come from tables built once.  Sliding
+ * attacks use a ray table for each of the 8 directions and cut the ray at
+ * its first blocker.  Moves are made and unmade in place on a fixed undo
+ * stack so checking a move never copies the position.</p>
+ *
+ * <p>A move is an int: from square (bits 0-5), to square (bits 6-11),
+ * promotion piece (bits 12-15) and the MOVE_ flags.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ChessBitboard implements IChessModel {
+
+	/** Castling rights. */
+	public static final int CASTLE_W_KING  = 1;
+	public static final int CASTLE_W_QUEEN = 2;
+	public static final int CASTLE_B_KING  = 4;
+	public static final int CASTLE_B_QUEEN = 8;
+
+	/** Move flags. */
+	public static final int MOVE_DOUBLE_PUSH = 1 << 16;
+	public static final int MOVE_EN_PASSANT  = 2 << 16;
+	public static final int MOVE_CASTLE      = 4 << 16;
+
+	/** Most moves any chess position can have. */
+	public static final int MAX_MOVES = 256;
+
+	/** Depth of the undo stack. */
+	private static final int MAX_PLY = 128;
+
+	// Home squares of the kings and rooks
+	private static final int W_KING_SQ = 60, W_L_ROOK_SQ = 56, W_R_ROOK_SQ = 63;
+	private static final int B_KING_SQ = 4,  B_L_ROOK_SQ = 0,  B_R_ROOK_SQ = 7;
+
+	// Directions N, NE, E, SE, S, SW, W, NW.  E to SW increase the square
+	// index so their first blocker is the lowest bit, the others the highest.
+	private static final int [] DIR_X = {0, 1, 1, 1, 0, -1, -1, -1};
+	private static final int [] DIR_Y = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+	private static final long [] KNIGHT_ATTACKS = new long [64];
+	private static final long [] KING_ATTACKS = new long [64];
+	private static final long [][] PAWN_ATTACKS = new long [2][64];
+	private static final long [][] RAYS = new long [8][64];
+
+	/** Castling rights left after a move from / to each square. */
+	private static final int [] CASTLE_MASK = new int [64];
+
+	// De Bruijn bit scan (Long.numberOfTrailingZeros is not in older VMs)
+	private static final long DEBRUIJN = 0x03f79d71b4cb0a89L;
+	private static final int [] DEBRUIJN_INDEX = new int [64];
+
+	static {
+		int [] knightX = {1, 2, 2, 1, -1, -2, -2, -1};
+		int [] knightY = {-2, -1, 1, 2, 2, 1, -1, -2};
+
+		for (int sq = 0; sq < 64; sq++) {
+			int x = sq % 8, y = sq / 8;
+			for (int i = 0; i < 8; i++) {
+				KNIGHT_ATTACKS [sq] |= bit (x + knightX [i], y + knightY [i]);
+				KING_ATTACKS [sq] |= bit (x + DIR_X [i], y + DIR_Y [i]);
+
+				for (int n = 1; n < 8; n++)
+					RAYS [i][sq] |= bit (x + DIR_X [i] * n, y + DIR_Y [i] * n);
+			}
+			PAWN_ATTACKS [PLAYER_ONE][sq] = bit (x - 1, y - 1) | bit (x + 1, y - 1);
+			PAWN_ATTACKS [PLAYER_TWO][sq] = bit (x - 1, y + 1) | bit (x + 1, y + 1);
+
+			CASTLE_MASK [sq] = CASTLE_W_KING | CASTLE_W_QUEEN | CASTLE_B_KING | CASTLE_B_QUEEN;
+			DEBRUIJN_INDEX [(int)(((1L << sq) * DEBRUIJN) >>> 58)] = sq;
+		}
+
+		CASTLE_MASK [W_KING_SQ]   &= ~(CASTLE_W_KING | CASTLE_W_QUEEN);
+		CASTLE_MASK [W_R_ROOK_SQ] &= ~CASTLE_W_KING;
+		CASTLE_MASK [W_L_ROOK_SQ] &= ~CASTLE_W_QUEEN;
+		CASTLE_MASK [B_KING_SQ]   &= ~(CASTLE_B_KING | CASTLE_B_QUEEN);
+		CASTLE_MASK [B_R_ROOK_SQ] &= ~CASTLE_B_KING;
+		CASTLE_MASK [B_L_ROOK_SQ] &= ~CASTLE_B_QUEEN;
+	}
+
+	// Position
+	private int [] board = new int [64];
+	private long [] pieces = new long [13];
+	private long [] colours = new long [2];
+	private long occupied;
+	private int castling;
+	private int epSquare = -1;		// square a pawn can capture en passant onto
+
+	// Undo stack
+	private int ply = 0;
+	private int [] undoCaptured = new int [MAX_PLY];
+	private int [] undoCastling = new int [MAX_PLY];
+	private int [] undoEpSquare = new int [MAX_PLY];
+
+	// Move list used when checking moves
+	private int [] moves = new int [MAX_MOVES];
+
+	/**
+	 * Empty board constructor.
+	 */
+	public ChessBitboard () {}
+
+	/**
+	 * Return the bit of a square or 0 if it is off the board.
+	 */
+	private static long bit (int x, int y) {
+		if (x < 0 || x > 7 || y < 0 || y > 7)
+			return 0L;
+		return 1L << (y * 8 + x);
+	}
+
+	/**
+	 * Return the index of the lowest set bit of a non zero board.
+	 */
+	private static int lowestBit (long b) {
+		return DEBRUIJN_INDEX [(int)(((b & -b) * DEBRUIJN) >>> 58)];
+	}
+
+	/**
+	 * Return the index of the highest set bit of a non zero board.
+	 */
+	private static int highestBit (long b) {
+		b |= b >>> 1;
+		b |= b >>> 2;
+		b |= b >>> 4;
+		b |= b >>> 8;
+		b |= b >>> 16;
+		b |= b >>> 32;
+		return DEBRUIJN_INDEX [(int)(((b ^ (b >>> 1)) * DEBRUIJN) >>> 58)];
+	}
+
+	/**
+	 * Return the squares along one direction up to and including the first
+	 * occupied square.
+	 */
+	private static long rayAttacks (int dir, int sq, long occupied) {
+		long ray = RAYS [dir][sq];
+		long blockers = ray & occupied;
+		if (blockers != 0) {
+			int blocker = (dir >= 2 && dir <= 5) ? lowestBit (blockers) : highestBit (blockers);
+			ray ^= RAYS [dir][blocker];
+		}
+		return ray;
+	}
+
+	private static long rookAttacks (int sq, long occupied) {
+		return rayAttacks (0, sq, occupied) | rayAttacks (2, sq, occupied) |
+		       rayAttacks (4, sq, occupied) | rayAttacks (6, sq, occupied);
+	}
+
+	private static long bishopAttacks (int sq, long occupied) {
+		return rayAttacks (1, sq, occupied) | rayAttacks (3, sq, occupied) |
+		       rayAttacks (5, sq, occupied) | rayAttacks (7, sq, occupied);
+	}
+
+	/**
+	 * Return the colour of a (non empty) piece.
+	 */
+	private static int colourOf (int piece) {
+		return piece < B_PAWN ? PLAYER_ONE : PLAYER_TWO;
+	}
+
+	/**
+	 * Return the piece of a player e.g. toPlayer (W_PAWN, PLAYER_TWO) is
+	 * B_PAWN.
+	 */
+	private static int toPlayer (int whitePiece, int player) {
+		return player == PLAYER_ONE ? whitePiece : whitePiece + (B_PAWN - W_PAWN);
+	}
+
+	private void put (int sq, int piece) {
+		long b = 1L << sq;
+		board [sq] = piece;
+		pieces [piece] |= b;
+		colours [colourOf (piece)] |= b;
+		occupied |= b;
+	}
+
+	private void remove (int sq) {
+		long b = ~(1L << sq);
+		int piece = board [sq];
+		board [sq] = EMPTY;
+		pieces [piece] &= b;
+		colours [colourOf (piece)] &= b;
+		occupied &= b;
+	}
+
+	/**
+	 * Empty the board.
+	 */
+	public void clear () {
+		for (int i = 0; i < 64; i++)
+			board [i] = EMPTY;
+		for (int i = 0; i < pieces.length; i++)
+			pieces [i] = 0L;
+		colours [PLAYER_ONE] = colours [PLAYER_TWO] = occupied = 0L;
+		castling = 0;
+		epSquare = -1;
+		ply = 0;
+	}
+
+	/**
+	 * Set this position from a chess model.  Castling is allowed while the
+	 * king and rook flags are set and they are still on their home squares
+	 * and en passant comes from the two square pawn flags.
+	 *
+	 * @param model
+	 */
+	public void setPosition (ChessModel model) {
+		clear ();
+		for (int sq = 0; sq < 64; sq++) {
+			int piece = model.getPiece (sq % 8, sq / 8);
+			if (piece != EMPTY)
+				put (sq, piece);
+		}
+
+		if (board [W_KING_SQ] == W_KING && model.flag (FLAG_W_KING_HASNT_MOVED)) {
+			if (board [W_R_ROOK_SQ] == W_ROOK && model.flag (FLAG_W_R_ROOK_HASNT_MOVED))
+				castling |= CASTLE_W_KING;
+			if (board [W_L_ROOK_SQ] == W_ROOK && model.flag (FLAG_W_L_ROOK_HASNT_MOVED))
+				castling |= CASTLE_W_QUEEN;
+		}
+		if (board [B_KING_SQ] == B_KING && model.flag (FLAG_B_KING_HASNT_MOVED)) {
+			if (board [B_R_ROOK_SQ] == B_ROOK && model.flag (FLAG_B_R_ROOK_HASNT_MOVED))
+				castling |= CASTLE_B_KING;
+			if (board [B_L_ROOK_SQ] == B_ROOK && model.flag (FLAG_B_L_ROOK_HASNT_MOVED))
+				castling |= CASTLE_B_QUEEN;
+		}
+
+		for (int x = 0; x < 8; x++) {
+			if (model.flag (FLAG_W_PAWN_TWO_SQUARE_MOVED + x) && board [32 + x] == W_PAWN)
+				epSquare = 40 + x;
+			else if (model.flag (FLAG_B_PAWN_TWO_SQUARE_MOVED + x) && board [24 + x] == B_PAWN)
+				epSquare = 16 + x;
+		}
+	}
+
+	/**
+	 * Set this position from the first four fields of a FEN string (pieces,
+	 * player to move, castling and en passant square).
+	 *
+	 * @param fen
+	 * @return    Player to move.
+	 */
+	public int setPosition (String fen) {
+		clear ();
+		String [] fields = fen.trim ().split (" ");
+
+		int sq = 0;
+		for (int i = 0; i < fields [0].length (); i++) {
+			char c = fields [0].charAt (i);
+			int index = "PNBRQKpnbrqk".indexOf (c);
+			if (index != -1)
+				put (sq++, W_PAWN + index);
+			else if (Character.isDigit (c))
+				sq += c - '0';
+		}
+
+		if (fields.length > 2) {
+			String rights = fields [2];
+			if (rights.indexOf ('K') != -1) castling |= CASTLE_W_KING;
+			if (rights.indexOf ('Q') != -1) castling |= CASTLE_W_QUEEN;
+			if (rights.indexOf ('k') != -1) castling |= CASTLE_B_KING;
+			if (rights.indexOf ('q') != -1) castling |= CASTLE_B_QUEEN;
+		}
+		if (fields.length > 3 && !fields [3].equals ("-"))
+			epSquare = (fields [3].charAt (0) - 'a') + (8 - (fields [3].charAt (1) - '0')) * 8;
+
+		return fields.length > 1 && fields [1].equals ("b") ? PLAYER_TWO : PLAYER_ONE;
+	}
+
+	/**
+	 * Return the piece on a square.
+	 */
+	public int getPiece (int sq) {
+		return board [sq];
+	}
+
+	/**
+	 * Return true if a square is attacked by a player.
+	 *
+	 * @param sq
+	 * @param byPlayer
+	 */
+	public boolean isAttacked (int sq, int byPlayer) {
+		int opponent = 1 - byPlayer;
+		if ((PAWN_ATTACKS [opponent][sq] & pieces [toPlayer (W_PAWN, byPlayer)]) != 0)
+			return true;
+		if ((KNIGHT_ATTACKS [sq] & pieces [toPlayer (W_KNIGHT, byPlayer)]) != 0)
+			return true;
+		if ((KING_ATTACKS [sq] & pieces [toPlayer (W_KING, byPlayer)]) != 0)
+			return true;
+
+		long queens = pieces [toPlayer (W_QUEEN, byPlayer)];
+		if ((bishopAttacks (sq, occupied) & (pieces [toPlayer (W_BISHOP, byPlayer)] | queens)) != 0)
+			return true;
+		return (rookAttacks (sq, occupied) & (pieces [toPlayer (W_ROOK, byPlayer)] | queens)) != 0;
+	}
+
+	/**
+	 * Return true if a player's king is attacked.
+	 */
+	public boolean isInCheck (int player) {
+		long king = pieces [toPlayer (W_KING, player)];
+		return king != 0 && isAttacked (lowestBit (king), 1 - player);
+	}
+
+	/**
+	 * Add the moves from a square to a set of target squares.
+	 */
+	private static int addMoves (int from, long targets, int [] moveList, int count) {
+		while (targets != 0) {
+			int to = lowestBit (targets);
+			targets &= targets - 1;
+			moveList [count++] = from | (to << 6);
+		}
+		return count;
+	}
+
+	/**
+	 * Add a pawn move, as the four promotions if it reaches the last rank.
+	 */
+	private static int addPawnMove (int player, int from, int to, int flags, int [] moveList, int count) {
+		if (to < 8 || to >= 56) {
+			moveList [count++] = from | (to << 6) | (toPlayer (W_QUEEN, player) << 12);
+			moveList [count++] = from | (to << 6) | (toPlayer (W_ROOK, player) << 12);
+			moveList [count++] = from | (to << 6) | (toPlayer (W_BISHOP, player) << 12);
+			moveList [count++] = from | (to << 6) | (toPlayer (W_KNIGHT, player) << 12);
+		}
+		else
+			moveList [count++] = from | (to << 6) | flags;
+		return count;
+	}
+
+	/**
+	 * Generate the pseudo legal moves (which may leave the king in check) of
+	 * the piece on a square.
+	 *
+	 * @return  New number of moves in the list.
+	 */
+	private int generatePieceMoves (int from, int [] moveList, int count) {
+		int piece = board [from];
+		int player = colourOf (piece);
+		int opponent = 1 - player;
+		long notOwn = ~colours [player];
+
+		switch (piece) {
+			case W_PAWN:
+			case B_PAWN:
+				int forward = player == PLAYER_ONE ? -8 : 8;
+				int to = from + forward;
+				if (board [to] == EMPTY) {
+					count = addPawnMove (player, from, to, 0, moveList, count);
+					int startRank = player == PLAYER_ONE ? 6 : 1;
+					if (from / 8 == startRank && board [to + forward] == EMPTY)
+						moveList [count++] = from | ((to + forward) << 6) | MOVE_DOUBLE_PUSH;
+				}
+				long captures = PAWN_ATTACKS [player][from] & colours [opponent];
+				while (captures != 0) {
+					to = lowestBit (captures);
+					captures &= captures - 1;
+					count = addPawnMove (player, from, to, 0, moveList, count);
+				}
+				if (epSquare != -1 && (PAWN_ATTACKS [player][from] & (1L << epSquare)) != 0)
+					moveList [count++] = from | (epSquare << 6) | MOVE_EN_PASSANT;
+				return count;
+
+			case W_KNIGHT:
+			case B_KNIGHT:
+				return addMoves (from, KNIGHT_ATTACKS [from] & notOwn, moveList, count);
+
+			case W_BISHOP:
+			case B_BISHOP:
+				return addMoves (from, bishopAttacks (from, occupied) & notOwn, moveList, count);
+
+			case W_ROOK:
+			case B_ROOK:
+				return addMoves (from, rookAttacks (from, occupied) & notOwn, moveList, count);
+
+			case W_QUEEN:
+			case B_QUEEN:
+				return addMoves (from, (rookAttacks (from, occupied) | bishopAttacks (from, occupied)) & notOwn, moveList, count);
+
+			case W_KING:
+			case B_KING:
+				count = addMoves (from, KING_ATTACKS [from] & notOwn, moveList, count);
+				return generateCastling (player, from, moveList, count);
+		}
+		return count;
+	}
+
+	/**
+	 * Add castling moves.  The king must not be in check or pass over an
+	 * attacked square (landing in check is caught by the legal move test).
+	 */
+	private int generateCastling (int player, int from, int [] moveList, int count) {
+		int kingSide = player == PLAYER_ONE ? CASTLE_W_KING : CASTLE_B_KING;
+		int queenSide = player == PLAYER_ONE ? CASTLE_W_QUEEN : CASTLE_B_QUEEN;
+		int home = player == PLAYER_ONE ? W_KING_SQ : B_KING_SQ;
+		if (from != home || (castling & (kingSide | queenSide)) == 0)
+			return count;
+
+		int opponent = 1 - player;
+		if (isAttacked (from, opponent))
+			return count;
+
+		if ((castling & kingSide) != 0 &&
+		    board [from + 1] == EMPTY && board [from + 2] == EMPTY &&
+		    !isAttacked (from + 1, opponent))
+			moveList [count++] = from | ((from + 2) << 6) | MOVE_CASTLE;
+
+		if ((castling & queenSide) != 0 &&
+		    board [from - 1] == EMPTY && board [from - 2] == EMPTY && board [from - 3] == EMPTY &&
+		    !isAttacked (from - 1, opponent))
+			moveList [count++] = from | ((from - 2) << 6) | MOVE_CASTLE;
+
+		return count;
+	}
+
+	/**
+	 * Generate the legal moves of a player.
+	 *
+	 * @param player
+	 * @param moveList  At least MAX_MOVES long.
+	 * @return          Number of moves.
+	 */
+	public int generateMoves (int player, int [] moveList) {
+		int count = 0;
+		long own = colours [player];
+		while (own != 0) {
+			int from = lowestBit (own);
+			own &= own - 1;
+			count = generatePieceMoves (from, moveList, count);
+		}
+		return removeIllegalMoves (player, moveList, 0, count);
+	}
+
+	/**
+	 * Remove moves which leave the player's own king in check.
+	 *
+	 * @return  New number of moves.
+	 */
+	private int removeIllegalMoves (int player, int [] moveList, int start, int count) {
+		int legal = start;
+		for (int i = start; i < count; i++) {
+			int move = moveList [i];
+			makeMove (move);
+			if (!isInCheck (player))
+				moveList [legal++] = move;
+			unmakeMove (move);
+		}
+		return legal;
+	}
+
+	/**
+	 * Return the squares the piece on a square can legally move to.
+	 *
+	 * @param from
+	 * @return     Bitboard of squares.
+	 */
+	public long getLegalMoves (int from) {
+		if (board [from] == EMPTY)
+			return 0L;
+
+		int count = generatePieceMoves (from, moves, 0);
+		count = removeIllegalMoves (colourOf (board [from]), moves, 0, count);
+
+		long targets = 0L;
+		for (int i = 0; i < count; i++)
+			targets |= 1L << ((moves [i] >>> 6) & 63);
+		return targets;
+	}
+
+	/**
+	 * Return true if a player has any legal move.
+	 */
+	public boolean hasLegalMove (int player) {
+		long own = colours [player];
+		while (own != 0) {
+			int from = lowestBit (own);
+			own &= own - 1;
+			int count = generatePieceMoves (from, moves, 0);
+			if (removeIllegalMoves (player, moves, 0, count) > 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Make a move generated by this position.
+	 *
+	 * @param move
+	 */
+	public void makeMove (int move) {
+		int from = move & 63, to = (move >>> 6) & 63, promotion = (move >>> 12) & 15;
+		int piece = board [from];
+
+		undoCastling [ply] = castling;
+		undoEpSquare [ply] = epSquare;
+
+		if ((move & MOVE_EN_PASSANT) != 0) {
+			int captureSq = piece == W_PAWN ? to + 8 : to - 8;
+			undoCaptured [ply] = board [captureSq];
+			remove (captureSq);
+		}
+		else {
+			undoCaptured [ply] = board [to];
+			if (board [to] != EMPTY)
+				remove (to);
+		}
+		ply++;
+
+		remove (from);
+		put (to, promotion != 0 ? promotion : piece);
+
+		if ((move & MOVE_CASTLE) != 0) {
+			if (to > from)
+				moveRook (from + 3, from + 1);
+			else
+				moveRook (from - 4, from - 1);
+		}
+
+		castling &= CASTLE_MASK [from] & CASTLE_MASK [to];
+		epSquare = (move & MOVE_DOUBLE_PUSH) != 0 ? (from + to) / 2 : -1;
+	}
+
+	/**
+	 * Unmake the last move made.
+	 *
+	 * @param move
+	 */
+	public void unmakeMove (int move) {
+		int from = move & 63, to = (move >>> 6) & 63, promotion = (move >>> 12) & 15;
+		ply--;
+
+		int piece = board [to];
+		remove (to);
+		put (from, promotion != 0 ? toPlayer (W_PAWN, colourOf (piece)) : piece);
+
+		int captured = undoCaptured [ply];
+		if ((move & MOVE_EN_PASSANT) != 0)
+			put (piece == W_PAWN ? to + 8 : to - 8, captured);
+		else if (captured != EMPTY)
+			put (to, captured);
+
+		if ((move & MOVE_CASTLE) != 0) {
+			if (to > from)
+				moveRook (from + 1, from + 3);
+			else
+				moveRook (from - 1, from - 4);
+		}
+
+		castling = undoCastling [ply];
+		epSquare = undoEpSquare [ply];
+	}
+
+	private void moveRook (int from, int to) {
+		int rook = board [from];
+		remove (from);
+		put (to, rook);
+	}
+
+	/**
+	 * Count the leaf positions of the legal move tree to a depth (used to
+	 * test the move generator against known counts).
+	 *
+	 * @param player  Player to move.
+	 * @param depth
+	 * @return        Number of positions.
+	 */
+	public long perft (int player, int depth) {
+		return perft (player, depth, new int [depth + 1][MAX_MOVES]);
+	}
+
+	private long perft (int player, int depth, int [][] moveLists) {
+		if (depth == 0)
+			return 1;
+
+		int [] moveList = moveLists [depth];
+		int count = generateMoves (player, moveList);
+		if (depth == 1)
+			return count;
+
+		long nodes = 0;
+		for (int i = 0; i < count; i++) {
+			makeMove (moveList [i]);
+			nodes += perft (1 - player, depth - 1, moveLists);
+			unmakeMove (moveList [i]);
+		}
+		return nodes;
+	}
+}
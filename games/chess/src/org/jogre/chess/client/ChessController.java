@@ -201,6 +201,8 @@ public class ChessController extends JogreController {
 			status = IGameOver.DRAW;
 		else if (pieceMover.isPlayerInCheckMate(opponentPlayer))
 			status = IGameOver.WIN;
+		else if (chessModel.isThreefoldRepetition() || chessModel.isFiftyMoveDraw())
+			status = IGameOver.DRAW;
 
 		// Create game over object if a win or draw
 		if (status != -1 && conn != null) {
@@ -20,6 +20,7 @@
 package org.jogre.chess.client;
 
 import java.awt.Point;
+import java.util.Random;
 
 import nanoxml.XMLElement;
 
@@ -53,11 +54,40 @@ public class ChessModel extends JogreModel implements IChessModel {
 	// Location of the last move
 	private Point lastMove = null;
 
+	/** Half moves without a capture or pawn move for the fifty move rule. */
+	public static final int FIFTY_MOVE_HALF_MOVES = 100;
+
+	// Zobrist keys of each piece on each square, each flag and black to move.
+	// The seed is fixed so every client and the server make the same keys.
+	private static final long [][] ZOBRIST_PIECES = new long [B_KING + 1][64];
+	private static final long [] ZOBRIST_FLAGS = new long [NUM_OF_FLAGS];
+	private static final long ZOBRIST_PLAYER_TWO;
+
+	static {
+		Random random = new Random (531L);
+		for (int piece = W_PAWN; piece <= B_KING; piece++)
+			for (int i = 0; i < 64; i++)
+				ZOBRIST_PIECES [piece][i] = random.nextLong ();
+		for (int i = 0; i < NUM_OF_FLAGS; i++)
+			ZOBRIST_FLAGS [i] = random.nextLong ();
+		ZOBRIST_PLAYER_TWO = random.nextLong ();
+	}
+
+	// Hash of the current position (kept up to date by setPiece / setFlag)
+	private long hashKey;
+
+	// Hashes of the positions since the last capture or pawn move (the only
+	// ones which can repeat) and the half moves since then.
+	private long [] hashHistory = new long [FIFTY_MOVE_HALF_MOVES + 1];
+	private int numOfPositions = 0;
+	private int halfMoveClock = 0;
+
 	// Declare XML attributes
 	private static final String XML_ATT_PIECES    = "pieces";
 	private static final String XML_ATT_CAPTURED  = "captured";
 	private static final String XML_ATT_FLAGS     = "flags";
 	private static final String XML_ATT_LAST_MOVE = "last_move";
+	private static final String XML_ATT_HALF_MOVES = "half_moves";
 
 	/**
 	 * Default constructor.
@@ -105,6 +135,10 @@ public class ChessModel extends JogreModel implements IChessModel {
 		this.gameHistory = new GameHistory ((XMLElement)message.getChildren().get(0));
 		this.lastMove = JogreUtils.convertToPoint(message.getStringAttribute(XML_ATT_LAST_MOVE));
 
+		// Positions before this state aren't known so repetitions start here
+		this.halfMoveClock = message.getIntAttribute(XML_ATT_HALF_MOVES, 0);
+		resetHash (gameHistory.size() % 2);
+
 		// If everything is read sucessfully then refresh observers
 		refreshObservers();
 	}
@@ -121,14 +155,18 @@ public class ChessModel extends JogreModel implements IChessModel {
 			chessPieces [i] = START_POSITIONS[i];
 			//chessPieces [i] = TEST_START_POSITIONS[i];
 
-		// reset flags
+		// reset flags (kings and rooks haven't moved, no pawn moved two squares)
 		for (int i = 0; i < NUM_OF_FLAGS; i++)
-			flags [i] = true;
+			flags [i] = i < FLAG_W_PAWN_TWO_SQUARE_MOVED;
 
 		// Reset captured pieces
 		for (int i = 0; i < 32; i++)
 			capturedPieces [i] = 0;
 
+		// Reset position hash and the fifty move count
+		halfMoveClock = 0;
+		resetHash (PLAYER_ONE);
+
 		// inform any graphical observers
 		refreshObservers();
 	}
@@ -139,6 +177,7 @@ public class ChessModel extends JogreModel implements IChessModel {
 	public void wipeBoard () {
 		for (int i = 0; i < 64; i++)
 			chessPieces [i] = EMPTY;
+		resetHash (PLAYER_ONE);
 	}
 
 	/**
@@ -180,7 +219,7 @@ public class ChessModel extends JogreModel implements IChessModel {
 	public void setPiece (int x, int y, int newPiece) throws IndexOutOfBoundsException {
 		// check position is in bounds and then return it value
 		if (x >= 0 && x < 8 && y >= 0 && y < 8)
-			chessPieces[y * 8 + x] = newPiece;
+			setPiece (y * 8 + x, newPiece);
 		else throw new IndexOutOfBoundsException ();
 	}
 
@@ -190,8 +229,10 @@ public class ChessModel extends JogreModel implements IChessModel {
 	 */
 	public void setPiece (int index, int newPiece) {
 		// check position is in bounds and then return it value
-		if (index >= 0 && index < 64)
+		if (index >= 0 && index < 64) {
+			hashKey ^= ZOBRIST_PIECES [chessPieces[index]][index] ^ ZOBRIST_PIECES [newPiece][index];
 			chessPieces[index] = newPiece;
+		}
 		else throw new IndexOutOfBoundsException ();
 	}
 
@@ -255,8 +296,20 @@ public class ChessModel extends JogreModel implements IChessModel {
 			// check to see if this is a valid move or not
 			if (validMove) {
 				// if a valid move then execute this move
+				int captured = numOfCapturedPieces;
 				moveChecker.executeMove(this, x1, y1, x2, y2);
 
+				// A capture or pawn move starts the fifty moves again and no
+				// earlier position can be repeated
+				if (piece1 == W_PAWN || piece1 == B_PAWN || numOfCapturedPieces != captured) {
+					halfMoveClock = 0;
+					numOfPositions = 0;
+				}
+				else
+					halfMoveClock++;
+				hashKey ^= ZOBRIST_PLAYER_TWO;
+				addPosition ();
+
 				// add move to the history
 				ChessMove move = new ChessMove (x1, y1, x2, y2);
 				gameHistory.addMove (move);
@@ -288,11 +341,9 @@ public class ChessModel extends JogreModel implements IChessModel {
 	 */
 	public void updateAllowedMoves (int x1, int y1) {
 		int player = getPieceColour(x1, y1);
-		for (int x2 = 0; x2 < 8; x2++) {
-			for (int y2 = 0; y2 < 8; y2++) {
-				allowedMoves [y2 * 8 + x2] = moveChecker.checkMove (player, x1, y1, x2, y2);
-			}
-		}
+		long moves = moveChecker.getLegalMoves (player, x1, y1);
+		for (int i = 0; i < 64; i++)
+			allowedMoves [i] = ((moves >>> i) & 1) != 0;
 	}
 
 	/**
@@ -343,9 +394,94 @@ public class ChessModel extends JogreModel implements IChessModel {
 	 * @param value
 	 */
 	public void setFlag (int index, boolean value) {
+		if (flags [index] != value)
+			hashKey ^= ZOBRIST_FLAGS [index];
 		flags [index] = value;
 	}
 
+	/**
+	 * Work out the hash of the current position from scratch and start the
+	 * position history from it.
+	 *
+	 * @param playerToMove
+	 */
+	private void resetHash (int playerToMove) {
+		hashKey = playerToMove == PLAYER_TWO ? ZOBRIST_PLAYER_TWO : 0L;
+		for (int i = 0; i < 64; i++)
+			hashKey ^= ZOBRIST_PIECES [chessPieces[i]][i];
+		for (int i = 0; i < NUM_OF_FLAGS; i++)
+			if (flags [i])
+				hashKey ^= ZOBRIST_FLAGS [i];
+
+		numOfPositions = 0;
+		addPosition ();
+	}
+
+	/**
+	 * Add the current position to the history.
+	 */
+	private void addPosition () {
+		if (numOfPositions == hashHistory.length) {
+			long [] newHistory = new long [hashHistory.length * 2];
+			System.arraycopy (hashHistory, 0, newHistory, 0, numOfPositions);
+			hashHistory = newHistory;
+		}
+		hashHistory [numOfPositions++] = hashKey;
+	}
+
+	/**
+	 * Return the Zobrist hash of the current position (pieces, flags and
+	 * player to move).
+	 *
+	 * @return
+	 */
+	public long getHashKey () {
+		return hashKey;
+	}
+
+	/**
+	 * Return the number of half moves since the last capture or pawn move.
+	 *
+	 * @return
+	 */
+	public int getHalfMoveClock () {
+		return halfMoveClock;
+	}
+
+	/**
+	 * Return how many times the current position has occured.  Only positions
+	 * with the same player to move since the last capture or pawn move are
+	 * checked so this is at most 50 comparisons.
+	 *
+	 * @return
+	 */
+	public int getRepetitions () {
+		int count = 1;
+		for (int i = numOfPositions - 3; i >= 0; i -= 2)
+			if (hashHistory [i] == hashKey)
+				count++;
+		return count;
+	}
+
+	/**
+	 * Return true if the current position has occured three times.
+	 *
+	 * @return
+	 */
+	public boolean isThreefoldRepetition () {
+		return getRepetitions () >= 3;
+	}
+
+	/**
+	 * Return true if fifty moves each have been made without a capture or
+	 * pawn move.
+	 *
+	 * @return
+	 */
+	public boolean isFiftyMoveDraw () {
+		return halfMoveClock >= FIFTY_MOVE_HALF_MOVES;
+	}
+
 	/**
 	 * Return the co-ordinates of the last move.
 	 *
@@ -415,6 +551,7 @@ public class ChessModel extends JogreModel implements IChessModel {
 		state.setAttribute (XML_ATT_PIECES,     JogreUtils.valueOf (chessPieces));
 		state.setAttribute (XML_ATT_CAPTURED,   JogreUtils.valueOf (cp));
 		state.setAttribute (XML_ATT_FLAGS,      JogreUtils.valueOf (flags));
+		state.setIntAttribute (XML_ATT_HALF_MOVES, halfMoveClock);
 		state.addChild (gameHistory.flatten());
 
 		return state;
@@ -22,6 +22,7 @@ package org.jogre.chess.server;
 import nanoxml.XMLElement;
 
 import org.jogre.chess.client.ChessModel;
+import org.jogre.chess.client.ChessMove;
 import org.jogre.chess.client.ChessPieceMover;
 import org.jogre.chess.common.CommChessMove;
 import org.jogre.common.IGameOver;
@@ -63,7 +64,8 @@ public class ChessServerController extends ServerController {
      * @see org.jogre.server.ServerController#gameOver(int)
      */
     public void gameOver (ServerConnectionThread conn, int tableNum, int resultType) {
-    	ChessPieceMover pieceMover = new ChessPieceMover ((ChessModel)getModel(tableNum));
+    	ChessModel model = (ChessModel)getModel(tableNum);
+    	ChessPieceMover pieceMover = model.getPieceMover ();
     	int player = getSeatNum(conn.getUsername(), tableNum);
     	
     	int opponent = JogreUtils.invert (player);
@@ -73,6 +75,9 @@ public class ChessServerController extends ServerController {
 		else if (pieceMover.isPlayerInCheckMate(opponent)) {  
 			resultType = IGameOver.WIN;
 		}
+		else if (model.isThreefoldRepetition() || model.isFiftyMoveDraw()) {
+			resultType = IGameOver.DRAW;
+		}
 
 		// Create game over object if a win or draw
 		if (resultType != -1 && conn != null) {
@@ -84,12 +89,34 @@ public class ChessServerController extends ServerController {
     /**
      * Receive chess object.
      * 
-     * @see org.jogre.server.ServerController#receiveObject(org.jogre.common.JogreModel, nanoxml.XMLElement)
+     * @see org.jogre.server.ServerController#receiveObject(org.jogre.common.JogreModel, nanoxml.XMLElement, int)
      */
-    public void receiveObject (JogreModel model, XMLElement object) { 
+    public void receiveObject (JogreModel model, XMLElement object, int tableNum) { 
 	    if (object.getName().equals(CommChessMove.XML_NAME)) {
 			CommChessMove move = new CommChessMove (object);
 			((ChessModel)model).executeMove (move.getMove());
+			recordMove (tableNum, packMove (move.getMove()));
 		}
     }
+    
+    /**
+     * Pack a move into an int for the game record (from square in bits
+     * 0-5 and to square in bits 6-11, squares are x + y * 8).
+     * 
+     * @param move
+     * @return
+     */
+    public static int packMove (ChessMove move) {
+    	return (move.getX1() + move.getY1() * 8) | (move.getX2() + move.getY2() * 8) << 6;
+    }
+    
+    /**
+     * Unpack a move from a game record.
+     * 
+     * @param move
+     * @return
+     */
+    public static ChessMove unpackMove (int move) {
+    	return new ChessMove (move & 7, (move >> 3) & 7, (move >> 6) & 7, (move >> 9) & 7);
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Chess
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.chess.client;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for the bitboard move generator.  The perft counts (number of
+ * positions after each depth) are the published counts for these positions.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ChessBitboardTest extends TestCase {
+
+	private ChessBitboard bitboard = new ChessBitboard ();
+
+	/**
+	 * Check the perft counts of a position from depth 1.
+	 */
+	private void assertPerft (String fen, long [] counts) {
+		int player = bitboard.setPosition (fen);
+		for (int depth = 1; depth <= counts.length; depth++)
+			assertEquals (fen + " depth " + depth, counts [depth - 1], bitboard.perft (player, depth));
+	}
+
+	/**
+	 * Test the start position.
+	 */
+	public void testPerftStart () {
+		assertPerft ("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -",
+		             new long [] {20, 400, 8902, 197281});
+
+		// The position loaded from a new model is the same
+		bitboard.setPosition (new ChessModel ());
+		assertEquals (20, bitboard.perft (ChessModel.PLAYER_ONE, 1));
+		assertEquals (8902, bitboard.perft (ChessModel.PLAYER_ONE, 3));
+	}
+
+	/**
+	 * Test positions full of castling, en passant, promotions and pins.
+	 */
+	public void testPerftTricky () {
+		assertPerft ("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -",
+		             new long [] {48, 2039, 97862});
+		assertPerft ("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - -",
+		             new long [] {14, 191, 2812, 43238});
+		assertPerft ("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+		             new long [] {6, 264, 9467});
+		assertPerft ("rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+		             new long [] {44, 1486, 62379});
+	}
+
+	/**
+	 * Test the piece mover on the model: en passant, castling and check mate.
+	 */
+	public void testPieceMover () {
+		ChessModel model = new ChessModel ();
+		ChessPieceMover mover = model.getPieceMover ();
+
+		// 1. e4 a6 2. e5 d5 - white can take d5 en passant
+		model.executeMove (4, 6, 4, 4);
+		model.executeMove (0, 1, 0, 2);
+		model.executeMove (4, 4, 4, 3);
+		model.executeMove (3, 1, 3, 3);
+		assertTrue (mover.checkMove (ChessModel.PLAYER_ONE, 4, 3, 3, 2));
+		assertTrue (model.executeMove (4, 3, 3, 2));
+		assertEquals (ChessModel.EMPTY, model.getPiece (3, 3));
+
+		// 3... b6 4. Nf3 c6 5. Be2 c5 6. O-O
+		model.executeMove (1, 1, 1, 2);
+		model.executeMove (6, 7, 5, 5);
+		model.executeMove (2, 1, 2, 2);
+		model.executeMove (5, 7, 4, 6);
+		model.executeMove (2, 2, 2, 3);
+		model.updateAllowedMoves (4, 7);
+		assertTrue (model.isAllowedMove (6, 7));
+		assertFalse (model.isAllowedMove (2, 7));
+		assertTrue (model.executeMove (4, 7, 6, 7));
+		assertEquals (ChessModel.W_ROOK, model.getPiece (5, 7));
+		assertFalse (model.flag (ChessModel.FLAG_W_KING_HASNT_MOVED));
+
+		// Fool's mate
+		model = new ChessModel ();
+		mover = model.getPieceMover ();
+		model.executeMove (5, 6, 5, 5);
+		model.executeMove (4, 1, 4, 3);
+		model.executeMove (6, 6, 6, 4);
+		assertFalse (mover.isPlayerInCheck (ChessModel.PLAYER_ONE));
+		model.executeMove (3, 0, 7, 4);
+		assertTrue (mover.isPlayerInCheck (ChessModel.PLAYER_ONE));
+		assertTrue (mover.isPlayerInCheckMate (ChessModel.PLAYER_ONE));
+		assertFalse (mover.isGameADraw (ChessModel.PLAYER_ONE));
+	}
+
+	/**
+	 * Test stale mate is a draw.
+	 */
+	public void testStaleMate () {
+		ChessModel model = new ChessModel ();
+		for (int i = 0; i < 64; i++)
+			model.setPiece (i % 8, i / 8, ChessModel.EMPTY);
+		model.setPiece (7, 0, ChessModel.B_KING);
+		model.setPiece (5, 1, ChessModel.W_KING);
+		model.setPiece (6, 2, ChessModel.W_QUEEN);
+
+		ChessPieceMover mover = model.getPieceMover ();
+		assertFalse (mover.isPlayerInCheckMate (ChessModel.PLAYER_TWO));
+		assertTrue (mover.isGameADraw (ChessModel.PLAYER_TWO));
+	}
+}
@@ -73,6 +73,46 @@ public class ChessModelTest extends TestCase {
     		assertTrue (h1.getMove(i).equals(h2.getMove(i)));
     }
     
+    /**
+     * Test the position hash, repetitions and the fifty move count.
+     */
+    public void testRepetition () throws Exception {
+        ChessModel model = new ChessModel();
+        long start = model.getHashKey();
+        assertEquals (1, model.getRepetitions());
+
+        // Knights out and back twice
+        for (int i = 0; i < 2; i++) {
+            model.executeMove(6, 7, 5, 5);
+            assertTrue (model.getHashKey() != start);
+            model.executeMove(6, 0, 5, 2);
+            model.executeMove(5, 5, 6, 7);
+            model.executeMove(5, 2, 6, 0);
+            assertEquals (start, model.getHashKey());
+        }
+        assertEquals (3, model.getRepetitions());
+        assertTrue (model.isThreefoldRepetition());
+        assertEquals (8, model.getHalfMoveClock());
+
+        // The hash built from scratch is the same as the incremental one
+        model.executeMove(4, 6, 4, 4);
+        assertEquals (0, model.getHalfMoveClock());
+        assertFalse (model.isThreefoldRepetition());
+        model.executeMove(1, 0, 2, 2);
+        XMLElement elm = model.flatten();
+        ChessModel modelFromElm = new ChessModel ();
+        modelFromElm.setState(elm);
+        assertEquals (model.getHashKey(), modelFromElm.getHashKey());
+        assertEquals (1, modelFromElm.getHalfMoveClock());
+
+        // Fifty moves without a capture or pawn move
+        elm.setIntAttribute("half_moves", 99);
+        modelFromElm.setState(elm);
+        assertFalse (modelFromElm.isFiftyMoveDraw());
+        modelFromElm.executeMove(6, 7, 5, 5);
+        assertTrue (modelFromElm.isFiftyMoveDraw());
+    }
+
     /**
      * Check 2 arrays of integers 
      * 
@@ -0,0 +1,420 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Go
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.go.client;
+
+import java.util.Random;
+
+/**
+ * <p>Groups of stones on a go board kept up to date as each stone is
+ * played.  The stones of a group are joined with a union-find (union by
+ * size and path halving) and a circular list so a capture only visits the
+ * captured stones.  Each group keeps a count of its pseudo liberties (an
+ * empty point next to two stones of a group counts twice) which is zero
+ * exactly when the group has no liberties.</p>
+ *
+ * <p>Every change is written to a journal so a move can be undone, which
+ * is how a move is checked without copying the board.  The KO rule is
+ * checked with a Zobrist hash of the position.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class GoGroups {
+
+	/** Results of playing a stone. */
+	public static final int MOVE_OK       = 0;
+	public static final int MOVE_OCCUPIED = 1;
+	public static final int MOVE_SUICIDE  = 2;
+	public static final int MOVE_KO       = 3;
+
+	// Arrays which are journaled
+	private static final int BOARD = 0, PARENT = 1, NEXT = 2, STONES = 3, LIBERTIES = 4;
+
+	private int numOfCells, size;
+
+	private int [] board;			// BLANK, BLACK or WHITE
+	private int [] parent;			// union-find parent of each stone
+	private int [] next;			// next stone in the same group
+	private int [] stones;			// number of stones (of a root)
+	private int [] liberties;		// pseudo liberties (of a root)
+	private int [][] arrays;
+
+	// Neighbours of each point (-1 if off the board)
+	private int [] neighbours;
+
+	// Zobrist keys for a black / white stone on each point
+	private long [][] keys;
+	private long hash = 0L;
+	private long previousHash = 0L;	// position before the last stone
+
+	// Journal of changes (array * size + index, old value)
+	private int [] journalWhere, journalOld;
+	private int journalSize = 0;
+
+	// Start of each move in the journal and the hashes before it
+	private int [] moveStart = new int [64];
+	private long [] moveHash = new long [64], movePreviousHash = new long [64];
+	private int numOfMoves = 0;
+
+	// Stones captured by the last stone played
+	private int [] captured;
+	private int numOfCaptured = 0;
+
+	/**
+	 * Create empty groups for a board.
+	 *
+	 * @param numOfCells  Width of the board.
+	 */
+	public GoGroups (int numOfCells) {
+		this.numOfCells = numOfCells;
+		this.size = numOfCells * numOfCells;
+
+		board     = new int [size];
+		parent    = new int [size];
+		next      = new int [size];
+		stones    = new int [size];
+		liberties = new int [size];
+		arrays    = new int [][] {board, parent, next, stones, liberties};
+		captured  = new int [size];
+
+		journalWhere = new int [size * 8];
+		journalOld   = new int [size * 8];
+
+		neighbours = new int [size * 4];
+		for (int i = 0; i < size; i++) {
+			int x = i % numOfCells, y = i / numOfCells;
+			neighbours [i * 4]     = x > 0 ? i - 1 : -1;
+			neighbours [i * 4 + 1] = y > 0 ? i - numOfCells : -1;
+			neighbours [i * 4 + 2] = x < numOfCells - 1 ? i + 1 : -1;
+			neighbours [i * 4 + 3] = y < numOfCells - 1 ? i + numOfCells : -1;
+			board [i] = GoModel.BLANK;
+		}
+
+		// Fixed seed so the same position always has the same hash
+		Random random = new Random (numOfCells);
+		keys = new long [2][size];
+		for (int i = 0; i < size; i++) {
+			keys [GoModel.BLACK][i] = random.nextLong ();
+			keys [GoModel.WHITE][i] = random.nextLong ();
+		}
+	}
+
+	/**
+	 * Set the groups from the stones of a model (marked dead stones count
+	 * as stones).  This clears the undo journal.
+	 *
+	 * @param model
+	 */
+	public void load (GoModel model) {
+		hash = hashOf (model.getData ());
+		previousHash = hashOf (model.getPrevData ());
+
+		for (int i = 0; i < size; i++) {
+			board [i] = colourOf (model.getData (i));
+			parent [i] = next [i] = i;
+			stones [i] = 1;
+			liberties [i] = 0;
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (board [i] == GoModel.BLANK)
+				continue;
+			for (int n = i * 4; n < i * 4 + 4; n++) {
+				int q = neighbours [n];
+				if (q == -1)
+					continue;
+				if (board [q] == GoModel.BLANK)
+					liberties [find (i)]++;
+				else if (board [q] == board [i] && q > i && find (q) != find (i))
+					merge (find (i), find (q));
+			}
+		}
+
+		journalSize = 0;
+		numOfMoves = 0;
+		numOfCaptured = 0;
+	}
+
+	/**
+	 * Return the colour of a model value (BLANK, BLACK or WHITE).
+	 */
+	private static int colourOf (int value) {
+		if (value == GoModel.BLACK_MARKED_DEAD)
+			return GoModel.BLACK;
+		if (value == GoModel.WHITE_MARKED_DEAD)
+			return GoModel.WHITE;
+		return value == GoModel.BLACK || value == GoModel.WHITE ? value : GoModel.BLANK;
+	}
+
+	private long hashOf (int [] data) {
+		long h = 0L;
+		for (int i = 0; i < size; i++) {
+			int colour = colourOf (data [i]);
+			if (colour != GoModel.BLANK)
+				h ^= keys [colour][i];
+		}
+		return h;
+	}
+
+	/**
+	 * Change a value and note the old value in the journal.
+	 */
+	private void set (int array, int index, int value) {
+		if (journalSize == journalWhere.length) {
+			int [] newWhere = new int [journalSize * 2], newOld = new int [journalSize * 2];
+			System.arraycopy (journalWhere, 0, newWhere, 0, journalSize);
+			System.arraycopy (journalOld, 0, newOld, 0, journalSize);
+			journalWhere = newWhere;
+			journalOld = newOld;
+		}
+		journalWhere [journalSize] = array * size + index;
+		journalOld [journalSize++] = arrays [array][index];
+		arrays [array][index] = value;
+	}
+
+	/**
+	 * Return the root stone of a stone's group.
+	 */
+	private int find (int p) {
+		while (parent [p] != p) {
+			int grandParent = parent [parent [p]];
+			if (grandParent != parent [p])
+				set (PARENT, p, grandParent);
+			p = grandParent;
+		}
+		return p;
+	}
+
+	/**
+	 * Join two groups (roots) and return the new root.
+	 */
+	private int merge (int a, int b) {
+		if (stones [a] < stones [b]) {
+			int swap = a; a = b; b = swap;
+		}
+		set (PARENT, b, a);
+		set (STONES, a, stones [a] + stones [b]);
+		set (LIBERTIES, a, liberties [a] + liberties [b]);
+
+		// Splice the two circular lists together
+		int nextA = next [a];
+		set (NEXT, a, next [b]);
+		set (NEXT, b, nextA);
+		return a;
+	}
+
+	/**
+	 * Play a stone.  If the move is allowed the stone stays on the board
+	 * (use undo to take it back) otherwise nothing is changed.
+	 *
+	 * @param index   Point of the stone.
+	 * @param player  BLACK or WHITE.
+	 * @return        MOVE_OK or why the move isn't allowed.
+	 */
+	public int play (int index, int player) {
+		if (board [index] != GoModel.BLANK)
+			return MOVE_OCCUPIED;
+
+		// Note where this move starts
+		if (numOfMoves == moveStart.length) {
+			int [] newStart = new int [numOfMoves * 2];
+			long [] newHash = new long [numOfMoves * 2], newPrevious = new long [numOfMoves * 2];
+			System.arraycopy (moveStart, 0, newStart, 0, numOfMoves);
+			System.arraycopy (moveHash, 0, newHash, 0, numOfMoves);
+			System.arraycopy (movePreviousHash, 0, newPrevious, 0, numOfMoves);
+			moveStart = newStart;
+			moveHash = newHash;
+			movePreviousHash = newPrevious;
+		}
+		moveStart [numOfMoves] = journalSize;
+		moveHash [numOfMoves] = hash;
+		movePreviousHash [numOfMoves++] = previousHash;
+		long koHash = previousHash;
+		previousHash = hash;
+
+		// Place the stone and take a liberty from each group next to it
+		set (BOARD, index, player);
+		set (PARENT, index, index);
+		set (NEXT, index, index);
+		set (STONES, index, 1);
+		int freedoms = 0;
+		for (int n = index * 4; n < index * 4 + 4; n++) {
+			int q = neighbours [n];
+			if (q == -1)
+				continue;
+			if (board [q] == GoModel.BLANK)
+				freedoms++;
+			else {
+				int root = find (q);
+				set (LIBERTIES, root, liberties [root] - 1);
+			}
+		}
+		set (LIBERTIES, index, freedoms);
+		hash ^= keys [player][index];
+
+		// Join own groups and capture opponent groups without liberties
+		int root = index;
+		numOfCaptured = 0;
+		for (int n = index * 4; n < index * 4 + 4; n++) {
+			int q = neighbours [n];
+			if (q == -1 || board [q] != player)
+				continue;
+			int qRoot = find (q);
+			if (qRoot != root)
+				root = merge (root, qRoot);
+		}
+		for (int n = index * 4; n < index * 4 + 4; n++) {
+			int q = neighbours [n];
+			if (q == -1 || board [q] == GoModel.BLANK || board [q] == player)
+				continue;
+			int qRoot = find (q);
+			if (liberties [qRoot] == 0)
+				capture (qRoot);
+		}
+
+		if (liberties [find (index)] == 0) {
+			undo ();
+			return MOVE_SUICIDE;
+		}
+		if (hash == koHash) {
+			undo ();
+			return MOVE_KO;
+		}
+		return MOVE_OK;
+	}
+
+	/**
+	 * Take a group off the board and give its neighbours their liberties.
+	 */
+	private void capture (int root) {
+		int colour = board [root];
+		int p = root;
+		do {
+			set (BOARD, p, GoModel.BLANK);
+			hash ^= keys [colour][p];
+			captured [numOfCaptured++] = p;
+			p = next [p];
+		} while (p != root);
+
+		do {
+			for (int n = p * 4; n < p * 4 + 4; n++) {
+				int q = neighbours [n];
+				if (q != -1 && board [q] != GoModel.BLANK) {
+					int qRoot = find (q);
+					set (LIBERTIES, qRoot, liberties [qRoot] + 1);
+				}
+			}
+			p = next [p];
+		} while (p != root);
+	}
+
+	/**
+	 * Undo the last stone played.
+	 */
+	public void undo () {
+		if (numOfMoves == 0)
+			return;
+
+		int start = moveStart [--numOfMoves];
+		while (journalSize > start) {
+			int where = journalWhere [--journalSize];
+			arrays [where / size][where % size] = journalOld [journalSize];
+		}
+		hash = moveHash [numOfMoves];
+		previousHash = movePreviousHash [numOfMoves];
+		numOfCaptured = 0;
+	}
+
+	/**
+	 * Return the number of stones which can be undone.
+	 *
+	 * @return
+	 */
+	public int getNumOfMoves () {
+		return numOfMoves;
+	}
+
+	/**
+	 * Return the stone on a point (BLANK, BLACK or WHITE).
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getData (int index) {
+		return board [index];
+	}
+
+	/**
+	 * Return the number of stones in the group of a stone.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public int getGroupSize (int index) {
+		return board [index] == GoModel.BLANK ? 0 : stones [find (index)];
+	}
+
+	/**
+	 * Return true if the group of a stone has no liberties.
+	 *
+	 * @param index
+	 * @return
+	 */
+	public boolean isDead (int index) {
+		return board [index] != GoModel.BLANK && liberties [find (index)] == 0;
+	}
+
+	/**
+	 * Return the number of stones captured by the last stone played.
+	 *
+	 * @return
+	 */
+	public int getNumOfCaptured () {
+		return numOfCaptured;
+	}
+
+	/**
+	 * Return a stone captured by the last stone played.
+	 *
+	 * @param i   0 to getNumOfCaptured () - 1.
+	 * @return    Point of the captured stone.
+	 */
+	public int getCaptured (int i) {
+		return captured [i];
+	}
+
+	/**
+	 * Return the width of the board.
+	 *
+	 * @return
+	 */
+	public int getNumOfCells () {
+		return numOfCells;
+	}
+
+	/**
+	 * Return the Zobrist hash of the stones on the board.
+	 *
+	 * @return
+	 */
+	public long getHash () {
+		return hash;
+	}
+}
@@ -80,6 +80,16 @@ public class GoModel extends JogreModel {
     private int [] capturedStones;
     private double komi = BLANK;
     private int scoreMethod = BLANK;
+    
+    // Groups of stones (kept in step by the piece mover) and the number of
+    // changes made to the data so other changes can be spotted.  Changes
+    // by the piece mover are counted separately.
+    private GoGroups groups = null;
+    private int changeCount = 0, groupsChangeCount = -1;
+    private int updateCount = 0;
+    
+    // Works out the territories
+    private GoScorer scorer = null;
      
     /**
      * Blank constructor.
@@ -151,6 +161,7 @@ public class GoModel extends JogreModel {
         capturedStones = new int [2];
         capturedStones [GoModel.BLACK] = 0; 
         capturedStones [GoModel.WHITE] = 0;
+        changeCount++;
         
         refreshObservers();
     }
@@ -187,6 +198,75 @@ public class GoModel extends JogreModel {
      */
     public void setData (int index, int value) {
     	currentData [index] = value;
+    	changeCount++;
+    }
+    
+    /**
+     * Return the number of changes made to the data other than by the piece
+     * mover.
+     * 
+     * @return
+     */
+    int getChangeCount () {
+    	return changeCount;
+    }
+    
+    /**
+     * Return the number of changes made to the data including those by the
+     * piece mover.
+     * 
+     * @return
+     */
+    int getDataChangeCount () {
+    	return changeCount + updateCount;
+    }
+    
+    /**
+     * Return the scorer which works out the territories of this model.
+     * 
+     * @return
+     */
+    public GoScorer getScorer () {
+    	if (scorer == null || scorer.getNumOfCells () != numOfCells)
+    		scorer = new GoScorer (numOfCells);
+    	return scorer;
+    }
+    
+    /**
+     * Set data without the groups being built again (the piece mover keeps
+     * them in step and a stone marked dead is still in its group).
+     * 
+     * @param index
+     * @param value
+     */
+    void updateData (int index, int value) {
+    	currentData [index] = value;
+    	updateCount++;
+    }
+    
+    /**
+     * The current data becomes the previous data (for the KO rule).
+     */
+    void updatePrevData () {
+    	System.arraycopy (currentData, 0, previousData, 0, currentData.length);
+    }
+    
+    /**
+     * Return the groups of stones on the board.  These are built again if
+     * the data was changed other than by the piece mover.
+     * 
+     * @return
+     */
+    public GoGroups getGroups () {
+    	if (groups == null || groups.getNumOfCells () != numOfCells) {
+    		groups = new GoGroups (numOfCells);
+    		groupsChangeCount = -1;
+    	}
+    	if (groupsChangeCount != changeCount) {
+    		groups.load (this);
+    		groupsChangeCount = changeCount;
+    	}
+    	return groups;
     }
     
     /**
@@ -229,6 +309,7 @@ public class GoModel extends JogreModel {
      */
     public void setPrevData (int index, int value) {
     	this.previousData [index] = value;
+    	changeCount++;
             
         refreshObservers();		// update any views on this model
     }
@@ -576,5 +657,6 @@ public class GoModel extends JogreModel {
 	    this.capturedStones = JogreUtils.convertToIntArray(state.getStringAttribute(XML_ATT_CAPTURED_STONES));
 	    this.komi = state.getDoubleAttribute(XML_ATT_KOMI);
 	    this.scoreMethod = state.getIntAttribute(XML_ATT_SCORE_METHOD);
+	    this.changeCount++;
     }
 }
\ No newline at end of file
@@ -19,7 +19,6 @@
  */
 package org.jogre.go.client;
 
-import java.awt.Point;
 import java.util.Vector;
 
 /**
@@ -49,17 +48,20 @@ public class GoPieceMover {
 	 * @return    True if valid move.
 	 */
 	public boolean isValidMove (int x, int y, int player) {
-		
-		// Create booleans
-		boolean correctState = mainModel.canMove (player);
-		boolean blankPiece   = isBlankPiece (x, y);		
-		boolean isSuicide    = isSuicide (x, y, player);
-		boolean isKORule     = isKORule  (x, y, player);
-
-		// Create over all success boolean
-		boolean validMove = correctState && blankPiece && !isSuicide && !isKORule;
-		
-		return validMove;
+		return mainModel.canMove (player) && tryMove (x, y, player) == GoGroups.MOVE_OK;
+	}
+	
+	/**
+	 * Play a stone on the groups of the main model and take it back again.
+	 * 
+	 * @return   GoGroups.MOVE_OK or why the move isn't allowed.
+	 */
+	private int tryMove (int x, int y, int player) {
+		GoGroups groups = mainModel.getGroups();
+		int result = groups.play (y * mainModel.getNumOfCells() + x, player);
+		if (result == GoGroups.MOVE_OK)
+			groups.undo ();
+		return result;
 	}
 
 	/**
@@ -70,13 +72,24 @@ public class GoPieceMover {
 	 * @param player
 	 */
 	public void move (int x, int y, int player) {
-		// Check if move is valid, then current state of model becomes previous state
-		if (isValidMove (x, y, player)) {
-			int numOfCells = mainModel.getNumOfCells();
-			for (int i = 0; i < numOfCells * numOfCells; i++)
-				mainModel.setPrevData (i, mainModel.getData(i));
+		if (!mainModel.canMove (player))
+			return;
+		
+		// Play the stone on the groups and if it is allowed the current state
+		// of the model becomes the previous state and the groups' changes are
+		// copied to the model.
+		GoGroups groups = mainModel.getGroups();
+		int index = y * mainModel.getNumOfCells() + x;
+		if (groups.play (index, player) == GoGroups.MOVE_OK) {
+			mainModel.updatePrevData ();
+			mainModel.updateData (index, player);
+			
+			int numOfCaptured = groups.getNumOfCaptured();
+			for (int i = 0; i < numOfCaptured; i++)
+				mainModel.updateData (groups.getCaptured (i), GoModel.BLANK);
+			mainModel.addCapturedStoneCount (getOpponent (player), numOfCaptured);
 			
-			move (mainModel, player, x, y);
+			mainModel.normalMove ();	// change state so signify normal move (gets rid of pass states).
 			if (mainModel.getGameState() != GoModel.STATE_MOVE)
 				updateTerritories();
 			
@@ -118,44 +131,7 @@ public class GoPieceMover {
 	 * @return
 	 */
 	public GoScore getScore() {
-		// Update territories
-		updateTerritories();
-		
-		double komi        = mainModel.getKomi();
-		int scoreMethod    = mainModel.getScoreMethod();
-		int [] areas       = new int [2];
-		int [] territories = new int [2];
-		int [] prisoners   = {mainModel.getCapturedStones (GoModel.WHITE), 
-				              mainModel.getCapturedStones (GoModel.BLACK)};
-		
-		// Loop through each index and
-		for (int i = 0; i < mainModel.getTotalCellCount(); i++) {
-			
-			int territory = mainModel.getTerritory(i);
-			int piece     = mainModel.getData(i);
-			
-			// Update territory / areas
-			if (territory == GoModel.BLACK) {
-				areas [GoModel.BLACK] ++;
-				if (piece != GoModel.BLACK)
-					territories [GoModel.BLACK] ++;
-			}
-			else if (territory == GoModel.WHITE) {
-				areas [GoModel.WHITE] ++;
-				if (piece != GoModel.WHITE)
-					territories [GoModel.WHITE] ++;
-			}
-		
-			// Update prisoners depending on marked dead pieces
-			if (piece == GoModel.BLACK_MARKED_DEAD) 
-				prisoners [GoModel.WHITE] ++;
-			else if (piece == GoModel.WHITE_MARKED_DEAD)
-				prisoners [GoModel.BLACK] ++;
-		}
-		
-		// Create score object
-		GoScore score = new GoScore (komi, scoreMethod, areas, territories, prisoners);
-		return score;
+		return mainModel.getScorer().getScore (mainModel);
 	}
 
 	/**
@@ -165,74 +141,15 @@ public class GoPieceMover {
 	 * @param y
 	 */
 	public void mark (int x, int y) {
-		int piece = mainModel.getData (x, y);
-		if (piece >= GoModel.BLACK && piece <= GoModel.WHITE_MARKED_DEAD) {
-			piece = piece < GoModel.BLACK_MARKED_DEAD ? piece + 2 : piece - 2;
-			
-			Vector group = getPlayerGroup (x, y);
-			updateGroup (group, piece);
-			updateTerritories();
-		}
+		mainModel.getScorer().toggle (mainModel, y * mainModel.getNumOfCells() + x);
 		mainModel.refreshObservers();
 	}
 		
 	/**
 	 * Update the territories on the main go model.
-	 * 
-	 * @return
 	 */
 	public void updateTerritories () {
-		
-		// Create dummy model and populate only with white/black pieces (ignore marked pieces)
-		int numOfCells = mainModel.getNumOfCells();
-		GoModel modelCopy = mainModel.deepCopy();
-		
-		for (int i = 0; i < numOfCells * numOfCells; i++) {
-			int piece = mainModel.getData(i);
-			if (piece <= GoModel.WHITE) 
-				modelCopy.setData (i, piece);
-			else 
-				modelCopy.setData (i, GoModel.BLANK);
-		}		
-		
-		// Retrieve all blank groups
-		Vector blankGroups = getPlayerGroups (modelCopy, GoModel.BLANK);
-		
-		// Declare variables
-		int index;
-		Point p;
-		
-		// Check each group to see if blank, black territory or white territory.
-		for (int i = 0; i < blankGroups.size(); i++) {
-			Vector blankGroup = (Vector)blankGroups.get(i);
-			
-			// Go through each piece and see if it piece is currently blank
-			// then check to see if borderd by black or white piece.
-			boolean blackNeighbour = false, whiteNeighbour = false;
-			for (int j = 0; j < blankGroup.size(); j++) {
-				index = ((Integer)blankGroup.get(j)).intValue();
-				p = modelCopy.getPoint (index);		// retrieve point from index
-				
-				// Populate booleans if neighbour is equal to black / white
-				if (p.x > 0 && modelCopy.getData (p.x - 1, p.y) == GoModel.WHITE) whiteNeighbour = true;
-				if (p.x > 0 && modelCopy.getData (p.x - 1, p.y) == GoModel.BLACK) blackNeighbour = true;
-				if (p.x < numOfCells - 1 && modelCopy.getData (p.x + 1, p.y) == GoModel.WHITE) whiteNeighbour = true;
-				if (p.x < numOfCells - 1 && modelCopy.getData (p.x + 1, p.y) == GoModel.BLACK) blackNeighbour = true;
-				if (p.y > 0 && modelCopy.getData (p.x, p.y - 1) == GoModel.WHITE) whiteNeighbour = true;
-				if (p.y > 0 && modelCopy.getData (p.x, p.y - 1) == GoModel.BLACK) blackNeighbour = true;
-				if (p.y < numOfCells - 1 && modelCopy.getData (p.x, p.y + 1) == GoModel.WHITE) whiteNeighbour = true;
-				if (p.y < numOfCells - 1 && modelCopy.getData (p.x, p.y + 1) == GoModel.BLACK) blackNeighbour = true;
-			}
-			
-			// Update model 
-			if (blackNeighbour && !whiteNeighbour) updateGroup(modelCopy, blankGroup, GoModel.BLACK);
-			if (!blackNeighbour && whiteNeighbour) updateGroup(modelCopy, blankGroup, GoModel.WHITE);
-		} 
-		
-		// Update territories from model copy to main model
-		for (int i = 0; i < mainModel.getTotalCellCount(); i++) {
-			mainModel.setTerritory (i, modelCopy.getData(i));
-		}
+		mainModel.getScorer().updateTerritories (mainModel);
 	}
 
 	/**
@@ -248,29 +165,6 @@ public class GoPieceMover {
 		}
 	}
 	
-	/**
-	 * Update a group of values in model using an index using the main model.
-	 * 
-	 * @param indexes
-	 * @param value
-	 */
-	private void updateGroup (Vector indexes, int player) {
-		updateGroup(mainModel, indexes, player);
-	}
-	
-	/**
-	 * Update group using model, indexes and specified piece.
-	 * 
-	 * @param model
-	 * @param indexes
-	 * @param piece
-	 */
-	private void updateGroup (GoModel model, Vector indexes, int piece) {
-		for (int i = 0; i < indexes.size(); i++) {
-			model.setData (((Integer)indexes.get(i)).intValue(), piece);
-		}
-	}
-
 	/**
 	 * Return player groups.
 	 * 
@@ -303,22 +197,6 @@ public class GoPieceMover {
 		return groups;
 	}
 	
-	/**
-	 * Take a move using a specified model.
-	 * 
-	 * @param model
-	 * @param player
-	 * @param x
-	 * @param y
-	 */
-	private void move (GoModel model, int player, int x, int y) {
-		model.setData (x, y, player);
-		model.normalMove ();		// change state so signify normal move (gets rid of pass states).
-		
-		// Check if capture
-		checkCapture (model, player);
-	}
-	
 	/**
 	 * Return true / false if this move results in KO.
 	 * 
@@ -329,25 +207,7 @@ public class GoPieceMover {
 	 * @return       If true KO rule applys.
 	 */
 	public boolean isKORule(int x, int y, int player) {
-		// Check if move is valid, then take a copy of data, make a move on it
-		// and see if state of model equals state of previous data of current model.		
-		boolean blankPieceNoSuicide = isBlankPiece (x, y) && !isSuicide (x, y, player);		
-		if (blankPieceNoSuicide) {
-			
-			GoModel copy = mainModel.deepCopy();
-			move (copy, player, x, y);			// do move on data copy.
-			
-			// if ANY of previous data is not same as move on copy then 
-			// return false i.e. KO rule doesn't not apply as model is not the same
-			int [] prevData = mainModel.getPrevData();			
-			for (int i = 0; i < prevData.length; i++) {
-				if (prevData[i] != copy.getData(i))
-					return false;
-			}
-				
-		}
-		
-		return true;		// state of 
+		return tryMove (x, y, player) == GoGroups.MOVE_KO;
 	}
 	
 	/**
@@ -382,54 +242,6 @@ public class GoPieceMover {
 		}
 	}
 	
-	/**
-	 * Check if move results in a capture for a particular player.
-	 * 
-	 * @param model    Model to use (may be a copied model).
-	 * @param player   Player to check capture of.
-	 */
-	private void checkCapture (GoModel model, int player) {
-		int numCells  = model.getNumOfCells();
-		int index = 0, x, y;
-		
-		// Get all opponent groups
-		int opponentPlayer = getOpponent (player);
-		Vector groups = getPlayerGroups (model, opponentPlayer);
-			
-		// Loop through each group and check for capture i.e. no liberties exist
-		for (int g = 0; g < groups.size(); g++) {
-			Vector group = (Vector)groups.get(g);
-			
-			// Go through each position in the group and ensure that 
-			// if either its north, south, east or west position is 
-			// a blank square then it is safe
-			boolean libertyFound = false;		// assume none found
-			for (int i = 0; i < group.size(); i++) {
-				index = ((Integer)group.get(i)).intValue();
-				x = index % numCells;
-				y = (index / numCells);
-				
-				if (x - 1 >= 0 && model.getData (x - 1, y) == GoModel.BLANK) 
-					libertyFound = true;
-				if (x + 1 < numCells && model.getData (x + 1, y) == GoModel.BLANK) 
-					libertyFound = true;
-				if (y - 1 >= 0 && model.getData(x, y - 1) == GoModel.BLANK) 
-					libertyFound = true;
-				if (y + 1 < numCells && model.getData(x, y + 1) == GoModel.BLANK) 
-					libertyFound = true;
-			}
-			
-			// If no liberties found then capture piece and remove pieces from data 
-			if (!libertyFound) {				
-				model.addCapturedStoneCount (opponentPlayer, group.size());
-				for (int i = 0; i < group.size(); i++) {
-					index = ((Integer)group.get(i)).intValue();
-					model.setData (index, GoModel.BLANK);
-				}
-			}
-		}
-	}
-	
 	/**
 	 * Return true/false if current piece is blank or not.
 	 * 
@@ -450,18 +262,8 @@ public class GoPieceMover {
 	 * 
 	 * @return
 	 */
-	public boolean isSuicide (int moveX, int moveY, int player) {			
-		// Create copy of current model, make move on copy 
-		// and see if players group from x, y has any liberties.
-		GoModel copy = mainModel.deepCopy();
-		
-		// Do move and if this move results in this group being removed then its obviously suicide
-		move (copy, player, moveX, moveY);
-		
-		// Check if capture
-		checkCapture (copy, getOpponent(player));
-		
-		return (copy.getData(moveX, moveY) == GoModel.BLANK);
+	public boolean isSuicide (int moveX, int moveY, int player) {
+		return tryMove (moveX, moveY, player) == GoGroups.MOVE_SUICIDE;
 	}
 	
 	/**
@@ -0,0 +1,251 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Go
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.go.client;
+
+/**
+ * <p>Works out the territories of a go model.  A region of empty points
+ * and dead stones belongs to a player if only that player's live stones
+ * border it.  The flood fills use a work stack and a bitset of visited
+ * points which are kept between calls so scoring doesn't allocate.</p>
+ *
+ * <p>Marking a group dead or alive only fills the regions next to that
+ * group again.  The territories are filled from scratch if the model was
+ * changed some other way since they were last worked out.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class GoScorer {
+
+	// Bits of the border of a region
+	private static final int BORDER_BLACK = 1, BORDER_WHITE = 2;
+
+	private int numOfCells, size;
+
+	private int [] neighbours;		// 4 per point, -1 if off the board
+	private int [] stack;			// work stack of the flood fills
+	private long [] visited;		// bitset of points filled
+	private int [] region;			// points of the last fill
+	private int [] group;			// points of the group being marked
+	private int regionSize = 0;
+
+	// Model change count when the territories were last worked out
+	private int scoredChangeCount = -1;
+
+	/**
+	 * Create a scorer for a board.
+	 *
+	 * @param numOfCells  Width of the board.
+	 */
+	public GoScorer (int numOfCells) {
+		this.numOfCells = numOfCells;
+		this.size = numOfCells * numOfCells;
+
+		stack   = new int [size];
+		region  = new int [size];
+		group   = new int [size];
+		visited = new long [(size + 63) / 64];
+
+		neighbours = new int [size * 4];
+		for (int i = 0; i < size; i++) {
+			int x = i % numOfCells, y = i / numOfCells;
+			neighbours [i * 4]     = x > 0 ? i - 1 : -1;
+			neighbours [i * 4 + 1] = y > 0 ? i - numOfCells : -1;
+			neighbours [i * 4 + 2] = x < numOfCells - 1 ? i + 1 : -1;
+			neighbours [i * 4 + 3] = y < numOfCells - 1 ? i + numOfCells : -1;
+		}
+	}
+
+	/**
+	 * Return the width of the board.
+	 *
+	 * @return
+	 */
+	public int getNumOfCells () {
+		return numOfCells;
+	}
+
+	private void clearVisited () {
+		for (int i = 0; i < visited.length; i++)
+			visited [i] = 0L;
+	}
+
+	private boolean isVisited (int index) {
+		return (visited [index >> 6] & (1L << index)) != 0;
+	}
+
+	private void setVisited (int index) {
+		visited [index >> 6] |= 1L << index;
+	}
+
+	/**
+	 * Return true if a value is a live stone.
+	 */
+	private static boolean isLive (int value) {
+		return value == GoModel.BLACK || value == GoModel.WHITE;
+	}
+
+	/**
+	 * Fill the points connected to a start point whose value passes the
+	 * test (empty or dead if value is BLANK, otherwise equal to value) into
+	 * region and return the border bits of the live stones around it.
+	 */
+	private int fill (int [] data, int start, int value) {
+		int border = 0, top = 0;
+		regionSize = 0;
+		stack [top++] = start;
+		setVisited (start);
+
+		while (top > 0) {
+			int p = stack [--top];
+			region [regionSize++] = p;
+
+			for (int n = p * 4; n < p * 4 + 4; n++) {
+				int q = neighbours [n];
+				if (q == -1 || isVisited (q))
+					continue;
+
+				int v = data [q];
+				boolean same = value == GoModel.BLANK ? !isLive (v) : v == value;
+				if (same) {
+					setVisited (q);
+					stack [top++] = q;
+				}
+				else if (v == GoModel.BLACK)
+					border |= BORDER_BLACK;
+				else if (v == GoModel.WHITE)
+					border |= BORDER_WHITE;
+			}
+		}
+		return border;
+	}
+
+	/**
+	 * Fill the empty region from a point and set its territory.
+	 */
+	private void fillTerritory (GoModel model, int start) {
+		int border = fill (model.getData (), start, GoModel.BLANK);
+		int owner = border == BORDER_BLACK ? GoModel.BLACK :
+		            border == BORDER_WHITE ? GoModel.WHITE : GoModel.BLANK;
+		for (int i = 0; i < regionSize; i++)
+			model.setTerritory (region [i], owner);
+	}
+
+	/**
+	 * Work out every territory of the model.  Live stones are the territory
+	 * of their own player.
+	 *
+	 * @param model
+	 */
+	public void updateTerritories (GoModel model) {
+		int [] data = model.getData ();
+		clearVisited ();
+		for (int i = 0; i < size; i++) {
+			if (isLive (data [i]))
+				model.setTerritory (i, data [i]);
+			else if (!isVisited (i))
+				fillTerritory (model, i);
+		}
+		scoredChangeCount = model.getDataChangeCount ();
+	}
+
+	/**
+	 * Mark the group at a point dead (or alive again if it is marked dead)
+	 * and update the territories around it.
+	 *
+	 * @param model
+	 * @param index
+	 */
+	public void toggle (GoModel model, int index) {
+		int [] data = model.getData ();
+		int value = data [index];
+		if (value < GoModel.BLACK || value > GoModel.WHITE_MARKED_DEAD)
+			return;
+		if (scoredChangeCount != model.getDataChangeCount ())
+			updateTerritories (model);
+
+		// Fill the group and change it
+		int newValue = value < GoModel.BLACK_MARKED_DEAD ? value + 2 : value - 2;
+		clearVisited ();
+		fill (data, index, value);
+		int groupSize = regionSize;
+		System.arraycopy (region, 0, group, 0, groupSize);
+		for (int i = 0; i < groupSize; i++)
+			model.updateData (group [i], newValue);
+
+		// A dead group joins the regions around it into one
+		clearVisited ();
+		scoredChangeCount = model.getDataChangeCount ();
+		if (!isLive (newValue)) {
+			fillTerritory (model, index);
+			return;
+		}
+
+		// A live group splits the region it was in (each part touches it)
+		for (int i = 0; i < groupSize; i++)
+			model.setTerritory (group [i], newValue);
+		for (int i = 0; i < groupSize; i++) {
+			int p = group [i];
+			for (int n = p * 4; n < p * 4 + 4; n++) {
+				int q = neighbours [n];
+				if (q != -1 && !isVisited (q) && !isLive (data [q]))
+					fillTerritory (model, q);
+			}
+		}
+	}
+
+	/**
+	 * Return the score of the model (territories are worked out again only
+	 * if the model has changed).
+	 *
+	 * @param model
+	 * @return
+	 */
+	public GoScore getScore (GoModel model) {
+		if (scoredChangeCount != model.getDataChangeCount ())
+			updateTerritories (model);
+
+		int [] areas       = new int [2];
+		int [] territories = new int [2];
+		int [] prisoners   = {model.getCapturedStones (GoModel.WHITE),
+		                      model.getCapturedStones (GoModel.BLACK)};
+
+		// Loop through each index and
+		for (int i = 0; i < size; i++) {
+			int territory = model.getTerritory (i);
+			int piece     = model.getData (i);
+
+			// Update territory / areas
+			if (territory == GoModel.BLACK || territory == GoModel.WHITE) {
+				areas [territory] ++;
+				if (piece != territory)
+					territories [territory] ++;
+			}
+
+			// Update prisoners depending on marked dead pieces
+			if (piece == GoModel.BLACK_MARKED_DEAD)
+				prisoners [GoModel.WHITE] ++;
+			else if (piece == GoModel.WHITE_MARKED_DEAD)
+				prisoners [GoModel.BLACK] ++;
+		}
+
+		return new GoScore (model.getKomi (), model.getScoreMethod (), areas, territories, prisoners);
+	}
+}
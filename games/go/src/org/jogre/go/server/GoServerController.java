@@ -60,6 +60,7 @@ public class GoServerController extends ServerController {
     	int score_type = Integer.parseInt(table.getProperty("score_type"));
     	    	
     	setModel (tableNum, new GoModel (boardSize, score_type, komi));
+    	recordMove (tableNum, boardSize);		// first entry of the game record
     }
 
     /**
@@ -88,6 +89,7 @@ public class GoServerController extends ServerController {
 			
 			String username = move.getUsername();
 			int player = getSeatNum(username, tableNum);
+			recordMove (tableNum, packMove (move, player, goModel.getNumOfCells()));
 			switch (move.getStatus()) {
 				case CommGoMove.TYPE_MOVE:
 					pieceMover.move(move.getX(), move.getY(), player);
@@ -116,4 +118,22 @@ public class GoServerController extends ServerController {
 			}				
 		}
     }
+    
+    /**
+     * Pack a move into an int for the game record (type in bits 0-2, seat
+     * in bit 3 and 1 + the point x + y * board size in the other bits, 0
+     * if the move has no point).  The first entry of a record is the board
+     * size.
+     * 
+     * @param move
+     * @param player      Seat number of player.
+     * @param boardSize
+     * @return
+     */
+    public static int packMove (CommGoMove move, int player, int boardSize) {
+    	int point = 0;
+    	if (move.getStatus() == CommGoMove.TYPE_MOVE || move.getStatus() == CommGoMove.TYPE_MARK)
+    		point = 1 + move.getX() + move.getY() * boardSize;
+    	return move.getStatus() | player << 3 | point << 4;
+    }
 }
\ No newline at end of file
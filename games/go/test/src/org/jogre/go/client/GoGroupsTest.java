@@ -0,0 +1,94 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Go
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.go.client;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for the groups of stones.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class GoGroupsTest extends TestCase {
+
+    private static final int B = GoModel.BLACK;
+    private static final int W = GoModel.WHITE;
+
+    /**
+     * Test groups join, capture and undo back to the same position.
+     */
+    public void testPlayAndUndo () {
+        GoModel model = new GoModel (5);
+        GoGroups groups = model.getGroups ();
+        assertEquals (0L, groups.getHash ());
+
+        // Black surrounds a white stone in the corner
+        assertEquals (GoGroups.MOVE_OK, groups.play (1, B));
+        assertEquals (GoGroups.MOVE_OK, groups.play (0, W));
+        assertEquals (GoGroups.MOVE_OCCUPIED, groups.play (0, B));
+        long beforeCapture = groups.getHash ();
+        assertEquals (GoGroups.MOVE_OK, groups.play (5, B));
+        assertEquals (1, groups.getNumOfCaptured ());
+        assertEquals (0, groups.getCaptured (0));
+        assertEquals (GoModel.BLANK, groups.getData (0));
+
+        // Black stones at 1 and 5 join through 6
+        assertEquals (1, groups.getGroupSize (1));
+        assertEquals (GoGroups.MOVE_OK, groups.play (6, B));
+        assertEquals (3, groups.getGroupSize (1));
+        assertEquals (groups.getGroupSize (5), groups.getGroupSize (6));
+
+        // White can't play into the eye
+        assertEquals (GoGroups.MOVE_SUICIDE, groups.play (0, W));
+
+        groups.undo ();
+        groups.undo ();
+        assertEquals (beforeCapture, groups.getHash ());
+        assertEquals (W, groups.getData (0));
+        assertEquals (1, groups.getGroupSize (1));
+        groups.undo ();
+        groups.undo ();
+        assertEquals (0, groups.getNumOfMoves ());
+        assertEquals (0L, groups.getHash ());
+        assertEquals (GoModel.BLANK, groups.getData (1));
+    }
+
+    /**
+     * Test the groups are built again after the model is changed.
+     */
+    public void testLoad () {
+        GoModel model = new GoModel (5);
+        GoPieceMover pieceMover = new GoPieceMover (model);
+        pieceMover.move (0, 0, B);
+        pieceMover.move (1, 0, W);
+
+        // Kept in step by the piece mover
+        GoGroups fresh = new GoGroups (5);
+        fresh.load (model);
+        assertSame (model.getGroups (), model.getGroups ());
+        assertEquals (fresh.getHash (), model.getGroups ().getHash ());
+
+        // Built again after the data is set directly
+        model.setData (0, 1, W);
+        assertTrue (model.getGroups ().isDead (0));
+        assertFalse (model.getGroups ().isDead (1));
+    }
+}
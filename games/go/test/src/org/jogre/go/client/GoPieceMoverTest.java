@@ -476,6 +476,45 @@ public class GoPieceMoverTest extends TestCase {
         assertEquals (GoModel.WHITE, score.getWinningPlayer());
     }
 
+    /**
+     * Test marking groups dead and alive again gives the same territories
+     * as working them out from scratch.
+     */
+    public void testMarkIncremental () {
+        model.setNumOfCells(9); model.reset ();
+        playGame (GAME2);
+        pieceMover.updateTerritories();
+
+        int [][] marks = {{2, 1}, {4, 4}, {2, 1}, {0, 3}, {4, 4}, {6, 6}};
+        for (int i = 0; i < marks.length; i++) {
+            pieceMover.mark (marks[i][0], marks[i][1]);
+
+            int [] territories = new int [model.getTotalCellCount()];
+            for (int j = 0; j < territories.length; j++)
+                territories [j] = model.getTerritory(j);
+
+            new GoScorer (9).updateTerritories (model);
+            for (int j = 0; j < territories.length; j++)
+                assertEquals (model.getTerritory(j), territories [j]);
+        }
+    }
+
+    /**
+     * Test the score is worked out again after stones are played.
+     */
+    public void testScoreAfterMove () {
+        model.setNumOfCells(9); model.reset ();
+        assertEquals (0, pieceMover.getScore ().getArea (B));
+
+        pieceMover.move (4, 4, B);
+        assertEquals (81, pieceMover.getScore ().getArea (B));
+
+        pieceMover.move (4, 5, W);
+        GoScore score = pieceMover.getScore ();
+        assertEquals (1, score.getArea (B));
+        assertEquals (1, score.getArea (W));
+    }
+
     /**
      * Play a game using information from String.
      *
@@ -22,7 +22,6 @@ package org.jogre.quetris.common;
 import nanoxml.XMLElement;
 
 import org.jogre.common.comm.CommTableMessage;
-import org.jogre.common.util.JogreUtils;
 import org.jogre.quetris.client.QuetrisPlayerModel;
 
 /**
@@ -73,11 +72,9 @@ public class CommQuetrisPlayerState extends CommTableMessage {
     public CommQuetrisPlayerState (XMLElement message) {
         this.seatNum = message.getIntAttribute (XML_ATT_SEAT);
         
-        // Read content from message
-        String content = message.getContent();
-        
-        // Set compressed data and length string        
-        this.compressedGridData = JogreUtils.convertToIntArray (content);
+        // Set compressed data (read as ints from the binary protocol or
+        // parsed from the space delimited XML content)
+        this.compressedGridData = message.getIntArrayContent();
         this.length = compressedGridData.length;
         
         // Now we can decompress again
@@ -208,8 +205,9 @@ public class CommQuetrisPlayerState extends CommTableMessage {
     public XMLElement flatten() {
         XMLElement message = super.flatten (XML_NAME);
         
-        // Set content as String representation of compressed data
-        message.setContent (JogreUtils.valueOf(compressedGridData));
+        // Set content as the compressed data (the XML protocol writes
+        // this as a space delimited String)
+        message.setContent (compressedGridData);
         message.setIntAttribute (XML_ATT_SEAT, seatNum);
         
         return message;
@@ -57,7 +57,7 @@ public class ReversiController extends JogreController {
 			// ensure board point is in range (0 to 2)
 			if (board.x >= 0 && board.x < ReversiModel.COLS && board.y >= 0
 					&& board.y < ReversiModel.ROWS) {
-				if (model.piecesThatCanBeCaptured(board.x, board.y, getSeatNum()) > 0) {
+				if (model.isLegalMove(board.x, board.y, getSeatNum())) {
 					boardComponent.setMousePoint(board);
 					return;
 				}
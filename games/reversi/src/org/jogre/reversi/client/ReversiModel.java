@@ -26,7 +26,15 @@ import org.jogre.common.TransmissionException;
 import org.jogre.common.comm.Comm;
 import org.jogre.common.util.JogreUtils;
 
-// Model which holds the data for a game of Reversi
+/**
+ * Model which holds the data for a game of Reversi.  The pieces of each
+ * player are a 64 bit board (bit y * 8 + x) so the legal moves and the
+ * pieces a move flips are worked out with shifts in all 8 directions at
+ * once rather than by walking the board.
+ *
+ * @author  Ugnich Anton
+ * @version Beta 0.3
+ */
 public class ReversiModel extends JogreModel {
 
 	// Declare constants to define model
@@ -37,10 +45,18 @@ public class ReversiModel extends JogreModel {
 	public static final int BLACK = 0;
 	public static final int WHITE = 1;
 
+	// Results of getWinner which aren't a player
+	public static final int DRAW = -1;
+	public static final int NO_WINNER_YET = -2;
+
     private static final String XML_ATT_PIECES   = "pieces";
-    
-	// model (2 dimensional int array)
-	private int[][] data = new int[COLS][ROWS];
+
+	// Masks which stop a shift wrapping round to the other side
+	private static final long NOT_LEFT_COLUMN  = 0xfefefefefefefefeL;
+	private static final long NOT_RIGHT_COLUMN = 0x7f7f7f7f7f7f7f7fL;
+
+	// model (a bitboard of the pieces of each player)
+	private long [] pieces = new long [2];
 
 	// Constructor
 	public ReversiModel() {
@@ -48,381 +64,176 @@ public class ReversiModel extends JogreModel {
 		reset();
 	}
 
-	// reset the model back to zeros
+	// reset the model back to the 4 starting pieces
 	public void reset() {
-		for (int x = 0; x < COLS; x++) {
-			for (int y = 0; y < ROWS; y++) {
-				data[x][y] = BLANK;
-			}
-		}
-		data[3][3] = data[4][4] = WHITE;
-		data[3][4] = data[4][3] = BLACK;
+		pieces [WHITE] = bit (3, 3) | bit (4, 4);
+		pieces [BLACK] = bit (3, 4) | bit (4, 3);
 		refreshObservers();
 	}
 
+	// return bit of a point
+	private static long bit (int x, int y) {
+		return 1L << (y * COLS + x);
+	}
+
 	// return data at a particular point
 	public int getData(int x, int y) {
-		return data[x][y];
+		long bit = bit (x, y);
+		if ((pieces [BLACK] & bit) != 0)
+			return BLACK;
+		else if ((pieces [WHITE] & bit) != 0)
+			return WHITE;
+		return BLANK;
 	}
 
 	protected int invert(int value) {
 		return value == 1 ? 0 : 1;
 	}
 
-	// set data at a point
-	public boolean setData(int x, int y, int value) {
-
-		int changed = 0, i, n;
-
-		// top
-		if (y >= 2 && data[x][y - 1] == invert(value)) {
-			n = y;
-			for (i = y - 1; i >= 0; i--)
-				if (data[x][i] == value) {
-					n = i;
-					break;
-				} else if (data[x][i] == BLANK)
-					break;
-			for (i = y - 1; i >= n; i--) {
-				data[x][i] = value;
-				changed++;
-			}
-		}
-
-		// top, right
-		if (y >= 2 && x <= COLS - 3 && data[x + 1][y - 1] == invert(value)) {
-			n = 0;
-			for (i = 1; x + i < COLS && y - i >= 0; i++)
-				if (data[x + i][y - i] == value) {
-					n = i;
-					break;
-				} else if (data[x + i][y - i] == BLANK)
-					break;
-			for (i = 1; i <= n; i++) {
-				data[x + i][y - i] = value;
-				changed++;
-			}
+	/**
+	 * Shift a board one square in a direction (0 to 7 clockwise from up).
+	 */
+	private static long shift (long b, int dir) {
+		switch (dir) {
+			case 0: return b >>> 8;
+			case 1: return (b >>> 7) & NOT_LEFT_COLUMN;
+			case 2: return (b << 1) & NOT_LEFT_COLUMN;
+			case 3: return (b << 9) & NOT_LEFT_COLUMN;
+			case 4: return b << 8;
+			case 5: return (b << 7) & NOT_RIGHT_COLUMN;
+			case 6: return (b >>> 1) & NOT_RIGHT_COLUMN;
+			default: return (b >>> 9) & NOT_RIGHT_COLUMN;
 		}
+	}
 
-		// right
-		if (x <= COLS - 3 && data[x + 1][y] == invert(value)) {
-			n = x;
-			for (i = x + 1; i < COLS; i++)
-				if (data[i][y] == value) {
-					n = i;
-					break;
-				} else if (data[i][y] == BLANK)
-					break;
-			for (i = x + 1; i <= n; i++) {
-				data[i][y] = value;
-				changed++;
-			}
+	/**
+	 * Return the empty squares where a player with pieces own can play
+	 * against pieces opp.
+	 */
+	public static long legalMoves (long own, long opp) {
+		long empty = ~(own | opp), moves = 0L;
+		for (int dir = 0; dir < 8; dir++) {
+			// Opponent lines next to own pieces (at most 6 long)
+			long line = shift (own, dir) & opp;
+			line |= shift (line, dir) & opp;
+			line |= shift (line, dir) & opp;
+			line |= shift (line, dir) & opp;
+			line |= shift (line, dir) & opp;
+			line |= shift (line, dir) & opp;
+			moves |= shift (line, dir) & empty;
 		}
+		return moves;
+	}
 
-		// right, bottom
-		if (x <= COLS - 3 && y <= ROWS - 3
-				&& data[x + 1][y + 1] == invert(value)) {
-			n = 0;
-			for (i = 1; x + i < COLS && y + i < ROWS; i++)
-				if (data[x + i][y + i] == value) {
-					n = i;
-					break;
-				} else if (data[x + i][y + i] == BLANK)
-					break;
-			for (i = 1; i <= n; i++) {
-				data[x + i][y + i] = value;
-				changed++;
-			}
-		}
+	/**
+	 * Return the opponent pieces flipped by a player with pieces own
+	 * playing on a square (0 if the move isn't allowed).
+	 */
+	public static long flips (int square, long own, long opp) {
+		long move = 1L << square;
+		if (((own | opp) & move) != 0)
+			return 0L;
 
-		// bottom
-		if (y <= ROWS - 3 && data[x][y + 1] == invert(value)) {
-			n = y;
-			for (i = y + 1; i < ROWS; i++)
-				if (data[x][i] == value) {
-					n = i;
-					break;
-				} else if (data[x][i] == BLANK)
-					break;
-			for (i = y + 1; i <= n; i++) {
-				data[x][i] = value;
-				changed++;
+		long flips = 0L;
+		for (int dir = 0; dir < 8; dir++) {
+			long line = 0L, next = shift (move, dir);
+			while ((next & opp) != 0) {
+				line |= next;
+				next = shift (next, dir);
 			}
+			if ((next & own) != 0)
+				flips |= line;
 		}
+		return flips;
+	}
 
-		// bottom, left
-		if (y <= ROWS - 3 && x >= 2 && data[x - 1][y + 1] == invert(value)) {
-			n = 0;
-			for (i = 1; x - i >= 0 && y + i < ROWS; i++)
-				if (data[x - i][y + i] == value) {
-					n = i;
-					break;
-				} else if (data[x - i][y + i] == BLANK)
-					break;
-			for (i = 1; i <= n; i++) {
-				data[x - i][y + i] = value;
-				changed++;
-			}
-		}
+	/**
+	 * Return the number of bits set.
+	 */
+	private static int bitCount (long b) {
+		b = b - ((b >>> 1) & 0x5555555555555555L);
+		b = (b & 0x3333333333333333L) + ((b >>> 2) & 0x3333333333333333L);
+		b = (b + (b >>> 4)) & 0x0f0f0f0f0f0f0f0fL;
+		return (int)((b * 0x0101010101010101L) >>> 56);
+	}
 
-		// left
-		if (x >= 2 && data[x - 1][y] == invert(value)) {
-			n = x;
-			for (i = x - 1; i >= 0; i--)
-				if (data[i][y] == value) {
-					n = i;
-					break;
-				} else if (data[i][y] == BLANK)
-					break;
-			for (i = x - 1; i >= n; i--) {
-				data[i][y] = value;
-				changed++;
-			}
-		}
+	/**
+	 * Return the squares (bit y * 8 + x) a player can play on.
+	 *
+	 * @param player Player seat number
+	 * @return       Bitboard of legal moves.
+	 */
+	public long getLegalMoves (int player) {
+		return legalMoves (pieces [player], pieces [invert (player)]);
+	}
 
-		// left, top
-		if (x >= 2 && y >= 2 && data[x - 1][y - 1] == invert(value)) {
-			n = 0;
-			for (i = 1; x - i >= 0 && y - i >= 0; i++)
-				if (data[x - i][y - i] == value) {
-					n = i;
-					break;
-				} else if (data[x - i][y - i] == BLANK)
-					break;
-			for (i = 1; i <= n; i++) {
-				data[x - i][y - i] = value;
-				changed++;
-			}
-		}
+	/**
+	 * Return true if a player can play on a point.
+	 *
+	 * @param x
+	 * @param y
+	 * @param player Player seat number
+	 */
+	public boolean isLegalMove (int x, int y, int player) {
+		return (getLegalMoves (player) & bit (x, y)) != 0;
+	}
 
-		if (changed > 0) {
-			data[x][y] = value;
-			refreshObservers(); // update any views on this model
-			return true;
-		} else
+	// set data at a point (if it flips any pieces)
+	public boolean setData(int x, int y, int value) {
+		long move = bit (x, y);
+		long flips = flips (y * COLS + x, pieces [value], pieces [invert (value)]);
+		if (flips == 0)
 			return false;
+
+		pieces [value] |= flips | move;
+		pieces [invert (value)] &= ~flips;
+		refreshObservers(); // update any views on this model
+		return true;
 	}
-	
+
 	/**
 	 * Gets winner based on opposing player.  The method returns who is
 	 * the winner of the game.  It first checks if there are any moves
-	 * left for the opposing player.  If there isn't it 
+	 * left for either player.  If there aren't it returns the player with
+	 * the most pieces (or DRAW).
+	 *
 	 * @param oppPlayer
-	 * @return
+	 * @return  Player, DRAW or NO_WINNER_YET.
 	 */
 	public int getWinner(int oppPlayer) {
-		
-		int DRAW = -1;
-		int NO_WINNER_YET = -2;
-		
 		int player = invert(oppPlayer);
-		
-		int[] count = new int[2];
-		boolean[] hasMove = new boolean[2];
-
-		for (int r = 0; r < ROWS; r++) {
-			for (int c = 0; c < COLS; c++) {
-				if (piecesThatCanBeCaptured(c, r, oppPlayer) > 0)
-					hasMove[oppPlayer] = true;
-				if (piecesThatCanBeCaptured(c, r, player) > 0)
-					hasMove[player] = true;
+		if (hasMovesLeft (oppPlayer) || hasMovesLeft (player))
+			return NO_WINNER_YET;
 
-				if (data[c][r] == WHITE)
-					count[WHITE]++;
-				else if (data[c][r] == BLACK)
-					count[BLACK]++;
-				
-				if (hasMove[oppPlayer] || hasMove[player])
-					return NO_WINNER_YET;
-			}
-		}
-		
-		if (count[oppPlayer] > count[player])
+		int oppCount = piecesOwned (oppPlayer), count = piecesOwned (player);
+		if (oppCount > count)
 			return oppPlayer;
-		else if (count[oppPlayer] < count[player])
+		else if (oppCount < count)
 			return player;
 		else
 			return DRAW;
 	}
-	
+
 	/**
 	 * Checks to see if seat number has any moves left
-	 * 
+	 *
 	 * @param player Player seat number
 	 * @return true if seat number has moves left, otherwise false
 	 */
 	public boolean hasMovesLeft(int player) {
-		for (int r = 0; r < ROWS; r++) {
-			for (int c = 0; c < COLS; c++) {
-				if (piecesThatCanBeCaptured(c, r, player) > 0)
-					return true;
-			}
-		}
-		return false;
+		return getLegalMoves (player) != 0;
 	}
-	
+
 	/**
 	 * Gets pieces that can be captured from col, row index
-	 * 
+	 *
 	 * @param col Column
 	 * @param row Row
 	 * @param player Player seat number
 	 * @return number of pieces that can be captured from col, row index
 	 */
 	public int piecesThatCanBeCaptured(int col, int row, int player) {
-		if (this.data[col][row] != BLANK)
-			return 0;
-		
-		int totalCapture = 0;
-		int capture = 0;
-		int count = 0;
-		boolean possible = false;
-		
-		// look to bottom right
-		capture = 0;
-		count = 1;
-		possible = false;
-		while ((col + count) < COLS && (row + count) < ROWS) {
-			if (this.data[col + count][row + count] != BLANK && this.data[col + count][row + count] != player)
-				capture++;
-			else if (this.data[col + count][row + count] == player) {
-				possible = true;
-				break;
-			}
-			else
-				break;
-			count++;
-		}
-		if (possible)
-			totalCapture += capture;
-		
-		// look to bottom
-		capture = 0;
-		count = 1;
-		possible = false;
-		while ((row + count) < ROWS) {
-			if (this.data[col][row + count] != BLANK && this.data[col][row + count] != player)
-				capture++;
-			else if (this.data[col][row + count] == player) {
-				possible = true;
-				break;
-			}
-			else
-				break;
-			count++;
-		}
-		if (possible)
-			totalCapture += capture;
-		
-		// look to bottom left
-		capture = 0;
-		count = 1;
-		possible = false;
-		while ((col - count) > -1 && (row + count) < ROWS) {
-			if (this.data[col - count][row + count] != BLANK && this.data[col - count][row + count] != player)
-				capture++;
-			else if (this.data[col - count][row + count] == player) {
-				possible = true;
-				break;
-			}
-			else
-				break;
-			count++;
-		}
-		if (possible)
-			totalCapture += capture;
-		
-		// look to left
-		capture = 0;
-		count = 1;
-		possible = false;
-		while ((col - count) > -1) {
-			if (this.data[col - count][row] != BLANK && this.data[col - count][row] != player)
-				capture++;
-			else if (this.data[col - count][row] == player) {
-				possible = true;
-				break;
-			}
-			else
-				break;
-			count++;
-		}
-		if (possible)
-			totalCapture += capture;
-		
-		// look to top left
-		capture = 0;
-		count = 1;
-		possible = false;
-		while ((col - count) > -1 && (row - count) > -1) {
-			if (this.data[col - count][row - count] != BLANK && this.data[col - count][row - count] != player)
-				capture++;
-			else if (this.data[col - count][row - count] == player) {
-				possible = true;
-				break;
-			}
-			else
-				break;
-			count++;
-		}
-		if (possible)
-			totalCapture += capture;
-		
-		// look to top
-		capture = 0;
-		count = 1;
-		possible = false;
-		while ((row - count) > -1) {
-			if (this.data[col][row - count] != BLANK && this.data[col][row - count] != player)
-				capture++;
-			else if (this.data[col][row - count] == player) {
-				possible = true;
-				break;
-			}
-			else
-				break;
-			count++;
-		}
-		if (possible)
-			totalCapture += capture;
-		
-		// look to top right
-		capture = 0;
-		count = 1;
-		possible = false;
-		while ((col + count) < COLS && (row - count) > -1) {
-			if (this.data[col + count][row - count] != BLANK && this.data[col + count][row - count] != player)
-				capture++;
-			else if (this.data[col + count][row - count] == player) {
-				possible = true;
-				break;
-			}
-			else
-				break;
-			count++;
-		}
-		if (possible)
-			totalCapture += capture;
-		
-		// look to right
-		capture = 0;
-		count = 1;
-		possible = false;
-		while ((col + count) < COLS) {
-			if (this.data[col + count][row] != BLANK && this.data[col + count][row] != player)
-				capture++;
-			else if (this.data[col + count][row] == player) {
-				possible = true;
-				break;
-			}
-			else
-				break;
-			count++;
-		}
-		if (possible)
-			totalCapture += capture;
-		
-		return totalCapture;
+		return bitCount (flips (row * COLS + col, pieces [player], pieces [invert (player)]));
 	}
 
     /**
@@ -431,15 +242,7 @@ public class ReversiModel extends JogreModel {
 	 * @param seat number of seat, BLACK or WHITE
      */
     public int piecesOwned(int seat) {
-        int count = 0;
-		for (int r = 0; r < ROWS; r++) {
-			for (int c = 0; c < COLS; c++) {
-                if (data[r][c] == seat) {
-                    count++;
-                }
-            }
-        }
-        return count;
+        return bitCount (pieces [seat]);
     }
     
     /**
@@ -451,7 +254,10 @@ public class ReversiModel extends JogreModel {
     public void setState (XMLElement message) {        
         // Set chess pieces
         int [] data1D = JogreUtils.convertToIntArray(message.getStringAttribute(XML_ATT_PIECES)); 
-        this.data = JogreUtils.convertTo2DArray(data1D, COLS, ROWS); 
+        pieces [BLACK] = pieces [WHITE] = 0L;
+        for (int i = 0; i < data1D.length; i++)
+            if (data1D [i] != BLANK)
+                pieces [data1D [i]] |= bit (i / ROWS, i % ROWS);
         
         // If everything is read sucessfully then refresh observers
         refreshObservers();
@@ -467,7 +273,10 @@ public class ReversiModel extends JogreModel {
     	XMLElement message = new XMLElement (Comm.MODEL);
                 
         // Flatten 2d data to a single array and then to a String
-        int [] data1D = JogreUtils.convertTo1DArray(data);
+        int [] data1D = new int [COLS * ROWS];
+        for (int x = 0; x < COLS; x++)
+            for (int y = 0; y < ROWS; y++)
+                data1D [x * ROWS + y] = getData (x, y);
         message.setAttribute (XML_ATT_PIECES,   JogreUtils.valueOf (data1D));
 
         return message;
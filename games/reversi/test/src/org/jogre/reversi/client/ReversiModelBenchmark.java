@@ -0,0 +1,165 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Reversi
+ * Copyright (C) 2004 - 2007  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.reversi.client;
+
+import java.util.Random;
+
+/**
+ * <p>Benchmark of the reversi model over the positions of random games:
+ * the legal move mask, the game over check and working out a move's flips
+ * with the bitboards, against walking the board for every point (as the
+ * model used to).  This is not a JUnit test so it must be run by hand from
+ * the reversi directory e.g.</p>
+ *
+ * <code>java org.jogre.reversi.client.ReversiModelBenchmark -rounds=200</code>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ReversiModelBenchmark {
+
+	private int numOfRounds = 200;
+	private int numOfGames = 50;
+
+	/** Stops the JIT removing the work. */
+	private long checksum = 0;
+
+	/**
+	 * Parse the command line arguments.
+	 *
+	 * @param args
+	 */
+	private void parseArguments (String [] args) {
+		for (int i = 0; i < args.length; i++) {
+			int value = Integer.parseInt (args [i].substring (args [i].indexOf ("=") + 1));
+			if (args [i].startsWith ("-rounds="))
+				numOfRounds = value;
+			else if (args [i].startsWith ("-games="))
+				numOfGames = value;
+		}
+	}
+
+	/**
+	 * Return the positions (with the player to move) of random games.
+	 */
+	private ReversiModel [] createPositions (int [] players) {
+		Random random = new Random (1);
+		ReversiModel [] positions = new ReversiModel [players.length];
+		int count = 0;
+		for (int g = 0; g < numOfGames && count < positions.length; g++) {
+			ReversiModel model = new ReversiModel ();
+			int player = ReversiModel.BLACK;
+			while (count < positions.length && model.getWinner (1 - player) == ReversiModel.NO_WINNER_YET) {
+				if (!model.hasMovesLeft (player)) {
+					player = 1 - player;
+					continue;
+				}
+				ReversiModel position = new ReversiModel ();
+				position.setState (model.flatten ());
+				positions [count] = position;
+				players [count++] = player;
+
+				long moves = model.getLegalMoves (player);
+				int move;
+				do {
+					move = random.nextInt (64);
+				} while ((moves & (1L << move)) == 0);
+				model.setData (move % 8, move / 8, player);
+				player = 1 - player;
+			}
+		}
+		return positions;
+	}
+
+	/**
+	 * Legal moves, game over and flips with bitboards.
+	 */
+	private void runBitboards (ReversiModel [] positions, int [] players) {
+		for (int i = 0; i < positions.length; i++) {
+			ReversiModel model = positions [i];
+			long moves = model.getLegalMoves (players [i]);
+			checksum += moves;
+			checksum += model.getWinner (1 - players [i]);
+			for (int sq = 0; sq < 64; sq++)
+				if ((moves & (1L << sq)) != 0)
+					checksum += model.piecesThatCanBeCaptured (sq % 8, sq / 8, players [i]);
+		}
+	}
+
+	/**
+	 * The same by walking the board for every point.
+	 */
+	private void runWalk (ReversiModel [] positions, int [] players) {
+		for (int i = 0; i < positions.length; i++) {
+			ReversiModel model = positions [i];
+			boolean hasMove = false;
+			for (int x = 0; x < 8; x++) {
+				for (int y = 0; y < 8; y++) {
+					int flips = ReversiModelTest.countFlips (model, x, y, players [i]);
+					checksum += flips;
+					hasMove |= flips > 0 || ReversiModelTest.countFlips (model, x, y, 1 - players [i]) > 0;
+				}
+			}
+			checksum += hasMove ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 */
+	public static void main (String [] args) {
+		ReversiModelBenchmark benchmark = new ReversiModelBenchmark ();
+		benchmark.parseArguments (args);
+
+		int [] players = new int [benchmark.numOfGames * 60];
+		ReversiModel [] positions = benchmark.createPositions (players);
+		int numOfPositions = 0;
+		while (numOfPositions < positions.length && positions [numOfPositions] != null)
+			numOfPositions++;
+		ReversiModel [] used = new ReversiModel [numOfPositions];
+		System.arraycopy (positions, 0, used, 0, numOfPositions);
+
+		// Warm up
+		for (int i = 0; i < benchmark.numOfRounds / 4; i++) {
+			benchmark.runBitboards (used, players);
+			benchmark.runWalk (used, players);
+		}
+
+		long bitboards = 0, walk = 0;
+		for (int i = 0; i < benchmark.numOfRounds; i++) {
+			long start = System.nanoTime ();
+			benchmark.runBitboards (used, players);
+			bitboards += System.nanoTime () - start;
+
+			start = System.nanoTime ();
+			benchmark.runWalk (used, players);
+			walk += System.nanoTime () - start;
+		}
+
+		long total = (long)numOfPositions * benchmark.numOfRounds;
+		System.out.println ("Rounds: " + benchmark.numOfRounds + ", positions: " + numOfPositions);
+		System.out.println ("bitboards ns/position: " + (bitboards / total));
+		System.out.println ("walk ns/position:      " + (walk / total));
+		System.out.println ("Speed up:              " + (walk / Math.max (1, bitboards)) + "x");
+		System.out.println ("(checksum " + benchmark.checksum + ")");
+	}
+}
@@ -19,21 +19,115 @@
  */
 package org.jogre.reversi.client;
 
+import java.util.Random;
+
 import junit.framework.TestCase;
+import nanoxml.XMLElement;
 
 /**
- * Test case for game model for the reversi game.
+ * Test case for game model for the reversi game.  The bitboard moves are
+ * checked against a plain walk of the board over random games.
  *
  * @author  Bob Marks
  * @version Beta 0.3
  */
 public class ReversiModelTest extends TestCase {
 
+    private static final int [] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    private static final int [] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+
+    /**
+     * Count the pieces a move flips by walking the board in each direction.
+     */
+    public static int countFlips (ReversiModel model, int x, int y, int player) {
+        if (model.getData (x, y) != ReversiModel.BLANK)
+            return 0;
+
+        int total = 0;
+        for (int dir = 0; dir < 8; dir++) {
+            int count = 0, cx = x + DX [dir], cy = y + DY [dir];
+            while (cx >= 0 && cx < 8 && cy >= 0 && cy < 8 &&
+                   model.getData (cx, cy) == 1 - player) {
+                count++;
+                cx += DX [dir];
+                cy += DY [dir];
+            }
+            if (cx >= 0 && cx < 8 && cy >= 0 && cy < 8 && model.getData (cx, cy) == player)
+                total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Play a random game, checking every point of every position.
+     */
+    private void playRandomGame (Random random) {
+        ReversiModel model = new ReversiModel ();
+        int player = ReversiModel.BLACK;
+
+        while (model.getWinner (1 - player) == ReversiModel.NO_WINNER_YET) {
+            if (!model.hasMovesLeft (player)) {
+                player = 1 - player;
+                continue;
+            }
+
+            int [] moves = new int [64];
+            int numOfMoves = 0;
+            for (int x = 0; x < 8; x++) {
+                for (int y = 0; y < 8; y++) {
+                    int flips = countFlips (model, x, y, player);
+                    assertEquals (flips, model.piecesThatCanBeCaptured (x, y, player));
+                    assertEquals (flips > 0, model.isLegalMove (x, y, player));
+                    if (flips > 0)
+                        moves [numOfMoves++] = x * 8 + y;
+                }
+            }
+
+            int move = moves [random.nextInt (numOfMoves)];
+            int owned = model.piecesOwned (player) + model.piecesThatCanBeCaptured (move / 8, move % 8, player) + 1;
+            assertTrue (model.setData (move / 8, move % 8, player));
+            assertEquals (owned, model.piecesOwned (player));
+            assertFalse (model.setData (move / 8, move % 8, 1 - player));
+            player = 1 - player;
+        }
+
+        assertEquals (0, countFlipsAll (model, ReversiModel.BLACK) + countFlipsAll (model, ReversiModel.WHITE));
+    }
+
+    private int countFlipsAll (ReversiModel model, int player) {
+        int total = 0;
+        for (int x = 0; x < 8; x++)
+            for (int y = 0; y < 8; y++)
+                total += countFlips (model, x, y, player);
+        return total;
+    }
+
     /**
      * Test the model.
      */
     public void test () {
-        ReversiModel model = new ReversiModel();
-        // TODO
+        Random random = new Random (1);
+        for (int i = 0; i < 20; i++)
+            playRandomGame (random);
+    }
+
+    /**
+     * Test the model flattens and reads back the same pieces.
+     */
+    public void testFlatten () {
+        ReversiModel model = new ReversiModel ();
+        model.setData (2, 3, ReversiModel.BLACK);
+        model.setData (2, 2, ReversiModel.WHITE);
+
+        XMLElement elm = model.flatten ();
+        ReversiModel modelFromElm = new ReversiModel ();
+        modelFromElm.setState (elm);
+        for (int x = 0; x < 8; x++)
+            for (int y = 0; y < 8; y++)
+                assertEquals (model.getData (x, y), modelFromElm.getData (x, y));
+        assertEquals (ReversiModel.BLACK, modelFromElm.getData (2, 3));
+        assertEquals (ReversiModel.WHITE, modelFromElm.getData (2, 2));
+        assertEquals (ReversiModel.WHITE, modelFromElm.getData (3, 3));
+        assertEquals (ReversiModel.BLACK, modelFromElm.getData (3, 4));
     }
 }
@@ -21,9 +21,10 @@ drop table if exists user;
 -- 2) Create tables
 
 create table game_info (id integer generated by default as identity (start with 1), game_key char(20), players char (255), results char (50), start_time datetime, end_time datetime, history char (255), score char (255), primary key (id));
-create table game_summary (game_key char(20), username char (20), rating integer, wins integer, loses integer, draws integer, streak integer, primary key (game_key, username));
+create table game_summary (game_key char(20), username char (20), rating integer, wins integer, loses integer, draws integer, streak integer, recent_form varchar (10), rating_history varchar (255), primary key (game_key, username));
 create table snap_shot (game_key char(20), num_of_users integer, num_of_tables integer, primary key (game_key));
 create table user (username char(20), password char (20), security_question integer, security_answer char (50), year_of_birth char (4), email char (100), receive_newsletter char (1), primary key (username));
+create index game_summary_username on game_summary (username);
 
 -- 3) Insert dummey data into tables to get started
 
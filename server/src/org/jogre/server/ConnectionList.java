@@ -50,7 +50,7 @@ public class ConnectionList {
 	 * @param username         Username of person.
 	 * @param connectionThread ServerConnectionThread.
 	 */
-	public void addConnection (String gameId, String username, ServerConnectionThread connectionThread) {
+	public synchronized void addConnection (String gameId, String username, ServerConnectionThread connectionThread) {
 		Connection conn = new Connection (connectionThread);
 		
 		connections.put (getKey (gameId, username), conn);
@@ -91,7 +91,7 @@ public class ConnectionList {
 	 * @param username
 	 * @return
 	 */
-	public Connection getConnection (String gameId, String username) {
+	public synchronized Connection getConnection (String gameId, String username) {
 		return (Connection)connections.get (getKey (gameId, username));
 	}
 
@@ -100,14 +100,14 @@ public class ConnectionList {
 	 *
 	 * @param username
 	 */
-	public void removeConnection (String gameId, String username) {
+	public synchronized void removeConnection (String gameId, String username) {
 		connections.remove (getKey (gameId, username));
 	}
 	
 	/**
 	 * Remove the admin connection.
 	 */
-	public void removeAdminConnection () {
+	public synchronized void removeAdminConnection () {
 		connections.remove (getKey (IJogre.ADMINISTRATOR, IJogre.ADMINISTRATOR));
 	}
 
@@ -116,7 +116,7 @@ public class ConnectionList {
 	 *
 	 * @return
 	 */
-	public int size () {
+	public synchronized int size () {
 		return connections.size();
 	}
 
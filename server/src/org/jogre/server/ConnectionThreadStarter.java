@@ -0,0 +1,133 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import java.lang.reflect.Method;
+
+import org.jogre.common.AbstractConnectionThread;
+import org.jogre.common.util.JogreLogger;
+
+/**
+ * <p>Starts the run loop of each connection thread when the server is using
+ * the blocking transport.  The connection thread is a Runnable so its run
+ * method doesn't have to execute on the connection thread itself:</p>
+ *
+ * <ul>
+ *   <li><b>platform</b> - the connection thread is simply started.</li>
+ *   <li><b>virtual</b> - the run loop executes on a virtual thread so that
+ *       the blocking readLine doesn't pin a platform thread.  Virtual
+ *       threads are looked up by reflection as they only exist in newer
+ *       JVMs - if they aren't available then platform threads are used.</li>
+ * </ul>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ConnectionThreadStarter {
+
+	/** Logging */
+	JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** Virtual thread builder (null if platform threads are used). */
+	private Object virtualBuilder = null;
+
+	/** Thread.Builder.unstarted (Runnable) method. */
+	private Method unstartedMethod = null;
+
+	/**
+	 * Constructor which takes the type of threads.
+	 *
+	 * @param threads   Thread type (platform or virtual).
+	 */
+	public ConnectionThreadStarter (String threads) {
+		if (ServerProperties.XML_ATT_VAL_THREADS_VIRTUAL.equals (threads)) {
+			try {
+				Method ofVirtual = Thread.class.getMethod ("ofVirtual", new Class [0]);
+				Class builderClass = Class.forName ("java.lang.Thread$Builder");
+
+				this.virtualBuilder  = ofVirtual.invoke (null, new Object [0]);
+				this.unstartedMethod = builderClass.getMethod ("unstarted", new Class [] {Runnable.class});
+			}
+			catch (Exception e) {
+				logger.error ("ConnectionThreadStarter", "Virtual threads not supported by this JVM - using platform threads.");
+				this.virtualBuilder = null;
+			}
+		}
+	}
+
+	/**
+	 * Return true if connections will run on virtual threads.
+	 *
+	 * @return
+	 */
+	public boolean isVirtual () {
+		return virtualBuilder != null;
+	}
+
+	/**
+	 * Start the run loop of a connection thread.
+	 *
+	 * @param conn   Connection thread.
+	 */
+	public void start (AbstractConnectionThread conn) {
+		if (!startVirtual (conn, conn.getName ()))
+			conn.start ();
+	}
+
+	/**
+	 * Start a runnable (e.g. the writer of a connection) on the same type
+	 * of thread as the connections.
+	 *
+	 * @param runnable   Runnable to start.
+	 * @param name       Name of the thread.
+	 */
+	public void start (Runnable runnable, String name) {
+		if (!startVirtual (runnable, name)) {
+			Thread thread = new Thread (runnable, name);
+			thread.setDaemon (true);
+			thread.start ();
+		}
+	}
+
+	/**
+	 * Start a runnable on a virtual thread.
+	 *
+	 * @param runnable   Runnable to start.
+	 * @param name       Name of the thread.
+	 * @return           False if virtual threads aren't being used.
+	 */
+	private boolean startVirtual (Runnable runnable, String name) {
+		if (virtualBuilder != null) {
+			try {
+				Thread thread = (Thread)unstartedMethod.invoke (virtualBuilder, new Object [] {runnable});
+				thread.setName (name);
+				thread.start ();
+				return true;
+			}
+			catch (Exception e) {
+				logger.error ("start", "Unable to start virtual thread - using platform threads.");
+				logger.stacktrace (e);
+				virtualBuilder = null;
+			}
+		}
+
+		return false;
+	}
+}
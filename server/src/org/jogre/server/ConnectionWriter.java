@@ -0,0 +1,67 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+/**
+ * Writer which drains the OutboundQueue of a blocking connection onto its
+ * socket.  It is started when a message is queued and stops again once the
+ * connection has been idle for a while, so idle clients don't need a
+ * second thread.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ConnectionWriter implements Runnable {
+
+	/** Time in milliseconds the writer waits for a message before stopping. */
+	private static final long IDLE_TIME = 5000;
+
+	/** Connection to write to. */
+	private ServerConnectionThread conn;
+
+	/** Queue of messages. */
+	private OutboundQueue queue;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param conn    Connection to write to.
+	 * @param queue   Queue of the connection.
+	 */
+	public ConnectionWriter (ServerConnectionThread conn, OutboundQueue queue) {
+		this.conn = conn;
+		this.queue = queue;
+	}
+
+	/**
+	 * Write lines until the queue has been idle for IDLE_TIME or closed.
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run () {
+		while (true) {
+			byte [] line = queue.take (IDLE_TIME);
+			if (line != null)
+				conn.writeLine (line);
+			else if (queue.stopWriting ())
+				return;
+		}
+	}
+}
@@ -29,18 +29,27 @@ import org.jogre.common.IJogre;
  * JOGRE's implementation of the ELO rating system.  The following is an
  * example of how to use the Elo Rating System.
  * <code>
- * 		EloRatingSystem elo = new EloRatingSystem();
+ * 		EloRatingSystem elo = EloRatingSystem.getInstance ("chess");
  * 		int userRating = 1600;
  * 		int opponentRating = 1650; 
  * 		int newUserRating = elo.getNewRating(userRating, opponentRating, WIN);
  * 		int newOpponentRating = elo.getNewRating(opponentRating, userRating, LOSS);
  * </code>
  * 
+ * Games with more than two players are rated pairwise using getNewRatings:
+ * each player plays each other player and the change in rating is the
+ * average over the opponents (for two players this is the same as
+ * getNewRating).
+ * 
  * @author Garrett Lehman (gman)
  */
 public class EloRatingSystem {
 	
-	public final static int SUPPORTED_PLAYERS = 2;
+	/** Minimum number of players in a rated game. */
+	public final static int MIN_PLAYERS = 2;
+	
+	/** Largest k factor lookup table (larger ranges are searched instead). */
+	private final static int MAX_TABLE_SIZE = 10000;
 	
 	// Score constants
 	public final static double WIN = 1.0;
@@ -49,7 +58,12 @@ public class EloRatingSystem {
 
 	// Attributes
 	private String game;
+	private String kFactorStr;
 	public KFactor [] kFactors = {};
+	
+	// K factor of each rating from tableStart (or null if no table)
+	private double [] kFactorTable = null;
+	private int tableStart = 0;
 		
 	// List of singletons are stored in this HashMap
 	private static HashMap ratingSystems = null;
@@ -57,14 +71,14 @@ public class EloRatingSystem {
 	/**
 	 * Constructor to the JOGRE ELO rating system.
 	 * 
-	 * @param game   Game to do the rating on as games may vary
-	 *               in their implementation of ELO.
+	 * @param game        Game to do the rating on as games may vary
+	 *                    in their implementation of ELO.
+	 * @param kFactorStr  K factor ranges e.g. "0-2099=32,2100-3000=24"
+	 *                    (null for the default k factor).
 	 */
-	private EloRatingSystem (String game) {
+	public EloRatingSystem (String game, String kFactorStr) {
 		this.game = game;			// Set game.
-		
-		// Read k factor in from server properties
-		String kFactorStr = ServerProperties.getInstance().getKFactor (game);
+		this.kFactorStr = kFactorStr;
 		
 		if (kFactorStr != null) {
 			// Split each of the kFactor ranges up (kfactor1,factor2, etc)
@@ -90,9 +104,35 @@ public class EloRatingSystem {
 				// Add kFactor to range
 				kFactors [index++] = new KFactor (startIndex, endIndex, value);
 			}
+			
+			createKFactorTable ();
 		}			
 	}
 	
+	/**
+	 * Create a lookup table of the k factor of every rating covered by the
+	 * ranges (the first range wins if they overlap).
+	 */
+	private void createKFactorTable () {
+		if (kFactors.length == 0)
+			return;
+		
+		int start = kFactors [0].getStartIndex (), end = kFactors [0].getEndIndex ();
+		for (int i = 1; i < kFactors.length; i++) {
+			start = Math.min (start, kFactors [i].getStartIndex ());
+			end   = Math.max (end,   kFactors [i].getEndIndex ());
+		}
+		if (end < start || (long)end - start >= MAX_TABLE_SIZE)
+			return;
+		
+		double [] table = new double [end - start + 1];
+		for (int i = 0; i < table.length; i++)
+			table [i] = findKFactor (start + i);
+		
+		this.tableStart = start;
+		this.kFactorTable = table;
+	}
+	
 	/**
 	 * Return instance of an ELO rating system.
 	 * 
@@ -103,18 +143,89 @@ public class EloRatingSystem {
 		if (ratingSystems == null)
 			ratingSystems = new HashMap ();
 		
-		// Retrieve rating system
-		Object ratingSystem = ratingSystems.get (game);
+		// Retrieve rating system and the current k factor of the game
+		EloRatingSystem ratingSystem = (EloRatingSystem)ratingSystems.get (game);
+		String kFactorStr = ServerProperties.getInstance().getKFactor (game);
 		
-		// If null then create new one and add to hash keying off the game
-		if (ratingSystem == null) {
-			ratingSystem = new EloRatingSystem (game);
+		// If null (or the k factor has been changed) then create new one
+		// and add to hash keying off the game
+		if (ratingSystem == null || !equals (ratingSystem.kFactorStr, kFactorStr)) {
+			ratingSystem = new EloRatingSystem (game, kFactorStr);
 			ratingSystems.put (game, ratingSystem);
+		}
+		
+		return ratingSystem;
+	}
+	
+	/**
+	 * Return the game of this rating system.
+	 * 
+	 * @return   Game key e.g. chess.
+	 */
+	public String getGame () {
+		return game;
+	}
+	
+	/**
+	 * Work out the new ratings of every player of a game.  Each player is
+	 * compared with every other player (a win against a lose scores 1, the
+	 * same result scores 0.5) and the new rating uses the average of
+	 * (score - expected score) over the opponents.  Players whose result
+	 * isn't a win, lose or draw keep their rating.
+	 * 
+	 * @param ratings   Old ratings of the players.
+	 * @param results   Result types of the players (IGameOver.WIN etc).
+	 * @return          New ratings in the same order.
+	 */
+	public int [] getNewRatings (int [] ratings, int [] results) {
+		int numPlayers = ratings.length;
+		int [] newRatings = new int [numPlayers];
+		
+		for (int i = 0; i < numPlayers; i++) {
+			newRatings [i] = ratings [i];
+			double score = getScore (results [i]);
+			if (score < 0)
+				continue;
 			
-			return (EloRatingSystem)ratingSystem;
+			double total = 0.0;
+			int numOpponents = 0;
+			for (int j = 0; j < numPlayers; j++) {
+				double opponentScore = getScore (results [j]);
+				if (j == i || opponentScore < 0)
+					continue;
+				
+				double pairScore = score > opponentScore ? WIN : score < opponentScore ? LOSS : DRAW;
+				total += pairScore - getExpectedScore (ratings [i], ratings [j]);
+				numOpponents++;
+			}
+			
+			if (numOpponents > 0)
+				newRatings [i] = calculateNewRating (ratings [i], total / numOpponents, 0.0, getKFactor (ratings [i]));
 		}
-		else
-			return (EloRatingSystem)ratingSystem;
+		
+		return newRatings;
+	}
+	
+	/**
+	 * Return the score of a result type or -1 if it isn't rated.
+	 * 
+	 * @param resultType
+	 * @return
+	 */
+	private static double getScore (int resultType) {
+		switch (resultType) {
+			case IGameOver.WIN:
+				return WIN;
+			case IGameOver.LOSE:
+				return LOSS;
+			case IGameOver.DRAW:
+				return DRAW;
+		}
+		return -1;
+	}
+	
+	private static boolean equals (String s1, String s2) {
+		return s1 == null ? s2 == null : s1.equals (s2);
 	}
 	
 	/**
@@ -184,6 +295,24 @@ public class EloRatingSystem {
 	 * @return				Constant
 	 */
 	private double getKFactor (int rating) {
+		// Look up the k factor
+		if (kFactorTable != null) {
+			int index = rating - tableStart;
+			if (index >= 0 && index < kFactorTable.length)
+				return kFactorTable [index];
+			return IJogre.DEFAULT_ELO_K_FACTOR;
+		}
+		
+		return findKFactor (rating);
+	}
+	
+	/**
+	 * Search the k factor ranges for a rating.
+	 * 
+	 * @param rating		Rating
+	 * @return				Constant
+	 */
+	private double findKFactor (int rating) {
 		// Return the correct k factor.
 		for (int i = 0; i < kFactors.length; i++) 
 			if (rating >= kFactors[i].getStartIndex() &&
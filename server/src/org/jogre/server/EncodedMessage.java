@@ -0,0 +1,103 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import nanoxml.XMLElement;
+
+import org.jogre.common.Game;
+import org.jogre.common.comm.BinaryCodec;
+import org.jogre.common.comm.ITransmittable;
+
+/**
+ * A transmittable object which has been flattened and encoded once so that
+ * it can be sent to many clients (e.g. a broadcast to everyone in a game)
+ * without flattening it again for each of them.  Once created an encoded
+ * message is never changed.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class EncodedMessage {
+
+	/** Flattened message (used for the copy sent to the administrator). */
+	private XMLElement element;
+
+	/** Message as a line of bytes including the line terminator. */
+	private byte [] bytes = null;
+
+	/** Message as a binary frame (created when first needed). */
+	private byte [] binaryBytes = null;
+
+	/**
+	 * Constructor which flattens a transmittable object.  It is encoded as a
+	 * line and / or a binary frame the first time each is asked for.
+	 *
+	 * @param transObject   Object to encode.
+	 */
+	public EncodedMessage (ITransmittable transObject) {
+		this.element = transObject.flatten();
+	}
+
+	/**
+	 * Constructor which flattens a change to the user / table lists and adds
+	 * its sequence number.
+	 *
+	 * @param transObject   Object to encode.
+	 * @param sequence      Sequence number of the change.
+	 */
+	public EncodedMessage (ITransmittable transObject, int sequence) {
+		this (transObject);
+		element.setIntAttribute (Game.XML_ATT_SEQUENCE, sequence);
+	}
+
+	/**
+	 * Return the flattened message.  This must not be modified.
+	 *
+	 * @return
+	 */
+	public XMLElement getElement () {
+		return element;
+	}
+
+	/**
+	 * Return the encoded line.  This array is shared between every
+	 * connection the message is written to so it must not be modified.
+	 *
+	 * @return
+	 */
+	public synchronized byte [] getBytes () {
+		if (bytes == null)
+			bytes = (element.toString() + "\n").getBytes();
+		return bytes;
+	}
+
+	/**
+	 * Return the message as a binary frame for clients which use the binary
+	 * protocol.  This is only encoded once and is shared in the same way as
+	 * the line.
+	 *
+	 * @return
+	 */
+	public synchronized byte [] getBinaryBytes () {
+		if (binaryBytes == null)
+			binaryBytes = BinaryCodec.encode (element);
+		return binaryBytes;
+	}
+}
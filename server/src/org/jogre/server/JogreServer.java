@@ -36,7 +36,9 @@ import org.jogre.server.controllers.ServerControllerList;
 import org.jogre.server.data.IServerData;
 import org.jogre.server.data.ServerDataException;
 import org.jogre.server.data.ServerDataFactory;
+import org.jogre.server.data.archive.GameArchive;
 import org.jogre.server.data.db.DBConnection;
+import org.jogre.server.nio.NIOServer;
 
 /**
  * <p>This is the all important JogreServer class.</p>
@@ -82,9 +84,15 @@ public class JogreServer {
 
 	/** Game loader. */
 	protected GameLoader gameLoader;
+
+	/** Starts connection (and connection writer) threads. */
+	protected ConnectionThreadStarter threadStarter;
 	
 	/** Declare how a user connection. */
 	protected IServerData dataConnection = null;
+
+	/** Archive of the moves of each game (null if it couldn't be opened). */
+	protected GameArchive gameArchive = null;
 	    
     private ServerLabels labels = ServerLabels.getInstance();		// convience link to server labels
     private long startTime;
@@ -138,12 +146,12 @@ public class JogreServer {
 		this.serverControllerList = new ServerControllerList ();
 		this.gameList             = new GameList ();
 		this.gameLoader           = new GameLoader (gameList, serverControllerList);
+		this.threadStarter        = new ConnectionThreadStarter (ServerProperties.getInstance().getThreads());
 		
-		// Load the correct type of data connection
-		this.dataConnection = ServerDataFactory.getInstance ();
-		
-		// Reset the server snapshot
 		try {
+			// Load the correct type of data connection
+			this.dataConnection = ServerDataFactory.getInstance ();
+
 			// Reset the database snapshot table
 			dataConnection.resetSnapshot (gameList.getGameKeys ());
 		} catch (ServerDataException e) {
@@ -151,6 +159,18 @@ public class JogreServer {
 			e.printStackTrace();
 			System.exit(-1);
 		}
+
+		// Open the game record archive (games are still saved without it)
+		try {
+			this.gameArchive = new GameArchive ();
+			Runtime.getRuntime().addShutdownHook (new Thread () {
+				public void run () {
+					gameArchive.close ();
+				}
+			});
+		} catch (IOException ioEx) {
+			System.err.println ("Unable to open game archive: " + ioEx.getMessage());
+		}
 	}
 
 	/**
@@ -196,6 +216,9 @@ public class JogreServer {
 	    // Print port and language
 	    Locale l = JogreGlobals.getLocale();
 	    System.out.println (labels.get("server.port") + ":\t\t" + getServerPort());
+	    System.out.println (labels.get("server.transport") + ":\t" + ServerProperties.getInstance().getTransport());
+	    if (!ServerProperties.getInstance().isTransportNIO())
+	    	System.out.println (labels.get("server.threads") + ":\t\t" + ServerProperties.getInstance().getThreads());
 	    System.out.println (labels.get("language") + ":\t\t" + l.getLanguage() + " (" +
 	    	l.getDisplayLanguage() + ")");
 	}
@@ -230,10 +253,17 @@ public class JogreServer {
 
 		// Declare server socket to listen for client connections
 		ServerSocket listenSocket = null;
+		NIOServer nioServer = null;
+		ServerProperties serverProps = ServerProperties.getInstance();
 
 		try {
 			// Set up the server first of all
-			listenSocket = new ServerSocket (serverPort);
+			if (serverProps.isTransportNIO ()) {
+				nioServer = new NIOServer (serverPort, serverProps.getNumOfIOThreads(), serverProps.getNumOfTableThreads());
+				nioServer.bind ();
+			}
+			else
+				listenSocket = new ServerSocket (serverPort);
 
 			System.out.println (labels.get("jogre.games.server.listening.on.port") + ": " + serverPort);
 			
@@ -243,14 +273,19 @@ public class JogreServer {
 			long timeStarted = System.currentTimeMillis() - startTime;
 			System.out.println ("\n" + labels.get("started.in", new String [] {nf.format(timeStarted)}));
 			
-			while (true) {
+			// Non-blocking server accepts and services the clients itself
+			if (nioServer != null)
+				nioServer.run ();
+			
+			// Otherwise each client has its own (platform or virtual) thread
+			while (listenSocket != null) {
 				// listen for and accept the connection
 				Socket clientSocket = listenSocket.accept ();
 
 				// Try to connect client to this server
 				ServerConnectionThread conn = new ServerConnectionThread (clientSocket);
 
-                conn.start();
+                threadStarter.start (conn);
 			}
 		}
 		catch (BindException bindEx) {
@@ -267,6 +302,8 @@ public class JogreServer {
 
 			if (listenSocket != null)
 			    listenSocket.close();
+			if (nioServer != null)
+				nioServer.close();
 		}
 		catch (IOException ioEx) {}
 	}
@@ -336,6 +373,15 @@ public class JogreServer {
 		return serverControllerList;
 	}
 
+	/**
+	 * Return the object which starts connection threads.
+	 *
+	 * @return
+	 */
+	public ConnectionThreadStarter getThreadStarter () {
+		return threadStarter;
+	}
+
 	/**
 	 * Return the connection to the users.
 	 * 
@@ -345,6 +391,15 @@ public class JogreServer {
 		return dataConnection;
 	}
 
+	/**
+	 * Return the archive of the moves of each game.
+	 * 
+	 * @return   Archive or null if it couldn't be opened.
+	 */
+	public GameArchive getGameArchive () {
+		return gameArchive;
+	}
+
 	/**
 	 * Return the game loader.
 	 * 
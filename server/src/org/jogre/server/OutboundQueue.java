@@ -0,0 +1,457 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+import nanoxml.XMLElement;
+
+import org.jogre.common.Game;
+import org.jogre.common.comm.BinaryCodec;
+import org.jogre.common.comm.Comm;
+import org.jogre.common.comm.CommTableMessage;
+
+/**
+ * <p>Bounded queue of encoded messages waiting to be written to a client.
+ * Messages are added by whichever thread is sending and removed by the
+ * writer of the connection, so a slow client never blocks the sender.</p>
+ *
+ * <p>When the queue is full (too many messages or bytes) the slow consumer
+ * policies are tried in order:</p>
+ *
+ * <ul>
+ *   <li><b>drop_chat</b> - chat messages are dropped (a new message which
+ *       isn't chat takes the place of the oldest queued chat message).</li>
+ *   <li><b>coalesce</b> - a message which replaces the whole state of a
+ *       table, table property or user takes the place of the newest queued
+ *       message for the same thing (so the order isn't changed).  If the
+ *       messages are deltas the new one also carries the sequence number
+ *       of the one it replaced (Game.XML_ATT_SEQUENCE_FROM) so the client
+ *       knows nothing was missed.</li>
+ *   <li><b>disconnect</b> - the client is disconnected.  If this isn't set
+ *       then chat is dropped instead.</li>
+ * </ul>
+ *
+ * <p>Any other message (e.g. a move or game over) is never dropped - if
+ * it doesn't fit the client is disconnected.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class OutboundQueue {
+
+	/** Slow consumer policy - drop chat messages. */
+	public static final String POLICY_DROP_CHAT = "drop_chat";
+
+	/** Slow consumer policy - coalesce state updates. */
+	public static final String POLICY_COALESCE = "coalesce";
+
+	/** Slow consumer policy - disconnect the client. */
+	public static final String POLICY_DISCONNECT = "disconnect";
+
+	/** Message was queued. */
+	public static final int QUEUED = 0;
+
+	/** Message was dropped. */
+	public static final int DROPPED = 1;
+
+	/** Queue is full and the client must be disconnected. */
+	public static final int OVERFLOW = 2;
+
+	/** Key of queued chat messages. */
+	private static final String CHAT_KEY = "chat";
+
+	/** Queued lines (Entry objects). */
+	private LinkedList entries = new LinkedList ();
+
+	/** Maximum number of messages. */
+	private int maxSize;
+
+	/** Maximum number of bytes. */
+	private int maxBytes;
+
+	/** Policies. */
+	private boolean dropChat, coalesce, disconnect;
+
+	/** Number of bytes waiting to be written. */
+	private int bytesPending = 0;
+
+	/** Number of messages dropped. */
+	private int numOfDropped = 0;
+
+	/** Number of messages coalesced. */
+	private int numOfCoalesced = 0;
+
+	/** True once the queue has been closed. */
+	private boolean closed = false;
+
+	/** True if a writer is draining the queue. */
+	private boolean writing = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param maxSize    Maximum number of messages.
+	 * @param maxBytes   Maximum number of bytes.
+	 * @param policies   Comma separated slow consumer policies.
+	 */
+	public OutboundQueue (int maxSize, int maxBytes, String policies) {
+		this.maxSize  = Math.max (1, maxSize);
+		this.maxBytes = Math.max (1, maxBytes);
+
+		if (policies != null) {
+			this.dropChat   = policies.indexOf (POLICY_DROP_CHAT) != -1;
+			this.coalesce   = policies.indexOf (POLICY_COALESCE) != -1;
+			this.disconnect = policies.indexOf (POLICY_DISCONNECT) != -1;
+		}
+	}
+
+	/**
+	 * Add an encoded line to the queue.
+	 *
+	 * @param line      Encoded message (including line terminator).
+	 * @param element   Message as XML (can be null) which is used to decide
+	 *                  what to do if the queue is full.
+	 * @return          QUEUED, DROPPED or OVERFLOW.
+	 */
+	public synchronized int offer (byte [] line, XMLElement element) {
+		if (closed)
+			return DROPPED;
+
+		boolean chat = isChat (element);
+		String key = chat ? CHAT_KEY : getCoalesceKey (element);
+
+		if (!isFull (line.length)) {
+			add (line, key, element);
+			return QUEUED;
+		}
+
+		// Queue is full so apply the slow consumer policies
+		if (dropChat) {
+			if (chat) {
+				numOfDropped++;
+				return DROPPED;
+			}
+			else if (remove (CHAT_KEY)) {
+				add (line, key, element);
+				numOfDropped++;
+				return QUEUED;
+			}
+		}
+
+		if (coalesce && key != null && !chat && replace (line, key, element)) {
+			numOfCoalesced++;
+			return QUEUED;
+		}
+
+		// Only chat can be dropped, anything else would leave the client
+		// out of step with the server
+		if (chat && !disconnect) {
+			numOfDropped++;
+			return DROPPED;
+		}
+		return OVERFLOW;
+	}
+
+	/**
+	 * Remove the next line from the queue.
+	 *
+	 * @return   Next line or null if the queue is empty.
+	 */
+	public synchronized byte [] poll () {
+		if (entries.isEmpty ())
+			return null;
+
+		byte [] line = ((Entry)entries.removeFirst ()).line;
+		bytesPending -= line.length;
+
+		return line;
+	}
+
+	/**
+	 * Wait for the next line.
+	 *
+	 * @param timeout   Time to wait in milliseconds.
+	 * @return          Next line or null if nothing arrived or the queue closed.
+	 */
+	public synchronized byte [] take (long timeout) {
+		if (entries.isEmpty () && !closed) {
+			try {
+				wait (timeout);
+			}
+			catch (InterruptedException iEx) {}
+		}
+
+		return poll ();
+	}
+
+	/**
+	 * Called after a line has been queued.  Returns true if a writer must
+	 * now be started to drain the queue (i.e. one isn't running already).
+	 *
+	 * @return
+	 */
+	public synchronized boolean startWriting () {
+		if (writing || closed || entries.isEmpty ())
+			return false;
+
+		writing = true;
+		return true;
+	}
+
+	/**
+	 * Called by an idle writer.  Returns true if the writer can stop (i.e.
+	 * nothing has been queued since it last looked).
+	 *
+	 * @return
+	 */
+	public synchronized boolean stopWriting () {
+		if (!closed && !entries.isEmpty ())
+			return false;
+
+		writing = false;
+		return true;
+	}
+
+	/**
+	 * Remove every line and refuse any more.
+	 */
+	public synchronized void close () {
+		closed = true;
+		entries.clear ();
+		bytesPending = 0;
+		notifyAll ();
+	}
+
+	/**
+	 * Remove every line.
+	 */
+	public synchronized void clear () {
+		entries.clear ();
+		bytesPending = 0;
+	}
+
+	/**
+	 * Return true if the queue is empty.
+	 *
+	 * @return
+	 */
+	public synchronized boolean isEmpty () {
+		return entries.isEmpty ();
+	}
+
+	/**
+	 * Return the number of messages waiting to be written.
+	 *
+	 * @return
+	 */
+	public synchronized int getDepth () {
+		return entries.size ();
+	}
+
+	/**
+	 * Return the number of bytes waiting to be written.
+	 *
+	 * @return
+	 */
+	public synchronized int getBytesPending () {
+		return bytesPending;
+	}
+
+	/**
+	 * Return the number of messages which have been dropped.
+	 *
+	 * @return
+	 */
+	public synchronized int getNumOfDropped () {
+		return numOfDropped;
+	}
+
+	/**
+	 * Return the number of messages which have been coalesced.
+	 *
+	 * @return
+	 */
+	public synchronized int getNumOfCoalesced () {
+		return numOfCoalesced;
+	}
+
+	/**
+	 * Return true if a line of the specified length won't fit.  An empty
+	 * queue always takes the line.
+	 */
+	private boolean isFull (int length) {
+		if (entries.isEmpty ())
+			return false;
+		return entries.size () >= maxSize || bytesPending + length > maxBytes;
+	}
+
+	/**
+	 * Add a line to the end of the queue.
+	 */
+	private void add (byte [] line, String key, XMLElement element) {
+		entries.addLast (new Entry (line, key, element));
+		bytesPending += line.length;
+		notifyAll ();
+	}
+
+	/**
+	 * Remove the oldest queued line with the specified key.
+	 *
+	 * @return  True if a line was removed.
+	 */
+	private boolean remove (String key) {
+		Iterator it = entries.iterator ();
+		while (it.hasNext ()) {
+			Entry entry = (Entry)it.next ();
+			if (key.equals (entry.key)) {
+				it.remove ();
+				bytesPending -= entry.line.length;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replace the newest queued line with the specified key (if the new line
+	 * fits in its place).
+	 *
+	 * @return  True if a line was replaced.
+	 */
+	private boolean replace (byte [] line, String key, XMLElement element) {
+		ListIterator it = entries.listIterator (entries.size ());
+		while (it.hasPrevious ()) {
+			Entry old = (Entry)it.previous ();
+			if (key.equals (old.key)) {
+				// A delta keeps the sequence number of the delta it replaces
+				int from = getSequenceFrom (old.element);
+				if ((from != -1) != (getSequenceFrom (element) != -1))
+					return false;
+				if (from != -1) {
+					element = copy (element);
+					element.setIntAttribute (Game.XML_ATT_SEQUENCE_FROM, from);
+					line = encode (element, line [0] == BinaryCodec.FRAME_MARKER);
+				}
+
+				if (bytesPending - old.line.length + line.length > maxBytes)
+					return false;
+
+				it.set (new Entry (line, key, element));
+				bytesPending += line.length - old.line.length;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Return the first sequence number a queued delta covers (-1 if it
+	 * isn't a delta).
+	 */
+	private static int getSequenceFrom (XMLElement element) {
+		if (element == null || element.getAttribute (Game.XML_ATT_SEQUENCE) == null)
+			return -1;
+		return element.getIntAttribute (Game.XML_ATT_SEQUENCE_FROM,
+		                                element.getIntAttribute (Game.XML_ATT_SEQUENCE));
+	}
+
+	/**
+	 * Return a copy of an element which can have attributes added (its
+	 * children are shared).
+	 */
+	private static XMLElement copy (XMLElement element) {
+		XMLElement copy = new XMLElement (element.getName ());
+		Enumeration names = element.enumerateAttributeNames ();
+		while (names.hasMoreElements ()) {
+			String name = (String)names.nextElement ();
+			copy.setAttribute (name, element.getAttribute (name));
+		}
+		if (element.hasIntArrayContent ())
+			copy.setContent (element.getIntArrayContent ());
+		else if (element.getContent () != null)
+			copy.setContent (element.getContent ());
+
+		Enumeration children = element.enumerateChildren ();
+		while (children.hasMoreElements ())
+			copy.addChild ((XMLElement)children.nextElement ());
+		return copy;
+	}
+
+	/**
+	 * Encode an element as a line or a binary frame.
+	 */
+	private static byte [] encode (XMLElement element, boolean binary) {
+		if (binary)
+			return BinaryCodec.encode (element);
+		return (element.toString () + "\n").getBytes ();
+	}
+
+	/**
+	 * Return true if this is a chat message.
+	 */
+	private static boolean isChat (XMLElement element) {
+		if (element == null)
+			return false;
+
+		String name = element.getName ();
+		return Comm.CHAT_GAME.equals (name) ||
+		       Comm.CHAT_TABLE.equals (name) ||
+		       Comm.CHAT_PRIVATE.equals (name);
+	}
+
+	/**
+	 * Return the coalescing key of messages which replace the whole state of
+	 * something (a table, a table property or a user) or null.
+	 */
+	private static String getCoalesceKey (XMLElement element) {
+		if (element == null)
+			return null;
+
+		String name = element.getName ();
+		if (Comm.TABLE.equals (name))
+			return name + " " + element.getStringAttribute ("tableNum");
+		else if (Comm.TABLE_PROPERTY.equals (name))
+			return name + " " + element.getStringAttribute (CommTableMessage.XML_ATT_TABLE_NUM) +
+			       " " + element.getStringAttribute ("key");
+		else if (Comm.USER.equals (name))
+			return name + " " + element.getStringAttribute ("username");
+
+		return null;
+	}
+
+	/**
+	 * Queued line.
+	 */
+	private static class Entry {
+		private byte [] line;
+		private String key;
+		private XMLElement element;
+
+		private Entry (byte [] line, String key, XMLElement element) {
+			this.line = line;
+			this.key = key;
+			this.element = element;
+		}
+	}
+}
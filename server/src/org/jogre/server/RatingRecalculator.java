@@ -0,0 +1,645 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jogre.common.GameOver;
+import org.jogre.common.util.JogreLogger;
+import org.jogre.common.util.JogreUtils;
+import org.jogre.server.data.GameInfo;
+import org.jogre.server.data.GameSummary;
+import org.jogre.server.data.IRowHandler;
+import org.jogre.server.data.IServerData;
+import org.jogre.server.data.ServerDataException;
+
+/**
+ * <p>Recalculates the game summaries (ratings, wins, loses, draws and
+ * streak) of one or more games by playing back every game info in the
+ * server data in the order the games finished.  This is used after the
+ * rating properties (start rating or k factor) of a game are changed.</p>
+ *
+ * <p>The game infos are streamed in one pass (grouped by game key) and only
+ * the running game summaries of the game key being read are kept.  The
+ * games are played back in order by the thread reading them; when a game
+ * key is finished a number of worker threads save it while the server keeps
+ * running.  Users with a game summary but no games are reset to the start
+ * rating.</p>
+ *
+ * <p>Games must be added with {@link #addGame(IServerData, GameInfo, boolean)}
+ * so none are lost.  Adding a game of a game key being recalculated waits
+ * while the game infos are first read and while the game key is saved.  In
+ * between the games added are recorded and played on top of the game key
+ * before it is saved.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class RatingRecalculator {
+
+	/** Game key -> Gate of each game key which has been added to. */
+	private static Map gates = new HashMap ();
+
+	/** Logging */
+	private JogreLogger logger = new JogreLogger (this.getClass());
+
+	private IServerData serverData;
+	private int numOfWorkers;
+
+	/** Game keys (PlayBack objects) played back and waiting to be saved. */
+	private LinkedList playBacks = new LinkedList ();
+	private boolean reading = true;
+
+	private int numOfGames = 0;
+	private int numOfGameSummaries = 0;
+	private ServerDataException error = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param serverData     Server data to read the game infos from and save
+	 *                       the game summaries to.
+	 * @param numOfWorkers   Number of game keys saved at once.
+	 */
+	public RatingRecalculator (IServerData serverData, int numOfWorkers) {
+		this.serverData = serverData;
+		this.numOfWorkers = Math.max (1, numOfWorkers);
+	}
+
+	/**
+	 * Add a game to the server data.  If the game key is being recalculated
+	 * this waits until it can be added and records it.
+	 *
+	 * @param serverData   Server data.
+	 * @param gameInfo     Game which has finished.
+	 * @param eloRatings   Boolean to update the ratings (ELO).
+	 * @return             GameOver object with the old and new ratings.
+	 * @throws ServerDataException
+	 */
+	public static GameOver addGame (IServerData serverData, GameInfo gameInfo, boolean eloRatings)
+		throws ServerDataException
+	{
+		Gate gate = getGate (gameInfo.getGameKey ());
+		gate.startAdding ();
+
+		GameOver gameOver = null;
+		try {
+			gameOver = serverData.addGame (gameInfo, eloRatings);
+			return gameOver;
+		}
+		finally {
+			gate.endAdding (gameOver == null ? null : gameInfo);
+		}
+	}
+
+	/**
+	 * Return the gate of a game key.
+	 *
+	 * @param gameKey
+	 * @return
+	 */
+	private static Gate getGate (String gameKey) {
+		synchronized (gates) {
+			Gate gate = (Gate)gates.get (gameKey);
+			if (gate == null) {
+				gate = new Gate ();
+				gates.put (gameKey, gate);
+			}
+			return gate;
+		}
+	}
+
+	/**
+	 * Recalculate the game summaries of every game in the server data.
+	 *
+	 * @throws ServerDataException
+	 */
+	public void recalculate () throws ServerDataException {
+		recalculate (null);
+	}
+
+	/**
+	 * Recalculate the game summaries of a number of games.
+	 *
+	 * @param keys   Game keys (null for every game).
+	 * @throws ServerDataException  The first error of reading the game infos
+	 *                              or of any of the workers.
+	 */
+	public void recalculate (String [] keys) throws ServerDataException {
+		// Games can only be added to supported games if keys is null.  The
+		// gates are held in order so two recalculations can't each wait for
+		// the other.
+		String [] gameKeys = keys != null ? keys : ServerProperties.getInstance ().getSupportedGames ();
+		Set heldKeys = new TreeSet ();
+		for (int i = 0; gameKeys != null && i < gameKeys.length; i++) {
+			if (gameKeys [i] != null)
+				heldKeys.add (gameKeys [i]);
+		}
+
+		Map heldGates = new HashMap ();
+		try {
+			Iterator it = heldKeys.iterator ();
+			while (it.hasNext ()) {
+				String gameKey = (String)it.next ();
+				Gate gate = getGate (gameKey);
+				gate.startRecording ();
+				heldGates.put (gameKey, gate);
+			}
+		}
+		catch (ServerDataException sdEx) {
+			Iterator it = heldGates.values ().iterator ();
+			while (it.hasNext ())
+				((Gate)it.next ()).endRecording ();
+			throw sdEx;
+		}
+
+		// Start the workers which save the game keys as they are played back
+		Thread [] workers = new Thread [numOfWorkers];
+		for (int i = 0; i < numOfWorkers; i++) {
+			workers [i] = new Thread (new Runnable () {
+				public void run () {
+					work ();
+				}
+			}, "RatingRecalculator-" + i);
+			workers [i].start ();
+		}
+
+		try {
+			readGameInfos (keys, heldGates, readUsernames (keys));
+		}
+		catch (ServerDataException sdEx) {
+			failed (sdEx);
+		}
+		finally {
+			// Game keys without any game infos have nothing to save
+			Iterator it = heldGates.values ().iterator ();
+			while (it.hasNext ())
+				((Gate)it.next ()).endRecording ();
+			synchronized (this) {
+				reading = false;
+				notifyAll ();
+			}
+		}
+
+		for (int i = 0; i < numOfWorkers; i++) {
+			try {
+				workers [i].join ();
+			}
+			catch (InterruptedException e) {
+				throw new ServerDataException ("Interrupted recalculating ratings");
+			}
+		}
+
+		logger.debug ("recalculate", "Games: " + getNumOfGames () + ", game summaries: " + getNumOfGameSummaries ());
+		if (getError () != null)
+			throw getError ();
+	}
+
+	/**
+	 * Stream the game summaries and return the users of each game key (so
+	 * users without any game infos can be reset).
+	 *
+	 * @param keys   Game keys to keep (null for every game).
+	 * @return       Game key -> Set of usernames.
+	 * @throws ServerDataException
+	 */
+	private Map readUsernames (String [] keys) throws ServerDataException {
+		final Set wanted = keys == null ? null : new HashSet (Arrays.asList (keys));
+		final Map usernames = new HashMap ();
+		serverData.getGameSummarys (new IRowHandler () {
+			public void handleRow (Object row) {
+				GameSummary gameSummary = (GameSummary)row;
+				String gameKey = gameSummary.getGameKey ();
+				if (wanted != null && !wanted.contains (gameKey))
+					return;
+
+				Set users = (Set)usernames.get (gameKey);
+				if (users == null) {
+					users = new HashSet ();
+					usernames.put (gameKey, users);
+				}
+				users.add (gameSummary.getUsername ());
+			}
+		});
+		return usernames;
+	}
+
+	/**
+	 * Stream the game infos and play back each game key.  The gates are
+	 * released as soon as the game infos have been read (when the first row
+	 * comes or there are none) and are removed from heldGates when their
+	 * game key is handed to the workers.
+	 *
+	 * @param keys        Game keys to keep (null for every game).
+	 * @param heldGates   Game key -> Gate of held game keys.
+	 * @param usernames   Game key -> Set of usernames with a game summary.
+	 * @throws ServerDataException
+	 */
+	private void readGameInfos (final String [] keys, final Map heldGates, final Map usernames)
+		throws ServerDataException
+	{
+		final Set wanted = keys == null ? null : new HashSet (Arrays.asList (keys));
+		final Set done = new HashSet ();
+		final PlayBack [] current = new PlayBack [1];
+
+		boolean read = false;
+		try {
+			serverData.getGameInfos (new IRowHandler () {
+				private boolean released = false;
+
+				public void handleRow (Object row) throws ServerDataException {
+					if (!released) {
+						Iterator it = heldGates.values ().iterator ();
+						while (it.hasNext ())
+							((Gate)it.next ()).release ();
+						released = true;
+					}
+					if (getError () != null)
+						throw getError ();
+
+					GameInfo gameInfo = (GameInfo)row;
+					String gameKey = gameInfo.getGameKey ();
+					if (wanted != null && !wanted.contains (gameKey))
+						return;
+
+					if (current [0] == null || !current [0].gameKey.equals (gameKey)) {
+						if (current [0] != null)
+							finish (current [0]);
+						if (!done.add (gameKey))
+							throw new ServerDataException ("Game infos of " + gameKey + " are not together");
+						current [0] = new PlayBack (gameKey, (Gate)heldGates.remove (gameKey),
+						                            (Set)usernames.remove (gameKey));
+					}
+					current [0].play (gameInfo);
+				}
+			});
+			read = true;
+		}
+		catch (ServerDataException sdEx) {
+			failed (sdEx);
+			throw sdEx;
+		}
+		finally {
+			// The last game key is saved (or its gate released if reading failed)
+			if (!read)
+				failed (new ServerDataException ("Reading game infos failed"));
+			if (current [0] != null)
+				finish (current [0]);
+		}
+
+		// Game keys with game summaries but no game infos are reset
+		Iterator it = usernames.keySet ().iterator ();
+		while (it.hasNext ()) {
+			String gameKey = (String)it.next ();
+			finish (new PlayBack (gameKey, (Gate)heldGates.remove (gameKey),
+			                      (Set)usernames.get (gameKey)));
+		}
+	}
+
+	/**
+	 * Hand a game key to the workers.
+	 */
+	private synchronized void finish (PlayBack playBack) {
+		playBacks.addLast (playBack);
+		notifyAll ();
+	}
+
+	/**
+	 * Worker thread: save game keys until they are all read and saved.  Once
+	 * a worker has failed the rest are not saved (their gates are still
+	 * released).
+	 */
+	private void work () {
+		PlayBack playBack;
+		while ((playBack = nextPlayBack ()) != null) {
+			try {
+				save (playBack);
+			}
+			catch (ServerDataException sdEx) {
+				logger.error ("work", "Saving ratings of " + playBack.gameKey + " failed: " + sdEx.getMessage ());
+				failed (sdEx);
+			}
+		}
+	}
+
+	private synchronized PlayBack nextPlayBack () {
+		while (reading && playBacks.isEmpty ()) {
+			try {
+				wait ();
+			}
+			catch (InterruptedException e) {
+				return null;
+			}
+		}
+		return playBacks.isEmpty () ? null : (PlayBack)playBacks.removeFirst ();
+	}
+
+	/**
+	 * Play the games added while a game key was read on top of it and save
+	 * it.  Adding games of the game key waits until it is saved.
+	 *
+	 * @param playBack
+	 * @throws ServerDataException
+	 */
+	private void save (PlayBack playBack) throws ServerDataException {
+		Gate gate = playBack.gate;
+		if (gate == null) {
+			if (getError () == null)
+				saveGameSummaries (playBack);
+			return;
+		}
+
+		try {
+			List added = gate.hold ();
+			if (getError () != null)
+				return;
+			for (int i = 0; i < added.size (); i++)
+				playBack.play ((GameInfo)added.get (i));
+			saveGameSummaries (playBack);
+		}
+		finally {
+			gate.endRecording ();
+		}
+	}
+
+	private void saveGameSummaries (PlayBack playBack) throws ServerDataException {
+		playBack.resetUnplayed ();
+		serverData.saveGameSummaries (playBack.gameSummaries);
+		finished (playBack.numOfGames, playBack.gameSummaries.size ());
+	}
+
+	private synchronized void finished (int games, int gameSummaries) {
+		numOfGames += games;
+		numOfGameSummaries += gameSummaries;
+	}
+
+	private synchronized void failed (ServerDataException sdEx) {
+		if (error == null)
+			error = sdEx;
+	}
+
+	private synchronized ServerDataException getError () {
+		return error;
+	}
+
+	/**
+	 * Return the number of games played back.
+	 *
+	 * @return
+	 */
+	public synchronized int getNumOfGames () {
+		return numOfGames;
+	}
+
+	/**
+	 * Return the number of game summaries saved.
+	 *
+	 * @return
+	 */
+	public synchronized int getNumOfGameSummaries () {
+		return numOfGameSummaries;
+	}
+
+	/**
+	 * Return the games whose rating properties (start rating or k factor)
+	 * are different in the new server properties.
+	 *
+	 * @param oldProperties   Server properties before they were changed.
+	 * @param newProperties   New server properties.
+	 * @return                Game keys (can be empty).
+	 */
+	public static String [] getChangedGames (ServerPropertiesSnapshot oldProperties,
+	                                         ServerPropertiesSnapshot newProperties)
+	{
+		List changed = new ArrayList ();
+		Iterator it = newProperties.getGameIds ().iterator ();
+		while (it.hasNext ()) {
+			String gameId = (String)it.next ();
+			ServerPropertiesSnapshot.GameProperties oldGame = oldProperties.getGame (gameId);
+			ServerPropertiesSnapshot.GameProperties newGame = newProperties.getGame (gameId);
+			if (oldGame == null)
+				continue;
+
+			String oldKFactor = oldGame.getKFactor (), newKFactor = newGame.getKFactor ();
+			if (oldGame.getStartRating () != newGame.getStartRating () ||
+			    (oldKFactor == null ? newKFactor != null : !oldKFactor.equals (newKFactor)))
+				changed.add (gameId);
+		}
+		return (String [])changed.toArray (new String [changed.size ()]);
+	}
+
+	/**
+	 * Recalculate a number of games in a background thread (errors are
+	 * logged).
+	 *
+	 * @param serverData   Server data.
+	 * @param keys         Game keys.
+	 */
+	public static void start (final IServerData serverData, final String [] keys) {
+		Thread thread = new Thread (new Runnable () {
+			public void run () {
+				RatingRecalculator recalculator = new RatingRecalculator (
+					serverData, Runtime.getRuntime ().availableProcessors ());
+				try {
+					recalculator.recalculate (keys);
+				}
+				catch (ServerDataException sdEx) {
+					recalculator.logger.error ("start", "Recalculating ratings failed: " + sdEx.getMessage ());
+				}
+			}
+		}, "RatingRecalculator");
+		thread.setDaemon (true);
+		thread.start ();
+	}
+
+	/**
+	 * Running game summaries of one game key played back from the start
+	 * rating.
+	 */
+	private static class PlayBack {
+
+		private String gameKey;
+		private Gate gate;				// null if games of it aren't recorded
+		private Set usernames;			// users with a game summary (or null)
+		private EloRatingSystem elo;
+		private int startRating;
+
+		/** Username -> GameSummary and the game summaries in order. */
+		private Map summaries = new HashMap ();
+		private List gameSummaries = new ArrayList ();
+		private int numOfGames = 0;
+
+		public PlayBack (String gameKey, Gate gate, Set usernames) {
+			this.gameKey = gameKey;
+			this.gate = gate;
+			this.usernames = usernames;
+			this.elo = EloRatingSystem.getInstance (gameKey);
+			this.startRating = ServerProperties.getInstance ().getStartRating (gameKey);
+		}
+
+		/**
+		 * Play the next game.  Like adding a game the game summaries are only
+		 * updated if it has enough players.
+		 *
+		 * @param gameInfo
+		 */
+		public void play (GameInfo gameInfo) {
+			String [] players = JogreUtils.convertToStringArray (gameInfo.getPlayers ());
+			int    [] results = JogreUtils.convertToIntArray (gameInfo.getResults ());
+			if (players.length != results.length)
+				return;
+
+			GameSummary [] gameSummary = new GameSummary [players.length];
+			int [] ratings = new int [players.length];
+			for (int j = 0; j < players.length; j++) {
+				gameSummary [j] = (GameSummary)summaries.get (players [j]);
+				if (gameSummary [j] == null) {
+					gameSummary [j] = new GameSummary (gameKey, players [j], startRating);
+					summaries.put (players [j], gameSummary [j]);
+					gameSummaries.add (gameSummary [j]);
+				}
+				ratings [j] = gameSummary [j].getRating ();
+			}
+
+			if (players.length >= EloRatingSystem.MIN_PLAYERS) {
+				ratings = elo.getNewRatings (ratings, results);
+				for (int j = 0; j < players.length; j++)
+					gameSummary [j].update (results [j], ratings [j]);
+			}
+			numOfGames++;
+		}
+
+		/**
+		 * Add a game summary at the start rating for each user who had one
+		 * but didn't play any of the games.
+		 */
+		public void resetUnplayed () {
+			if (usernames == null)
+				return;
+			Iterator it = usernames.iterator ();
+			while (it.hasNext ()) {
+				String username = (String)it.next ();
+				if (!summaries.containsKey (username)) {
+					GameSummary gameSummary = new GameSummary (gameKey, username, startRating);
+					summaries.put (username, gameSummary);
+					gameSummaries.add (gameSummary);
+				}
+			}
+			usernames = null;
+		}
+	}
+
+	/**
+	 * Controls adding games of one game key while it is recalculated.  It
+	 * is held while the game infos are first read and while the game key is
+	 * saved, and records the games added in between.
+	 */
+	private static class Gate {
+
+		private boolean held = false;
+		private int adding = 0;
+		private List recorded = null;	// null if not recalculating
+
+		/**
+		 * Wait until games can be added.
+		 */
+		public synchronized void startAdding () throws ServerDataException {
+			while (held)
+				waitForChange ();
+			adding++;
+		}
+
+		/**
+		 * A game has been added (null if adding it failed).
+		 */
+		public synchronized void endAdding (GameInfo gameInfo) {
+			adding--;
+			if (gameInfo != null && recorded != null)
+				recorded.add (gameInfo);
+			notifyAll ();
+		}
+
+		/**
+		 * Wait for other recalculations and games being added and then hold
+		 * it and start recording.
+		 */
+		public synchronized void startRecording () throws ServerDataException {
+			while (recorded != null)
+				waitForChange ();
+			recorded = new ArrayList ();
+			held = true;
+			try {
+				while (adding > 0)
+					waitForChange ();
+			}
+			catch (ServerDataException sdEx) {
+				endRecording ();
+				throw sdEx;
+			}
+		}
+
+		/**
+		 * Let games be added again.
+		 */
+		public synchronized void release () {
+			held = false;
+			notifyAll ();
+		}
+
+		/**
+		 * Wait for games being added and hold it again.
+		 *
+		 * @return  Games added since recording started.
+		 */
+		public synchronized List hold () throws ServerDataException {
+			held = true;
+			while (adding > 0)
+				waitForChange ();
+			return new ArrayList (recorded);
+		}
+
+		/**
+		 * Stop recording and let games be added.
+		 */
+		public synchronized void endRecording () {
+			recorded = null;
+			held = false;
+			notifyAll ();
+		}
+
+		private void waitForChange () throws ServerDataException {
+			try {
+				wait ();
+			}
+			catch (InterruptedException e) {
+				throw new ServerDataException ("Interrupted waiting to add game");
+			}
+		}
+	}
+}
@@ -19,7 +19,9 @@
  */
 package org.jogre.server;
 
+import java.io.IOException;
 import java.net.Socket;
+import java.util.LinkedList;
 import java.util.Vector;
 
 import nanoxml.XMLElement;
@@ -42,11 +44,16 @@ import org.jogre.common.playerstate.PlayerStateGameStarted;
 import org.jogre.common.util.JogreLogger;
 import org.jogre.server.controllers.ServerControllerList;
 import org.jogre.server.data.ServerDataException;
+import org.jogre.server.nio.NIOConnection;
 
 /**
  * <p>Every time a client connections to a JogreServer this class (which extends
  * Thread) is run.  This ensures that a JogreServer is multi-threaded.</p>
  *
+ * <p>If the server is using the non-blocking transport then this class is
+ * not started as a thread - instead it is handed each line as it arrives
+ * by an NIOConnection and writes its messages back through it.</p>
+ *
  * @author  Bob Marks
  * @version Beta 0.3
  * @see org.jogre.server.JogreServer
@@ -80,6 +87,30 @@ public class ServerConnectionThread extends AbstractConnectionThread
 	
 	private boolean isAdministrator = false;
 	
+	/** Non-blocking connection (null if this thread owns a socket). */
+	private NIOConnection nioConnection = null;
+	
+	/** Messages waiting to be written to the client. */
+	private OutboundQueue outQueue;
+	
+	/** Held in place of a message once the connection has closed. */
+	private static final Object CLEANUP = new Object ();
+	
+	/** Lock for the message fields below. */
+	private Object tableMessageLock = new Object ();
+	
+	/** Number of table messages posted which haven't been parsed yet. */
+	private int numOfPendingTableMessages = 0;
+	
+	/** Table number of the pending table messages. */
+	private int pendingTableNum = -1;
+	
+	/** Messages (and CLEANUP) which haven't been parsed or posted yet, in order. */
+	private LinkedList heldMessages = new LinkedList ();
+	
+	/** True while a thread is parsing / posting the held messages. */
+	private boolean parsingHeldMessages = false;
+	
 	/**
 	 * Constructor which takes a socket connection and a link to the server.
 	 *
@@ -88,6 +119,41 @@ public class ServerConnectionThread extends AbstractConnectionThread
 	public ServerConnectionThread (Socket clientSocket) {
 		super (clientSocket);
 
+		this.outQueue = createOutboundQueue ();
+		setUpLinks ();
+	}
+
+	/**
+	 * Constructor which takes a non-blocking connection.  In this case the
+	 * thread is never started.
+	 *
+	 * @param nioConnection     Non-blocking client connection.
+	 */
+	public ServerConnectionThread (NIOConnection nioConnection) {
+		super (null);
+
+		this.nioConnection = nioConnection;
+		this.outQueue = nioConnection.getOutboundQueue ();
+		setUpLinks ();
+	}
+
+	/**
+	 * Create a queue for the messages waiting to be written to a client
+	 * using the limits in the server properties.
+	 *
+	 * @return
+	 */
+	public static OutboundQueue createOutboundQueue () {
+		ServerProperties serverProps = ServerProperties.getInstance();
+		return new OutboundQueue (serverProps.getOutQueueSize(),
+		                          serverProps.getOutQueueBytes(),
+		                          serverProps.getSlowConsumerPolicy());
+	}
+
+	/**
+	 * Set up links to the server.
+	 */
+	private void setUpLinks () {
 		// Get link to the server (singleton) and the various parsers
 		this.server       = JogreServer.getInstance();
 		this.controllers  = server.getControllers();
@@ -127,27 +193,146 @@ public class ServerConnectionThread extends AbstractConnectionThread
 	/**
 	 * Implementation of the parse method on the server side.  This method
 	 * recieves XML communication from a client.
+	 * 
+	 * <p>Messages from a connection are parsed in the order they arrived.  A
+	 * game message (or a message for a different table) which arrives while
+	 * table messages from this connection are still waiting is held and
+	 * parsed by the thread which parses the last of them, so the calling
+	 * thread (which may be serving other connections) never waits.</p>
 	 *
 	 * @see org.jogre.common.AbstractConnectionThread#parse (XMLElement element)
 	 */
 	public void parse (XMLElement message) throws TransmissionException {
-	    if (message != null) {
-	    	// Retrieve table number 
-	    	String sTableNum = message.getStringAttribute (CommTableMessage.XML_ATT_TABLE_NUM); 
-			
-			// If message contains a "table" attribute then delegate to a table message
-			if (sTableNum == null) {				
-				// Parse game message
-	            controllers.getGameController().parseGameMessage (this, message);
+	    if (message != null)
+	    	hold (message);
+	}
+
+	/**
+	 * Hold a message (or CLEANUP) and parse the held messages unless another
+	 * thread is already parsing them.
+	 * 
+	 * @param message
+	 */
+	private void hold (Object message) {
+		synchronized (tableMessageLock) {
+			heldMessages.addLast (message);
+			if (parsingHeldMessages)
+				return;
+			parsingHeldMessages = true;
+		}
+		parseHeldMessages ();
+	}
+
+	/**
+	 * Parse / post the held messages in order until there are none or the
+	 * next one has to wait for table messages.
+	 */
+	private void parseHeldMessages () {
+		boolean finished = false;
+		try {
+			Object message;
+			while ((message = nextHeldMessage ()) != null) {
+				try {
+					if (message == CLEANUP)
+						removeUser ();
+					else
+						parseMessage ((XMLElement)message);
+				}
+				catch (Exception genEx) {
+					logger.error ("parseHeldMessages", "General Exception: ");
+					logger.stacktrace (genEx);
+				}
+			}
+			finished = true;
+		}
+		finally {
+			// Let the next message carry on parsing if this thread couldn't
+			if (!finished) {
+				synchronized (tableMessageLock) {
+					parsingHeldMessages = false;
+				}
 			}
-	        else {
-	            int tableNum = Integer.parseInt (sTableNum);
-	            controllers.getTableController().parseTableMessage (this, message, tableNum);
-	        }
-	        
-	        // Send a copy to the administrator thread if it is listening.
-			sendGameMessageToAdmin (message, true);
-	    }
+		}
+	}
+
+	/**
+	 * Remove and return the next held message if it can be parsed now.  A
+	 * message with a table number which isn't a number is dropped.  If there
+	 * isn't one this thread stops parsing and null is returned.
+	 * 
+	 * @return   Held message, CLEANUP or null.
+	 */
+	private Object nextHeldMessage () {
+		synchronized (tableMessageLock) {
+			while (!heldMessages.isEmpty ()) {
+				Object message = heldMessages.getFirst ();
+				try {
+					if (!startMessage (message))
+						break;
+					return heldMessages.removeFirst ();
+				}
+				catch (NumberFormatException nfEx) {
+					heldMessages.removeFirst ();
+					logger.error ("nextHeldMessage", "Dropping message with invalid table number: " + message);
+				}
+			}
+			parsingHeldMessages = false;
+			return null;
+		}
+	}
+
+	/**
+	 * Return true if a held message can be parsed now (and count it if it
+	 * is a table message).  Table messages only wait for pending messages
+	 * for a different table, anything else waits for every table message.
+	 * Must be called with the tableMessageLock.
+	 * 
+	 * @param message   Held message or CLEANUP.
+	 * @return
+	 */
+	private boolean startMessage (Object message) {
+		int tableNum = getTableNum (message);
+		if (tableNum == -1)
+			return numOfPendingTableMessages == 0;
+
+		if (numOfPendingTableMessages > 0 && pendingTableNum != tableNum)
+			return false;
+		pendingTableNum = tableNum;
+		numOfPendingTableMessages++;
+		return true;
+	}
+
+	/**
+	 * Return the table number of a message (-1 if it isn't a table message).
+	 */
+	private static int getTableNum (Object message) {
+		if (message == CLEANUP)
+			return -1;
+		String sTableNum = ((XMLElement)message).getStringAttribute (CommTableMessage.XML_ATT_TABLE_NUM);
+		return sTableNum == null ? -1 : Integer.parseInt (sTableNum);
+	}
+
+	/**
+	 * Parse a game message or post a table message to the mailbox of its
+	 * table.
+	 * 
+	 * @param message
+	 * @throws TransmissionException
+	 */
+	private void parseMessage (XMLElement message) throws TransmissionException {
+		int tableNum = getTableNum (message);
+
+		// If message contains a "table" attribute then delegate to a table message
+		if (tableNum == -1)
+			controllers.getGameController().parseGameMessage (this, message);
+		else if (!controllers.getTableController().postTableMessage (this, message, tableNum)) {
+			synchronized (tableMessageLock) {
+				numOfPendingTableMessages--;		// table doesn't exist
+			}
+		}
+
+		// Send a copy to the administrator thread if it is listening.
+		sendGameMessageToAdmin (message, true);
 	}
 
 	/**
@@ -158,12 +343,24 @@ public class ServerConnectionThread extends AbstractConnectionThread
 	 * @param sendCopyToAdmin   If this is true then a copy is sent to the administrator.
 	 */
 	protected void send (ITransmittable transObject, boolean sendCopyToAdmin) {
-		super.send (transObject);
+		send (new EncodedMessage (transObject), sendCopyToAdmin);
+	}	
+	
+	/**
+	 * Send a message which has already been encoded.  This is used when the
+	 * same message goes to a number of clients.
+	 *
+	 * @param message           Encoded message.
+	 * @param sendCopyToAdmin   If this is true then a copy is sent to the administrator.
+	 */
+	protected void send (EncodedMessage message, boolean sendCopyToAdmin) {
+		byte [] line = binaryProtocol ? message.getBinaryBytes() : message.getBytes();
+		write (line, message.getElement());
 		
 		// Send to administrator if the administrator is listening.
 		if (sendCopyToAdmin) 			
-			sendGameMessageToAdmin (transObject.flatten(), false);
-	}	
+			sendGameMessageToAdmin (message.getElement(), false);
+	}
 	
 	/**
 	 * Send game message to administration connection.  The game message will 
@@ -200,6 +397,131 @@ public class ServerConnectionThread extends AbstractConnectionThread
 		}
 	}
 	
+	/**
+	 * Write a message to the client.
+	 *
+	 * @see org.jogre.common.AbstractConnectionThread#write(java.lang.String)
+	 */
+	protected void write (String message) {
+		write ((message + "\n").getBytes(), null);
+	}
+
+	/**
+	 * Write an encoded message to the client.
+	 *
+	 * @see org.jogre.common.AbstractConnectionThread#write(byte[])
+	 */
+	protected void write (byte [] line) {
+		write (line, null);
+	}
+
+	/**
+	 * Queue an encoded message for the client.  The message is written by
+	 * the non-blocking connection if there is one, otherwise by a
+	 * ConnectionWriter so the sending thread never waits for the client.
+	 *
+	 * @param line      Encoded message.
+	 * @param element   Message as XML (used if the out queue is full).
+	 */
+	private void write (byte [] line, XMLElement element) {
+		if (nioConnection != null) {
+			nioConnection.write (line, element);
+			return;
+		}
+
+		int result = outQueue.offer (line, element);
+		if (result == OutboundQueue.OVERFLOW)
+			disconnectSlowConsumer ();
+		else if (result == OutboundQueue.QUEUED && outQueue.startWriting ())
+			server.getThreadStarter().start (new ConnectionWriter (this, outQueue), getName() + "-writer");
+	}
+
+	/**
+	 * Write a line straight to the socket (called by the ConnectionWriter).
+	 *
+	 * @param line   Encoded message.
+	 */
+	void writeLine (byte [] line) {
+		super.write (line);
+	}
+
+	/**
+	 * Disconnect a client which can't keep up with its messages.  Closing
+	 * the socket stops the run loop which then cleans up.
+	 */
+	private void disconnectSlowConsumer () {
+		logSlowConsumer ();
+
+		outQueue.close ();
+		stopLoop ();
+		try {
+			if (socket != null)
+				socket.close ();
+		}
+		catch (IOException ioEx) {}
+	}
+
+	/**
+	 * Log that the client is too slow with the metrics of its out queue
+	 * (called before the queue is closed).
+	 */
+	public void logSlowConsumer () {
+		logger.log ("Jogre Games Server: client [" + username + "] is too slow - disconnecting (" +
+		            getQueueDepth () + " messages / " + getBytesPending () + " bytes queued, " +
+		            getNumOfDroppedMessages () + " dropped)");
+	}
+
+	/**
+	 * Return the number of messages waiting to be written to the client.
+	 *
+	 * @return
+	 */
+	public int getQueueDepth () {
+		return outQueue.getDepth ();
+	}
+
+	/**
+	 * Return the number of bytes waiting to be written to the client.
+	 *
+	 * @return
+	 */
+	public int getBytesPending () {
+		return outQueue.getBytesPending ();
+	}
+
+	/**
+	 * Return the number of messages to the client which have been dropped
+	 * or coalesced because it was too slow.
+	 *
+	 * @return
+	 */
+	public int getNumOfDroppedMessages () {
+		return outQueue.getNumOfDropped () + outQueue.getNumOfCoalesced ();
+	}
+
+	/**
+	 * Called once a table message from this connection has been parsed.  If
+	 * it was the last one the messages held behind it are parsed.
+	 */
+	public void tableMessageDone () {
+		synchronized (tableMessageLock) {
+			numOfPendingTableMessages--;
+			if (numOfPendingTableMessages > 0 || parsingHeldMessages || heldMessages.isEmpty ())
+				return;
+			parsingHeldMessages = true;
+		}
+		parseHeldMessages ();
+	}
+
+	/**
+	 * Called by the non-blocking transport once the connection to the
+	 * client has closed.
+	 */
+	public void channelClosed () {
+		connected = false;
+		cleanup ();
+	}
+
 	/**
 	 * Convience method to send a message - assumes that message is also being
 	 * sent to the admin client.
@@ -261,6 +583,14 @@ public class ServerConnectionThread extends AbstractConnectionThread
 	 * @see org.jogre.common.AbstractConnectionThread#cleanup()
 	 */
 	public void cleanup () {
+		// Clean up once the messages which arrived before have been parsed
+		hold (CLEANUP);
+	}
+
+	/**
+	 * Remove the user from the server.
+	 */
+	protected void removeUser () {
 		logger.debug ("cleanup", "Cleaning up user details");
 
 		// Remove connection from the connection list (game & admin users)
@@ -280,11 +610,14 @@ public class ServerConnectionThread extends AbstractConnectionThread
 
 			// Inform all connected clients that user has disconnected from game
 			CommDisconnect commDisconnect = new CommDisconnect (username);
-			broadcast (commDisconnect);
+			broadcastDelta (commDisconnect);
 			sendDataMessageToAdmin (commDisconnect);
 
 			// Log message
 			logger.log ("Jogre Games Server: client [" + username + "] has logged off");
+			if (getNumOfDroppedMessages () > 0)
+				logger.log ("Jogre Games Server: client [" + username + "] was too slow for " +
+				            getNumOfDroppedMessages () + " messages (dropped / coalesced)");
 
 		    // Update snapshot
 		    try {
@@ -330,11 +663,12 @@ public class ServerConnectionThread extends AbstractConnectionThread
 		Table table = tableList.getTable(tableNum);
 		if (table != null) {
 			Vector players = table.getPlayerList().getPlayers();
+			EncodedMessage message = new EncodedMessage (transObject);
 
 			for (int i = 0; i < players.size(); i++) {
 				Player player = (Player)players.get(i);
 				String username = player.getPlayerName();
-				transmit (username, transObject);
+				transmit (username, message);
 			}
 		}
 	}
@@ -367,6 +701,7 @@ public class ServerConnectionThread extends AbstractConnectionThread
 	    Table table = tableList.getTable(tableNum);
 		if (table != null) {
 		    Vector players = table.getPlayerList().getPlayers();
+		    EncodedMessage message = new EncodedMessage (transObject);
 
 		    // Loop throught the various players and transmit the message
 			for (int i = 0; i < players.size(); i++) {
@@ -376,10 +711,10 @@ public class ServerConnectionThread extends AbstractConnectionThread
 				if (!username.equals(omitUser)) {
 				    if (gameInProgress) {
 				        if (player.getState() instanceof PlayerStateGameStarted)
-				            transmit (username, transObject);
+				            transmit (username, message);
 				    }
 				    else
-				        transmit (username, transObject);
+				        transmit (username, message);
 				}
 			}
 		}
@@ -393,8 +728,9 @@ public class ServerConnectionThread extends AbstractConnectionThread
 	public void broadcast (ITransmittable transmittableObject) {
 		// retrieve all the clients
 		Vector users = userList.getUsers();
+		EncodedMessage message = new EncodedMessage (transmittableObject);
 		for (int i = 0; i < users.size(); i++) {
-			transmit((String)users.get(i), transmittableObject);
+			transmit((String)users.get(i), message);
 		}
 	}
 
@@ -407,10 +743,63 @@ public class ServerConnectionThread extends AbstractConnectionThread
 	public void broadcast (String omitUser, ITransmittable transmittableObject) {
 		// retrieve all the clients
 		Vector users = userList.getUsers();
+		EncodedMessage message = new EncodedMessage (transmittableObject);
 		for (int i = 0; i < users.size(); i++) {
 			String currentUsername = (String)users.get(i);
 			if (!omitUser.equals(currentUsername))
-				transmit(currentUsername, transmittableObject);
+				transmit(currentUsername, message);
+		}
+	}
+
+	/**
+	 * Broadcast a change to the user / table lists (a delta) to all the
+	 * clients.  Each delta gets the next sequence number of the game and is
+	 * queued for every client while holding the game lock so all clients
+	 * see the deltas in sequence order.  A client which sees a gap asks for
+	 * the whole game again (see sendGame ()).
+	 *
+	 * @param delta   Change to broadcast.
+	 */
+	public void broadcastDelta (ITransmittable delta) {
+		broadcastDelta (null, null, delta);
+	}
+
+	/**
+	 * Broadcast a delta but send a different message with the same sequence
+	 * number to one user (e.g. the user joining a table gets the whole
+	 * player list).
+	 *
+	 * @param username    User to send userDelta to.
+	 * @param userDelta   Message for this user.
+	 * @param delta       Message for everyone else.
+	 */
+	public void broadcastDelta (String username, ITransmittable userDelta, ITransmittable delta) {
+		synchronized (game) {
+			int sequence = game.nextSequence();
+			EncodedMessage message = new EncodedMessage (delta, sequence);
+			EncodedMessage userMessage = message;
+			if (userDelta != null)
+				userMessage = new EncodedMessage (userDelta, sequence);
+
+			Vector users = userList.getUsers();
+			for (int i = 0; i < users.size(); i++) {
+				String currentUsername = (String)users.get(i);
+				if (currentUsername.equals(username))
+					transmit (currentUsername, userMessage);
+				else
+					transmit (currentUsername, message);
+			}
+		}
+	}
+
+	/**
+	 * Send the whole game (user and table lists) to this client.  This is
+	 * done with the game lock held so that the sequence number of the game
+	 * matches the deltas which follow it.
+	 */
+	public void sendGame () {
+		synchronized (game) {
+			send (game);
 		}
 	}
 
@@ -427,6 +816,19 @@ public class ServerConnectionThread extends AbstractConnectionThread
 		conn.send (transObject);
 	}
 
+	/**
+	 * Send an encoded message to a user.
+	 *
+	 * @param username     Username to send message to.
+	 * @param message      Encoded message.
+	 */
+	public void transmit (String username, EncodedMessage message) {
+		ServerConnectionThread conn = connections.getServerConnectionThread (getGameID(), username);
+
+		// Send the message to the user
+		conn.send (message, true);
+	}
+
 	/**
 	 * Send a ITransmittable object to user connected to this thread only.
 	 *
@@ -19,7 +19,13 @@
  */
 package org.jogre.server;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Observable;
+import java.util.Observer;
 
 import nanoxml.XMLElement;
 
@@ -36,9 +42,12 @@ import org.jogre.common.UserList;
 import org.jogre.common.comm.CommControllerProperty;
 import org.jogre.common.comm.CommError;
 import org.jogre.common.comm.CommGameOver;
+import org.jogre.common.util.JogreLogger;
 import org.jogre.common.util.JogreUtils;
 import org.jogre.server.data.GameInfo;
 import org.jogre.server.data.ServerDataException;
+import org.jogre.server.data.archive.GameArchive;
+import org.jogre.server.data.archive.GameRecord;
 
 /**
  * New class for creating server side controller which is adapter in style i.e.
@@ -72,6 +81,14 @@ public abstract class ServerController {
      */
     protected UserList userList = null;
 
+    /** Logging. */
+    private JogreLogger logger = new JogreLogger (this.getClass());
+
+    /**
+     * Moves of the games being played (table number -> GameRecord).
+     */
+    private Map gameRecords = Collections.synchronizedMap (new HashMap ());
+
     /**
      * Method which is called when a create game is created.
      *
@@ -144,6 +161,15 @@ public abstract class ServerController {
         if (game != null) {
             this.userList = game.getUserList();
             this.tableList = game.getTableList();
+
+            // Forget the moves of tables which are removed without a game over
+            this.tableList.addObserver (new Observer () {
+                public void update (Observable observable, Object arg) {
+                    String update = (String)arg;
+                    if (update.startsWith ("-T"))
+                        resetGameRecord (Integer.parseInt (update.substring (3)));
+                }
+            });
         }
     }
 
@@ -374,6 +400,56 @@ public abstract class ServerController {
         return false;
     }
 
+	/**
+	 * Forget the moves recorded at a table (called when a game starts and
+	 * when the table is removed).
+	 *
+	 * @param tableNum  Table number.
+	 */
+	public void resetGameRecord (int tableNum) {
+		gameRecords.remove (new Integer (tableNum));
+	}
+
+	/**
+	 * Record a move of the game at a table.  When the game is over the moves
+	 * are written to the game archive and the game info history refers to
+	 * them (unless the game sets its own history).
+	 *
+	 * @param tableNum  Table number.
+	 * @param move      Move packed into an int by the game.
+	 */
+	protected void recordMove (int tableNum, int move) {
+		Integer key = new Integer (tableNum);
+		GameRecord gameRecord = (GameRecord)gameRecords.get (key);
+		if (gameRecord == null) {
+			gameRecord = new GameRecord (gameId);
+			gameRecords.put (key, gameRecord);
+		}
+		gameRecord.addMove (move);
+	}
+
+	/**
+	 * Write the moves recorded at a table to the game archive.
+	 *
+	 * @param tableNum  Table number.
+	 * @return          History which refers to the record or null if there
+	 *                  were no moves or it couldn't be written.
+	 */
+	private String archiveGameRecord (int tableNum) {
+		GameRecord gameRecord = (GameRecord)gameRecords.remove (new Integer (tableNum));
+		GameArchive gameArchive = server.getGameArchive ();
+		if (gameRecord == null || gameArchive == null)
+			return null;
+
+		try {
+			gameArchive.append (gameRecord);
+			return gameRecord.getHistory ();
+		} catch (IOException ioEx) {
+			logger.error ("archiveGameRecord", "Unable to archive game: " + ioEx.getMessage ());
+			return null;
+		}
+	}
+
 	/**
 	 * Method for declaring that a game is over which takes
 	 * indivual players and their results.
@@ -396,6 +472,11 @@ public abstract class ServerController {
 			//  Retrieve table object
 			Table table = getTable (tableNum);
 
+			// Archive the recorded moves
+			String recordHistory = archiveGameRecord (tableNum);
+			if (history == null)
+				history = recordHistory;
+
 			// Create game info object.
 			GameInfo gameInfo = new GameInfo (
 					gameId, 						// Game key (e.g. chess)
@@ -407,8 +488,8 @@ public abstract class ServerController {
 					history							// Optional history
 			);
 
-			// Add game info object
-			GameOver gameOver = server.getServerData().addGame (gameInfo, true);
+			// Add game info object (waits if its ratings are being recalculated)
+			GameOver gameOver = RatingRecalculator.addGame (server.getServerData(), gameInfo, true);
 
 			// Declare game over
 			table.gameOver();
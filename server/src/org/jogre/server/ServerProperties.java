@@ -86,16 +86,30 @@ public class ServerProperties implements IJogre, ITransmittable {
     public static final String [] VALIDATION_ARRAY = {
     	XML_ATT_VAL_USER_VALIATION_NONE, XML_ATT_VAL_USER_VALIATION_USER, XML_ATT_VAL_USER_VALIATION_PASS};
 
+    // Server transport
+    public static final String XML_ATT_VAL_TRANSPORT_BLOCKING = "blocking";
+    public static final String XML_ATT_VAL_TRANSPORT_NIO      = "nio";
+
+    // Connection threads (blocking transport)
+    public static final String XML_ATT_VAL_THREADS_PLATFORM = "platform";
+    public static final String XML_ATT_VAL_THREADS_VIRTUAL  = "virtual";
+
+    // Policies used when a client can't keep up with its messages
+    public static final String DEFAULT_SLOW_CONSUMER_POLICY = "drop_chat,coalesce,disconnect";
+
     // Data selection
     public static final String XML_ATT_VAL_XML = "xml";
     public static final String XML_ATT_VAL_DATABASE = "database";
 
     private static final File SERVER_FILE = new File (DEFAULT_FILENAME);
 
-	private static ServerProperties instance = null;
+	private static volatile ServerProperties instance = null;
 
 	// Document
 	private Document doc;
+
+	// Values read from the document (null when the document has changed)
+	private volatile ServerPropertiesSnapshot snapshot = null;
 	
 	private String jogreHomeDir;
 	
@@ -174,14 +188,18 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @param elm   XMLElement containing server tree.
 	 */
 	public static void setUpFromString (String string) {
-		instance = new ServerProperties (string);		// read from element
+		ServerProperties serverProperties = new ServerProperties (string);		// read from element
+		serverProperties.getSnapshot ();
+		instance = serverProperties;
 	}
 
 	/**
 	 * Setup server properties from the server file (used in JogreServer).
 	 */
 	public static void setUpFromFile () {
-		instance = new ServerProperties ();
+		ServerProperties serverProperties = new ServerProperties ();
+		serverProperties.getSnapshot ();
+		instance = serverProperties;
 	}
 
 	/**
@@ -207,6 +225,30 @@ public class ServerProperties implements IJogre, ITransmittable {
 	public Document getDoc () {
 		return this.doc;
 	}
+
+	/**
+	 * Return the values of the properties which are read while the server
+	 * is running.  This is read from the document once and then again after
+	 * the document is changed.
+	 *
+	 * @return   Snapshot of the server properties.
+	 */
+	public ServerPropertiesSnapshot getSnapshot () {
+		ServerPropertiesSnapshot current = snapshot;
+		if (current == null) {
+			current = new ServerPropertiesSnapshot (doc);
+			snapshot = current;
+		}
+		return current;
+	}
+
+	/**
+	 * Read the snapshot again on its next use.  Must be called if the
+	 * document is changed directly (e.g. using getCustomElms ()).
+	 */
+	public void refresh () {
+		snapshot = null;
+	}
 	
 	/**
 	 * Return the server port.
@@ -214,7 +256,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public int getServerPort () {
-		return getIntAttribute ("server_properties/configuration/server/@port", DEFAULT_PORT);
+		return getSnapshot ().getServerPort ();
 	}
 
 	/**
@@ -226,13 +268,155 @@ public class ServerProperties implements IJogre, ITransmittable {
 		setAttribute ("server_properties/configuration/server/@port", portNum);
 	}
 
+	/**
+	 * Return the server transport (blocking or nio).  The blocking transport
+	 * creates a thread per client whereas the non-blocking transport uses a
+	 * small pool of I/O threads for all the clients.
+	 *
+	 * @return
+	 */
+	public String getTransport () {
+		return getSnapshot ().getTransport ();
+	}
+
+	/**
+	 * Set the server transport.
+	 *
+	 * @param transport      Transport (blocking or nio).
+	 */
+	public void setTransport (String transport) {
+		setAttribute ("server_properties/configuration/server/@transport", transport);
+	}
+
+	/**
+	 * Return true if the server uses the non-blocking transport.
+	 *
+	 * @return
+	 */
+	public boolean isTransportNIO () {
+		return XML_ATT_VAL_TRANSPORT_NIO.equals (getTransport ());
+	}
+
+	/**
+	 * Return the number of I/O threads (non-blocking transport only).
+	 *
+	 * @return
+	 */
+	public int getNumOfIOThreads () {
+		return getSnapshot ().getNumOfIOThreads ();
+	}
+
+	/**
+	 * Set the number of I/O threads.
+	 *
+	 * @param ioThreads
+	 */
+	public void setNumOfIOThreads (int ioThreads) {
+		setAttribute ("server_properties/configuration/server/@io_threads", ioThreads);
+	}
+
+	/**
+	 * Return the number of worker threads which parse table messages.  If
+	 * this isn't set then one thread per processor is used.
+	 *
+	 * @return
+	 */
+	public int getNumOfTableThreads () {
+		return getSnapshot ().getNumOfTableThreads ();
+	}
+
+	/**
+	 * Set the number of table worker threads.
+	 *
+	 * @param tableThreads
+	 */
+	public void setNumOfTableThreads (int tableThreads) {
+		setAttribute ("server_properties/configuration/server/@table_threads", tableThreads);
+	}
+
+	/**
+	 * Return the maximum number of messages which can wait to be sent to
+	 * a client.
+	 *
+	 * @return
+	 */
+	public int getOutQueueSize () {
+		return getSnapshot ().getOutQueueSize ();
+	}
+
+	/**
+	 * Set the maximum number of messages waiting for a client.
+	 *
+	 * @param outQueueSize
+	 */
+	public void setOutQueueSize (int outQueueSize) {
+		setAttribute ("server_properties/configuration/server/@out_queue_size", outQueueSize);
+	}
+
+	/**
+	 * Return the maximum number of bytes which can wait to be sent to a
+	 * client.
+	 *
+	 * @return
+	 */
+	public int getOutQueueBytes () {
+		return getSnapshot ().getOutQueueBytes ();
+	}
+
+	/**
+	 * Set the maximum number of bytes waiting for a client.
+	 *
+	 * @param outQueueBytes
+	 */
+	public void setOutQueueBytes (int outQueueBytes) {
+		setAttribute ("server_properties/configuration/server/@out_queue_bytes", outQueueBytes);
+	}
+
+	/**
+	 * Return the comma separated policies which are used when a client is
+	 * too slow to keep up with its messages (see OutboundQueue).
+	 *
+	 * @return
+	 */
+	public String getSlowConsumerPolicy () {
+		return getSnapshot ().getSlowConsumerPolicy ();
+	}
+
+	/**
+	 * Set the slow consumer policies.
+	 *
+	 * @param policy
+	 */
+	public void setSlowConsumerPolicy (String policy) {
+		setAttribute ("server_properties/configuration/server/@slow_consumer", policy);
+	}
+
+	/**
+	 * Return the type of thread which the blocking transport runs each
+	 * connection on (platform or virtual).
+	 *
+	 * @return
+	 */
+	public String getThreads () {
+		return getSnapshot ().getThreads ();
+	}
+
+	/**
+	 * Set the type of connection threads.
+	 *
+	 * @param threads        Thread type (platform or virtual).
+	 */
+	public void setThreads (String threads) {
+		setAttribute ("server_properties/configuration/server/@threads", threads);
+	}
+
 	/**
 	 * Return the maximum number of users.
 	 *
 	 * @return
 	 */
 	public int getMaxNumOfUsers () {
-		return getIntAttribute ("server_properties/configuration/server/@max_users", DEFAULT_MAX_NUM_OF_USERS);
+		return getSnapshot ().getMaxNumOfUsers ();
 	}
 
 	/**
@@ -250,7 +434,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return maximum number of tables.
 	 */
 	public int getMaxNumOfTables () {
-		return getIntAttribute ("server_properties/configuration/server/@max_tables", DEFAULT_MAX_NUM_OF_TABLES);
+		return getSnapshot ().getMaxNumOfTables ();
 	}
 
 	/**
@@ -268,7 +452,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public int getMaxNumOfTablesPerUser() {
-		return getIntAttribute ("server_properties/configuration/server/@max_tables_per_user", DEFAULT_MAX_NUM_OF_TABLES_PER_USER);
+		return getSnapshot ().getMaxNumOfTablesPerUser ();
 	}
 	
 	/**
@@ -286,7 +470,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public String getUserValidation () {
-		return getStringAttribute ("server_properties/configuration/server/@user_validation");
+		return getSnapshot ().getUserValidation ();
 	}
 
 	/**
@@ -304,7 +488,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public String getAdminUsername () {
-		return getStringAttribute ("server_properties/configuration/admin_client/@username");
+		return getSnapshot ().getAdminUsername ();
 	}
 	
 	/**
@@ -322,7 +506,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public String getAdminPassword () {
-		return getStringAttribute ("server_properties/configuration/admin_client/@password");
+		return getSnapshot ().getAdminPassword ();
 	}
 
 	/**
@@ -358,7 +542,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public boolean isReceiveMessages() {
-		return getBooleanAttribute ("server_properties/configuration/admin_client/@receive_messages", ADMIN_RECEIVE_MESSAGES);
+		return getSnapshot ().isReceiveMessages ();
 	}
 	
 	/**
@@ -397,18 +581,7 @@ public class ServerProperties implements IJogre, ITransmittable {
      * @return
      */
     public Vector getCurrentlyHostedGames () {
-    	List supportedGamesElms = doc.selectNodes("/server_properties/supported_games/game[@host='true']");
-	    if (supportedGamesElms != null) {
-	        Vector games = new Vector (supportedGamesElms.size());
-	        for (int i = 0; i < supportedGamesElms.size(); i++) {
-	        	Element elm = (Element)supportedGamesElms.get(i);
-	        	games.add (elm.attributeValue(XML_ATT_ID));
-	    	}
-
-	    	return games;
-	    }
-
-	    return null;
+    	return new Vector (getSnapshot ().getHostedGames ());
     }
 
     /**
@@ -447,6 +620,7 @@ public class ServerProperties implements IJogre, ITransmittable {
     		// Add the eloElm
     		gameElm.add (eloElm);
     	}
+    	refresh ();
     }
 
     /**
@@ -460,6 +634,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 
     	if (gameElm != null && gameEloElm != null) 
     		gameElm.remove(gameEloElm);
+    	refresh ();
     }
 
 	/**
@@ -469,7 +644,8 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public int getMinPlayers (String gameID) {
-		return getIntAttribute("/server_properties/supported_games/game[@id='" + gameID + "']/@minPlayers", DEFAULT_MIN_NUM_OF_PLAYERS);
+		ServerPropertiesSnapshot.GameProperties game = getSnapshot ().getGame (gameID);
+		return game == null ? DEFAULT_MIN_NUM_OF_PLAYERS : game.getMinPlayers ();
 	}
 
 	/**
@@ -489,7 +665,8 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public int getMaxPlayers (String gameID) {	    
-		return getIntAttribute("/server_properties/supported_games/game[@id='" + gameID + "']/@maxPlayers", DEFAULT_MAX_NUM_OF_PLAYERS);
+		ServerPropertiesSnapshot.GameProperties game = getSnapshot ().getGame (gameID);
+		return game == null ? DEFAULT_MAX_NUM_OF_PLAYERS : game.getMaxPlayers ();
 	}
 
 	/**
@@ -509,7 +686,8 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public boolean isGameHosted (String gameID) {
-		return getBooleanAttribute("/server_properties/supported_games/game[@id='" + gameID + "']/@host", true);
+		ServerPropertiesSnapshot.GameProperties game = getSnapshot ().getGame (gameID);
+		return game == null ? true : game.isHosted ();
 	}
 
 	/**
@@ -532,14 +710,8 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @returns The String for the property.
 	*/
 	public String getStringCustomProp (String gameID, String propertyName, String defaultValue) {
-		try {
-			Object obj = doc.selectSingleNode (
-				"/server_properties/supported_games/game[@id='" + gameID + "']/custom[@type='" + propertyName + "']");			
-			if (obj != null)
-				return ((Element)obj).attributeValue(XML_ATT_VALUE);
-		} catch (NullPointerException e) {}
-
-		return defaultValue;
+		ServerPropertiesSnapshot.GameProperties game = getSnapshot ().getGame (gameID);
+		return game == null ? defaultValue : game.getCustomProp (propertyName, defaultValue);
 	}
 
 	/**
@@ -567,6 +739,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 		Element gameElm = getGameElm (gameID);
 		if (gameElm != null)
 			gameElm.add (customElm);
+		refresh ();
 	}
 
 	/**
@@ -582,6 +755,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 		
 		if (gameElm != null && customElm != null)
 			gameElm.remove((Element)customElm);
+		refresh ();
 	}
 	
 	/**
@@ -591,7 +765,8 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return         Starting rating.
 	 */
 	public int getStartRating (String gameID) {
-		return getIntAttribute ("/server_properties/supported_games/game[@id='" + gameID + "']/elo/@startRating", DEFAULT_ELO_START_RATING);
+		ServerPropertiesSnapshot.GameProperties game = getSnapshot ().getGame (gameID);
+		return game == null ? DEFAULT_ELO_START_RATING : game.getStartRating ();
 	}
 
 	/**
@@ -612,7 +787,8 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 *                 "0-2099=32,2100-2399=24,2490-3000=16"
 	 */
 	public String getKFactor (String gameID) {
-		return getStringAttribute ("/server_properties/supported_games/game[@id='" + gameID + "']/elo/@kFactor");
+		ServerPropertiesSnapshot.GameProperties game = getSnapshot ().getGame (gameID);
+		return game == null ? null : game.getKFactor ();
 	}
 
 	/**
@@ -631,7 +807,64 @@ public class ServerProperties implements IJogre, ITransmittable {
 	 * @return
 	 */
 	public String getCurrentServerData () {
-		return getStringAttribute ("server_properties/server_data/@current");
+		return getSnapshot ().getCurrentServerData ();
+	}
+
+	/**
+	 * Return true if game results and snapshots are written on a background
+	 * thread (see WriteBehindServerData).
+	 *
+	 * @return
+	 */
+	public boolean isWriteBehind () {
+		return getSnapshot ().isWriteBehind ();
+	}
+
+	/**
+	 * Return the maximum number of game results which can wait to be
+	 * written before the oldest is dropped.
+	 *
+	 * @return
+	 */
+	public int getWriteBuffer () {
+		return getSnapshot ().getWriteBuffer ();
+	}
+
+	/**
+	 * Return the storage location of the journal.
+	 *
+	 * @return
+	 */
+	public String getJournalLocation () {
+		return getSnapshot ().getJournalLocation ();
+	}
+
+	/**
+	 * Return the time in milliseconds between syncs of the journal to disk.
+	 *
+	 * @return
+	 */
+	public int getJournalSyncInterval () {
+		return getSnapshot ().getJournalSyncInterval ();
+	}
+
+	/**
+	 * Return the storage location of the game record archive.
+	 *
+	 * @return
+	 */
+	public String getArchiveLocation () {
+		return getSnapshot ().getArchiveLocation ();
+	}
+
+	/**
+	 * Return the time in milliseconds between syncs of the game record
+	 * archive to disk.
+	 *
+	 * @return
+	 */
+	public int getArchiveSyncInterval () {
+		return getSnapshot ().getArchiveSyncInterval ();
 	}
 
 	/**
@@ -671,6 +904,35 @@ public class ServerProperties implements IJogre, ITransmittable {
     	return getElement ("server_properties/server_data/database");
     }
 
+    /**
+     * Return the maximum number of database connections in the pool.
+     *
+     * @return
+     */
+    public int getDBPoolMaxActive () {
+    	return getIntAttribute ("server_properties/server_data/database/@pool_max_active", IDatabase.DEFAULT_POOL_MAX_ACTIVE);
+    }
+
+    /**
+     * Return the maximum number of idle database connections kept in the
+     * pool.
+     *
+     * @return
+     */
+    public int getDBPoolMaxIdle () {
+    	return getIntAttribute ("server_properties/server_data/database/@pool_max_idle", IDatabase.DEFAULT_POOL_MAX_IDLE);
+    }
+
+    /**
+     * Return how long (in milliseconds) to wait for a connection when every
+     * connection in the pool is in use before trying again.
+     *
+     * @return
+     */
+    public int getDBPoolTimeToWait () {
+    	return getIntAttribute ("server_properties/server_data/database/@pool_wait", IDatabase.DEFAULT_POOL_TIME_TO_WAIT);
+    }
+
     /**
      * Return the connection element.
      *
@@ -763,7 +1025,7 @@ public class ServerProperties implements IJogre, ITransmittable {
      * @return
      */
     public String getXMLLocation () {
-    	return getStringAttribute ("server_properties/server_data/xml/@location");
+    	return getSnapshot ().getXMLLocation ();
     }
 	
 	/**
@@ -939,6 +1201,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 		newDatabaseConnElement.addAttribute (XML_ATT_PASSWORD, "");
 
 		doc.getRootElement().element(XML_SERVER_DATA).element(XML_DATABASE).add (newDatabaseConnElement);
+		refresh ();
 	}
 
 	/**
@@ -951,6 +1214,7 @@ public class ServerProperties implements IJogre, ITransmittable {
     		"server_properties/server_data/database/connection[@id='" + databaseID + "']");
 		if (dbElm != null)
 			((Element)dbElm).getParent().remove((Element)dbElm);
+		refresh ();
 	}
 
 	/**
@@ -967,6 +1231,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 		newGamesElm.addAttribute (XML_ATT_MAX_PLAYERS, String.valueOf (DEFAULT_MAX_NUM_OF_PLAYERS));
 
 		doc.getRootElement().element(XML_SUPPORTED_GAMES).add (newGamesElm);
+		refresh ();
 	}
 
 	/**
@@ -977,6 +1242,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 	public void deleteGamesElm (String gameID) {
 		Element gameElm = getGameElm(gameID);
 		gameElm.getParent().remove(gameElm);
+		refresh ();
 	}
 
 	/**
@@ -1008,6 +1274,7 @@ public class ServerProperties implements IJogre, ITransmittable {
 		Object obj = doc.selectSingleNode(xpath);
 		if (obj != null && obj instanceof Attribute)
 			((Attribute)obj).setValue(attValue);
+		refresh ();
 	}
 	
 	/**
@@ -1043,19 +1310,6 @@ public class ServerProperties implements IJogre, ITransmittable {
 		return null;
 	}
 	
-	/**
-	 * Little helper method for returning a boolean attribute.
-	 * 
-	 * @param xpath  Xpath to attribute.
-	 * @return       Value or xpath or null if it cant find it.
-	 */
-	private boolean getBooleanAttribute (String xpath, boolean defaultAtt) {
-		Object obj = doc.selectSingleNode (xpath);
-		if (obj != null)
-			return "true".equals(((Attribute)obj).getValue());
-		return defaultAtt;
-	}
-	
 	/**
 	 * Return integer attribute.
 	 * 
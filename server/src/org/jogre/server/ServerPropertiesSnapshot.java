@@ -0,0 +1,269 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILIRTY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.jogre.common.IJogre;
+import org.jogre.server.data.IServerData;
+
+/**
+ * <p>Immutable copy of the values of the server properties which the
+ * server reads while it is running (logons, table creation, game over).
+ * It is read once from the server properties document so the getters
+ * don't evaluate XPath or take a lock.</p>
+ *
+ * <p>ServerProperties creates a new snapshot whenever its document is
+ * changed and a new ServerProperties (with a new snapshot) replaces the
+ * old one when the administrator saves the properties.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public final class ServerPropertiesSnapshot implements IJogre {
+
+	// Configuration
+	private final int     serverPort;
+	private final String  transport;
+	private final int     numOfIOThreads;
+	private final int     numOfTableThreads;
+	private final int     outQueueSize;
+	private final int     outQueueBytes;
+	private final String  slowConsumerPolicy;
+	private final String  threads;
+	private final int     maxNumOfUsers;
+	private final int     maxNumOfTables;
+	private final int     maxNumOfTablesPerUser;
+	private final String  userValidation;
+	private final String  adminUsername;
+	private final String  adminPassword;
+	private final boolean receiveMessages;
+
+	// Server data
+	private final String  currentServerData;
+	private final boolean writeBehind;
+	private final int     writeBuffer;
+	private final String  xmlLocation;
+	private final String  journalLocation;
+	private final int     journalSyncInterval;
+	private final String  archiveLocation;
+	private final int     archiveSyncInterval;
+
+	/** Game id -> GameProperties. */
+	private final Map games;
+
+	/** Ids of games where host is "true". */
+	private final List hostedGames;
+
+	/**
+	 * Read the snapshot from a server properties document.
+	 *
+	 * @param doc   Server properties document (can be null).
+	 */
+	public ServerPropertiesSnapshot (Document doc) {
+		Element root = doc == null ? null : doc.getRootElement ();
+		Element configuration = child (root, "configuration");
+		Element server        = child (configuration, "server");
+		Element adminClient   = child (configuration, "admin_client");
+		Element serverData    = child (root, "server_data");
+
+		serverPort            = getInt (server, "port", DEFAULT_PORT);
+		transport             = getString (server, "transport", ServerProperties.XML_ATT_VAL_TRANSPORT_BLOCKING);
+		numOfIOThreads        = getInt (server, "io_threads", DEFAULT_NUM_OF_IO_THREADS);
+		numOfTableThreads     = getInt (server, "table_threads", Runtime.getRuntime().availableProcessors());
+		outQueueSize          = getInt (server, "out_queue_size", DEFAULT_OUT_QUEUE_SIZE);
+		outQueueBytes         = getInt (server, "out_queue_bytes", DEFAULT_OUT_QUEUE_BYTES);
+		slowConsumerPolicy    = getString (server, "slow_consumer", ServerProperties.DEFAULT_SLOW_CONSUMER_POLICY);
+		threads               = getString (server, "threads", ServerProperties.XML_ATT_VAL_THREADS_PLATFORM);
+		maxNumOfUsers         = getInt (server, "max_users", DEFAULT_MAX_NUM_OF_USERS);
+		maxNumOfTables        = getInt (server, "max_tables", DEFAULT_MAX_NUM_OF_TABLES);
+		maxNumOfTablesPerUser = getInt (server, "max_tables_per_user", DEFAULT_MAX_NUM_OF_TABLES_PER_USER);
+		userValidation        = getString (server, "user_validation", null);
+		adminUsername         = getString (adminClient, "username", null);
+		adminPassword         = getString (adminClient, "password", null);
+		receiveMessages       = getBoolean (adminClient, "receive_messages", ADMIN_RECEIVE_MESSAGES);
+
+		currentServerData     = getString (serverData, "current", null);
+		writeBehind           = getBoolean (serverData, "write_behind", true);
+		writeBuffer           = getInt (serverData, "write_buffer", IServerData.DEFAULT_WRITE_BUFFER);
+		xmlLocation           = getString (child (serverData, "xml"), "location", null);
+		journalLocation       = getString (child (serverData, "journal"), "location", IServerData.JOURNAL_FOLDER);
+		journalSyncInterval   = getInt (child (serverData, "journal"), "sync_interval", IServerData.DEFAULT_JOURNAL_SYNC_INTERVAL);
+		archiveLocation       = getString (child (serverData, "archive"), "location", IServerData.ARCHIVE_FOLDER);
+		archiveSyncInterval   = getInt (child (serverData, "archive"), "sync_interval", IServerData.DEFAULT_ARCHIVE_SYNC_INTERVAL);
+
+		// Supported games
+		Map games = new HashMap ();
+		List hostedGames = new ArrayList ();
+		Element supportedGames = child (root, "supported_games");
+		if (supportedGames != null) {
+			Iterator it = supportedGames.elementIterator ("game");
+			while (it.hasNext ()) {
+				GameProperties game = new GameProperties ((Element)it.next ());
+				if (!games.containsKey (game.getId ()))
+					games.put (game.getId (), game);
+				if (game.host)
+					hostedGames.add (game.getId ());
+			}
+		}
+		this.games = Collections.unmodifiableMap (games);
+		this.hostedGames = Collections.unmodifiableList (hostedGames);
+	}
+
+	public int     getServerPort ()            { return serverPort; }
+	public String  getTransport ()             { return transport; }
+	public int     getNumOfIOThreads ()        { return numOfIOThreads; }
+	public int     getNumOfTableThreads ()     { return numOfTableThreads; }
+	public int     getOutQueueSize ()          { return outQueueSize; }
+	public int     getOutQueueBytes ()         { return outQueueBytes; }
+	public String  getSlowConsumerPolicy ()    { return slowConsumerPolicy; }
+	public String  getThreads ()               { return threads; }
+	public int     getMaxNumOfUsers ()         { return maxNumOfUsers; }
+	public int     getMaxNumOfTables ()        { return maxNumOfTables; }
+	public int     getMaxNumOfTablesPerUser () { return maxNumOfTablesPerUser; }
+	public String  getUserValidation ()        { return userValidation; }
+	public String  getAdminUsername ()         { return adminUsername; }
+	public String  getAdminPassword ()         { return adminPassword; }
+	public boolean isReceiveMessages ()        { return receiveMessages; }
+	public String  getCurrentServerData ()     { return currentServerData; }
+	public boolean isWriteBehind ()            { return writeBehind; }
+	public int     getWriteBuffer ()           { return writeBuffer; }
+	public String  getXMLLocation ()           { return xmlLocation; }
+	public String  getJournalLocation ()       { return journalLocation; }
+	public int     getJournalSyncInterval ()   { return journalSyncInterval; }
+	public String  getArchiveLocation ()       { return archiveLocation; }
+	public int     getArchiveSyncInterval ()   { return archiveSyncInterval; }
+
+	/**
+	 * Return the ids of the games which are hosted.
+	 *
+	 * @return   Unmodifiable list of Strings.
+	 */
+	public List getHostedGames () {
+		return hostedGames;
+	}
+
+	/**
+	 * Return the ids of the supported games.
+	 *
+	 * @return   Unmodifiable set of Strings.
+	 */
+	public Set getGameIds () {
+		return games.keySet ();
+	}
+
+	/**
+	 * Return the properties of a game.
+	 *
+	 * @param gameId   Game id e.g. "chess".
+	 * @return         Properties or null if the game isn't supported.
+	 */
+	public GameProperties getGame (String gameId) {
+		return (GameProperties)games.get (gameId);
+	}
+
+	/**
+	 * Return a child element or null.
+	 */
+	private static Element child (Element parent, String name) {
+		return parent == null ? null : parent.element (name);
+	}
+
+	private static String getString (Element elm, String name, String defaultValue) {
+		String value = elm == null ? null : elm.attributeValue (name);
+		return value == null ? defaultValue : value;
+	}
+
+	private static int getInt (Element elm, String name, int defaultValue) {
+		String value = getString (elm, name, null);
+		return value == null ? defaultValue : Integer.parseInt (value);
+	}
+
+	private static boolean getBoolean (Element elm, String name, boolean defaultValue) {
+		String value = getString (elm, name, null);
+		return value == null ? defaultValue : "true".equals (value);
+	}
+
+	/**
+	 * Properties of one supported game.
+	 */
+	public static final class GameProperties {
+
+		private final String  id;
+		private final boolean host;
+		private final boolean hostedByDefault;
+		private final int     minPlayers;
+		private final int     maxPlayers;
+		private final int     startRating;
+		private final String  kFactor;
+
+		/** Custom type -> value. */
+		private final Map custom;
+
+		private GameProperties (Element gameElm) {
+			Element elo = gameElm.element ("elo");
+
+			id              = gameElm.attributeValue ("id");
+			host            = "true".equals (gameElm.attributeValue ("host"));
+			hostedByDefault = getBoolean (gameElm, "host", true);
+			minPlayers      = getInt (gameElm, "minPlayers", DEFAULT_MIN_NUM_OF_PLAYERS);
+			maxPlayers      = getInt (gameElm, "maxPlayers", DEFAULT_MAX_NUM_OF_PLAYERS);
+			startRating     = getInt (elo, "startRating", DEFAULT_ELO_START_RATING);
+			kFactor         = getString (elo, "kFactor", null);
+
+			Map custom = new HashMap ();
+			Iterator it = gameElm.elementIterator ("custom");
+			while (it.hasNext ()) {
+				Element customElm = (Element)it.next ();
+				String type = customElm.attributeValue ("type");
+				if (type != null && !custom.containsKey (type))
+					custom.put (type, customElm.attributeValue ("value"));
+			}
+			this.custom = Collections.unmodifiableMap (custom);
+		}
+
+		public String  getId ()          { return id; }
+		public boolean isHosted ()       { return hostedByDefault; }
+		public int     getMinPlayers ()  { return minPlayers; }
+		public int     getMaxPlayers ()  { return maxPlayers; }
+		public int     getStartRating () { return startRating; }
+		public String  getKFactor ()     { return kFactor; }
+
+		/**
+		 * Return a custom property of the game.
+		 *
+		 * @param type          Type of the custom property.
+		 * @param defaultValue  Value if it doesn't exist.
+		 * @return
+		 */
+		public String getCustomProp (String type, String defaultValue) {
+			String value = (String)custom.get (type);
+			return value == null ? defaultValue : value;
+		}
+	}
+}
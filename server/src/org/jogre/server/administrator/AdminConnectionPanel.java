@@ -27,6 +27,7 @@ import org.jogre.client.awt.ConnectionPanel;
 import org.jogre.common.GameList;
 import org.jogre.common.TransmissionException;
 import org.jogre.common.comm.Comm;
+import org.jogre.common.comm.BinaryCodec;
 import org.jogre.common.comm.CommAdminConnect;
 import org.jogre.common.comm.CommAdminIconData;
 import org.jogre.server.ServerProperties;
@@ -72,6 +73,7 @@ public class AdminConnectionPanel extends ConnectionPanel {
 
         // Create a connect message.
         CommAdminConnect commConnect = new CommAdminConnect (username, password);
+        commConnect.setProtocol (BinaryCodec.PROTOCOL);
                     
         // Send connect message to the server.
         conn.send (commConnect);
@@ -25,6 +25,8 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.Arrays;
@@ -37,6 +39,7 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JTabbedPane;
 import javax.swing.JTable;
@@ -56,7 +59,6 @@ import org.jogre.common.comm.CommAdminClientData;
 import org.jogre.server.ServerLabels;
 import org.jogre.server.ServerProperties;
 import org.jogre.server.data.IServerData;
-import org.jogre.server.data.ServerDataFactory;
 
 /**
  * Panel for the administrator data for the server.
@@ -72,6 +74,9 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
 	private static final double FILL = TableLayout.FILL;
 	
 	private static final List DATA_ORDER = Arrays.asList(IServerData.DATA_ORDER);
+	
+	/** Number of rows from the bottom of a table before the next page is requested. */
+	private static final int PAGE_AHEAD_ROWS = 20;
 		
 	private static ServerLabels labels = ServerLabels.getInstance();
 	
@@ -107,7 +112,7 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
     	String [][] columnNames = 
     		{{"User", "Password"},
     	     {"Game", "Players", "Results", "Start Time", "End Time", "Score", "History"},
-    	     {"Game", "Username", "Rating", "Wins", "Loses", "Draws"}};
+    	     {"Game", "Username", "Rating", "Wins", "Loses", "Draws", "Rank"}};
     	String [] tabNames = {labels.get("users"), labels.get("game.info"), labels.get("game.summary")};     	
     	
     	// Declare models
@@ -135,7 +140,7 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
         JPanel panel = new JPanel (new TableLayout (sizes));
         
         labels = ServerLabels.getInstance(); 
-        String dataType = ServerDataFactory.getInstance ().getType();
+        String dataType = ServerProperties.getInstance().getCurrentServerData();
         if (dataType.equals (IServerData.DATABASE))
             dataType += " (" + ServerProperties.getInstance().getCurrentDatabaseConnection() + ")";
         String label = labels.get("persistent.data") + ":  " + dataType;
@@ -191,6 +196,15 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
 				this.data = data;
 			}
 		}
+		
+		public void addData (String [][] data) {
+			if (data != null) {
+				String [][] newData = new String [this.data.length + data.length][];
+				System.arraycopy (this.data, 0, newData, 0, this.data.length);
+				System.arraycopy (data, 0, newData, this.data.length, data.length);
+				this.data = newData;
+			}
+		}
 
 		public Object getValueAt(int rowIndex, int columnIndex) { return data[rowIndex][columnIndex]; }		
 		public int getColumnCount()  { return columns.length; }	
@@ -209,6 +223,7 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
 		// Declare GUI items
 		private JButton newButton, updateButton, deleteButton, refreshButton;		
 		private JTable table;
+		private JScrollBar scrollBar;
 		
 		private DataTableModel model;
 		private String dateType;
@@ -216,6 +231,10 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
 		
 		private boolean newPermission = true, updatePermission = true, deletePermission = true;
 		
+		// Cursor of the next page (null if there are no more) and of the page being loaded
+		private String nextCursor = null, loadingCursor = null;
+		private boolean loading = false;
+		
 		public DataTablePanel (JFrame owner, DataTableModel model, int tabOrder) {	        
 	        // Set fields
 	        this.owner = owner;
@@ -250,12 +269,24 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
 		}
 		
 		/**
-		 * Receive data from server.
+		 * Receive a page of data from server.  The first page replaces the 
+		 * data and the page being loaded is added to the end of it (any other
+		 * page is out of date and is ignored).
 		 * 
 		 * @param clientData
 		 */
 		public void receiveMessage (CommAdminClientData clientData) {
-			model.setData(clientData.getData());
+			String cursor = clientData.getCursor();
+			if (cursor == null)
+				model.setData(clientData.getData());
+			else if (cursor.equals(loadingCursor))
+				model.addData(clientData.getData());
+			else
+				return;
+			
+			nextCursor = clientData.getNextCursor();
+			loadingCursor = null;
+			loading = false;
 			model.fireTableDataChanged();
 		}
 		
@@ -289,6 +320,7 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
 	        
 	        table = new JTable (model);
 			JScrollPane scrolledTable = new JScrollPane (table);		
+			scrollBar = scrolledTable.getVerticalScrollBar();
 			table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
 			
 	        panel.add (scrolledTable, "1,1");
@@ -337,6 +369,16 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
 					requestData ();
 				}				
 			});
+			
+			// Request the next page when scrolled near the bottom (also called
+			// when rows are added so a table which isn't full keeps loading)
+			scrollBar.addAdjustmentListener(new AdjustmentListener() {
+				public void adjustmentValueChanged(AdjustmentEvent e) {
+					int bottom = scrollBar.getValue() + scrollBar.getVisibleAmount();
+					if (bottom >= scrollBar.getMaximum() - table.getRowHeight() * PAGE_AHEAD_ROWS)
+						requestNextPage ();
+				}
+			});
 		}
 		
 		/**
@@ -406,14 +448,35 @@ public class AdminDataPanel extends JPanel implements ChangeListener, IClient {
 		}
 		
 		/**
-		 * Request data from server.
+		 * Request the first page of data from server.
 		 */
 		private void requestData () {
 			String dataType = IServerData.DATA_ORDER [dataTabbedPane.getSelectedIndex()];
 			CommAdminClientData requestData = 
 				new CommAdminClientData (dataType);
-			if (conn != null)
+			loadingCursor = null;
+			if (conn != null) {
+				// Only wait for a page which has been asked for (set before
+				// sending as the reply can arrive before send returns)
+				loading = true;
 				conn.send(requestData);
+			}
+		}
+		
+		/**
+		 * Request the next page of data from server (if there is one and
+		 * a page isn't being loaded already).
+		 */
+		private void requestNextPage () {
+			int tab = dataTabbedPane.getSelectedIndex();
+			if (loading || nextCursor == null || tab == -1 || conn == null)
+				return;
+			
+			CommAdminClientData requestData = 
+				new CommAdminClientData (IServerData.DATA_ORDER [tab], nextCursor);
+			loadingCursor = nextCursor;
+			loading = true;
+			conn.send(requestData);
 		}
 		
 		/**
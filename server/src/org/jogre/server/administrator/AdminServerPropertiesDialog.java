@@ -1498,8 +1498,10 @@ public class AdminServerPropertiesDialog extends JDialog implements IClient{
 				return "";
 		}
 		public void setValueAt (Object value, int rowIndex, int columnIndex) {
-			if (customElmsXMLData != null)
+			if (customElmsXMLData != null) {
 				((Element)customElmsXMLData.get(rowIndex)).addAttribute(XML_ATTS[columnIndex], String.valueOf (value)); 
+				serverProperties.refresh ();
+			}
 		}
 		public int getRowCount() {
 			if (customElmsXMLData != null) 
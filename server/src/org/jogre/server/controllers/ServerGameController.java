@@ -19,6 +19,7 @@
  */
 package org.jogre.server.controllers;
 
+import java.util.HashMap;
 import java.util.List;
 
 import nanoxml.XMLElement;
@@ -33,6 +34,7 @@ import org.jogre.common.User;
 import org.jogre.common.UserList;
 import org.jogre.common.comm.Comm;
 import org.jogre.common.comm.CommAdminClientData;
+import org.jogre.common.comm.BinaryCodec;
 import org.jogre.common.comm.CommAdminConnect;
 import org.jogre.common.comm.CommAdminIconData;
 import org.jogre.common.comm.CommAdminServerProperties;
@@ -50,11 +52,15 @@ import org.jogre.common.comm.CommRequestData;
 import org.jogre.common.util.JogreLogger;
 import org.jogre.common.util.JogreUtils;
 import org.jogre.server.JogreServer;
+import org.jogre.server.RatingRecalculator;
 import org.jogre.server.ServerConnectionThread;
 import org.jogre.server.ServerController;
 import org.jogre.server.ServerProperties;
+import org.jogre.server.ServerPropertiesSnapshot;
+import org.jogre.server.data.DataPage;
 import org.jogre.server.data.GameSummary;
 import org.jogre.server.data.IServerData;
+import org.jogre.server.data.Rank;
 import org.jogre.server.data.ServerDataException;
 import org.jogre.server.data.db.DBConnection;
 import org.jogre.server.data.xml.ServerDataXML;
@@ -74,6 +80,9 @@ public class ServerGameController {
 	/** Convience link to the server. */
 	protected JogreServer server;
 
+	/** Lock objects for each game (plus the administrator) keyed on game ID. */
+	private HashMap gameLocks = new HashMap ();
+
 	/**
 	 * Constructor.
 	 */
@@ -83,12 +92,51 @@ public class ServerGameController {
 	}
 
 	/**
-	 * Parse this game specific message.
+	 * Parse this game specific message.  Messages for different games are
+	 * parsed in parallel.
 	 *
 	 * @param conn         Connection back to client
 	 * @param message      Message to parse
 	 */
-	public synchronized void parseGameMessage (ServerConnectionThread conn, XMLElement message) {
+	public void parseGameMessage (ServerConnectionThread conn, XMLElement message) {
+		synchronized (getGameLock (conn, message)) {
+			parseMessage (conn, message);
+		}
+	}
+
+	/**
+	 * Return the lock for the game which a message is for.  Connect messages
+	 * carry the game ID as the connection doesn't have one yet.  Unknown
+	 * games share the administrator lock.
+	 *
+	 * @param conn         Connection back to client
+	 * @param message      Message to parse
+	 * @return             Lock object.
+	 */
+	private Object getGameLock (ServerConnectionThread conn, XMLElement message) {
+		String gameID = conn.getGameID();
+		if (gameID == null)
+			gameID = message.getStringAttribute (CommGameConnect.XML_ATT_GAME_ID);
+		if (gameID == null || server.getGameList().getGame (gameID) == null)
+			gameID = IJogre.ADMINISTRATOR;
+
+		synchronized (gameLocks) {
+			Object lock = gameLocks.get (gameID);
+			if (lock == null) {
+				lock = new Object ();
+				gameLocks.put (gameID, lock);
+			}
+			return lock;
+		}
+	}
+
+	/**
+	 * Parse this game specific message while holding the lock of its game.
+	 *
+	 * @param conn         Connection back to client
+	 * @param message      Message to parse
+	 */
+	private void parseMessage (ServerConnectionThread conn, XMLElement message) {
 		try {
 			// 1) Implementation of Comm commands
 			String messageType = message.getName();
@@ -174,6 +222,9 @@ public class ServerGameController {
 		String username = commConnect.getUsername();
 		String gameID = commConnect.getGameID();
 
+		// Reply in binary if the client asked for it (XML otherwise)
+		conn.setBinaryProtocol (BinaryCodec.PROTOCOL.equals (commConnect.getProtocol()));
+
 		// Check server supports this particular game
 		if (!server.getGameList().containsGame (gameID)) {
 
@@ -275,6 +326,7 @@ public class ServerGameController {
 		CommAdminConnect commConnect = new CommAdminConnect (message);
 		String username = commConnect.getUsername();
 		String password = commConnect.getPassword();
+		conn.setBinaryProtocol (BinaryCodec.PROTOCOL.equals (commConnect.getProtocol()));
 
 		// Check an admin isn't already connected (possibly support multiple in future?)
 		if (server.getConnections().getAdminConnection() != null) {
@@ -317,8 +369,15 @@ public class ServerGameController {
 			CommAdminServerProperties commServerProps = new CommAdminServerProperties (message);
 			String serverPropsStr = commServerProps.getServerPropertiesStr();
 
+			ServerPropertiesSnapshot oldProperties = ServerProperties.getInstance().getSnapshot ();
 			ServerProperties.setUpFromString (serverPropsStr);
 			ServerProperties.getInstance().saveXMLFile ();
+
+			// Recalculate the ratings of games whose rating properties have changed
+			String [] changedGames = RatingRecalculator.getChangedGames (
+				oldProperties, ServerProperties.getInstance().getSnapshot ());
+			if (changedGames.length > 0)
+				RatingRecalculator.start (server.getServerData(), changedGames);
 		}
 	}
 
@@ -347,7 +406,8 @@ public class ServerGameController {
 	}
 
 	/**
-	 * The administrator client is requesting data.
+	 * The administrator client is requesting data.  The data is sent a page
+	 * at a time, starting at the cursor of the request.
 	 * 
 	 * This uses String arrays at minute - will be made better in future if required.
 	 * 
@@ -362,6 +422,8 @@ public class ServerGameController {
 			String [] params = adminDataReq.getParamData();
 			String dataType  = adminDataReq.getDataType();		
 			char requestType = adminDataReq.getRequestType();
+			String cursor    = adminDataReq.getCursor();
+			DataPage page    = null;
 			
 			// Check data type
 			if (IServerData.DATA_USERS.equals(dataType)) {			// User
@@ -382,10 +444,12 @@ public class ServerGameController {
 					else if (requestType == CommAdminClientData.DELETE) {
 						server.getServerData().deleteUser (user);
 					}
+					cursor = null;		// send first page again
 				}
 
-				// Send list back to user.
-				List users = server.getServerData().getUsers();
+				// Send page of users back to user.
+				page = server.getServerData().getUsers (cursor, IServerData.DEFAULT_PAGE_SIZE);
+				List users = page.getRows();
 				data = new String [users.size()][2];
 				for (int i = 0; i < users.size(); i++) {
 					org.jogre.server.data.User user = (org.jogre.server.data.User)users.get(i);
@@ -394,13 +458,10 @@ public class ServerGameController {
 					data [i][0] = user.getUsername();
 					data [i][1] = user.getPassword();
 				}		
-				// Create item and return to user.
-				CommAdminClientData adminDataReply = new CommAdminClientData (data, dataType);
-				conn.send (adminDataReply);
 			}			
 			else if (IServerData.DATA_GAME_INFO.equals(dataType)) {			// Game info
-				List gameInfos;
-				gameInfos = server.getServerData().getGameInfos();
+				page = server.getServerData().getGameInfos (cursor, IServerData.DEFAULT_PAGE_SIZE);
+				List gameInfos = page.getRows();
 
 				data = new String [gameInfos.size()][7];
 				for (int i = 0; i < gameInfos.size(); i++) {
@@ -415,17 +476,15 @@ public class ServerGameController {
 					data [i][5] = gameInfo.getGameScore();
 					data [i][6] = gameInfo.getGameHistory();
 				}
-				// Create item and return to user.
-				CommAdminClientData adminDataReply = new CommAdminClientData (data, dataType);
-				conn.send (adminDataReply);
 			}
 			else if (IServerData.DATA_GAME_SUMMARY.equals(dataType)) {			// Game summary
-				List gameSummaries;
-				gameSummaries = server.getServerData().getGameSummarys();
+				page = server.getServerData().getGameSummarys (cursor, IServerData.DEFAULT_PAGE_SIZE);
+				List gameSummaries = page.getRows();
 
-				data = new String [gameSummaries.size()][6];
+				data = new String [gameSummaries.size()][7];
 				for (int i = 0; i < gameSummaries.size(); i++) {
 					org.jogre.server.data.GameSummary gameSummary = (org.jogre.server.data.GameSummary)gameSummaries.get(i);
+					Rank rank = server.getServerData().getRank (gameSummary.getGameKey(), gameSummary.getUsername());
 
 					// Populate 2D array
 					data [i][0] = gameSummary.getGameKey();
@@ -434,11 +493,15 @@ public class ServerGameController {
 					data [i][3] = String.valueOf(gameSummary.getWins());
 					data [i][4] = String.valueOf(gameSummary.getLoses());
 					data [i][5] = String.valueOf(gameSummary.getDraws());
+					data [i][6] = rank == null ? "" : String.valueOf(rank.getRank());
 				}		
-				// Create item and return to user.
-				CommAdminClientData adminDataReply = new CommAdminClientData (data, dataType);
-				conn.send (adminDataReply);	
-			}			
+			}
+			
+			// Create item and return to user.
+			if (page != null) {
+				CommAdminClientData adminDataReply = new CommAdminClientData (data, dataType, cursor, page.getCursor());
+				conn.send (adminDataReply);
+			}
 		}
 	}
 
@@ -469,11 +532,9 @@ public class ServerGameController {
 				gs.getLoses(), gs.getDraws(), gs.getStreak());
 		userList.addUser (user);		// Add user
 
-		// Reply back to the client and send game state
-		conn.transmit (conn.getGame());
-
-		// Broadcast this connection to other users at this game
-		conn.broadcast (username, user);
+		// Reply back to the client with the game state and broadcast this
+		// connection to other users at this game
+		conn.broadcastDelta (username, conn.getGame(), user);
 
 		// Send message to administration client if logged on
 		conn.sendDataMessageToAdmin (user);
@@ -565,14 +626,12 @@ public class ServerGameController {
 				table.addPlayer (newPlayerUser)) {
 
 			// Create a response for the new player that includes the entire
-			// table state.
+			// table state and send everyone else a notice that the new player
+			// joined the table.
 			CommJoinTable commJoinTable = new CommJoinTable (newPlayerName, table);
-			conn.transmit (newPlayerName, commJoinTable);
-
-			// Send everyone else a notice that the new player joined the table.
-			commJoinTable = new CommJoinTable (newPlayerName, table.getTableNum());
-			conn.broadcast (newPlayerName, commJoinTable);
-			conn.sendDataMessageToAdmin (commJoinTable);
+			CommJoinTable commJoinReply = new CommJoinTable (newPlayerName, table.getTableNum());
+			conn.broadcastDelta (newPlayerName, commJoinTable, commJoinReply);
+			conn.sendDataMessageToAdmin (commJoinReply);
 		}
 	}
 
@@ -638,7 +697,7 @@ public class ServerGameController {
 		if (dataType.equals(Comm.GAME_LIST))
 			conn.transmit (server.getGameList());
 		else if (dataType.equals(Comm.GAME))
-			conn.transmit (conn.getGame());
+			conn.sendGame ();
 		else if (dataType.equals(Comm.TABLE_LIST))
 			conn.transmit (conn.getTableList());
 		else if (dataType.equals(Comm.USER_LIST))
@@ -677,7 +736,7 @@ public class ServerGameController {
 				commNewTable.getProperties());
 
 		// Send this new table to all connected users and admin client if logged on
-		conn.broadcast (table);
+		conn.broadcastDelta (table);
 		conn.sendDataMessageToAdmin (table);
 
 		// Update snapshot
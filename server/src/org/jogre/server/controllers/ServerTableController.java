@@ -20,11 +20,13 @@
 
 package org.jogre.server.controllers;
 
+import java.util.HashMap;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
 import nanoxml.XMLElement;
 
+import org.jogre.common.Game;
 import org.jogre.common.IError;
 import org.jogre.common.IGameOver;
 import org.jogre.common.JogreModel;
@@ -40,11 +42,14 @@ import org.jogre.common.playerstate.PlayerState;
 import org.jogre.server.JogreServer;
 import org.jogre.server.ServerConnectionThread;
 import org.jogre.server.ServerController;
+import org.jogre.server.ServerProperties;
 import org.jogre.server.data.ServerDataException;
 
 /**
  * Class which parses table communication messages (messages with a
- * "table" attribute).
+ * "table" attribute).  Each table has its own TableMailbox so that messages
+ * for one table are parsed in order while different tables are parsed in
+ * parallel by the TableWorkerPool.
  *
  * @author  Bob Marks
  * @version Beta 0.3
@@ -54,20 +59,95 @@ public class ServerTableController {
     /** Convenience link to the server. */
 	protected JogreServer server;
 
+	/** Mailboxes of the tables keyed on gameID and table number. */
+	private HashMap mailboxes = new HashMap ();
+
+	/** Worker threads which run the mailboxes. */
+	private TableWorkerPool workerPool;
+
 	/**
 	 * Constructor of a ServerTable parser.
 	 */
 	public ServerTableController() {
 	    // Set up fields
 	    this.server = JogreServer.getInstance();
+	    this.workerPool = new TableWorkerPool (ServerProperties.getInstance().getNumOfTableThreads());
+	}
+
+	/**
+	 * Post a table message to the mailbox of its table.  The message is
+	 * parsed later on by a worker thread which then calls the connection's
+	 * tableMessageDone method.
+	 *
+	 * @param conn       Connection which received the message.
+	 * @param message    Table message.
+	 * @param tableNum   Table number.
+	 * @return           False if the table doesn't exist (the message is ignored).
+	 */
+	public boolean postTableMessage (ServerConnectionThread conn, XMLElement message, int tableNum) {
+		TableMailbox mailbox = null;
+		boolean schedule = false;
+
+		synchronized (mailboxes) {
+			// Ignore messages for tables which don't exist
+			TableList tableList = conn.getTableList();
+			if (tableList != null && tableList.getTable (tableNum) != null) {
+				String key = getKey (conn.getGameID(), tableNum);
+				mailbox = (TableMailbox)mailboxes.get (key);
+				if (mailbox == null) {
+					mailbox = new TableMailbox (this, conn.getGameID(), tableNum);
+					mailboxes.put (key, mailbox);
+				}
+				schedule = mailbox.post (conn, message);
+			}
+		}
+
+		if (schedule)
+			workerPool.execute (mailbox);
+		return mailbox != null;
+	}
+
+	/**
+	 * Called by a mailbox once it has parsed a batch of messages.  If it has
+	 * more messages it goes back into the worker pool, otherwise it is
+	 * removed if its table no longer exists.
+	 *
+	 * @param mailbox
+	 */
+	void mailboxFinished (TableMailbox mailbox) {
+		boolean empty;
+
+		synchronized (mailboxes) {
+			empty = mailbox.finish ();
+			if (empty) {
+				Game game = server.getGameList().getGame (mailbox.getGameID());
+				if (game == null || game.getTableList().getTable (mailbox.getTableNum()) == null)
+					mailboxes.remove (getKey (mailbox.getGameID(), mailbox.getTableNum()));
+			}
+		}
+
+		if (!empty)
+			workerPool.execute (mailbox);
 	}
 
 	/**
-	 * This implements parsing of a table message.
+	 * Return the mailbox key from a game ID and table number.
+	 *
+	 * @param gameID
+	 * @param tableNum
+	 * @return
+	 */
+	private String getKey (String gameID, int tableNum) {
+		return gameID + "-" + tableNum;
+	}
+
+	/**
+	 * This implements parsing of a table message.  This is called from the
+	 * table's mailbox so only one thread parses messages for a table at once.
 	 *
 	 * @param message
 	 */
-	public synchronized void parseTableMessage (ServerConnectionThread conn, XMLElement message, int tableNum) {
+	public void parseTableMessage (ServerConnectionThread conn, XMLElement message, int tableNum) {
 		// First, make sure that the given table number is valid.
 		// (Doing this once here means that all of the routines below can assume
 		//  that the table is valid.)
@@ -234,7 +314,7 @@ public class ServerTableController {
 	    String value = commTableProperty.getValue();
 	    table.addProperty (key, value);
 
-	    conn.broadcast (commTableProperty);
+	    conn.broadcastDelta (commTableProperty);
 	    conn.sendDataMessageToAdmin (commTableProperty);
 	}
 
@@ -374,7 +454,7 @@ public class ServerTableController {
 
 			// Broadcast to all user and admin
 			CommExitTable commExitReply = new CommExitTable (tableNum, username);
-			conn.broadcast (username, commExitReply);		// inform all users
+			conn.broadcastDelta (commExitReply);		// inform all users
 			conn.sendDataMessageToAdmin (commExitReply);
 
 			// Update snapshot as a table may have been removed
@@ -404,15 +484,11 @@ public class ServerTableController {
 		if (table.addPlayer (newUser)) {
 
 			// Create response join table message
-			// The user who is joining also gets the player list
-			commJoinTable = new CommJoinTable (username, table);
-			conn.transmit (username, commJoinTable);
-
-			// set back to normal again and broadcast the table object to all users
-			// omiting this user (as they already have it) and to admin.
-			commJoinTable = new CommJoinTable (username, tableNum);
-			conn.broadcast (username, commJoinTable);
-			conn.sendDataMessageToAdmin (commJoinTable);
+			// The user who is joining also gets the player list, everyone
+			// else (and admin) just gets the new player.
+			CommJoinTable commJoinReply = new CommJoinTable (username, tableNum);
+			conn.broadcastDelta (username, new CommJoinTable (username, table), commJoinReply);
+			conn.sendDataMessageToAdmin (commJoinReply);
 		}
 	}
 
@@ -492,8 +568,10 @@ public class ServerTableController {
 
 			// Inform the server controller if it exists
 			ServerController controller = conn.getServerController();
-			if (controller != null)
+			if (controller != null) {
+				controller.resetGameRecord (tableNum);
 				controller.startGame (tableNum);
+			}
 
 			// Send individual game start messages to all players
 			CommStartGame commStartGame = new CommStartGame (players.getCurrentPlayerName(), tableNum);
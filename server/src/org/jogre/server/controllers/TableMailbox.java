@@ -0,0 +1,153 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.controllers;
+
+import java.util.LinkedList;
+
+import nanoxml.XMLElement;
+
+import org.jogre.common.util.JogreLogger;
+import org.jogre.server.ServerConnectionThread;
+
+/**
+ * Queue of messages for a single table.  The mailbox is run by one worker
+ * of the TableWorkerPool at a time, which means the table (and its model)
+ * is only ever touched by a single thread without needing a lock.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class TableMailbox implements Runnable {
+
+	/** Logging */
+	JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** Maximum number of messages processed before giving up the worker. */
+	private static final int BATCH_SIZE = 32;
+
+	/** Link to the table controller which parses the messages. */
+	private ServerTableController tableController;
+
+	/** Game ID of the table. */
+	private String gameID;
+
+	/** Table number. */
+	private int tableNum;
+
+	/** Queue of connection / message pairs. */
+	private LinkedList messages = new LinkedList ();
+
+	/** True if this mailbox is queued or running in the worker pool. */
+	private boolean scheduled = false;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param tableController  Table controller.
+	 * @param gameID           Game ID of the table.
+	 * @param tableNum         Table number.
+	 */
+	public TableMailbox (ServerTableController tableController, String gameID, int tableNum) {
+		this.tableController = tableController;
+		this.gameID = gameID;
+		this.tableNum = tableNum;
+	}
+
+	/**
+	 * Return the game ID.
+	 *
+	 * @return
+	 */
+	public String getGameID () {
+		return gameID;
+	}
+
+	/**
+	 * Return the table number.
+	 *
+	 * @return
+	 */
+	public int getTableNum () {
+		return tableNum;
+	}
+
+	/**
+	 * Add a message to the mailbox.
+	 *
+	 * @param conn     Connection which received the message.
+	 * @param message  Table message.
+	 * @return         True if the mailbox must now be given to the worker pool.
+	 */
+	public synchronized boolean post (ServerConnectionThread conn, XMLElement message) {
+		messages.addLast (conn);
+		messages.addLast (message);
+
+		if (scheduled)
+			return false;
+
+		scheduled = true;
+		return true;
+	}
+
+	/**
+	 * Called once a batch has been processed.  If the mailbox is empty it
+	 * is no longer scheduled.
+	 *
+	 * @return   True if the mailbox is empty.
+	 */
+	synchronized boolean finish () {
+		if (messages.isEmpty ()) {
+			scheduled = false;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Process the next batch of messages.
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run () {
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			ServerConnectionThread conn;
+			XMLElement message;
+			synchronized (this) {
+				if (messages.isEmpty ())
+					break;
+				conn    = (ServerConnectionThread)messages.removeFirst ();
+				message = (XMLElement)messages.removeFirst ();
+			}
+
+			try {
+				tableController.parseTableMessage (conn, message, tableNum);
+			}
+			catch (Exception genEx) {
+				logger.error ("run", "General Exception: ");
+				logger.stacktrace (genEx);
+			}
+			finally {
+				conn.tableMessageDone ();
+			}
+		}
+
+		tableController.mailboxFinished (this);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.controllers;
+
+import java.util.LinkedList;
+
+import org.jogre.common.util.JogreLogger;
+
+/**
+ * Small fixed pool of worker threads which run table mailboxes.  A mailbox
+ * is only ever queued once at a time so messages for a single table are
+ * processed in order by one worker, while different tables are processed
+ * in parallel.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class TableWorkerPool {
+
+	/** Logging */
+	JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** Queue of Runnable objects waiting for a worker. */
+	private LinkedList queue = new LinkedList ();
+
+	/** Worker threads. */
+	private Thread [] workers;
+
+	/**
+	 * Constructor which starts the worker threads.
+	 *
+	 * @param numOfThreads   Number of worker threads.
+	 */
+	public TableWorkerPool (int numOfThreads) {
+		this ("TableWorker", numOfThreads);
+	}
+
+	/**
+	 * Constructor which starts the worker threads with the specified name.
+	 *
+	 * @param name           Name of the worker threads (followed by a number).
+	 * @param numOfThreads   Number of worker threads.
+	 */
+	public TableWorkerPool (String name, int numOfThreads) {
+		workers = new Thread [Math.max (1, numOfThreads)];
+
+		for (int i = 0; i < workers.length; i++) {
+			workers [i] = new Thread (name + "-" + i) {
+				public void run () {
+					work ();
+				}
+			};
+			workers [i].setDaemon (true);
+			workers [i].start ();
+		}
+	}
+
+	/**
+	 * Queue a job to be run by the next free worker.
+	 *
+	 * @param job
+	 */
+	public void execute (Runnable job) {
+		synchronized (queue) {
+			queue.addLast (job);
+			queue.notify ();
+		}
+	}
+
+	/**
+	 * Return the number of worker threads.
+	 *
+	 * @return
+	 */
+	public int size () {
+		return workers.length;
+	}
+
+	/**
+	 * Run loop of each worker thread.
+	 */
+	private void work () {
+		while (true) {
+			Runnable job;
+			synchronized (queue) {
+				while (queue.isEmpty ()) {
+					try {
+						queue.wait ();
+					}
+					catch (InterruptedException iEx) {
+						return;
+					}
+				}
+				job = (Runnable)queue.removeFirst ();
+			}
+
+			// A bad message mustn't kill the worker
+			try {
+				job.run ();
+			}
+			catch (Exception genEx) {
+				logger.error ("work", "General Exception: ");
+				logger.stacktrace (genEx);
+			}
+		}
+	}
+}
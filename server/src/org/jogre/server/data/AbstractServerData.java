@@ -19,7 +19,16 @@
  */
 package org.jogre.server.data;
 
-import org.jogre.server.ServerProperties;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jogre.common.GameOver;
+import org.jogre.server.EloRatingSystem;
 
 /**
  * Common data methods which all server data classes can use.
@@ -28,6 +37,269 @@ import org.jogre.server.ServerProperties;
  * @version Alpha 0.2.3
  */
 public abstract class AbstractServerData implements IServerData {
-    // Doesn't contain anything - Can this class be removed?
-    
+
+	/** Orders game infos by game key and then end time (if they have one). */
+	private static final Comparator BY_GAME_KEY_AND_END_TIME = new Comparator () {
+		public int compare (Object o1, Object o2) {
+			GameInfo gameInfo1 = (GameInfo)o1, gameInfo2 = (GameInfo)o2;
+			int order = gameInfo1.getGameKey ().compareTo (gameInfo2.getGameKey ());
+			if (order != 0 || gameInfo1.getEndTime () == null || gameInfo2.getEndTime () == null)
+				return order;
+			return gameInfo1.getEndTime ().compareTo (gameInfo2.getEndTime ());
+		}
+	};
+
+	/** Game key -> RankIndex (null until the ranks are first asked for). */
+	private Map rankIndexes = null;
+
+	/**
+	 * Update the game summaries of the players of a game with their results
+	 * (and new ELO ratings if required) and return the GameOver object.
+	 * The ranks aren't updated until the game summaries have been stored
+	 * (see updateRanks).
+	 *
+	 * @param gameKey      Game key e.g. "chess".
+	 * @param players      Usernames of the players.
+	 * @param results      Results of the players.
+	 * @param gameSummary  Game summaries of the players (updated).
+	 * @param eloRatings   Boolean to update the ratings (ELO).
+	 * @return             GameOver object with the old and new ratings.
+	 */
+	protected GameOver updateGameSummaries (String gameKey, String [] players, int [] results,
+	                                        GameSummary [] gameSummary, boolean eloRatings)
+	{
+		int numPlayers = players.length;
+
+		// Retrieve old ratings
+		int [] oldRatings = new int [numPlayers];
+		for (int i = 0; i < numPlayers; i++)
+			oldRatings[i] = gameSummary [i].getRating();
+
+		// Check if scores need updating (no elo ratings - so everyone keeps old ratings)
+		int [] newRatings = oldRatings;
+		if (eloRatings && numPlayers >= EloRatingSystem.MIN_PLAYERS) {
+			// Find new ratings
+			EloRatingSystem elo = EloRatingSystem.getInstance (gameKey);
+			newRatings = elo.getNewRatings (oldRatings, results);
+
+			// Update game summaries
+			for (int i = 0; i < numPlayers; i++)
+				gameSummary[i].update (results[i], newRatings[i]);
+		}
+
+		// Create GameOver object with old/new ratings and return to users
+		return new GameOver (players, results, oldRatings, newRatings);
+	}
+
+	/**
+	 * Return a page of users.  This reads every user, server data which
+	 * can do better should override it.
+	 *
+	 * @see org.jogre.server.data.IServerData#getUsers(java.lang.String, int)
+	 */
+	public DataPage getUsers (String cursor, int num) throws ServerDataException {
+		return getPage (getUsers (), cursor, num);
+	}
+
+	/**
+	 * Return a page of game infos (reads every game info).
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameInfos(java.lang.String, int)
+	 */
+	public DataPage getGameInfos (String cursor, int num) throws ServerDataException {
+		return getPage (getGameInfos (), cursor, num);
+	}
+
+	/**
+	 * Return a page of game summaries (reads every game summary).
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameSummarys(java.lang.String, int)
+	 */
+	public DataPage getGameSummarys (String cursor, int num) throws ServerDataException {
+		return getPage (getGameSummarys (), cursor, num);
+	}
+
+	/**
+	 * Pass every user to a row handler (reads every user first).
+	 *
+	 * @see org.jogre.server.data.IServerData#getUsers(org.jogre.server.data.IRowHandler)
+	 */
+	public void getUsers (IRowHandler rowHandler) throws ServerDataException {
+		handleRows (getUsers (), rowHandler);
+	}
+
+	/**
+	 * Pass every game info to a row handler (reads every game info first
+	 * and sorts them by game key and then end time).
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameInfos(org.jogre.server.data.IRowHandler)
+	 */
+	public void getGameInfos (IRowHandler rowHandler) throws ServerDataException {
+		List gameInfos = getGameInfos ();
+		if (gameInfos != null) {
+			gameInfos = new ArrayList (gameInfos);
+			Collections.sort (gameInfos, BY_GAME_KEY_AND_END_TIME);
+		}
+		handleRows (gameInfos, rowHandler);
+	}
+
+	/**
+	 * Pass every game summary to a row handler (reads every game summary
+	 * first).
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameSummarys(org.jogre.server.data.IRowHandler)
+	 */
+	public void getGameSummarys (IRowHandler rowHandler) throws ServerDataException {
+		handleRows (getGameSummarys (), rowHandler);
+	}
+
+	/**
+	 * Return a page of a list where the cursor is the index of the first row.
+	 *
+	 * @param rows     List of rows (can be null).
+	 * @param cursor   Index of first row (null for 0).
+	 * @param num      Maximum number of rows.
+	 * @return
+	 * @throws ServerDataException  If the cursor isn't valid.
+	 */
+	protected static DataPage getPage (List rows, String cursor, int num) throws ServerDataException {
+		if (rows == null)
+			rows = new ArrayList ();
+
+		int from = parseCursor (cursor);
+		int to = Math.min (rows.size(), from + num);
+		List page = new ArrayList (rows.subList (Math.min (from, to), to));
+
+		return new DataPage (page, to < rows.size() ? String.valueOf (to) : null);
+	}
+
+	/**
+	 * Parse a cursor which is a row index.
+	 *
+	 * @param cursor   Cursor (null for 0).
+	 * @return
+	 * @throws ServerDataException  If the cursor isn't valid.
+	 */
+	protected static int parseCursor (String cursor) throws ServerDataException {
+		if (cursor == null)
+			return 0;
+		try {
+			return Math.max (0, Integer.parseInt (cursor));
+		}
+		catch (NumberFormatException nfEx) {
+			throw new ServerDataException ("Invalid cursor: " + cursor);
+		}
+	}
+
+	/**
+	 * Pass each row of a list to a row handler.
+	 *
+	 * @param rows         List of rows (can be null).
+	 * @param rowHandler
+	 * @throws ServerDataException
+	 */
+	private static void handleRows (List rows, IRowHandler rowHandler) throws ServerDataException {
+		if (rows != null) {
+			for (int i = 0; i < rows.size(); i++)
+				rowHandler.handleRow (rows.get(i));
+		}
+	}
+
+	/**
+	 * Return the rank of a user in a game.
+	 *
+	 * @see org.jogre.server.data.IServerData#getRank(java.lang.String, java.lang.String)
+	 */
+	public synchronized Rank getRank (String gameKey, String username) throws ServerDataException {
+		return getRankIndex (gameKey).getRank (username);
+	}
+
+	/**
+	 * Return the highest ranks of a game.
+	 *
+	 * @see org.jogre.server.data.IServerData#getTopRanks(java.lang.String, int)
+	 */
+	public synchronized List getTopRanks (String gameKey, int num) throws ServerDataException {
+		return getRankIndex (gameKey).getTop (num);
+	}
+
+	/**
+	 * Return the ranks around a user in a game.
+	 *
+	 * @see org.jogre.server.data.IServerData#getRanksAround(java.lang.String, java.lang.String, int)
+	 */
+	public synchronized List getRanksAround (String gameKey, String username, int num) throws ServerDataException {
+		return getRankIndex (gameKey).getAround (username, num);
+	}
+
+	/**
+	 * Update the rank of a game summary (if the ranks have been read).
+	 *
+	 * @param gameSummary
+	 */
+	protected synchronized void updateRank (GameSummary gameSummary) {
+		if (rankIndexes != null) {
+			RankIndex rankIndex = (RankIndex)rankIndexes.get (gameSummary.getGameKey());
+			if (rankIndex == null) {
+				rankIndex = new RankIndex (gameSummary.getGameKey());
+				rankIndexes.put (gameSummary.getGameKey(), rankIndex);
+			}
+			rankIndex.update (gameSummary.getUsername(), gameSummary.getRating());
+		}
+	}
+
+	/**
+	 * Update the ranks of a number of game summaries (once they are stored).
+	 *
+	 * @param gameSummary
+	 */
+	protected void updateRanks (GameSummary [] gameSummary) {
+		for (int i = 0; i < gameSummary.length; i++)
+			updateRank (gameSummary[i]);
+	}
+
+	/**
+	 * Remove a user from the ranks of every game.
+	 *
+	 * @param username
+	 */
+	protected synchronized void removeRanks (String username) {
+		if (rankIndexes != null) {
+			Iterator it = rankIndexes.values().iterator();
+			while (it.hasNext())
+				((RankIndex)it.next()).remove (username);
+		}
+	}
+
+	/**
+	 * Return the rank index of a game.  The first time this is called the
+	 * rank indexes of every game are read from the game summaries (one at a
+	 * time) and after that they are kept up to date as the game summaries
+	 * change.
+	 *
+	 * @param gameKey
+	 * @return
+	 * @throws ServerDataException
+	 */
+	private RankIndex getRankIndex (String gameKey) throws ServerDataException {
+		if (rankIndexes == null) {
+			rankIndexes = new HashMap ();
+			try {
+				getGameSummarys (new IRowHandler () {
+					public void handleRow (Object row) {
+						updateRank ((GameSummary)row);
+					}
+				});
+			}
+			catch (ServerDataException sdEx) {
+				rankIndexes = null;
+				throw sdEx;
+			}
+		}
+
+		RankIndex rankIndex = (RankIndex)rankIndexes.get (gameKey);
+		if (rankIndex == null)
+			return new RankIndex (gameKey);
+		return rankIndex;
+	}
 }
@@ -0,0 +1,65 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data;
+
+import java.util.List;
+
+/**
+ * Data class for one page of rows (users, game infos or game summaries)
+ * and the cursor of the next page.  Cursors are created by the server data
+ * and should be passed back as they are.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class DataPage {
+
+	private List rows;
+	private String cursor;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param rows     Rows of this page.
+	 * @param cursor   Cursor of the next page (null if this is the last).
+	 */
+	public DataPage (List rows, String cursor) {
+		this.rows   = rows;
+		this.cursor = cursor;
+	}
+
+	/**
+	 * Return the rows.
+	 *
+	 * @return
+	 */
+	public List getRows () {
+		return rows;
+	}
+
+	/**
+	 * Return the cursor of the next page.
+	 *
+	 * @return  Cursor or null if this is the last page.
+	 */
+	public String getCursor () {
+		return cursor;
+	}
+}
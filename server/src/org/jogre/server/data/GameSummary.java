@@ -26,13 +26,25 @@ import org.jogre.common.IGameOver;
 /**
  * Game summary class which tells how many games a user has played,
  * won, lost and drawn.  It also holds the users current score for
- * that particular game. 
+ * that particular game, the results of their last few games (recent
+ * form) and their rating after every RATING_BUCKET games (rating
+ * history).  These are all kept up to date by update () when a game
+ * finishes so a profile never has to count the games again. 
  *
  * @author Bob Marks
  * @version Alpha 0.2.3
  */
 public class GameSummary implements IGameOver {
 
+	/** Number of results kept in the recent form. */
+	public static final int MAX_RECENT_FORM = 10;
+
+	/** Number of games between ratings in the rating history. */
+	public static final int RATING_BUCKET = 10;
+
+	/** Number of ratings kept in the rating history. */
+	public static final int MAX_RATING_HISTORY = 20;
+
 	private String gameKey = null;
 	private String username = null;
 	private int wins;
@@ -40,6 +52,8 @@ public class GameSummary implements IGameOver {
 	private int draws;
 	private int streak;
 	private int rating;
+	private String recentForm = "";			// newest result first e.g. "WWLD"
+	private String ratingHistory = "";		// oldest rating first e.g. "1210 1245"
 	
 	/**
 	 * Empty constructor.
@@ -115,6 +129,46 @@ public class GameSummary implements IGameOver {
 		
 		// Update rating
 		this.rating = newRating;
+		
+		// Update recent form and rating history
+		if (resultType == WIN || resultType == LOSE || resultType == DRAW) {
+			recentForm = "WLD".charAt (resultType - WIN) + recentForm;
+			if (recentForm.length() > MAX_RECENT_FORM)
+				recentForm = recentForm.substring (0, MAX_RECENT_FORM);
+			
+			if (getGamesPlayed() % RATING_BUCKET == 0)
+				addRatingHistory (newRating);
+		}
+	}
+	
+	/**
+	 * Add a rating to the end of the rating history (dropping the oldest if
+	 * there are too many).
+	 * 
+	 * @param newRating
+	 */
+	private void addRatingHistory (int newRating) {
+		String history = ratingHistory.length() == 0 ? String.valueOf (newRating) : ratingHistory + " " + newRating;
+		int count = 1;
+		for (int i = 0; i < history.length(); i++) {
+			if (history.charAt (i) == ' ')
+				count++;
+		}
+		if (count > MAX_RATING_HISTORY)
+			history = history.substring (history.indexOf (' ') + 1);
+		this.ratingHistory = history;
+	}
+	
+	/**
+	 * Return a copy of this game summary.
+	 * 
+	 * @return
+	 */
+	public GameSummary copy () {
+		GameSummary copy = new GameSummary (gameKey, username, rating, wins, loses, draws, streak);
+		copy.recentForm = recentForm;
+		copy.ratingHistory = ratingHistory;
+		return copy;
 	}
 
 	public String getGameKey() {
@@ -172,4 +226,29 @@ public class GameSummary implements IGameOver {
 	public void setRating(int rating) {
 		this.rating = rating;
 	}
+
+	/**
+	 * Return the number of games played (wins, loses and draws).
+	 * 
+	 * @return
+	 */
+	public int getGamesPlayed() {
+		return wins + loses + draws;
+	}
+
+	public String getRecentForm() {
+		return recentForm;
+	}
+
+	public void setRecentForm(String recentForm) {
+		this.recentForm = recentForm == null ? "" : recentForm.trim();
+	}
+
+	public String getRatingHistory() {
+		return ratingHistory;
+	}
+
+	public void setRatingHistory(String ratingHistory) {
+		this.ratingHistory = ratingHistory == null ? "" : ratingHistory.trim();
+	}
 }
\ No newline at end of file
@@ -44,6 +44,9 @@ public interface IServerData {
 	
 	/** Property to . */
 	public static final String JOGRE_DOT_ORG = "jogre.org";
+
+	/** Property to load the append only journal on the local file system. */
+	public static final String JOURNAL = "journal";
 	
 	/** Location of XML files */
 	public static final String XML_FOLDER = "data/xml/";
@@ -51,6 +54,27 @@ public interface IServerData {
 	/** Location of database files */
 	public static final String DATABASE_FOLDER = "data/database/";
 
+	/** Location of journal files */
+	public static final String JOURNAL_FOLDER = "data/journal/";
+
+	/** Location of the game record archive */
+	public static final String ARCHIVE_FOLDER = "data/archive/";
+
+	/** File which games that can't be written are appended to */
+	public static final String DEAD_LETTER_FILE = "data/dead_letter.xml";
+
+	/** Default time in milliseconds between syncs of the journal to disk. */
+	public static final int DEFAULT_JOURNAL_SYNC_INTERVAL = 100;
+
+	/** Default time in milliseconds between syncs of the archive to disk. */
+	public static final int DEFAULT_ARCHIVE_SYNC_INTERVAL = 1000;
+
+	/** Default maximum number of game results waiting to be written. */
+	public static final int DEFAULT_WRITE_BUFFER = 1000;
+
+	/** Number of rows in a page of data sent to the administrator. */
+	public static final int DEFAULT_PAGE_SIZE = 100;
+
 	// Declare order of tabs in admin data panel
 	/** Users data */
 	public static final String DATA_USERS = "users";
@@ -100,6 +124,17 @@ public interface IServerData {
 	 */
 	public GameOver addGame (GameInfo gameInfo, boolean eloRatings) throws ServerDataException;
 	
+	/**
+	 * Add a game whose players' game summaries have already been updated
+	 * (so the ratings are only worked out once).  The game info and the
+	 * game summaries are saved together.
+	 * 
+	 * @param gameInfo      Information about the game.
+	 * @param gameSummary   Updated game summaries of the players.
+	 * @throws ServerDataException 
+	 */
+	public void addGame (GameInfo gameInfo, GameSummary [] gameSummary) throws ServerDataException;
+	
 	/**
 	 * Return a game summary from a specified game and user.
 	 * 
@@ -110,6 +145,46 @@ public interface IServerData {
 	 */
 	public GameSummary getGameSummary (String gameId, String username) throws ServerDataException;
 	
+	/**
+	 * Save a number of game summaries, replacing the existing game summary
+	 * of each game and user (used when the ratings are recalculated).
+	 * 
+	 * @param gameSummaries  List of org.jogre.server.data.GameSummary objects.
+	 * @throws ServerDataException
+	 */
+	public void saveGameSummaries (List gameSummaries) throws ServerDataException;
+	
+	/**
+	 * Return the rank of a user in a game (users are ranked by rating).
+	 * 
+	 * @param gameKey   Game key e.g. "chess".
+	 * @param username  Username e.g. "bob".
+	 * @return          Rank or null if the user has no game summary.
+	 * @throws ServerDataException
+	 */
+	public Rank getRank (String gameKey, String username) throws ServerDataException;
+	
+	/**
+	 * Return the highest ranks of a game.
+	 * 
+	 * @param gameKey   Game key e.g. "chess".
+	 * @param num       Number of ranks.
+	 * @return          List of org.jogre.server.data.Rank objects.
+	 * @throws ServerDataException
+	 */
+	public List getTopRanks (String gameKey, int num) throws ServerDataException;
+	
+	/**
+	 * Return the ranks of a game around a user.
+	 * 
+	 * @param gameKey   Game key e.g. "chess".
+	 * @param username  Username e.g. "bob".
+	 * @param num       Number of ranks above and below the user.
+	 * @return          List of org.jogre.server.data.Rank objects.
+	 * @throws ServerDataException
+	 */
+	public List getRanksAround (String gameKey, String username, int num) throws ServerDataException;
+	
 	/**
 	 * Update the server snapshot.
 	 * 
@@ -153,6 +228,61 @@ public interface IServerData {
 	 */
 	public List getGameInfos() throws ServerDataException;
 
+	/**
+	 * Return a page of users ordered by username.
+	 * 
+	 * @param cursor  Cursor from the previous page (null for the first page).
+	 * @param num     Maximum number of users.
+	 * @return        Page of org.jogre.server.data.User objects.
+	 * @throws ServerDataException
+	 */
+	public DataPage getUsers (String cursor, int num) throws ServerDataException;
+
+	/**
+	 * Return a page of game infos.
+	 * 
+	 * @param cursor  Cursor from the previous page (null for the first page).
+	 * @param num     Maximum number of game infos.
+	 * @return        Page of org.jogre.server.data.GameInfo objects.
+	 * @throws ServerDataException
+	 */
+	public DataPage getGameInfos (String cursor, int num) throws ServerDataException;
+
+	/**
+	 * Return a page of game summaries.
+	 * 
+	 * @param cursor  Cursor from the previous page (null for the first page).
+	 * @param num     Maximum number of game summaries.
+	 * @return        Page of org.jogre.server.data.GameSummary objects.
+	 * @throws ServerDataException
+	 */
+	public DataPage getGameSummarys (String cursor, int num) throws ServerDataException;
+
+	/**
+	 * Pass every user to a row handler one at a time.
+	 * 
+	 * @param rowHandler
+	 * @throws ServerDataException
+	 */
+	public void getUsers (IRowHandler rowHandler) throws ServerDataException;
+
+	/**
+	 * Pass every game info to a row handler one at a time.  The game infos
+	 * of each game key come together and in the order they finished.
+	 * 
+	 * @param rowHandler
+	 * @throws ServerDataException
+	 */
+	public void getGameInfos (IRowHandler rowHandler) throws ServerDataException;
+
+	/**
+	 * Pass every game summary to a row handler one at a time.
+	 * 
+	 * @param rowHandler
+	 * @throws ServerDataException
+	 */
+	public void getGameSummarys (IRowHandler rowHandler) throws ServerDataException;
+
 	/**
 	 * Add a new user.  Throws an exception if a user already exists or if there is a
 	 * problem.
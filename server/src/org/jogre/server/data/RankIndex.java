@@ -0,0 +1,299 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * <p>Ranks the users of one game by rating.  The users are kept in an order
+ * statistic tree (a treap where each node knows the size of its sub tree)
+ * so updating a rating, the rank of a user and the user at a rank all take
+ * O(log n).</p>
+ *
+ * <p>Users with the same rating are ordered by username so every user has
+ * a different rank.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class RankIndex {
+
+	private String gameKey;
+
+	/** Username -> Integer rating. */
+	private Map ratings = new HashMap ();
+
+	private Node root = null;
+	private Random random = new Random ();
+
+	/**
+	 * Constructor.
+	 *
+	 * @param gameKey   Game key e.g. chess.
+	 */
+	public RankIndex (String gameKey) {
+		this.gameKey = gameKey;
+	}
+
+	/**
+	 * Return the game key.
+	 *
+	 * @return
+	 */
+	public String getGameKey () {
+		return gameKey;
+	}
+
+	/**
+	 * Add a user or change their rating.
+	 *
+	 * @param username
+	 * @param rating
+	 */
+	public synchronized void update (String username, int rating) {
+		Integer oldRating = (Integer)ratings.put (username, new Integer (rating));
+		if (oldRating != null) {
+			if (oldRating.intValue () == rating)
+				return;
+			root = remove (root, oldRating.intValue (), username);
+		}
+		root = insert (root, new Node (username, rating, random.nextInt ()));
+	}
+
+	/**
+	 * Remove a user.
+	 *
+	 * @param username
+	 */
+	public synchronized void remove (String username) {
+		Integer rating = (Integer)ratings.remove (username);
+		if (rating != null)
+			root = remove (root, rating.intValue (), username);
+	}
+
+	/**
+	 * Return the number of users.
+	 *
+	 * @return
+	 */
+	public synchronized int size () {
+		return ratings.size ();
+	}
+
+	/**
+	 * Return the rank of a user.
+	 *
+	 * @param username
+	 * @return          Rank or null if the user isn't in the index.
+	 */
+	public synchronized Rank getRank (String username) {
+		Integer rating = (Integer)ratings.get (username);
+		if (rating == null)
+			return null;
+
+		int rank = 0;
+		Node node = root;
+		while (node != null) {
+			int c = compare (rating.intValue (), username, node);
+			if (c < 0)
+				node = node.left;
+			else {
+				rank += size (node.left) + 1;
+				if (c == 0)
+					break;
+				node = node.right;
+			}
+		}
+		return new Rank (username, rating.intValue (), rank);
+	}
+
+	/**
+	 * Return a number of ranks.
+	 *
+	 * @param from   First rank (1 is the highest rating).
+	 * @param num    Maximum number of ranks.
+	 * @return       List of Rank objects.
+	 */
+	public synchronized List getRanks (int from, int num) {
+		from = Math.max (1, from);
+		int to = Math.min (ratings.size (), from + num - 1);
+
+		List ranks = new ArrayList ();
+		for (int rank = from; rank <= to; rank++) {
+			Node node = select (rank);
+			ranks.add (new Rank (node.username, node.rating, rank));
+		}
+		return ranks;
+	}
+
+	/**
+	 * Return the highest ranks.
+	 *
+	 * @param num    Number of ranks.
+	 * @return       List of Rank objects.
+	 */
+	public List getTop (int num) {
+		return getRanks (1, num);
+	}
+
+	/**
+	 * Return the ranks around a user.
+	 *
+	 * @param username
+	 * @param num       Number of ranks above and below the user.
+	 * @return          List of Rank objects (empty if the user isn't in the
+	 *                  index).
+	 */
+	public synchronized List getAround (String username, int num) {
+		Rank rank = getRank (username);
+		if (rank == null)
+			return new ArrayList ();
+		int from = Math.max (1, rank.getRank () - num);
+		return getRanks (from, rank.getRank () + num - from + 1);
+	}
+
+	/**
+	 * Return the node at a rank.
+	 */
+	private Node select (int rank) {
+		Node node = root;
+		while (node != null) {
+			int leftSize = size (node.left);
+			if (rank <= leftSize)
+				node = node.left;
+			else if (rank == leftSize + 1)
+				return node;
+			else {
+				rank -= leftSize + 1;
+				node = node.right;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Compare a rating / username with a node (higher ratings first).
+	 */
+	private static int compare (int rating, String username, Node node) {
+		if (rating != node.rating)
+			return rating > node.rating ? -1 : 1;
+		return username.compareTo (node.username);
+	}
+
+	private static int size (Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static Node insert (Node node, Node newNode) {
+		if (node == null)
+			return newNode;
+
+		if (compare (newNode.rating, newNode.username, node) < 0) {
+			node.left = insert (node.left, newNode);
+			if (node.left.priority > node.priority)
+				node = rotateRight (node);
+		}
+		else {
+			node.right = insert (node.right, newNode);
+			if (node.right.priority > node.priority)
+				node = rotateLeft (node);
+		}
+		node.resize ();
+		return node;
+	}
+
+	private static Node remove (Node node, int rating, String username) {
+		if (node == null)
+			return null;
+
+		int c = compare (rating, username, node);
+		if (c < 0)
+			node.left = remove (node.left, rating, username);
+		else if (c > 0)
+			node.right = remove (node.right, rating, username);
+		else
+			return merge (node.left, node.right);
+
+		node.resize ();
+		return node;
+	}
+
+	/**
+	 * Merge two trees where every node of left is before every node of right.
+	 */
+	private static Node merge (Node left, Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+
+		if (left.priority > right.priority) {
+			left.right = merge (left.right, right);
+			left.resize ();
+			return left;
+		}
+		right.left = merge (left, right.left);
+		right.resize ();
+		return right;
+	}
+
+	private static Node rotateRight (Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.resize ();
+		left.resize ();
+		return left;
+	}
+
+	private static Node rotateLeft (Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.resize ();
+		right.resize ();
+		return right;
+	}
+
+	/**
+	 * Node of the tree.
+	 */
+	private static class Node {
+		private String username;
+		private int rating;
+		private int priority;
+		private int size = 1;
+		private Node left, right;
+
+		public Node (String username, int rating, int priority) {
+			this.username = username;
+			this.rating   = rating;
+			this.priority = priority;
+		}
+
+		public void resize () {
+			size = size (left) + size (right) + 1;
+		}
+	}
+}
@@ -27,6 +27,9 @@ package org.jogre.server.data;
  */
 public class ServerDataException extends Exception {
 	
+	/** True if trying again can't work (e.g. the data is invalid). */
+	private boolean permanent = false;
+	
 	/**
 	 * Server data exception.
 	 * 
@@ -35,4 +38,25 @@ public class ServerDataException extends Exception {
 	public ServerDataException (String message) {
 		super (message);
 	}
+	
+	/**
+	 * Server data exception which may be permanent.
+	 * 
+	 * @param message
+	 * @param permanent  True if trying again can't work.
+	 */
+	public ServerDataException (String message, boolean permanent) {
+		super (message);
+		this.permanent = permanent;
+	}
+	
+	/**
+	 * Return true if trying again can't work (e.g. the data is invalid)
+	 * rather than the data store being unavailable.
+	 * 
+	 * @return
+	 */
+	public boolean isPermanent () {
+		return permanent;
+	}
 }
\ No newline at end of file
@@ -21,6 +21,7 @@ package org.jogre.server.data;
 
 import org.jogre.server.ServerProperties;
 import org.jogre.server.data.db.ServerDataDB;
+import org.jogre.server.data.journal.ServerDataJournal;
 import org.jogre.server.data.xml.ServerDataXML;
 
 /**
@@ -32,28 +33,50 @@ import org.jogre.server.data.xml.ServerDataXML;
  */
 public class ServerDataFactory {
 	
+	/** Time in milliseconds to write what is queued when the server stops. */
+	private static final long CLOSE_TIMEOUT = 10000;
+
 	/**
 	 * Static factory method which will return an instance of a 
 	 * data connection depending on the server_data attribute 
-	 * in the "server.xml" file.
+	 * in the "server.xml" file.  Unless write_behind is false the
+	 * game results and snapshots are written on a background thread.
 	 * 
 	 * @return       Server connection instance (local / master).
+	 * @throws ServerDataException  If the server data can't be opened.
 	 */
-	public static IServerData getInstance ()  {
-		String userConnProp = ServerProperties.getInstance().getCurrentServerData();
+	public static IServerData getInstance () throws ServerDataException {
+		ServerProperties serverProperties = ServerProperties.getInstance();
+		String userConnProp = serverProperties.getCurrentServerData();
+		IServerData serverData = null;
 		
 		// Depending on value - load correct instance.
 		if (userConnProp.equals (IServerData.XML))
-			return new ServerDataXML ();		// link to local file system
+			serverData = new ServerDataXML ();		// link to local file system
+        else if (userConnProp.equals (IServerData.JOURNAL))
+            serverData = new ServerDataJournal ();  // append only journal
         else if (userConnProp.equals(IServerData.DATABASE))
-            return new ServerDataDB ();     // link to master server
+            serverData = new ServerDataDB ();     // link to master server
         else if (userConnProp.equals(IServerData.JOGRE_DOT_ORG))
-			return new ServerDataDB ();		// link to master server
+			serverData = new ServerDataDB ();		// link to master server
 		else {
 			System.err.println ("No user connection defined");
 			System.exit (0);		// Exit
 		}		
 		
-		return null;
+		if (serverData != null && serverProperties.isWriteBehind()) {
+			final WriteBehindServerData writeBehind =
+				new WriteBehindServerData (serverData, serverProperties.getWriteBuffer());
+
+			// Write anything still queued when the server stops
+			Runtime.getRuntime().addShutdownHook (new Thread () {
+				public void run () {
+					writeBehind.close (CLOSE_TIMEOUT);
+				}
+			});
+			return writeBehind;
+		}
+		
+		return serverData;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,762 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import org.jogre.common.GameOver;
+import org.jogre.common.util.JogreLogger;
+import org.jogre.common.util.JogreUtils;
+import org.jogre.server.data.xml.GameInfoXML;
+
+/**
+ * <p>Server data which sits in front of another IServerData and writes
+ * game results and snapshots to it on a background thread, so the server
+ * threads never wait on the disk or database.</p>
+ *
+ * <ul>
+ * <li>Snapshots are coalesced per game key - only the latest numbers of
+ *     users / tables of each game are written.</li>
+ * <li>Game results are queued in order and written in batches.  The new
+ *     ratings are worked out straight away from game summaries held in
+ *     memory (players with unwritten results are always held) so
+ *     getGameSummary always returns what has been added.</li>
+ * <li>Each game is written with the game summaries worked out when it was
+ *     added, so the ratings are only worked out once.</li>
+ * <li>If a write fails the results stay in the queue and are retried with a
+ *     growing delay.  The queue is bounded - once it is full the oldest
+ *     result is dropped (and logged).  A game which can never be written
+ *     (e.g. invalid data) is logged and appended to a dead letter file.
+ *     The held game summaries of a dropped game are forgotten (unless a
+ *     later game of the player is queued) so they are read again.</li>
+ * </ul>
+ *
+ * <p>Users and the admin lists go straight through to the other server
+ * data.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class WriteBehindServerData extends AbstractServerData implements Runnable {
+
+	/** First delay in milliseconds before retrying a failed write. */
+	private static final long RETRY_DELAY = 1000;
+
+	/** Longest delay in milliseconds between retries. */
+	private static final long MAX_RETRY_DELAY = 30000;
+
+	/** Number of game summaries held in memory (not counting unwritten ones). */
+	private static final int CACHE_SIZE = 5000;
+
+	/** Time to wait for queued games before saving game summaries. */
+	private static final long SAVE_TIMEOUT = 10000;
+
+	/** Logging */
+	private JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** Server data which is written to. */
+	private IServerData serverData;
+
+	/** Maximum number of game results waiting to be written. */
+	private int retryBufferSize;
+
+	/** Game results (PendingGame objects) in order. */
+	private LinkedList games = new LinkedList ();
+
+	/** Latest snapshot of each game key (int [] {users, tables}). */
+	private Map snapshots = new HashMap ();
+
+	/** Number of unwritten results of each game summary key. */
+	private Map pending = new HashMap ();
+
+	/** Game summaries keyed on game key / username, least recently used first. */
+	private Map cache;
+
+	/** Number of games added / summaries saved (stops stale reads being cached). */
+	private long numOfUpdates = 0;
+
+	/** Number of games dropped because the queue was full. */
+	private long numOfGamesDropped = 0;
+
+	/** Number of games which couldn't be written. */
+	private long numOfGamesFailed = 0;
+
+	/** File which games which can't be written are appended to. */
+	private File deadLetterFile;
+
+	/** True while the writer thread is writing a batch. */
+	private boolean writing = false;
+
+	private boolean closed = false;
+
+	private Thread writer;
+
+	/**
+	 * Constructor which starts the writer thread.
+	 *
+	 * @param serverData       Server data to write to.
+	 * @param retryBufferSize  Maximum number of unwritten game results.
+	 */
+	public WriteBehindServerData (IServerData serverData, int retryBufferSize) {
+		this (serverData, retryBufferSize, new File (DEAD_LETTER_FILE));
+	}
+
+	/**
+	 * Constructor which starts the writer thread.
+	 *
+	 * @param serverData       Server data to write to.
+	 * @param retryBufferSize  Maximum number of unwritten game results.
+	 * @param deadLetterFile   File which games which can't be written are appended to.
+	 */
+	public WriteBehindServerData (IServerData serverData, int retryBufferSize, File deadLetterFile) {
+		this.serverData = serverData;
+		this.retryBufferSize = Math.max (1, retryBufferSize);
+		this.deadLetterFile = deadLetterFile;
+
+		this.cache = new LinkedHashMap (16, 0.75f, true) {
+			protected boolean removeEldestEntry (Map.Entry eldest) {
+				return size () > CACHE_SIZE && !pending.containsKey (eldest.getKey ());
+			}
+		};
+
+		writer = new Thread (this, "ServerDataWriter");
+		writer.setDaemon (true);
+		writer.start ();
+	}
+
+	/**
+	 * Return the server data which is written to.
+	 *
+	 * @return
+	 */
+	public IServerData getServerData () {
+		return serverData;
+	}
+
+	/**
+	 * Return the type of the server data which is written to.
+	 *
+	 * @see org.jogre.server.data.IServerData#getType()
+	 */
+	public String getType () {
+		return serverData.getType ();
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#containsUser(java.lang.String)
+	 */
+	public boolean containsUser (String username) throws ServerDataException {
+		return serverData.containsUser (username);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#containsUser(java.lang.String, java.lang.String)
+	 */
+	public boolean containsUser (String username, String password) throws ServerDataException {
+		return serverData.containsUser (username, password);
+	}
+
+	/**
+	 * Work out the new ratings from the game summaries in memory and queue
+	 * the game to be written.
+	 *
+	 * @see org.jogre.server.data.IServerData#addGame(org.jogre.server.data.GameInfo, boolean)
+	 */
+	public GameOver addGame (GameInfo gameInfo, boolean eloRatings) throws ServerDataException {
+		String    gameKey = gameInfo.getGameKey ();
+		String [] players = JogreUtils.convertToStringArray (gameInfo.getPlayers ());
+		int    [] results = JogreUtils.convertToIntArray (gameInfo.getResults ());
+
+		// Normally the players' summaries are in memory from when they logged
+		// on.  Any which aren't are read without the lock and only kept if no
+		// game was added while they were read (otherwise they are read again).
+		GameSummary [] read = new GameSummary [players.length];
+		boolean     [] toRead = new boolean [players.length];
+		long readAt = -1;
+		while (true) {
+			boolean missing = false;
+			synchronized (this) {
+				for (int i = 0; i < players.length; i++) {
+					String key = getKey (gameKey, players [i]);
+					toRead [i] = false;
+					if (cache.get (key) != null)
+						continue;
+					if (read [i] != null && readAt == numOfUpdates)
+						cache.put (key, read [i]);
+					else
+						missing = toRead [i] = true;
+				}
+				if (!missing)
+					return queueGame (gameInfo, eloRatings, players, results);
+				readAt = numOfUpdates;
+			}
+
+			for (int i = 0; i < players.length; i++) {
+				if (toRead [i])
+					read [i] = serverData.getGameSummary (gameKey, players [i]);
+			}
+		}
+	}
+
+	/**
+	 * Work out the new ratings of a game whose players' game summaries are
+	 * all in memory and queue the game.  Must be called with the lock.
+	 */
+	private GameOver queueGame (GameInfo gameInfo, boolean eloRatings, String [] players, int [] results) {
+		String gameKey = gameInfo.getGameKey ();
+		GameSummary [] gameSummary = new GameSummary [players.length];
+		for (int i = 0; i < players.length; i++)
+			gameSummary [i] = (GameSummary)cache.get (getKey (gameKey, players [i]));
+
+		GameOver gameOver = updateGameSummaries (gameKey, players, results, gameSummary, eloRatings);
+		queueGame (gameInfo, gameSummary);
+
+		return gameOver;
+	}
+
+	/**
+	 * Queue a game whose players' game summaries have already been updated.
+	 *
+	 * @see org.jogre.server.data.IServerData#addGame(org.jogre.server.data.GameInfo, org.jogre.server.data.GameSummary[])
+	 */
+	public synchronized void addGame (GameInfo gameInfo, GameSummary [] gameSummary) {
+		GameSummary [] held = new GameSummary [gameSummary.length];
+		for (int i = 0; i < gameSummary.length; i++) {
+			held [i] = copy (gameSummary [i]);
+			cache.put (getKey (held [i].getGameKey (), held [i].getUsername ()), held [i]);
+		}
+		queueGame (gameInfo, held);
+	}
+
+	/**
+	 * Queue a game with copies of its updated game summaries (dropping the
+	 * oldest game if the queue is full).  Must be called with the lock.
+	 */
+	private void queueGame (GameInfo gameInfo, GameSummary [] gameSummary) {
+		String      [] keys    = new String [gameSummary.length];
+		GameSummary [] written = new GameSummary [gameSummary.length];
+		for (int i = 0; i < gameSummary.length; i++) {
+			keys [i] = getKey (gameSummary [i].getGameKey (), gameSummary [i].getUsername ());
+			written [i] = copy (gameSummary [i]);
+			addPending (keys [i], 1);
+		}
+
+		if (games.size () >= retryBufferSize) {
+			PendingGame dropped = (PendingGame)games.removeFirst ();
+			forget (dropped);
+			numOfGamesDropped++;
+			logger.error ("addGame", "Write queue full, dropped game: " +
+			              dropped.gameInfo.getGameKey () + " " + dropped.gameInfo.getPlayers ());
+		}
+		games.addLast (new PendingGame (gameInfo, written, keys));
+		numOfUpdates++;
+		notifyAll ();
+	}
+
+	/**
+	 * Return a game summary - from memory if possible.
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameSummary(java.lang.String, java.lang.String)
+	 */
+	public GameSummary getGameSummary (String gameKey, String username) throws ServerDataException {
+		String key = getKey (gameKey, username);
+		long added;
+		synchronized (this) {
+			GameSummary gameSummary = (GameSummary)cache.get (key);
+			if (gameSummary != null)
+				return copy (gameSummary);
+			added = numOfUpdates;
+		}
+
+		GameSummary gameSummary = serverData.getGameSummary (gameKey, username);
+		synchronized (this) {
+			// Only keep it if no game was added while it was read
+			if (added == numOfUpdates && !cache.containsKey (key))
+				cache.put (key, copy (gameSummary));
+		}
+		return gameSummary;
+	}
+
+	/**
+	 * Write the queued games and then save the game summaries straight
+	 * away (they would be overwritten by games which are still queued).
+	 * Games of the saved game summaries mustn't be added while they are
+	 * saved (RatingRecalculator holds them back).
+	 *
+	 * @see org.jogre.server.data.IServerData#saveGameSummaries(java.util.List)
+	 */
+	public void saveGameSummaries (List gameSummaries) throws ServerDataException {
+		if (!flush (SAVE_TIMEOUT))
+			throw new ServerDataException ("Games are still waiting to be written");
+
+		synchronized (this) {
+			for (int i = 0; i < gameSummaries.size (); i++) {
+				GameSummary gameSummary = (GameSummary)gameSummaries.get (i);
+				if (pending.containsKey (getKey (gameSummary.getGameKey (), gameSummary.getUsername ())))
+					throw new ServerDataException ("Games are still waiting to be written");
+			}
+		}
+
+		serverData.saveGameSummaries (gameSummaries);
+
+		// The held game summaries are replaced so players get the new ratings
+		synchronized (this) {
+			for (int i = 0; i < gameSummaries.size (); i++) {
+				GameSummary gameSummary = (GameSummary)gameSummaries.get (i);
+				cache.put (getKey (gameSummary.getGameKey (), gameSummary.getUsername ()), copy (gameSummary));
+			}
+			numOfUpdates++;
+		}
+	}
+
+	/**
+	 * Return the rank of a user from the written game summaries.
+	 *
+	 * @see org.jogre.server.data.IServerData#getRank(java.lang.String, java.lang.String)
+	 */
+	public Rank getRank (String gameKey, String username) throws ServerDataException {
+		return serverData.getRank (gameKey, username);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#getTopRanks(java.lang.String, int)
+	 */
+	public List getTopRanks (String gameKey, int num) throws ServerDataException {
+		return serverData.getTopRanks (gameKey, num);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#getRanksAround(java.lang.String, java.lang.String, int)
+	 */
+	public List getRanksAround (String gameKey, String username, int num) throws ServerDataException {
+		return serverData.getRanksAround (gameKey, username, num);
+	}
+
+	/**
+	 * Queue the snapshot of a game (replacing one which hasn't been written).
+	 *
+	 * @see org.jogre.server.data.IServerData#updateSnapshot(java.lang.String, int, int)
+	 */
+	public synchronized void updateSnapshot (String gameId, int numOfUsers, int numOfTables) {
+		snapshots.put (gameId, new int [] {numOfUsers, numOfTables});
+		notifyAll ();
+	}
+
+	/**
+	 * Reset the snapshot straight away (this happens when the server starts).
+	 *
+	 * @see org.jogre.server.data.IServerData#resetSnapshot(java.util.Vector)
+	 */
+	public void resetSnapshot (Vector gameKeys) throws ServerDataException {
+		synchronized (this) {
+			snapshots.clear ();
+		}
+		serverData.resetSnapshot (gameKeys);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#getUsers()
+	 */
+	public List getUsers () throws ServerDataException {
+		return serverData.getUsers ();
+	}
+
+	/**
+	 * Return the game summaries which have been written.
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameSummarys()
+	 */
+	public List getGameSummarys () throws ServerDataException {
+		return serverData.getGameSummarys ();
+	}
+
+	/**
+	 * Return the game infos which have been written.
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameInfos()
+	 */
+	public List getGameInfos () throws ServerDataException {
+		return serverData.getGameInfos ();
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#getUsers(java.lang.String, int)
+	 */
+	public DataPage getUsers (String cursor, int num) throws ServerDataException {
+		return serverData.getUsers (cursor, num);
+	}
+
+	/**
+	 * Return a page of the game summaries which have been written.
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameSummarys(java.lang.String, int)
+	 */
+	public DataPage getGameSummarys (String cursor, int num) throws ServerDataException {
+		return serverData.getGameSummarys (cursor, num);
+	}
+
+	/**
+	 * Return a page of the game infos which have been written.
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameInfos(java.lang.String, int)
+	 */
+	public DataPage getGameInfos (String cursor, int num) throws ServerDataException {
+		return serverData.getGameInfos (cursor, num);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#getUsers(org.jogre.server.data.IRowHandler)
+	 */
+	public void getUsers (IRowHandler rowHandler) throws ServerDataException {
+		serverData.getUsers (rowHandler);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#getGameSummarys(org.jogre.server.data.IRowHandler)
+	 */
+	public void getGameSummarys (IRowHandler rowHandler) throws ServerDataException {
+		serverData.getGameSummarys (rowHandler);
+	}
+
+	/**
+	 * Write the queued games and then pass every game info to a row handler
+	 * (so none of the games which have been added are missed).
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameInfos(org.jogre.server.data.IRowHandler)
+	 */
+	public void getGameInfos (IRowHandler rowHandler) throws ServerDataException {
+		if (!flush (SAVE_TIMEOUT))
+			throw new ServerDataException ("Games are still waiting to be written");
+		serverData.getGameInfos (rowHandler);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#newUser(org.jogre.server.data.User)
+	 */
+	public void newUser (User user) throws ServerDataException {
+		serverData.newUser (user);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#deleteUser(org.jogre.server.data.User)
+	 */
+	public void deleteUser (User user) throws ServerDataException {
+		serverData.deleteUser (user);
+	}
+
+	/**
+	 * @see org.jogre.server.data.IServerData#updateUser(org.jogre.server.data.User)
+	 */
+	public void updateUser (User user) throws ServerDataException {
+		serverData.updateUser (user);
+	}
+
+	/**
+	 * Return the number of game results which haven't been written yet.
+	 *
+	 * @return
+	 */
+	public synchronized int getNumOfPendingGames () {
+		return games.size ();
+	}
+
+	/**
+	 * Return the number of game results dropped because the queue was full.
+	 *
+	 * @return
+	 */
+	public synchronized long getNumOfGamesDropped () {
+		return numOfGamesDropped;
+	}
+
+	/**
+	 * Return the number of game results which couldn't be written and went
+	 * to the dead letter file.
+	 *
+	 * @return
+	 */
+	public synchronized long getNumOfGamesFailed () {
+		return numOfGamesFailed;
+	}
+
+	/**
+	 * Wait until everything queued has been written.
+	 *
+	 * @param timeout  Maximum time to wait in milliseconds.
+	 * @return         True if everything was written.
+	 */
+	public synchronized boolean flush (long timeout) {
+		long end = System.currentTimeMillis () + timeout;
+		while (writing || !games.isEmpty () || !snapshots.isEmpty ()) {
+			long wait = end - System.currentTimeMillis ();
+			if (wait <= 0 || !writer.isAlive ())
+				return false;
+			try {
+				wait (wait);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write what is queued (waiting up to timeout) and stop the writer.
+	 *
+	 * @param timeout  Maximum time to wait in milliseconds.
+	 */
+	public void close (long timeout) {
+		boolean flushed = flush (timeout);
+		synchronized (this) {
+			closed = true;
+			notifyAll ();
+		}
+		if (!flushed)
+			logger.error ("close", "Not written: " + getNumOfPendingGames () + " games");
+	}
+
+	/**
+	 * Writer thread which writes the queued games and snapshots in batches.
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run () {
+		long retryDelay = RETRY_DELAY;
+		while (true) {
+			PendingGame [] batch;
+			Map snapshotBatch;
+			synchronized (this) {
+				while (!closed && games.isEmpty () && snapshots.isEmpty ()) {
+					try {
+						wait ();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (closed)
+					return;
+
+				batch = (PendingGame [])games.toArray (new PendingGame [games.size ()]);
+				snapshotBatch = snapshots;
+				snapshots = new HashMap ();
+				writing = true;
+			}
+
+			boolean written = writeGames (batch);
+			written = writeSnapshots (snapshotBatch) && written;
+
+			synchronized (this) {
+				writing = false;
+				notifyAll ();
+
+				if (!written) {
+					// Wait and try again (unless closed)
+					long retryTime = System.currentTimeMillis () + retryDelay;
+					long wait;
+					while (!closed && (wait = retryTime - System.currentTimeMillis ()) > 0) {
+						try {
+							wait (wait);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+					retryDelay = Math.min (retryDelay * 2, MAX_RETRY_DELAY);
+				}
+				else
+					retryDelay = RETRY_DELAY;
+			}
+		}
+	}
+
+	/**
+	 * Write games in order, stopping at the first which fails and may work
+	 * if it is retried.  A game which can never be written is taken out of
+	 * the queue and dead lettered.
+	 *
+	 * @param batch  Games to write.
+	 * @return       True if all were written.
+	 */
+	private boolean writeGames (PendingGame [] batch) {
+		for (int i = 0; i < batch.length; i++) {
+			boolean written = false;
+			try {
+				serverData.addGame (batch [i].gameInfo, batch [i].gameSummary);
+				written = true;
+			}
+			catch (ServerDataException sdEx) {
+				if (!sdEx.isPermanent ()) {
+					logger.error ("writeGames", "Will retry " + (batch.length - i) + " games: " + sdEx.getMessage ());
+					return false;
+				}
+				deadLetter (batch [i], sdEx);
+			}
+			catch (RuntimeException rtEx) {
+				deadLetter (batch [i], rtEx);
+			}
+
+			synchronized (this) {
+				// May have been dropped while it was written
+				if (!games.isEmpty () && games.getFirst () == batch [i]) {
+					games.removeFirst ();
+					if (written)
+						release (batch [i]);
+					else {
+						forget (batch [i]);
+						numOfGamesFailed++;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Log a game which can never be written and append it to the dead
+	 * letter file (so it can be looked at / added by hand).
+	 *
+	 * @param game   Game which failed.
+	 * @param cause  Why it failed.
+	 */
+	private void deadLetter (PendingGame game, Exception cause) {
+		String line = GameInfoXML.flatten (game.gameInfo).asXML ();
+		logger.error ("writeGames", "Unable to write game: " + cause.getMessage () + " " + line);
+
+		Writer out = null;
+		try {
+			out = new FileWriter (deadLetterFile, true);
+			out.write (line + "\n");
+		}
+		catch (IOException ioEx) {
+			logger.error ("writeGames", "Unable to write dead letter file: " + ioEx.getMessage ());
+		}
+		finally {
+			if (out != null) {
+				try {
+					out.close ();
+				} catch (IOException e) {}
+			}
+		}
+	}
+
+	/**
+	 * Write snapshots.  Any which fail go back in the queue unless a newer
+	 * one has been queued.
+	 *
+	 * @param snapshotBatch  Game key -> int [] {users, tables}.
+	 * @return               True if all were written.
+	 */
+	private boolean writeSnapshots (Map snapshotBatch) {
+		Iterator it = snapshotBatch.entrySet ().iterator ();
+		while (it.hasNext ()) {
+			Map.Entry entry = (Map.Entry)it.next ();
+			int [] snapshot = (int [])entry.getValue ();
+			try {
+				serverData.updateSnapshot ((String)entry.getKey (), snapshot [0], snapshot [1]);
+				it.remove ();
+			}
+			catch (Exception e) {
+				logger.error ("writeSnapshots", "Will retry snapshots: " + e.getMessage ());
+				synchronized (this) {
+					Iterator unwritten = snapshotBatch.entrySet ().iterator ();
+					while (unwritten.hasNext ()) {
+						Map.Entry next = (Map.Entry)unwritten.next ();
+						if (!snapshots.containsKey (next.getKey ()))
+							snapshots.put (next.getKey (), next.getValue ());
+					}
+				}
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Add to the number of unwritten results of a game summary.
+	 */
+	private void addPending (String key, int num) {
+		int [] count = (int [])pending.get (key);
+		if (count == null)
+			pending.put (key, count = new int [1]);
+		count [0] += num;
+		if (count [0] <= 0)
+			pending.remove (key);
+	}
+
+	/**
+	 * A game has been written (or dropped) so its game summaries can be
+	 * forgotten about when the cache is full.
+	 */
+	private void release (PendingGame game) {
+		for (int i = 0; i < game.keys.length; i++)
+			addPending (game.keys [i], -1);
+	}
+
+	/**
+	 * A game has been dropped or couldn't be written so the held game
+	 * summaries of its players are forgotten and read again (unless a
+	 * later game of the player, which will write them, is queued).
+	 */
+	private void forget (PendingGame game) {
+		release (game);
+		for (int i = 0; i < game.keys.length; i++) {
+			if (!pending.containsKey (game.keys [i]))
+				cache.remove (game.keys [i]);
+		}
+	}
+
+	/**
+	 * Return the key of a game summary.
+	 */
+	private static String getKey (String gameKey, String username) {
+		return gameKey + "/" + username;
+	}
+
+	/**
+	 * Return a copy of a game summary.
+	 */
+	private static GameSummary copy (GameSummary gs) {
+		return gs.copy ();
+	}
+
+	/**
+	 * Game result which hasn't been written yet.
+	 */
+	private static class PendingGame {
+		private GameInfo gameInfo;
+		private GameSummary [] gameSummary;
+		private String [] keys;
+
+		private PendingGame (GameInfo gameInfo, GameSummary [] gameSummary, String [] keys) {
+			this.gameInfo = gameInfo;
+			this.gameSummary = gameSummary;
+			this.keys = keys;
+		}
+	}
+}
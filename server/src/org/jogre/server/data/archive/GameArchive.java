@@ -0,0 +1,402 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data.archive;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.jogre.common.util.JogreLogger;
+import org.jogre.server.ServerProperties;
+import org.jogre.server.data.IRowHandler;
+import org.jogre.server.data.IServerData;
+import org.jogre.server.data.ServerDataException;
+
+/**
+ * <p>Archive of game records which keeps the full move list of every game
+ * outside the server data (where the history of a game info is a short
+ * string).  There are two files:</p>
+ * <ul>
+ * <li><b>games.dat</b> - the records one after the other, each one
+ *     starting with its length.</li>
+ * <li><b>games.idx</b> - the offset in games.dat of each record (8 bytes
+ *     per record) so a record can be read by ID with two seeks.  Record
+ *     IDs start at 1.</li>
+ * </ul>
+ *
+ * <p>Records are only appended and a sync thread forces them to disk a
+ * short time after they are written.  A record which was only partly
+ * written (or whose length is corrupt) when the server stopped is cut off
+ * when the archive is opened and records which were written without their
+ * index entry are indexed again.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class GameArchive implements Runnable {
+
+	// Declare file names
+	private static final String DATA_FILENAME  = "games.dat";
+	private static final String INDEX_FILENAME = "games.idx";
+
+	/** Size of an index entry. */
+	private static final int INDEX_ENTRY_SIZE = 8;
+
+	/** Largest length of a record (a longer one is corrupt). */
+	private static final int MAX_RECORD_SIZE = 1 << 24;
+
+	/** Logging */
+	private JogreLogger logger = new JogreLogger (this.getClass());
+
+	private File dataFile;
+	private RandomAccessFile data, index;
+
+	/** Time in milliseconds between syncs. */
+	private long syncInterval;
+
+	/** Number of records (also the ID of the last record). */
+	private long numOfRecords = 0;
+
+	/** True if records have been appended since the last sync. */
+	private boolean dirty = false;
+
+	private boolean closed = false;
+
+	/**
+	 * Constructor which opens the archive in the location set in the
+	 * "server.xml" file.
+	 *
+	 * @throws IOException
+	 */
+	public GameArchive () throws IOException {
+		this (new File (ServerProperties.getInstance ().getArchiveLocation ()),
+		      ServerProperties.getInstance ().getArchiveSyncInterval ());
+	}
+
+	/**
+	 * Open the archive in a folder (creating it if it doesn't exist) which
+	 * is synced at the default interval.
+	 *
+	 * @param folder
+	 * @throws IOException
+	 */
+	public GameArchive (File folder) throws IOException {
+		this (folder, IServerData.DEFAULT_ARCHIVE_SYNC_INTERVAL);
+	}
+
+	/**
+	 * Open the archive in a folder (creating it if it doesn't exist) and
+	 * start the sync thread.
+	 *
+	 * @param folder
+	 * @param syncInterval  Time in milliseconds between syncs.
+	 * @throws IOException
+	 */
+	public GameArchive (File folder, long syncInterval) throws IOException {
+		folder.mkdirs ();
+		this.dataFile = new File (folder, DATA_FILENAME);
+		this.syncInterval = Math.max (1, syncInterval);
+		this.data  = new RandomAccessFile (dataFile, "rw");
+		this.index = new RandomAccessFile (new File (folder, INDEX_FILENAME), "rw");
+
+		recover ();
+
+		Thread syncThread = new Thread (this, "GameArchiveSync");
+		syncThread.setDaemon (true);
+		syncThread.start ();
+	}
+
+	/**
+	 * Drop index entries of records which aren't complete, index complete
+	 * records which have no entry and cut off a partly written last record.
+	 *
+	 * @throws IOException
+	 */
+	private void recover () throws IOException {
+		long num = index.length () / INDEX_ENTRY_SIZE;
+		long end = 0;
+		while (num > 0) {
+			index.seek ((num - 1) * INDEX_ENTRY_SIZE);
+			long recordEnd = getRecordEnd (index.readLong ());
+			if (recordEnd != -1) {
+				end = recordEnd;
+				break;
+			}
+			num--;
+		}
+		index.setLength (num * INDEX_ENTRY_SIZE);
+
+		long recordEnd;
+		while ((recordEnd = getRecordEnd (end)) != -1) {
+			index.seek (num * INDEX_ENTRY_SIZE);
+			index.writeLong (end);
+			num++;
+			end = recordEnd;
+		}
+
+		if (end < data.length ()) {
+			logger.error ("recover", "Cut off partly written record in " + dataFile);
+			data.setLength (end);
+		}
+		numOfRecords = num;
+	}
+
+	/**
+	 * Return the end of a complete record.
+	 *
+	 * @param offset   Start of record.
+	 * @return         End of record or -1 if there isn't a complete record
+	 *                 (or its length is corrupt).
+	 * @throws IOException
+	 */
+	private long getRecordEnd (long offset) throws IOException {
+		if (offset < 0 || offset >= data.length ())
+			return -1;
+		try {
+			data.seek (offset);
+			int length = GameRecord.readVarInt (data);
+			if (length < 0 || length > MAX_RECORD_SIZE)
+				return -1;
+			long end = length + data.getFilePointer ();
+			return end <= data.length () ? end : -1;
+		}
+		catch (IOException ioEx) {		// cut off or malformed length
+			return -1;
+		}
+	}
+
+	/**
+	 * Read the length of a record.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException  If it can't be read or is corrupt.
+	 */
+	private int readLength (DataInput in) throws IOException {
+		int length = GameRecord.readVarInt (in);
+		if (length < 0 || length > MAX_RECORD_SIZE)
+			throw new IOException ("Corrupt record length " + length + " in " + dataFile);
+		return length;
+	}
+
+	/**
+	 * Return the number of records.
+	 *
+	 * @return
+	 */
+	public synchronized long getNumOfRecords () {
+		return numOfRecords;
+	}
+
+	/**
+	 * Append a record and set its ID.  It is written to the files straight
+	 * away and forced to disk by the sync thread (or sync () or close ()).
+	 *
+	 * @param record
+	 * @return   ID of the record.
+	 * @throws IOException
+	 */
+	public synchronized long append (GameRecord record) throws IOException {
+		checkOpen ();
+
+		byte [] body = record.encode ();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream (body.length + 5);
+		DataOutputStream out = new DataOutputStream (bytes);
+		GameRecord.writeVarInt (out, body.length);
+		out.write (body);
+
+		// Record first so the index never points at a missing record
+		long offset = data.length ();
+		data.seek (offset);
+		data.write (bytes.toByteArray ());
+		index.seek (numOfRecords * INDEX_ENTRY_SIZE);
+		index.writeLong (offset);
+
+		record.setId (++numOfRecords);
+		if (!dirty) {
+			dirty = true;
+			notifyAll ();
+		}
+		return numOfRecords;
+	}
+
+	/**
+	 * Read a record.
+	 *
+	 * @param id   ID of the record.
+	 * @return     Record or null if there isn't one with this ID.
+	 * @throws IOException
+	 */
+	public synchronized GameRecord read (long id) throws IOException {
+		checkOpen ();
+		if (id < 1 || id > numOfRecords)
+			return null;
+
+		index.seek ((id - 1) * INDEX_ENTRY_SIZE);
+		data.seek (index.readLong ());
+		byte [] body = new byte [readLength (data)];
+		data.readFully (body);
+
+		return GameRecord.decode (id, body);
+	}
+
+	/**
+	 * Pass every record from an ID to a row handler in ID order.  The
+	 * records are read from their own stream so appends aren't held up and
+	 * records appended after this started aren't passed.
+	 *
+	 * @param fromId       ID of the first record.
+	 * @param rowHandler   Is passed GameRecord objects.
+	 * @throws IOException
+	 * @throws ServerDataException  From the row handler.
+	 */
+	public void export (long fromId, IRowHandler rowHandler) throws IOException, ServerDataException {
+		long num, offset;
+		synchronized (this) {
+			checkOpen ();
+			num = numOfRecords;
+			if (fromId < 1)
+				fromId = 1;
+			if (fromId > num)
+				return;
+			index.seek ((fromId - 1) * INDEX_ENTRY_SIZE);
+			offset = index.readLong ();
+		}
+
+		FileInputStream fileIn = new FileInputStream (dataFile);
+		try {
+			skipFully (fileIn, offset);
+			DataInputStream in = new DataInputStream (new BufferedInputStream (fileIn));
+			for (long id = fromId; id <= num; id++) {
+				byte [] body = new byte [readLength (in)];
+				in.readFully (body);
+				rowHandler.handleRow (GameRecord.decode (id, body));
+			}
+		}
+		finally {
+			fileIn.close ();
+		}
+	}
+
+	private static void skipFully (FileInputStream in, long num) throws IOException {
+		while (num > 0) {
+			long skipped = in.skip (num);
+			if (skipped <= 0)
+				throw new EOFException ();
+			num -= skipped;
+		}
+	}
+
+	/**
+	 * Force everything appended to disk.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void sync () throws IOException {
+		if (dirty && !closed) {
+			data.getFD ().sync ();
+			index.getFD ().sync ();
+			dirty = false;
+		}
+	}
+
+	/**
+	 * Sync and close the archive.
+	 */
+	public synchronized void close () {
+		if (closed)
+			return;
+		try {
+			sync ();
+			data.close ();
+			index.close ();
+		}
+		catch (IOException ioEx) {
+			logger.error ("close", ioEx.getMessage ());
+		}
+		closed = true;
+		notifyAll ();
+	}
+
+	/**
+	 * Sync thread.
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run () {
+		while (true) {
+			synchronized (this) {
+				try {
+					while (!dirty && !closed)
+						wait ();
+					if (closed)
+						return;
+
+					// Let more records join this sync
+					wait (syncInterval);
+					sync ();
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+				catch (IOException ioEx) {
+					logger.error ("run", "Unable to sync " + dataFile + ": " + ioEx.getMessage ());
+				}
+			}
+		}
+	}
+
+	private void checkOpen () throws IOException {
+		if (closed)
+			throw new IOException ("Archive closed: " + dataFile);
+	}
+
+	/**
+	 * Export an archive as text, one record per line (ID, game key and
+	 * moves) e.g.
+	 *
+	 * <code>java org.jogre.server.data.archive.GameArchive data/archive</code>
+	 *
+	 * @param args   Folder of the archive and optional first ID.
+	 */
+	public static void main (String [] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println ("Usage: GameArchive <folder> [<first id>]");
+			return;
+		}
+
+		GameArchive archive = new GameArchive (new File (args [0]));
+		long fromId = args.length > 1 ? Long.parseLong (args [1]) : 1;
+		archive.export (fromId, new IRowHandler () {
+			public void handleRow (Object row) {
+				GameRecord record = (GameRecord)row;
+				System.out.println (record.getId () + " " + record);
+			}
+		});
+		archive.close ();
+	}
+}
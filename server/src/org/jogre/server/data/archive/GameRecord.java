@@ -0,0 +1,246 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data.archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * <p>The moves of one game.  Each game type packs a move into an int
+ * (e.g. chess uses the from and to squares) and the moves are stored as
+ * variable length ints (7 bits per byte) so most moves take one or two
+ * bytes.</p>
+ *
+ * <p>A record which has been archived has an ID and the history of its
+ * game info is set to "record:&lt;id&gt;".</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class GameRecord {
+
+	/** Prefix of a game info history which refers to a game record. */
+	public static final String HISTORY_PREFIX = "record:";
+
+	private static final String ENCODING = "UTF-8";
+
+	/** ID in the archive (0 if it hasn't been archived). */
+	private long id = 0;
+
+	private String gameKey;
+
+	private int [] moves;
+	private int numOfMoves = 0;
+
+	/**
+	 * Constructor for an empty game record.
+	 *
+	 * @param gameKey   Game key e.g. chess.
+	 */
+	public GameRecord (String gameKey) {
+		this.gameKey = gameKey;
+		this.moves = new int [32];
+	}
+
+	/**
+	 * Add a move.
+	 *
+	 * @param move   Move packed by the game.
+	 */
+	public void addMove (int move) {
+		if (numOfMoves == moves.length) {
+			int [] newMoves = new int [moves.length * 2];
+			System.arraycopy (moves, 0, newMoves, 0, numOfMoves);
+			moves = newMoves;
+		}
+		moves [numOfMoves++] = move;
+	}
+
+	/**
+	 * Return a move.
+	 *
+	 * @param index   Index of move (0 is the first move).
+	 * @return
+	 */
+	public int getMove (int index) {
+		if (index < 0 || index >= numOfMoves)
+			throw new IndexOutOfBoundsException ("Move " + index + " of " + numOfMoves);
+		return moves [index];
+	}
+
+	/**
+	 * Return the number of moves.
+	 *
+	 * @return
+	 */
+	public int getNumOfMoves () {
+		return numOfMoves;
+	}
+
+	/**
+	 * Return the game key.
+	 *
+	 * @return
+	 */
+	public String getGameKey () {
+		return gameKey;
+	}
+
+	/**
+	 * Return the ID in the archive.
+	 *
+	 * @return   ID or 0 if the record hasn't been archived.
+	 */
+	public long getId () {
+		return id;
+	}
+
+	void setId (long id) {
+		this.id = id;
+	}
+
+	/**
+	 * Return the game info history which refers to this record.
+	 *
+	 * @return
+	 */
+	public String getHistory () {
+		return HISTORY_PREFIX + id;
+	}
+
+	/**
+	 * Return the ID of the game record a game info history refers to.
+	 *
+	 * @param history   History of a game info (can be null).
+	 * @return          ID or 0 if the history isn't a game record.
+	 */
+	public static long getId (String history) {
+		if (history != null && history.startsWith (HISTORY_PREFIX)) {
+			try {
+				return Long.parseLong (history.substring (HISTORY_PREFIX.length ()));
+			}
+			catch (NumberFormatException nfEx) {}
+		}
+		return 0;
+	}
+
+	/**
+	 * Return the record as bytes i.e. the game key, the number of moves
+	 * and the moves.
+	 *
+	 * @return
+	 */
+	byte [] encode () {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream (gameKey.length () + numOfMoves * 2 + 8);
+			DataOutputStream out = new DataOutputStream (bytes);
+
+			byte [] key = gameKey.getBytes (ENCODING);
+			writeVarInt (out, key.length);
+			out.write (key);
+			writeVarInt (out, numOfMoves);
+			for (int i = 0; i < numOfMoves; i++)
+				writeVarInt (out, (moves [i] << 1) ^ (moves [i] >> 31));	// small negatives stay small
+
+			return bytes.toByteArray ();
+		}
+		catch (IOException ioEx) {
+			throw new IllegalStateException (ioEx.getMessage ());		// can't happen in memory
+		}
+	}
+
+	/**
+	 * Create a record from its bytes.
+	 *
+	 * @param id      ID in the archive.
+	 * @param bytes   Bytes from encode ().
+	 * @return
+	 * @throws IOException  If the bytes aren't a record.
+	 */
+	static GameRecord decode (long id, byte [] bytes) throws IOException {
+		DataInputStream in = new DataInputStream (new ByteArrayInputStream (bytes));
+
+		byte [] key = new byte [readVarInt (in)];
+		in.readFully (key);
+		GameRecord record = new GameRecord (new String (key, ENCODING));
+		record.id = id;
+
+		int numOfMoves = readVarInt (in);
+		record.moves = new int [Math.max (1, numOfMoves)];
+		for (int i = 0; i < numOfMoves; i++) {
+			int move = readVarInt (in);
+			record.moves [i] = (move >>> 1) ^ -(move & 1);
+		}
+		record.numOfMoves = numOfMoves;
+
+		return record;
+	}
+
+	/**
+	 * Write an unsigned variable length int (7 bits per byte, the top bit
+	 * is set on every byte but the last).
+	 *
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	static void writeVarInt (DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte (value);
+	}
+
+	/**
+	 * Read an unsigned variable length int.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException  If the int is too long.
+	 */
+	static int readVarInt (DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readByte ();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException ("Malformed variable length int");
+	}
+
+	/**
+	 * Return the record as text (game key followed by the moves).
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString () {
+		StringBuffer sb = new StringBuffer (gameKey);
+		for (int i = 0; i < numOfMoves; i++)
+			sb.append (' ').append (moves [i]);
+		return sb.toString ();
+	}
+}
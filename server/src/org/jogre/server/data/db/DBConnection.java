@@ -46,46 +46,26 @@ public class DBConnection {
    
     /**
      * Returns a connection to the user from the details
-     * specified in the "database.properties" file.
+     * specified in the "database.properties" file.  The connection comes
+     * from the pool of the IBatis wrapper and must be closed to return it
+     * to the pool.
      * 
      * @return  Database connection.
      */
-    public synchronized static Connection getConn () {   
-    	ServerProperties serverProperties = ServerProperties.getInstance();
-        String driver   = serverProperties.getDBDriver();
-        String connURL  = serverProperties.getDBConnURL();
-        String username = serverProperties.getDBUsername();
-        String password = serverProperties.getDBPassword();
-                
+    public static Connection getConn () {   
         try {
-            Class.forName (driver).newInstance();       // try and load driver            
-            Connection connection = DriverManager.getConnection (connURL, username, password);
-            
-            return connection;
-        }
-        catch (InstantiationException iEx) {
-        	System.err.println ("Failed to load JDBC/ODBC driver (" + driver + ")");
-        	iEx.printStackTrace();
-        	System.exit(-1);	// fatal error
-        }
-        catch (ClassNotFoundException cnfEx) {
-        	System.err.println ("Failed to load JDBC/ODBC driver (" + driver + ")");
-        	cnfEx.printStackTrace();
-        	System.exit(-1);	// fatal error
+            return IBatis.getInstance().getDataSource().getConnection();
         }
-        catch (IllegalAccessException iaEx) {
-        	System.err.println ("Failed to load JDBC/ODBC driver (" + driver + ")");
-        	iaEx.printStackTrace();
+        catch (IOException ioEx) {
+        	System.err.println ("Failed to load SQL map");
+        	ioEx.printStackTrace();
         	System.exit(-1);	// fatal error
         }
         catch (SQLException sqlEx) {
-        	System.err.println ("SQL exception (" + connURL + ")");
+        	System.err.println ("SQL exception (" + ServerProperties.getInstance().getDBConnURL() + ")");
         	sqlEx.printStackTrace();
         	System.exit(-1);	// fatal error
         }
-        catch (Exception e) {
-        	e.printStackTrace();
-        }
         return null;
     }
     
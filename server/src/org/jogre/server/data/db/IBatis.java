@@ -22,17 +22,27 @@ package org.jogre.server.data.db;
 import java.io.IOException;
 import java.io.Reader;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
 
 import org.jogre.server.ServerProperties;
 
+import com.ibatis.common.jdbc.SimpleDataSource;
 import com.ibatis.common.resources.Resources;
 import com.ibatis.sqlmap.client.SqlMapClient;
 import com.ibatis.sqlmap.client.SqlMapClientBuilder;
+import com.ibatis.sqlmap.client.event.RowHandler;
 
 /**
- * Thin wrapper class for populating objects using Ibatis.
+ * Thin wrapper class for populating objects using Ibatis.  The connections
+ * come from a pool (sized using the "pool_max_active", "pool_max_idle" and
+ * "pool_wait" properties) and the time taken by each statement is recorded
+ * so that the pool can be sized from getStatistics().
  * 
  * @author  Bob Marks
  * @version Beta 0.3
@@ -41,11 +51,28 @@ public class IBatis {
 
 	// Declare constants
 	private static final String DEFAULT_SQLMAP = "org/jogre/server/data/db/SQLMapConf.xml";
+	private static final String JNDI_SQLMAP = "org/jogre/server/data/db/SQLMapConfJNDI.xml";
 	
 	// Singleton instance
 	private static IBatis instance = null;
 	
+	// Shared instances keyed on their connection properties
+	private static Map sharedInstances = new HashMap ();
+	
+	// Number of statements and their time (nanoseconds) run by each thread
+	private static ThreadLocal threadStatements = new ThreadLocal () {
+		protected Object initialValue () {
+			return new long [2];
+		}
+	};
+	
 	private SqlMapClient sqlMap;
+
+	/** Number of statements run, total and longest time (nanoseconds).  These
+	 *  are atomic so threads sharing the instance don't wait on each other. */
+	private AtomicLong numOfStatements    = new AtomicLong ();
+	private AtomicLong totalStatementTime = new AtomicLong ();
+	private AtomicLong maxStatementTime   = new AtomicLong ();
 		
 	/**
 	 * Private singleton constructor which creates the sqlMap using the 
@@ -62,14 +89,25 @@ public class IBatis {
 	 * a different connection to what is defined inside the server properties.
 	 * 
 	 * @param properties    Properties containing 4 properties: -
-	 *                      "driver", "url", "username" and "password".
+	 *                      "driver", "url", "username" and "password" and
+	 *                      optionally the pool sizes.  If a "jndi" property
+	 *                      is set the container's DataSource of that name
+	 *                      is used instead.
 	 * @throws IOException
 	 */
 	private IBatis (Properties properties) throws IOException {
-		// Set up default SQL map		
-		Reader reader = Resources.getResourceAsReader(DEFAULT_SQLMAP);
+		// Fill in any missing pool sizes
+		Properties poolProperties = new Properties ();
+		poolProperties.put("pool_max_active", String.valueOf (IDatabase.DEFAULT_POOL_MAX_ACTIVE));
+		poolProperties.put("pool_max_idle",   String.valueOf (IDatabase.DEFAULT_POOL_MAX_IDLE));
+		poolProperties.put("pool_wait",       String.valueOf (IDatabase.DEFAULT_POOL_TIME_TO_WAIT));
+		poolProperties.putAll (properties);
+
+		// Set up default (or container data source) SQL map
+		String sqlMapResource = properties.getProperty ("jndi") == null ? DEFAULT_SQLMAP : JNDI_SQLMAP;
+		Reader reader = Resources.getResourceAsReader(sqlMapResource);
 		        
-		this.sqlMap = SqlMapClientBuilder.buildSqlMapClient(reader, properties);
+		this.sqlMap = SqlMapClientBuilder.buildSqlMapClient(reader, poolProperties);
 	}
 	
 	/**
@@ -87,6 +125,9 @@ public class IBatis {
 		ibatisProperties.put("url",      serverProperties.getDBConnURL());
 		ibatisProperties.put("username", serverProperties.getDBUsername());
 		ibatisProperties.put("password", serverProperties.getDBPassword());
+		ibatisProperties.put("pool_max_active", String.valueOf (serverProperties.getDBPoolMaxActive()));
+		ibatisProperties.put("pool_max_idle",   String.valueOf (serverProperties.getDBPoolMaxIdle()));
+		ibatisProperties.put("pool_wait",       String.valueOf (serverProperties.getDBPoolTimeToWait()));
 		
 		return ibatisProperties;
 	}
@@ -96,7 +137,7 @@ public class IBatis {
 	 * 
 	 * @return
 	 */
-	public static IBatis getInstance () throws IOException {
+	public static synchronized IBatis getInstance () throws IOException {
 		if (instance == null)
 			instance = new IBatis ();
 		return instance;
@@ -111,6 +152,25 @@ public class IBatis {
 		return new IBatis (props);
 	}
 	
+	/**
+	 * Get the instance of IBatis wrapper for a set of connection properties
+	 * which is shared by every caller (and thread) that asks for the same
+	 * properties, so they all use one connection pool.
+	 * 
+	 * @param props
+	 * @return
+	 */
+	public static IBatis getSharedInstance (Properties props) throws IOException {
+		synchronized (sharedInstances) {
+			IBatis ibatis = (IBatis)sharedInstances.get (props);
+			if (ibatis == null) {
+				ibatis = new IBatis (props);
+				sharedInstances.put (props.clone (), ibatis);
+			}
+			return ibatis;
+		}
+	}
+	
 	/**
 	 * Return a single object with supplied parameter object.
 	 * 
@@ -119,7 +179,9 @@ public class IBatis {
 	 * @return
 	 */
 	public Object getObject (String id, Object parameterObject) throws SQLException {
+		long start = System.nanoTime ();
 		Object obj = sqlMap.queryForObject (id, parameterObject);		
+		statementDone (start);
 		return obj;
 	}
 		
@@ -157,9 +219,40 @@ public class IBatis {
 	 * @return
 	 */
 	public List getList (String id, Object parameterObject) throws SQLException {
+		long start = System.nanoTime ();
 		List list = sqlMap.queryForList(id, parameterObject);		
+		statementDone (start);
+		return list;
+	}
+	
+	/**
+	 * Return at most a number of objects with a parameter object.
+	 * 
+	 * @param id
+	 * @param parameterObject
+	 * @param max              Maximum number of objects.
+	 * @return
+	 */
+	public List getList (String id, Object parameterObject, int max) throws SQLException {
+		long start = System.nanoTime ();
+		List list = sqlMap.queryForList(id, parameterObject, 0, max);
+		statementDone (start);
 		return list;
 	}
+
+	/**
+	 * Pass each object to a row handler as it is read rather than building
+	 * a list of every object.
+	 * 
+	 * @param id
+	 * @param parameterObject
+	 * @param rowHandler
+	 */
+	public void handleRows (String id, Object parameterObject, RowHandler rowHandler) throws SQLException {
+		long start = System.nanoTime ();
+		sqlMap.queryWithRowHandler (id, parameterObject, rowHandler);
+		statementDone (start);
+	}
 	
 	/**
 	 * Return list of object with no parameter object.
@@ -179,7 +272,9 @@ public class IBatis {
      * @param parameterObject     Parameter object.
      */
     public void update (String id, Object parameterObject) throws SQLException {
+    	long start = System.nanoTime ();
     	sqlMap.update (id, parameterObject);
+    	statementDone (start);
     }
     
     /**
@@ -189,6 +284,171 @@ public class IBatis {
      * @throws SQLException
      */
     public void update (String id) throws SQLException {
-    	sqlMap.update(id);
+    	update (id, null);
+    }
+
+    /**
+     * Start a transaction.  Every statement run by this thread is part of
+     * the transaction until endTransaction () is called.
+     * 
+     * @throws SQLException
+     */
+    public void startTransaction () throws SQLException {
+    	sqlMap.startTransaction ();
+    }
+
+    /**
+     * Commit the current transaction.
+     * 
+     * @throws SQLException
+     */
+    public void commitTransaction () throws SQLException {
+    	sqlMap.commitTransaction ();
+    }
+
+    /**
+     * End the current transaction (it is rolled back if it hasn't been
+     * committed).  This should be called in a finally block.
+     * 
+     * @throws SQLException
+     */
+    public void endTransaction () throws SQLException {
+    	sqlMap.endTransaction ();
+    }
+
+    /**
+     * Start a batch - updates are sent together when executeBatch () is
+     * called (must be inside a transaction).
+     * 
+     * @throws SQLException
+     */
+    public void startBatch () throws SQLException {
+    	sqlMap.startBatch ();
+    }
+
+    /**
+     * Send the updates of the current batch.
+     * 
+     * @return   Number of rows updated.
+     * @throws SQLException
+     */
+    public int executeBatch () throws SQLException {
+    	long start = System.nanoTime ();
+    	int rows = sqlMap.executeBatch ();
+    	statementDone (start);
+    	return rows;
+    }
+
+    /**
+     * Return the pooled data source (for code which needs a plain JDBC
+     * connection).  The connection must be closed to return it to the pool.
+     * 
+     * @return
+     */
+    public DataSource getDataSource () {
+    	return sqlMap.getDataSource ();
+    }
+
+    /**
+     * Record the time taken by a statement.
+     * 
+     * @param start   Start time (nanoseconds).
+     */
+    private void statementDone (long start) {
+    	long time = System.nanoTime () - start;
+    	long [] thread = (long [])threadStatements.get ();
+    	thread [0]++;
+    	thread [1] += time;
+
+    	numOfStatements.incrementAndGet ();
+    	totalStatementTime.addAndGet (time);
+    	long max = maxStatementTime.get ();
+    	while (time > max && !maxStatementTime.compareAndSet (max, time))
+    		max = maxStatementTime.get ();
+    }
+
+    /**
+     * Reset the number of statements (and their time) run by this thread
+     * e.g. at the start of a web request.
+     */
+    public static void resetThreadStatistics () {
+    	long [] thread = (long [])threadStatements.get ();
+    	thread [0] = 0;
+    	thread [1] = 0;
+    }
+
+    /**
+     * Return the number of statements run by this thread since
+     * resetThreadStatistics ().
+     * 
+     * @return
+     */
+    public static long getThreadNumOfStatements () {
+    	return ((long [])threadStatements.get ()) [0];
+    }
+
+    /**
+     * Return the time of the statements run by this thread since
+     * resetThreadStatistics () in microseconds.
+     * 
+     * @return
+     */
+    public static long getThreadStatementTime () {
+    	return ((long [])threadStatements.get ()) [1] / 1000;
+    }
+
+    /**
+     * Return the number of statements run.
+     * 
+     * @return
+     */
+    public long getNumOfStatements () {
+    	return numOfStatements.get ();
+    }
+
+    /**
+     * Return the average time of a statement (including waiting for a
+     * connection) in microseconds.
+     * 
+     * @return
+     */
+    public long getAverageStatementTime () {
+    	long num = numOfStatements.get ();
+    	return num == 0 ? 0 : totalStatementTime.get () / num / 1000;
+    }
+
+    /**
+     * Return the longest time of a statement in microseconds.
+     * 
+     * @return
+     */
+    public long getMaxStatementTime () {
+    	return maxStatementTime.get () / 1000;
+    }
+
+    /**
+     * Return the statement latencies and pool statistics (how often and
+     * how long threads had to wait for a connection) as a String.
+     * 
+     * @return
+     */
+    public String getStatistics () {
+    	StringBuffer sb = new StringBuffer ();
+    	sb.append ("statements=").append (getNumOfStatements ())
+    	  .append (" avg=").append (getAverageStatementTime ()).append ("us")
+    	  .append (" max=").append (getMaxStatementTime ()).append ("us");
+
+    	DataSource dataSource = getDataSource ();
+    	if (dataSource instanceof SimpleDataSource) {
+    		SimpleDataSource pool = (SimpleDataSource)dataSource;
+    		sb.append (" pool[requests=").append (pool.getRequestCount ())
+    		  .append (" avgRequest=").append (pool.getAverageRequestTime ()).append ("ms")
+    		  .append (" waits=").append (pool.getHadToWaitCount ())
+    		  .append (" avgWait=").append (pool.getAverageWaitTime ()).append ("ms")
+    		  .append (" avgCheckout=").append (pool.getAverageCheckoutTime ()).append ("ms")
+    		  .append (" overdue=").append (pool.getClaimedOverdueConnectionCount ())
+    		  .append ("]");
+    	}
+    	return sb.toString ();
     }
 }
\ No newline at end of file
@@ -35,6 +35,7 @@ public interface IDatabase {
 	public static final String ST_ADD_USER = "addUser";
 	public static final String ST_SELECT_USER = "selectUser";
 	public static final String ST_SELECT_ALL_USERS = "selectAllUsers";
+	public static final String ST_SELECT_USERS_AFTER = "selectUsersAfter";
 	public static final String ST_UPDATE_USER = "updateUser";
 	public static final String ST_DELETE_USER = "deleteUser";
 	
@@ -43,6 +44,8 @@ public interface IDatabase {
 	public static final String ST_GET_GAME_INFO_ID = "getGameInfoId";
 	public static final String ST_SELECT_GAME_INFO = "selectGameInfo";
 	public static final String ST_SELECT_ALL_GAME_INFOS = "selectAllGameInfo";
+	public static final String ST_SELECT_GAME_INFOS_AFTER = "selectGameInfosAfter";
+	public static final String ST_SELECT_GAME_INFOS_BY_GAME = "selectGameInfosByGame";
 	public static final String ST_UPDATE_GAME_INFO = "updateGameInfo";
 	public static final String ST_DELETE_GAME_INFO = "deleteGameInfo";
 	
@@ -50,6 +53,8 @@ public interface IDatabase {
 	public static final String ST_ADD_GAME_SUMMARY = "addGameSummary";
 	public static final String ST_SELECT_GAME_SUMMARY = "selectGameSummary";
 	public static final String ST_SELECT_ALL_GAME_SUMMARYS = "selectAllGameSummary";
+	public static final String ST_SELECT_GAME_SUMMARIES = "selectGameSummaries";
+	public static final String ST_SELECT_GAME_SUMMARIES_AFTER = "selectGameSummariesAfter";
 	public static final String ST_UPDATE_GAME_SUMMARY = "updateGameSummary";
 	public static final String ST_DELETE_GAME_SUMMARY = "deleteGameSummary";
 	
@@ -70,5 +75,14 @@ public interface IDatabase {
 	
 	/** Default database URL - used when creating a blank database connection. */
 	public static final String DEFAULT_URL = "jdbc:odbc:";
+
+	/** Default maximum number of connections in the pool. */
+	public static final int DEFAULT_POOL_MAX_ACTIVE = 10;
+
+	/** Default maximum number of idle connections in the pool. */
+	public static final int DEFAULT_POOL_MAX_IDLE = 5;
+
+	/** Default time (ms) to wait for a connection when the pool is empty. */
+	public static final int DEFAULT_POOL_TIME_TO_WAIT = 20000;
 	
 }
\ No newline at end of file
@@ -20,21 +20,31 @@
 package org.jogre.server.data.db;
 
 import java.io.IOException;
+import java.sql.BatchUpdateException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.jogre.common.GameOver;
+import org.jogre.common.util.JogreLogger;
 import org.jogre.common.util.JogreUtils;
-import org.jogre.server.EloRatingSystem;
 import org.jogre.server.ServerProperties;
 import org.jogre.server.data.AbstractServerData;
+import org.jogre.server.data.DataPage;
 import org.jogre.server.data.GameInfo;
 import org.jogre.server.data.GameSummary;
+import org.jogre.server.data.IRowHandler;
 import org.jogre.server.data.ServerDataException;
 import org.jogre.server.data.SnapShot;
 import org.jogre.server.data.User;
 
+import com.ibatis.sqlmap.client.event.RowHandler;
+
 /**
  * Implementation of the IServerData to a local database.
  *
@@ -44,6 +54,41 @@ import org.jogre.server.data.User;
  * @version Beta 0.3
  */
 public class ServerDataDB extends AbstractServerData implements IDatabase {
+
+	/** Separates the game key and username of a game summary cursor. */
+	private static final String CURSOR_SEPARATOR = "/";
+
+	/** Logging. */
+	private JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** IBatis wrapper (null to use the default instance). */
+	private IBatis ibatis = null;
+
+	/**
+	 * Default constructor which uses the database in the server properties.
+	 */
+	public ServerDataDB () {}
+
+	/**
+	 * Constructor which uses a different database (e.g. for testing).
+	 *
+	 * @param ibatis   IBatis wrapper.
+	 */
+	public ServerDataDB (IBatis ibatis) {
+		this.ibatis = ibatis;
+	}
+
+	/**
+	 * Return the IBatis wrapper.
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private IBatis getIBatis () throws IOException {
+		if (ibatis != null)
+			return ibatis;
+		return IBatis.getInstance();
+	}
 	
 	/**
 	 * Return type as a database.
@@ -67,7 +112,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
             return false;
         } else if (serverProperties.isUserValidationUser()) {
         	try {
-        		IBatis iBatis = IBatis.getInstance();
+        		IBatis iBatis = getIBatis();
         		
         		User parameterUser = new User ();
         		parameterUser.setUsername(username);
@@ -103,7 +148,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
             return containsUser (username);
         } else if (serverProperties.isUserValidationPassword()) {
         	try {
-        		IBatis iBatis = IBatis.getInstance();
+        		IBatis iBatis = getIBatis();
         		
         		User parameterUser = new User ();
         		parameterUser.setUsername(username);
@@ -127,67 +172,49 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	}
 
 	/**
-     * Method for adding a game to persistent data.
+     * Method for adding a game to persistent data.  This runs in one
+     * transaction: the game info is inserted, the game summaries of every
+     * player are read in one query and the new / updated summaries are sent
+     * in one batch.
      *
 	 * @see org.jogre.server.data.IServerData#addGame(org.jogre.server.data.GameInfo, boolean)
 	 */
-	public GameOver addGame (GameInfo gameInfo, boolean eloRatings) throws ServerDataException {
+	public synchronized GameOver addGame (GameInfo gameInfo, boolean eloRatings) throws ServerDataException {
 		GameOver gameOver = null;
+		IBatis ibatis = null;
         try {
-        	IBatis ibatis = IBatis.getInstance();
+        	ibatis = getIBatis();
+        	ibatis.startTransaction();
             
             // Insert the game info to the database        	
     		ibatis.update(ST_ADD_GAME_INFO, gameInfo);
 
-            // Update the game summaries now on the database
+            // Retrieve the game summaries of the players (create new if not exists).
             String    gameKey    = gameInfo.getGameKey();
             String [] players    = JogreUtils.convertToStringArray(gameInfo.getPlayers());
             int    [] results    = JogreUtils.convertToIntArray(gameInfo.getResults());
             int       numPlayers = players.length;
 
-            // Loop through players at table and update them
-            GameSummary [] gameSummary = new GameSummary [numPlayers];
-            for (int i = 0; i < numPlayers; i++) {
-                String curPlayer = players [i];
+            boolean [] isNew = new boolean [numPlayers];
+            GameSummary [] gameSummary = getGameSummaries (ibatis, gameKey, players, isNew);
 
-                // Retrieve game summary from XML (create new if not exists).
-                gameSummary [i] = getGameSummary (gameKey, curPlayer);
-            }
+            gameOver = updateGameSummaries (gameKey, players, results, gameSummary, eloRatings);
 
-            // Check if scores need updating
-            // NOTE: (currently only support 2 player games)
-            if (eloRatings && numPlayers == EloRatingSystem.SUPPORTED_PLAYERS) {
-                // Retrieve old ratings
-                int [] oldRatings = {gameSummary [0].getRating(),
-                                     gameSummary [1].getRating()};
-
-                // Find new ratings
-                EloRatingSystem elo = EloRatingSystem.getInstance (gameKey);
-                int [] newRatings = {
-                    elo.getNewRating (oldRatings[0], oldRatings[1], results[0]),
-                    elo.getNewRating (oldRatings[1], oldRatings[0], results[1])
-                };
-
-                // Update game summaries and database
-                for (int i = 0; i < numPlayers; i++)
-                    gameSummary[i].update (results[i], newRatings[i]);
-
-                // Create GameOver object with old/new ratings and return to users
-                gameOver = new GameOver (players, results, oldRatings, newRatings);
-            } else {
-				// No elo ratings - so everyone keeps old ratings
-				int [] oldRatings = new int [numPlayers];
-
-				for (int i = 0; i < numPlayers; i++)
-					oldRatings[i] = gameSummary [i].getRating();
-
-				gameOver = new GameOver (players, results, oldRatings, oldRatings);
-			}
-
-            // Update database
+            // Update database (insert or update each summary in one batch)
+            ibatis.startBatch();
             for (int i = 0; i < numPlayers; i++) {
-                ibatis.update(ST_UPDATE_GAME_SUMMARY, gameSummary[i]);
+                if (isNew [i])
+                	ibatis.update(ST_ADD_GAME_SUMMARY, gameSummary[i]);
+                else
+                	ibatis.update(ST_UPDATE_GAME_SUMMARY, gameSummary[i]);
             }
+            ibatis.executeBatch();
+
+            ibatis.commitTransaction();
+            logger.debug ("addGame", ibatis.getStatistics());
+
+            // Only rank what was stored
+            updateRanks (gameSummary);
         }
         catch (IOException ioEx) {
 			ioEx.printStackTrace();		// should use proper logging at some stage
@@ -195,12 +222,201 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 		}
 		catch (SQLException sqlEx) {
 			sqlEx.printStackTrace();
-			throw new ServerDataException (sqlEx.getMessage());
+			throw new ServerDataException (sqlEx.getMessage(), isInvalidData (sqlEx));
+		}
+		finally {
+			endTransaction (ibatis);
 		}
 
         return gameOver;
 	}
 
+	/**
+	 * Add a game whose game summaries have already been updated.  The game
+	 * info and the game summaries are saved in one transaction.
+	 *
+	 * @see org.jogre.server.data.IServerData#addGame(org.jogre.server.data.GameInfo, org.jogre.server.data.GameSummary[])
+	 */
+	public synchronized void addGame (GameInfo gameInfo, GameSummary [] gameSummary) throws ServerDataException {
+		IBatis ibatis = null;
+		try {
+			ibatis = getIBatis();
+			ibatis.startTransaction();
+
+			ibatis.update(ST_ADD_GAME_INFO, gameInfo);
+			writeGameSummaries (ibatis, gameInfo.getGameKey(), gameSummary);
+
+			ibatis.commitTransaction();
+			logger.debug ("addGame", ibatis.getStatistics());
+
+			updateRanks (gameSummary);
+		}
+		catch (IOException ioEx) {
+			ioEx.printStackTrace();
+			throw new ServerDataException (ioEx.getMessage());
+		}
+		catch (SQLException sqlEx) {
+			sqlEx.printStackTrace();
+			throw new ServerDataException (sqlEx.getMessage(), isInvalidData (sqlEx));
+		}
+		finally {
+			endTransaction (ibatis);
+		}
+	}
+
+	/**
+	 * Save game summaries in one transaction.  The existing summaries of
+	 * each game are read in one query and the inserts / updates are sent
+	 * in one batch.
+	 *
+	 * @see org.jogre.server.data.IServerData#saveGameSummaries(java.util.List)
+	 */
+	public synchronized void saveGameSummaries (List gameSummaries) throws ServerDataException {
+		// Group the game summaries by game
+		Map games = new HashMap ();
+		for (int i = 0; i < gameSummaries.size(); i++) {
+			GameSummary gameSummary = (GameSummary)gameSummaries.get(i);
+			List list = (List)games.get (gameSummary.getGameKey());
+			if (list == null) {
+				list = new ArrayList ();
+				games.put (gameSummary.getGameKey(), list);
+			}
+			list.add (gameSummary);
+		}
+
+		IBatis ibatis = null;
+		try {
+			ibatis = getIBatis();
+			ibatis.startTransaction();
+
+			Iterator it = games.keySet().iterator();
+			while (it.hasNext()) {
+				String gameKey = (String)it.next();
+				List list = (List)games.get (gameKey);
+				writeGameSummaries (ibatis, gameKey,
+					(GameSummary [])list.toArray (new GameSummary [list.size()]));
+			}
+
+			ibatis.commitTransaction();
+			logger.debug ("saveGameSummaries", ibatis.getStatistics());
+
+			for (int i = 0; i < gameSummaries.size(); i++)
+				updateRank ((GameSummary)gameSummaries.get(i));
+		}
+		catch (IOException ioEx) {
+			ioEx.printStackTrace();
+			throw new ServerDataException (ioEx.getMessage());
+		}
+		catch (SQLException sqlEx) {
+			sqlEx.printStackTrace();
+			throw new ServerDataException (sqlEx.getMessage());
+		}
+		finally {
+			endTransaction (ibatis);
+		}
+	}
+
+	/**
+	 * Return the game summaries of a number of players in one query.  Game
+	 * summaries which don't exist yet are created with the start rating
+	 * (but not added to the database) and flagged in isNew.
+	 *
+	 * @param ibatis    IBatis wrapper.
+	 * @param gameKey   Game key.
+	 * @param players   Usernames of the players.
+	 * @param isNew     Filled in with true for each new game summary.
+	 * @return          Game summaries in the same order as players.
+	 * @throws SQLException
+	 */
+	private GameSummary [] getGameSummaries (IBatis ibatis, String gameKey, String [] players, boolean [] isNew) throws SQLException {
+		Map param = new HashMap ();
+		param.put ("gameKey", gameKey);
+		param.put ("usernames", Arrays.asList (players));
+
+		// Index the summaries which exist by username
+		List list = ibatis.getList (ST_SELECT_GAME_SUMMARIES, param);
+		Map existing = new HashMap ();
+		for (int i = 0; i < list.size(); i++) {
+			GameSummary gameSummary = (GameSummary)list.get(i);
+			existing.put (gameSummary.getUsername(), gameSummary);
+		}
+
+		GameSummary [] gameSummaries = new GameSummary [players.length];
+		for (int i = 0; i < players.length; i++) {
+			gameSummaries [i] = (GameSummary)existing.get (players [i]);
+			if (gameSummaries [i] == null) {
+				gameSummaries [i] = new GameSummary (gameKey, players [i]);
+				gameSummaries [i].setRating (ServerProperties.getInstance().getStartRating (gameKey));
+				isNew [i] = true;
+			}
+		}
+		return gameSummaries;
+	}
+
+	/**
+	 * Insert or update the game summaries of a game in one batch.
+	 *
+	 * @param ibatis       IBatis wrapper (in a transaction).
+	 * @param gameKey      Game key.
+	 * @param gameSummary  Game summaries to save.
+	 * @throws SQLException
+	 */
+	private void writeGameSummaries (IBatis ibatis, String gameKey, GameSummary [] gameSummary) throws SQLException {
+		String [] players = new String [gameSummary.length];
+		for (int i = 0; i < players.length; i++)
+			players [i] = gameSummary [i].getUsername();
+		boolean [] isNew = new boolean [players.length];
+		getGameSummaries (ibatis, gameKey, players, isNew);
+
+		ibatis.startBatch();
+		for (int i = 0; i < players.length; i++) {
+			if (isNew [i])
+				ibatis.update(ST_ADD_GAME_SUMMARY, gameSummary [i]);
+			else
+				ibatis.update(ST_UPDATE_GAME_SUMMARY, gameSummary [i]);
+		}
+		ibatis.executeBatch();
+	}
+
+	/**
+	 * Return true if a statement failed because of the data it was given
+	 * (SQL state class 22 "data exception" or 23 "integrity constraint
+	 * violation") so running it again will fail again.  Some drivers
+	 * (e.g. HSQLDB) don't give a state when a statement of a batch is
+	 * rejected, only the update counts of the statements before it.
+	 *
+	 * @param sqlEx
+	 * @return
+	 */
+	private static boolean isInvalidData (SQLException sqlEx) {
+		for (Throwable t = sqlEx; t != null; t = t.getCause()) {
+			if (t instanceof SQLException) {
+				String state = ((SQLException)t).getSQLState();
+				if (state != null && (state.startsWith ("22") || state.startsWith ("23")))
+					return true;
+			}
+			if (t instanceof BatchUpdateException && ((BatchUpdateException)t).getUpdateCounts() != null)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * End a transaction (rolls back if it wasn't committed).
+	 *
+	 * @param ibatis   IBatis wrapper (may be null).
+	 */
+	private void endTransaction (IBatis ibatis) {
+		if (ibatis != null) {
+			try {
+				ibatis.endTransaction();
+			}
+			catch (SQLException sqlEx) {
+				sqlEx.printStackTrace();
+			}
+		}
+	}
+
 	/**
      * Return the game summary for a specified user.
      *
@@ -208,7 +424,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public GameSummary getGameSummary (String gameKey, String username) throws ServerDataException {
 		try {
-			IBatis ibatis = IBatis.getInstance();
+			IBatis ibatis = getIBatis();
 			GameSummary param = new GameSummary (gameKey, username);		
 			GameSummary gameSummary = (GameSummary)ibatis.getObject(ST_SELECT_GAME_SUMMARY, param);
 			
@@ -238,7 +454,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public void updateSnapshot (String gameKey, int numOfUsers, int numOfTables) throws ServerDataException {
 		try {
-			IBatis ibatis = IBatis.getInstance();
+			IBatis ibatis = getIBatis();
 			SnapShot snapShot = new SnapShot (gameKey, numOfUsers, numOfTables);
 			ibatis.update(ST_UPDATE_SNAP_SHOT, snapShot);
 		}
@@ -259,7 +475,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public void resetSnapshot (Vector gameKeys) throws ServerDataException {
 		try {
-			IBatis ibatis = IBatis.getInstance();
+			IBatis ibatis = getIBatis();
 			ibatis.update(ST_DELETE_ALL_SNAP_SHOT);
 			
 			for (int i = 0; i < gameKeys.size(); i++) {
@@ -284,7 +500,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public List getUsers() throws ServerDataException {
 		try {
-			return IBatis.getInstance().getList(ST_SELECT_ALL_USERS);
+			return getIBatis().getList(ST_SELECT_ALL_USERS);
 		}
 		catch (IOException ioEx) {
 			ioEx.printStackTrace();
@@ -303,7 +519,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public List getGameInfos() throws ServerDataException {
 		try {
-			return IBatis.getInstance().getList(ST_SELECT_ALL_GAME_INFOS);
+			return getIBatis().getList(ST_SELECT_ALL_GAME_INFOS);
 		}
 		catch (IOException ioEx) {
 			ioEx.printStackTrace();
@@ -322,16 +538,185 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public List getGameSummarys() throws ServerDataException {
 		try {
-			return IBatis.getInstance().getList(ST_SELECT_ALL_GAME_SUMMARYS);
+			return getIBatis().getList(ST_SELECT_ALL_GAME_SUMMARYS);
+		}
+		catch (IOException ioEx) {
+			ioEx.printStackTrace();
+			throw new ServerDataException (ioEx.getMessage());
+		}
+		catch (SQLException sqlEx) {
+			sqlEx.printStackTrace();
+			throw new ServerDataException (sqlEx.getMessage());
+		}
+	}
+
+	/**
+	 * Return a page of users.  The cursor is the last username of the
+	 * previous page so the database can seek to it using the primary key.
+	 * 
+	 * @see org.jogre.server.data.IServerData#getUsers(java.lang.String, int)
+	 */
+	public DataPage getUsers (String cursor, int num) throws ServerDataException {
+		Map param = new HashMap ();
+		param.put ("username", cursor);
+		
+		return getPage (ST_SELECT_USERS_AFTER, param, num);
+	}
+
+	/**
+	 * Return a page of game infos in ID order.  The cursor is the last ID
+	 * of the previous page.
+	 * 
+	 * @see org.jogre.server.data.IServerData#getGameInfos(java.lang.String, int)
+	 */
+	public DataPage getGameInfos (String cursor, int num) throws ServerDataException {
+		Map param = new HashMap ();
+		if (cursor != null) {
+			try {
+				param.put ("id", new Long (cursor));
+			}
+			catch (NumberFormatException nfEx) {
+				throw new ServerDataException ("Invalid cursor: " + cursor);
+			}
+		}
+		
+		return getPage (ST_SELECT_GAME_INFOS_AFTER, param, num);
+	}
+
+	/**
+	 * Return a page of game summaries in game key / username order.  The
+	 * cursor is the last game key and username of the previous page.
+	 * 
+	 * @see org.jogre.server.data.IServerData#getGameSummarys(java.lang.String, int)
+	 */
+	public DataPage getGameSummarys (String cursor, int num) throws ServerDataException {
+		Map param = new HashMap ();
+		if (cursor != null) {
+			int index = cursor.indexOf (CURSOR_SEPARATOR);
+			if (index == -1)
+				throw new ServerDataException ("Invalid cursor: " + cursor);
+			param.put ("gameKey", cursor.substring (0, index));
+			param.put ("username", cursor.substring (index + 1));
+		}
+		
+		return getPage (ST_SELECT_GAME_SUMMARIES_AFTER, param, num);
+	}
+
+	/**
+	 * Run a page statement asking for one more row than the page so we know
+	 * if there is a next page.  The limit is passed to the statement so the
+	 * database only sends the rows of the page.
+	 * 
+	 * @param statement   Statement ID.
+	 * @param param       Parameters of the statement.
+	 * @param num         Maximum number of rows.
+	 * @return
+	 * @throws ServerDataException
+	 */
+	private DataPage getPage (String statement, Map param, int num) throws ServerDataException {
+		num = Math.max (1, num);
+		param.put ("limit", new Integer (num + 1));
+		try {
+			List rows = getIBatis().getList (statement, param, num + 1);
+			if (rows.size() <= num)
+				return new DataPage (rows, null);
+			
+			rows = new ArrayList (rows.subList (0, num));
+			return new DataPage (rows, getCursor (rows.get (num - 1)));
+		}
+		catch (IOException ioEx) {
+			ioEx.printStackTrace();
+			throw new ServerDataException (ioEx.getMessage());
+		}
+		catch (SQLException sqlEx) {
+			sqlEx.printStackTrace();
+			throw new ServerDataException (sqlEx.getMessage());
+		}
+	}
+
+	/**
+	 * Return the cursor which follows a row.
+	 * 
+	 * @param row   User, GameInfo or GameSummary.
+	 * @return
+	 */
+	private String getCursor (Object row) {
+		if (row instanceof User)
+			return ((User)row).getUsername ();
+		else if (row instanceof GameInfo)
+			return String.valueOf (((GameInfo)row).getId ());
+		
+		GameSummary gameSummary = (GameSummary)row;
+		return gameSummary.getGameKey () + CURSOR_SEPARATOR + gameSummary.getUsername ();
+	}
+
+	/**
+	 * Pass every user to a row handler as it is read.
+	 * 
+	 * @see org.jogre.server.data.IServerData#getUsers(org.jogre.server.data.IRowHandler)
+	 */
+	public void getUsers (IRowHandler rowHandler) throws ServerDataException {
+		handleRows (ST_SELECT_ALL_USERS, null, rowHandler);
+	}
+
+	/**
+	 * Pass every game info to a row handler as it is read (in game key
+	 * order and then the order they finished).
+	 * 
+	 * @see org.jogre.server.data.IServerData#getGameInfos(org.jogre.server.data.IRowHandler)
+	 */
+	public void getGameInfos (IRowHandler rowHandler) throws ServerDataException {
+		handleRows (ST_SELECT_GAME_INFOS_BY_GAME, null, rowHandler);
+	}
+
+	/**
+	 * Pass every game summary to a row handler as it is read.
+	 * 
+	 * @see org.jogre.server.data.IServerData#getGameSummarys(org.jogre.server.data.IRowHandler)
+	 */
+	public void getGameSummarys (IRowHandler rowHandler) throws ServerDataException {
+		handleRows (ST_SELECT_ALL_GAME_SUMMARYS, null, rowHandler);
+	}
+
+	/**
+	 * Run a statement passing each row to a row handler.  An exception from
+	 * the row handler stops the statement and is thrown again from here.
+	 * 
+	 * @param statement    Statement ID.
+	 * @param param        Parameters of the statement.
+	 * @param rowHandler
+	 * @throws ServerDataException
+	 */
+	private void handleRows (String statement, Object param, final IRowHandler rowHandler) throws ServerDataException {
+		final ServerDataException [] exception = new ServerDataException [1];
+		try {
+			getIBatis().handleRows (statement, param, new RowHandler () {
+				public void handleRow (Object row) {
+					try {
+						rowHandler.handleRow (row);
+					}
+					catch (ServerDataException sdEx) {
+						exception [0] = sdEx;
+						throw new RuntimeException (sdEx.getMessage());
+					}
+				}
+			});
 		}
 		catch (IOException ioEx) {
 			ioEx.printStackTrace();
 			throw new ServerDataException (ioEx.getMessage());
 		}
 		catch (SQLException sqlEx) {
+			if (exception [0] != null)
+				throw exception [0];
 			sqlEx.printStackTrace();
 			throw new ServerDataException (sqlEx.getMessage());
 		}
+		catch (RuntimeException rtEx) {
+			if (exception [0] != null)
+				throw exception [0];
+			throw rtEx;
+		}
 	}
 
 	/**
@@ -341,7 +726,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public void newUser(User user) throws ServerDataException {
 		try {
-			IBatis.getInstance().update(ST_ADD_USER, user);
+			getIBatis().update(ST_ADD_USER, user);
 		}
 		catch (IOException ioEx) {
 			ioEx.printStackTrace();
@@ -360,7 +745,8 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public void deleteUser(User user) throws ServerDataException {
 		try {
-			IBatis.getInstance().update(ST_DELETE_USER, user);
+			getIBatis().update(ST_DELETE_USER, user);
+			removeRanks (user.getUsername());
 		}
 		catch (IOException ioEx) {
 			ioEx.printStackTrace();
@@ -379,7 +765,7 @@ public class ServerDataDB extends AbstractServerData implements IDatabase {
 	 */
 	public void updateUser(User user) throws ServerDataException {
 		try {
-			IBatis.getInstance().update(ST_UPDATE_USER, user);
+			getIBatis().update(ST_UPDATE_USER, user);
 		}
 		catch (IOException ioEx) {
 			ioEx.printStackTrace();
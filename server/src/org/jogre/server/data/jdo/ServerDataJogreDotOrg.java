@@ -68,10 +68,14 @@ public class ServerDataJogreDotOrg extends AbstractServerData {
 		return null;
 	}
 
+	public void addGame(GameInfo gameInfo, GameSummary [] gameSummary) {}
+
 	public GameSummary getGameSummary(String gameId, String username) {
 		return null;
 	}
 	
+	public void saveGameSummaries (List gameSummaries) {}
+
 	public void updateSnapshot (String gameId, int numOfUsers, int numOfGames) {}
 	
 	public void resetSnapshot (Vector gameKeys) {}
@@ -0,0 +1,350 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jogre.common.util.JogreLogger;
+
+/**
+ * <p>Append only file of records, one record per line.  Records are
+ * buffered and a background thread forces them to disk (fsync) every
+ * sync interval, so many records share one sync.  A record which was
+ * only partly written when the server stopped is cut off when the journal
+ * is opened again.</p>
+ *
+ * <p>The journal can be compacted by rewriting it with fewer records.  The
+ * new file is written and synced beside the old one before it is renamed
+ * into place so there is always one complete journal on disk.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class Journal implements Runnable {
+
+	private static final String ENCODING = "UTF-8";
+
+	private static final String TEMP_EXTENSION = ".tmp";
+	private static final String OLD_EXTENSION  = ".old";
+
+	/** Logging */
+	private JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** File of the journal. */
+	private File file;
+
+	/** Time in milliseconds between syncs. */
+	private long syncInterval;
+
+	private FileOutputStream fileOut;
+	private BufferedOutputStream out;
+
+	/** True if records have been written since the last sync. */
+	private boolean dirty = false;
+
+	/** Number of records in the journal. */
+	private int numOfRecords = 0;
+
+	/** Number of syncs (for statistics). */
+	private long numOfSyncs = 0;
+
+	private boolean closed = false;
+
+	/**
+	 * Open a journal (creating it if it doesn't exist) and start the sync
+	 * thread.
+	 *
+	 * @param file          File of the journal.
+	 * @param syncInterval  Time in milliseconds between syncs.
+	 * @throws IOException
+	 */
+	public Journal (File file, long syncInterval) throws IOException {
+		this.file = file;
+		this.syncInterval = Math.max (1, syncInterval);
+
+		recover ();
+		open ();
+
+		Thread syncThread = new Thread (this, "JournalSync-" + file.getName ());
+		syncThread.setDaemon (true);
+		syncThread.start ();
+	}
+
+	/**
+	 * Finish a compaction which was interrupted and cut off a partly written
+	 * last record.
+	 *
+	 * @throws IOException
+	 */
+	private void recover () throws IOException {
+		File temp = new File (file.getPath () + TEMP_EXTENSION);
+		File old  = new File (file.getPath () + OLD_EXTENSION);
+
+		if (!file.exists ()) {
+			// The temp file is only renamed once it is complete
+			if (old.exists () && temp.exists ())
+				temp.renameTo (file);
+			else if (old.exists ())
+				old.renameTo (file);
+		}
+		temp.delete ();
+		old.delete ();
+
+		if (!file.exists ())
+			return;
+
+		RandomAccessFile raf = new RandomAccessFile (file, "rw");
+		try {
+			// Find the end of the last complete record
+			long end = raf.length ();
+			byte [] buffer = new byte [4096];
+			while (end > 0) {
+				int len = (int)Math.min (buffer.length, end);
+				raf.seek (end - len);
+				raf.readFully (buffer, 0, len);
+				int i = len - 1;
+				while (i >= 0 && buffer [i] != '\n')
+					i--;
+				if (i >= 0) {
+					end = end - len + i + 1;
+					break;
+				}
+				end -= len;
+			}
+
+			if (end < raf.length ()) {
+				logger.error ("recover", "Cut off partly written record in " + file);
+				raf.setLength (end);
+			}
+		}
+		finally {
+			raf.close ();
+		}
+	}
+
+	/**
+	 * Open the file for appending.
+	 *
+	 * @throws IOException
+	 */
+	private void open () throws IOException {
+		fileOut = new FileOutputStream (file.getPath (), true);
+		out = new BufferedOutputStream (fileOut);
+	}
+
+	/**
+	 * Return the file of the journal.
+	 *
+	 * @return
+	 */
+	public File getFile () {
+		return file;
+	}
+
+	/**
+	 * Return the number of records in the journal (only counted from when
+	 * it was read or compacted).
+	 *
+	 * @return
+	 */
+	public synchronized int getNumOfRecords () {
+		return numOfRecords;
+	}
+
+	/**
+	 * Return the number of times the journal has been synced.
+	 *
+	 * @return
+	 */
+	public synchronized long getNumOfSyncs () {
+		return numOfSyncs;
+	}
+
+	/**
+	 * Read every record in the journal.
+	 *
+	 * @return   List of Strings.
+	 * @throws IOException
+	 */
+	public synchronized List read () throws IOException {
+		checkOpen ();
+		out.flush ();
+
+		List records = new ArrayList ();
+		BufferedReader in = new BufferedReader (
+			new InputStreamReader (new FileInputStream (file), ENCODING));
+		try {
+			String line;
+			while ((line = in.readLine ()) != null) {
+				if (line.length () > 0)
+					records.add (line);
+			}
+		}
+		finally {
+			in.close ();
+		}
+
+		numOfRecords = records.size ();
+		return records;
+	}
+
+	/**
+	 * Append a record.  It will be on disk after the next sync.
+	 *
+	 * @param record   Record (must not contain new lines).
+	 * @throws IOException
+	 */
+	public synchronized void append (String record) throws IOException {
+		checkOpen ();
+		out.write (record.getBytes (ENCODING));
+		out.write ('\n');
+		numOfRecords++;
+
+		if (!dirty) {
+			dirty = true;
+			notifyAll ();
+		}
+	}
+
+	/**
+	 * Force everything appended to disk.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void sync () throws IOException {
+		if (dirty && !closed) {
+			out.flush ();
+			fileOut.getFD ().sync ();
+			dirty = false;
+			numOfSyncs++;
+		}
+	}
+
+	/**
+	 * Replace every record in the journal.
+	 *
+	 * @param records  List of Strings.
+	 * @throws IOException
+	 */
+	public synchronized void compact (List records) throws IOException {
+		checkOpen ();
+		File temp = new File (file.getPath () + TEMP_EXTENSION);
+		File old  = new File (file.getPath () + OLD_EXTENSION);
+
+		// Write and sync the new journal
+		FileOutputStream tempOut = new FileOutputStream (temp);
+		try {
+			BufferedOutputStream bufferedOut = new BufferedOutputStream (tempOut);
+			for (int i = 0; i < records.size (); i++) {
+				bufferedOut.write (((String)records.get (i)).getBytes (ENCODING));
+				bufferedOut.write ('\n');
+			}
+			bufferedOut.flush ();
+			tempOut.getFD ().sync ();
+		}
+		finally {
+			tempOut.close ();
+		}
+
+		// Swap it for the old one.  If the new one can't be moved the old one
+		// is put back (opening would otherwise start an empty journal).
+		out.close ();
+		old.delete ();
+		if (!file.renameTo (old)) {
+			open ();
+			throw new IOException ("Unable to replace " + file);
+		}
+		if (!temp.renameTo (file)) {
+			if (!old.renameTo (file)) {
+				// Left closed, recover puts the new one in place when reopened
+				logger.error ("compact", "Unable to restore " + file + " from " + old);
+				closed = true;
+				notifyAll ();
+				throw new IOException ("Unable to restore " + file + " from " + old);
+			}
+			open ();
+			throw new IOException ("Unable to replace " + file);
+		}
+		old.delete ();
+		open ();
+
+		numOfRecords = records.size ();
+		dirty = false;
+	}
+
+	/**
+	 * Sync and close the journal.
+	 */
+	public synchronized void close () {
+		if (closed)
+			return;
+		try {
+			sync ();
+			out.close ();
+		}
+		catch (IOException ioEx) {
+			logger.error ("close", ioEx.getMessage ());
+		}
+		closed = true;
+		notifyAll ();
+	}
+
+	/**
+	 * Sync thread.
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run () {
+		while (true) {
+			synchronized (this) {
+				try {
+					while (!dirty && !closed)
+						wait ();
+					if (closed)
+						return;
+
+					// Let more records join this sync
+					wait (syncInterval);
+					sync ();
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+				catch (IOException ioEx) {
+					logger.error ("run", "Unable to sync " + file + ": " + ioEx.getMessage ());
+				}
+			}
+		}
+	}
+
+	private void checkOpen () throws IOException {
+		if (closed)
+			throw new IOException ("Journal closed: " + file);
+	}
+}
@@ -0,0 +1,634 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import nanoxml.XMLElement;
+
+import org.jogre.common.GameOver;
+import org.jogre.common.MessageParser;
+import org.jogre.common.util.JogreLogger;
+import org.jogre.common.util.JogreUtils;
+import org.jogre.server.ServerProperties;
+import org.jogre.server.data.AbstractServerData;
+import org.jogre.server.data.GameInfo;
+import org.jogre.server.data.GameSummary;
+import org.jogre.server.data.ServerDataException;
+import org.jogre.server.data.User;
+
+/**
+ * <p>Implementation of the IServerData interface which keeps its data in
+ * memory and appends every change to a journal on the local file system
+ * (instead of rewriting whole XML files like ServerDataXML).</p>
+ *
+ * <p>There are two journals:</p>
+ * <ul>
+ * <li><b>data.log</b> - users, game summaries and snapshots.  It is read
+ *     into memory when the server starts (game summaries are indexed on
+ *     game key / username) and compacted to one record per item once it
+ *     has grown to twice the size of the data.</li>
+ * <li><b>games.log</b> - game infos.  These are only appended and are
+ *     only read when the admin client asks for them.</li>
+ * </ul>
+ *
+ * <p>Each record is a single line of XML.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ServerDataJournal extends AbstractServerData {
+
+	// Declare file names
+	private static final String DATA_FILENAME  = "data.log";
+	private static final String GAMES_FILENAME = "games.log";
+
+	/** Data journal isn't compacted until it has at least this many records. */
+	private static final int MIN_COMPACT_RECORDS = 1000;
+
+	// Declare record XML
+	private static final String XML_ELM_USER           = "user";
+	private static final String XML_ELM_DELETE_USER    = "delete_user";
+	private static final String XML_ELM_GAME_SUMMARY   = "game_summary";
+	private static final String XML_ELM_GAME_INFO      = "game_info";
+	private static final String XML_ELM_SNAPSHOT       = "snapshot";
+	private static final String XML_ELM_RESET_SNAPSHOT = "reset_snapshot";
+
+	private static final String XML_ATT_USERNAME          = "username";
+	private static final String XML_ATT_PASSWORD          = "password";
+	private static final String XML_ATT_SECURITY_QUESTION = "question";
+	private static final String XML_ATT_SECURITY_ANSWER   = "answer";
+	private static final String XML_ATT_YEAR_OF_BIRTH     = "yob";
+	private static final String XML_ATT_EMAIL             = "email";
+	private static final String XML_ATT_NEWSLETTER        = "newsletter";
+	private static final String XML_ATT_GAME              = "game";
+	private static final String XML_ATT_RATING            = "rating";
+	private static final String XML_ATT_WINS              = "wins";
+	private static final String XML_ATT_LOSES             = "loses";
+	private static final String XML_ATT_DRAWS             = "draws";
+	private static final String XML_ATT_STREAK            = "streak";
+	private static final String XML_ATT_FORM              = "form";
+	private static final String XML_ATT_RATINGS           = "ratings";
+	private static final String XML_ATT_PLAYERS           = "players";
+	private static final String XML_ATT_RESULTS           = "results";
+	private static final String XML_ATT_START_TIME        = "st";
+	private static final String XML_ATT_END_TIME          = "et";
+	private static final String XML_ATT_SCORE             = "score";
+	private static final String XML_ATT_HISTORY           = "history";
+	private static final String XML_ATT_NUM_OF_USERS      = "numOfUsers";
+	private static final String XML_ATT_NUM_OF_TABLES     = "numOfTables";
+
+	/** Logging */
+	private JogreLogger logger = new JogreLogger (this.getClass());
+
+	// Journals
+	private Journal dataJournal = null;
+	private Journal gamesJournal = null;
+
+	/** Users (username -> User). */
+	private Map users = new HashMap ();
+
+	/** Game summaries (game key -> Map (username -> GameSummary)). */
+	private Map gameSummaries = new HashMap ();
+
+	/** Number of game summaries. */
+	private int numOfGameSummaries = 0;
+
+	/** Snapshots (game key -> int [] {numOfUsers, numOfTables}). */
+	private Map snapshots = new HashMap ();
+
+	/**
+	 * Constructor which opens the journals in the location set in the
+	 * "server.xml" file.
+	 *
+	 * @throws ServerDataException  If the journals can't be opened.
+	 */
+	public ServerDataJournal () throws ServerDataException {
+		this (new File (ServerProperties.getInstance ().getJournalLocation ()),
+		      ServerProperties.getInstance ().getJournalSyncInterval ());
+	}
+
+	/**
+	 * Constructor which opens the journals in a folder.
+	 *
+	 * @param folder        Folder of the journals (created if it doesn't exist).
+	 * @param syncInterval  Time in milliseconds between syncs to disk.
+	 * @throws ServerDataException  If the journals can't be opened.
+	 */
+	public ServerDataJournal (File folder, long syncInterval) throws ServerDataException {
+		try {
+			folder.mkdirs ();
+			this.dataJournal  = new Journal (new File (folder, DATA_FILENAME), syncInterval);
+			this.gamesJournal = new Journal (new File (folder, GAMES_FILENAME), syncInterval);
+
+			load ();
+
+			// Create default user like the XML data does
+			if (users.isEmpty ())
+				newUser (new User (XML_ELM_USER, XML_ELM_USER));
+		}
+		catch (IOException ioEx) {
+			if (dataJournal != null)
+				dataJournal.close ();
+			if (gamesJournal != null)
+				gamesJournal.close ();
+			throw new ServerDataException ("Unable to open journal in " + folder + ": " + ioEx.getMessage ());
+		}
+	}
+
+	/**
+	 * Read the data journal into memory.
+	 *
+	 * @throws IOException
+	 */
+	private void load () throws IOException {
+		MessageParser parser = new MessageParser ();
+		List records = dataJournal.read ();
+		for (int i = 0; i < records.size (); i++) {
+			try {
+				apply (parser.parseElement ((String)records.get (i)));
+			}
+			catch (RuntimeException e) {
+				logger.error ("load", "Bad record " + (i + 1) + " in " + dataJournal.getFile ());
+			}
+		}
+		logger.debug ("load", records.size () + " records, " + users.size () + " users, " +
+		              numOfGameSummaries + " game summaries");
+	}
+
+	/**
+	 * Apply a record from the data journal to the data in memory.
+	 *
+	 * @param record
+	 */
+	private void apply (XMLElement record) {
+		String name = record.getName ();
+		if (name.equals (XML_ELM_GAME_SUMMARY))
+			putGameSummary (inflateGameSummary (record));
+		else if (name.equals (XML_ELM_USER)) {
+			User user = inflateUser (record);
+			users.put (user.getUsername (), user);
+		}
+		else if (name.equals (XML_ELM_DELETE_USER))
+			users.remove (record.getStringAttribute (XML_ATT_USERNAME));
+		else if (name.equals (XML_ELM_SNAPSHOT))
+			snapshots.put (record.getStringAttribute (XML_ATT_GAME), new int [] {
+				record.getIntAttribute (XML_ATT_NUM_OF_USERS),
+				record.getIntAttribute (XML_ATT_NUM_OF_TABLES)});
+		else if (name.equals (XML_ELM_RESET_SNAPSHOT))
+			snapshots.clear ();
+	}
+
+	/**
+	 * Append a record to the data journal (and apply it).  The journal is
+	 * compacted if it has grown too big.
+	 *
+	 * @param record
+	 * @throws ServerDataException
+	 */
+	private void append (XMLElement record) throws ServerDataException {
+		checkOpen ();
+		try {
+			dataJournal.append (record.toString ());
+			apply (record);
+
+			int numOfItems = users.size () + numOfGameSummaries + snapshots.size ();
+			if (dataJournal.getNumOfRecords () > Math.max (MIN_COMPACT_RECORDS, numOfItems * 2))
+				compact ();
+		}
+		catch (IOException ioEx) {
+			throw new ServerDataException (ioEx.getMessage ());
+		}
+	}
+
+	/**
+	 * Rewrite the data journal with one record for each user, game summary
+	 * and snapshot.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void compact () throws IOException {
+		List records = new ArrayList ();
+		Iterator it = users.values ().iterator ();
+		while (it.hasNext ())
+			records.add (flattenUser ((User)it.next ()).toString ());
+
+		it = gameSummaries.values ().iterator ();
+		while (it.hasNext ()) {
+			Iterator summaries = ((Map)it.next ()).values ().iterator ();
+			while (summaries.hasNext ())
+				records.add (flattenGameSummary ((GameSummary)summaries.next ()).toString ());
+		}
+
+		it = snapshots.entrySet ().iterator ();
+		while (it.hasNext ()) {
+			Map.Entry entry = (Map.Entry)it.next ();
+			int [] snapshot = (int [])entry.getValue ();
+			records.add (flattenSnapshot ((String)entry.getKey (), snapshot [0], snapshot [1]).toString ());
+		}
+
+		dataJournal.compact (records);
+		logger.debug ("compact", records.size () + " records");
+	}
+
+	/**
+	 * Sync both journals to disk.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void sync () throws IOException {
+		checkOpenIO ();
+		dataJournal.sync ();
+		gamesJournal.sync ();
+	}
+
+	/**
+	 * Sync and close both journals.
+	 */
+	public synchronized void close () {
+		if (dataJournal != null)
+			dataJournal.close ();
+		if (gamesJournal != null)
+			gamesJournal.close ();
+	}
+
+	/**
+	 * Return type journal.
+	 *
+	 * @see org.jogre.server.data.IServerData#getType()
+	 */
+	public String getType () {
+		return JOURNAL;
+	}
+
+	/**
+	 * Implementation of logon method (no password).
+	 *
+	 * @see org.jogre.server.data.IServerData#containsUser(java.lang.String)
+	 */
+	public synchronized boolean containsUser (String username) {
+		ServerProperties serverProperties = ServerProperties.getInstance();
+		if (serverProperties.isUserValidationNotRequired())
+			return true;
+		else if (serverProperties.isUserValidationUser())
+			return users.containsKey (username);
+		return false;
+	}
+
+	/**
+	 * Implementation of logon method (with password).
+	 *
+	 * @see org.jogre.server.data.IServerData#containsUser(java.lang.String, java.lang.String)
+	 */
+	public synchronized boolean containsUser (String username, String password) {
+		ServerProperties serverProperties = ServerProperties.getInstance();
+		if (serverProperties.isUserValidationNotRequired())
+			return true;
+		else if (serverProperties.isUserValidationUser())
+			return users.containsKey (username);
+		else if (serverProperties.isUserValidationPassword()) {
+			User user = (User)users.get (username);
+			return user != null && password != null && password.equals (user.getPassword ());
+		}
+		return false;
+	}
+
+	/**
+	 * Append the game info and the updated game summaries of its players.
+	 *
+	 * @see org.jogre.server.data.IServerData#addGame(org.jogre.server.data.GameInfo, boolean)
+	 */
+	public synchronized GameOver addGame (GameInfo gameInfo, boolean eloRatings) throws ServerDataException {
+		checkOpen ();
+		try {
+			gamesJournal.append (flattenGameInfo (gameInfo).toString ());
+		}
+		catch (IOException ioEx) {
+			throw new ServerDataException (ioEx.getMessage ());
+		}
+
+		String    gameKey = gameInfo.getGameKey ();
+		String [] players = JogreUtils.convertToStringArray (gameInfo.getPlayers ());
+		int    [] results = JogreUtils.convertToIntArray (gameInfo.getResults ());
+
+		GameSummary [] gameSummary = new GameSummary [players.length];
+		for (int i = 0; i < players.length; i++)
+			gameSummary [i] = getGameSummary (gameKey, players [i]);
+
+		GameOver gameOver = updateGameSummaries (gameKey, players, results, gameSummary, eloRatings);
+
+		for (int i = 0; i < players.length; i++)
+			append (flattenGameSummary (gameSummary [i]));
+		updateRanks (gameSummary);
+
+		return gameOver;
+	}
+
+	/**
+	 * Append the game info and the game summaries which have already been
+	 * updated.
+	 *
+	 * @see org.jogre.server.data.IServerData#addGame(org.jogre.server.data.GameInfo, org.jogre.server.data.GameSummary[])
+	 */
+	public synchronized void addGame (GameInfo gameInfo, GameSummary [] gameSummary) throws ServerDataException {
+		checkOpen ();
+		try {
+			gamesJournal.append (flattenGameInfo (gameInfo).toString ());
+		}
+		catch (IOException ioEx) {
+			throw new ServerDataException (ioEx.getMessage ());
+		}
+
+		for (int i = 0; i < gameSummary.length; i++)
+			append (flattenGameSummary (gameSummary [i]));
+		updateRanks (gameSummary);
+	}
+
+	/**
+	 * Return a game summary (a new one with the start rating if the user
+	 * hasn't played this game).
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameSummary(java.lang.String, java.lang.String)
+	 */
+	public synchronized GameSummary getGameSummary (String gameKey, String username) {
+		Map summaries = (Map)gameSummaries.get (gameKey);
+		GameSummary gs = summaries == null ? null : (GameSummary)summaries.get (username);
+		if (gs == null)
+			return new GameSummary (gameKey, username, ServerProperties.getInstance().getStartRating (gameKey));
+
+		return gs.copy ();
+	}
+
+	/**
+	 * Append the game summaries.
+	 *
+	 * @see org.jogre.server.data.IServerData#saveGameSummaries(java.util.List)
+	 */
+	public synchronized void saveGameSummaries (List gameSummaries) throws ServerDataException {
+		for (int i = 0; i < gameSummaries.size (); i++) {
+			append (flattenGameSummary ((GameSummary)gameSummaries.get (i)));
+			updateRank ((GameSummary)gameSummaries.get (i));
+		}
+	}
+
+	/**
+	 * Update the server snapshot.
+	 *
+	 * @see org.jogre.server.data.IServerData#updateSnapshot(java.lang.String, int, int)
+	 */
+	public synchronized void updateSnapshot (String gameId, int numOfUsers, int numOfTables) throws ServerDataException {
+		append (flattenSnapshot (gameId, numOfUsers, numOfTables));
+	}
+
+	/**
+	 * Reset the server snapshot.
+	 *
+	 * @see org.jogre.server.data.IServerData#resetSnapshot(java.util.Vector)
+	 */
+	public synchronized void resetSnapshot (Vector gameKeys) throws ServerDataException {
+		append (new XMLElement (XML_ELM_RESET_SNAPSHOT));
+		for (int i = 0; i < gameKeys.size (); i++)
+			append (flattenSnapshot ((String)gameKeys.get (i), 0, 0));
+	}
+
+	/**
+	 * Return all users.
+	 *
+	 * @see org.jogre.server.data.IServerData#getUsers()
+	 */
+	public synchronized List getUsers () {
+		List list = new ArrayList ();
+		Iterator it = users.values ().iterator ();
+		while (it.hasNext ())
+			list.add (inflateUser (flattenUser ((User)it.next ())));	// copy
+		return list;
+	}
+
+	/**
+	 * Return all game summaries.
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameSummarys()
+	 */
+	public synchronized List getGameSummarys () {
+		List list = new ArrayList ();
+		Iterator it = gameSummaries.values ().iterator ();
+		while (it.hasNext ()) {
+			Iterator summaries = ((Map)it.next ()).values ().iterator ();
+			while (summaries.hasNext ()) {
+				GameSummary gs = (GameSummary)summaries.next ();
+				list.add (getGameSummary (gs.getGameKey (), gs.getUsername ()));
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Return all game infos (read from the games journal).
+	 *
+	 * @see org.jogre.server.data.IServerData#getGameInfos()
+	 */
+	public synchronized List getGameInfos () throws ServerDataException {
+		checkOpen ();
+		try {
+			MessageParser parser = new MessageParser ();
+			List records = gamesJournal.read ();
+			List games = new ArrayList (records.size ());
+			for (int i = 0; i < records.size (); i++) {
+				try {
+					games.add (inflateGameInfo (parser.parseElement ((String)records.get (i))));
+				}
+				catch (RuntimeException e) {
+					logger.error ("getGameInfos", "Bad record " + (i + 1) + " in " + gamesJournal.getFile ());
+				}
+			}
+			return games;
+		}
+		catch (IOException ioEx) {
+			throw new ServerDataException (ioEx.getMessage ());
+		}
+	}
+
+	/**
+	 * Add a new user.
+	 *
+	 * @see org.jogre.server.data.IServerData#newUser(org.jogre.server.data.User)
+	 */
+	public synchronized void newUser (User user) throws ServerDataException {
+		if (users.containsKey (user.getUsername ()))
+			throw new ServerDataException ("User already exists: " + user.getUsername());
+		append (flattenUser (user));
+	}
+
+	/**
+	 * Delete a user.
+	 *
+	 * @see org.jogre.server.data.IServerData#deleteUser(org.jogre.server.data.User)
+	 */
+	public synchronized void deleteUser (User user) throws ServerDataException {
+		if (users.containsKey (user.getUsername ())) {
+			XMLElement record = new XMLElement (XML_ELM_DELETE_USER);
+			record.setAttribute (XML_ATT_USERNAME, user.getUsername ());
+			append (record);
+			removeRanks (user.getUsername ());
+		}
+	}
+
+	/**
+	 * Update a user.
+	 *
+	 * @see org.jogre.server.data.IServerData#updateUser(org.jogre.server.data.User)
+	 */
+	public synchronized void updateUser (User user) throws ServerDataException {
+		if (users.containsKey (user.getUsername ()))
+			append (flattenUser (user));
+	}
+
+	/**
+	 * Put a game summary in the index.
+	 *
+	 * @param gameSummary
+	 */
+	private void putGameSummary (GameSummary gameSummary) {
+		Map summaries = (Map)gameSummaries.get (gameSummary.getGameKey ());
+		if (summaries == null) {
+			summaries = new HashMap ();
+			gameSummaries.put (gameSummary.getGameKey (), summaries);
+		}
+		if (summaries.put (gameSummary.getUsername (), gameSummary) == null)
+			numOfGameSummaries++;
+	}
+
+	private void checkOpen () throws ServerDataException {
+		if (dataJournal == null || gamesJournal == null)
+			throw new ServerDataException ("Journal not open");
+	}
+
+	private void checkOpenIO () throws IOException {
+		if (dataJournal == null || gamesJournal == null)
+			throw new IOException ("Journal not open");
+	}
+
+	// ------------------------------------------------------------------------
+	// Records
+	// ------------------------------------------------------------------------
+
+	private static XMLElement flattenUser (User user) {
+		XMLElement record = new XMLElement (XML_ELM_USER);
+		record.setAttribute (XML_ATT_USERNAME, user.getUsername ());
+		setAttribute (record, XML_ATT_PASSWORD, user.getPassword ());
+		if (user.getSecurityQuestion () != 0)
+			record.setIntAttribute (XML_ATT_SECURITY_QUESTION, user.getSecurityQuestion ());
+		setAttribute (record, XML_ATT_SECURITY_ANSWER, user.getSecurityAnswer ());
+		setAttribute (record, XML_ATT_YEAR_OF_BIRTH, user.getYearOfBirth ());
+		setAttribute (record, XML_ATT_EMAIL, user.getEmail ());
+		if (user.isReceiveNewsletter ())
+			record.setAttribute (XML_ATT_NEWSLETTER, "true");
+		return record;
+	}
+
+	private static User inflateUser (XMLElement record) {
+		User user = new User (record.getStringAttribute (XML_ATT_USERNAME),
+		                      record.getStringAttribute (XML_ATT_PASSWORD));
+		user.setSecurityQuestion (record.getIntAttribute (XML_ATT_SECURITY_QUESTION, 0));
+		user.setSecurityAnswer (record.getStringAttribute (XML_ATT_SECURITY_ANSWER));
+		user.setYearOfBirth (record.getStringAttribute (XML_ATT_YEAR_OF_BIRTH));
+		user.setEmail (record.getStringAttribute (XML_ATT_EMAIL));
+		user.setReceiveNewsletter ("true".equals (record.getStringAttribute (XML_ATT_NEWSLETTER)));
+		return user;
+	}
+
+	private static XMLElement flattenGameSummary (GameSummary gameSummary) {
+		XMLElement record = new XMLElement (XML_ELM_GAME_SUMMARY);
+		record.setAttribute    (XML_ATT_GAME,     gameSummary.getGameKey ());
+		record.setAttribute    (XML_ATT_USERNAME, gameSummary.getUsername ());
+		record.setIntAttribute (XML_ATT_RATING,   gameSummary.getRating ());
+		record.setIntAttribute (XML_ATT_WINS,     gameSummary.getWins ());
+		record.setIntAttribute (XML_ATT_LOSES,    gameSummary.getLoses ());
+		record.setIntAttribute (XML_ATT_DRAWS,    gameSummary.getDraws ());
+		record.setIntAttribute (XML_ATT_STREAK,   gameSummary.getStreak ());
+		setAttribute (record, XML_ATT_FORM,    gameSummary.getRecentForm ());
+		setAttribute (record, XML_ATT_RATINGS, gameSummary.getRatingHistory ());
+		return record;
+	}
+
+	private static GameSummary inflateGameSummary (XMLElement record) {
+		GameSummary gameSummary = new GameSummary (
+			record.getStringAttribute (XML_ATT_GAME),
+			record.getStringAttribute (XML_ATT_USERNAME),
+			record.getIntAttribute (XML_ATT_RATING),
+			record.getIntAttribute (XML_ATT_WINS),
+			record.getIntAttribute (XML_ATT_LOSES),
+			record.getIntAttribute (XML_ATT_DRAWS),
+			record.getIntAttribute (XML_ATT_STREAK));
+		gameSummary.setRecentForm (record.getStringAttribute (XML_ATT_FORM));
+		gameSummary.setRatingHistory (record.getStringAttribute (XML_ATT_RATINGS));
+		return gameSummary;
+	}
+
+	private static XMLElement flattenGameInfo (GameInfo gameInfo) {
+		XMLElement record = new XMLElement (XML_ELM_GAME_INFO);
+		record.setAttribute (XML_ATT_GAME,    gameInfo.getGameKey ());
+		record.setAttribute (XML_ATT_PLAYERS, gameInfo.getPlayers ());
+		record.setAttribute (XML_ATT_RESULTS, gameInfo.getResults ());
+		if (gameInfo.getStartTime () != null)
+			record.setAttribute (XML_ATT_START_TIME, String.valueOf (gameInfo.getStartTime ().getTime ()));
+		if (gameInfo.getEndTime () != null)
+			record.setAttribute (XML_ATT_END_TIME, String.valueOf (gameInfo.getEndTime ().getTime ()));
+		setAttribute (record, XML_ATT_SCORE,   gameInfo.getGameScore ());
+		setAttribute (record, XML_ATT_HISTORY, gameInfo.getGameHistory ());
+		return record;
+	}
+
+	private static GameInfo inflateGameInfo (XMLElement record) {
+		return new GameInfo (
+			record.getStringAttribute (XML_ATT_GAME),
+			record.getStringAttribute (XML_ATT_PLAYERS),
+			record.getStringAttribute (XML_ATT_RESULTS),
+			readDate (record.getStringAttribute (XML_ATT_START_TIME)),
+			readDate (record.getStringAttribute (XML_ATT_END_TIME)),
+			record.getStringAttribute (XML_ATT_SCORE),
+			record.getStringAttribute (XML_ATT_HISTORY));
+	}
+
+	private static XMLElement flattenSnapshot (String gameId, int numOfUsers, int numOfTables) {
+		XMLElement record = new XMLElement (XML_ELM_SNAPSHOT);
+		record.setAttribute    (XML_ATT_GAME,          gameId);
+		record.setIntAttribute (XML_ATT_NUM_OF_USERS,  numOfUsers);
+		record.setIntAttribute (XML_ATT_NUM_OF_TABLES, numOfTables);
+		return record;
+	}
+
+	private static void setAttribute (XMLElement record, String name, String value) {
+		if (value != null)
+			record.setAttribute (name, value);
+	}
+
+	private static Date readDate (String time) {
+		return time == null ? null : new Date (Long.parseLong (time));
+	}
+}
@@ -39,6 +39,8 @@ public class GameSummaryXML {
 	private static final String XML_ATT_LOSES        = "loses";
 	private static final String XML_ATT_DRAWS        = "draws";
 	private static final String XML_ATT_STREAK       = "streak";
+	private static final String XML_ATT_FORM         = "form";
+	private static final String XML_ATT_RATINGS      = "ratings";
 	
 	/**
 	 * Method for returning a game summary object from an 
@@ -60,7 +62,10 @@ public class GameSummaryXML {
 		int streak = Integer.parseInt (element.attributeValue(XML_ATT_STREAK));
 			
 		// Create game summary object and add to UserInfo object
-		return new GameSummary (game, username, rating, wins, loses, draws, streak);
+		GameSummary gameSummary = new GameSummary (game, username, rating, wins, loses, draws, streak);
+		gameSummary.setRecentForm (element.attributeValue(XML_ATT_FORM));
+		gameSummary.setRatingHistory (element.attributeValue(XML_ATT_RATINGS));
+		return gameSummary;
 	} 
 	
 	/**
@@ -79,6 +84,10 @@ public class GameSummaryXML {
 		elm.addAttribute (XML_ATT_LOSES,  String.valueOf (gameSummary.getLoses())); 
 		elm.addAttribute (XML_ATT_DRAWS,  String.valueOf (gameSummary.getDraws())); 
 		elm.addAttribute (XML_ATT_STREAK, String.valueOf (gameSummary.getStreak()));
+		if (gameSummary.getRecentForm().length() > 0)
+			elm.addAttribute (XML_ATT_FORM, gameSummary.getRecentForm());
+		if (gameSummary.getRatingHistory().length() > 0)
+			elm.addAttribute (XML_ATT_RATINGS, gameSummary.getRatingHistory());
 				
 		return elm; 
 	}
@@ -24,25 +24,27 @@ import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
-import org.dom4j.Node;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
 import org.jogre.common.GameOver;
 import org.jogre.common.util.JogreLogger;
 import org.jogre.common.util.JogreUtils;
-import org.jogre.server.EloRatingSystem;
 import org.jogre.server.ServerProperties;
 import org.jogre.server.data.AbstractServerData;
+import org.jogre.server.data.DataPage;
 import org.jogre.server.data.GameInfo;
 import org.jogre.server.data.GameSummary;
+import org.jogre.server.data.IRowHandler;
 import org.jogre.server.data.ServerDataException;
 import org.jogre.server.data.User;
 
@@ -50,6 +52,10 @@ import org.jogre.server.data.User;
  * Implementation of the IServerData interface which connects
  * connects to the local file system.
  *
+ * The user, game summary, game and snapshot elements are indexed in hash
+ * maps (kept in step with the documents) so they can be found without
+ * XPath queries.
+ *
  * @author Bob Marks
  * @version Alpha 0.2.3
  */
@@ -65,6 +71,7 @@ public class ServerDataXML extends AbstractServerData {
 	private static final String XML_ELM_USER     = "user";
 	private static final String XML_ATT_USERNAME = "username";
 	private static final String XML_ATT_PASSWORD = "password";
+	private static final String XML_ATT_GAME     = "game";
 
 	// Declare game XML
 	private static final String XML_ELM_GAMES = "games";
@@ -76,6 +83,14 @@ public class ServerDataXML extends AbstractServerData {
 	private static final String XML_ATT_NUM_OF_USERS  = "numOfUsers";
 	private static final String XML_ATT_NUM_OF_TABLES = "numOfTables";
 
+	// Declare the rows which can be paged
+	private static final int ROWS_USERS          = 0;
+	private static final int ROWS_GAME_INFOS     = 1;
+	private static final int ROWS_GAME_SUMMARIES = 2;
+
+	/** Separates the element indexes of a cursor. */
+	private static final String CURSOR_SEPARATOR = " ";
+
 	// Declare fields
 	private File userFile, gameFile, snapshotFile;
 
@@ -84,9 +99,18 @@ public class ServerDataXML extends AbstractServerData {
 	private Document gameDoc = null;
 	private Document snapshotDoc = null;
 
+	// Indexes of the documents
+	private Map userIndex     = new HashMap ();	// username -> user element
+	private Map summaryIndex  = new HashMap ();	// game key -> Map (username -> game_summary element)
+	private Map gameIndex     = new HashMap ();	// game key -> game element
+	private Map snapshotIndex = new HashMap ();	// game key -> game element
+
 	// Formatter
 	private OutputFormat format;
 
+	/** Location of the XML files (null to use the server properties). */
+	private String xmlLocation = null;
+
 	/**
 	 * Constructor for a user connecting locally on a computer.
 	 *
@@ -101,12 +125,23 @@ public class ServerDataXML extends AbstractServerData {
 		loadDocuments ();
 	}
 
+	/**
+	 * Constructor which loads the XML files from a location.
+	 *
+	 * @param xmlLocation  Location of the XML files.
+	 */
+	public ServerDataXML (String xmlLocation) {
+		this.xmlLocation = xmlLocation;
+		this.format = OutputFormat.createPrettyPrint();
+		loadDocuments ();
+	}
+
 	/**
 	 * Implementation of logon method (no password).
 	 *
 	 * @see org.jogre.server.data.IServerData#containsUser(java.lang.String)
 	 */
-	public boolean containsUser (String user) {
+	public synchronized boolean containsUser (String user) {
 		// if a password is required - we cant log on
 		ServerProperties serverProperties = ServerProperties.getInstance();
         if (serverProperties.isUserValidationNotRequired()) {
@@ -114,14 +149,7 @@ public class ServerDataXML extends AbstractServerData {
         } else if (serverProperties.isUserValidationPassword()) {
 			return false;
         } else if (serverProperties.isUserValidationUser()) {
-            if (userDoc != null) {
-                String xpath = "//user[@username='" + user + "']";
-                Node node = userDoc.selectSingleNode (xpath);
-                if (node != null)
-                    return true;
-    		}
-            // If we get to here return false
-            return false;
+            return userIndex.containsKey (user);
         } else {
             (new JogreLogger (this.getClass())).error("containsUser", "User Validation value is bad.");
         }
@@ -133,7 +161,7 @@ public class ServerDataXML extends AbstractServerData {
 	 *
 	 * @see org.jogre.server.data.IServerData#containsUser(java.lang.String)
 	 */
-	public boolean containsUser (String user, String password) {
+	public synchronized boolean containsUser (String user, String password) {
 		ServerProperties serverProperties = ServerProperties.getInstance();
 	    if (serverProperties.isUserValidationNotRequired()) {
 	        return true;
@@ -141,14 +169,9 @@ public class ServerDataXML extends AbstractServerData {
 	        return containsUser (user);
 	    } else if (serverProperties.isUserValidationPassword()) {
 	        
-	        if (userDoc != null) {
-	            String xpath =
-	                "//user[@username='" + user +
-	                "' and @password='" + password + "']";
-	            Node node = userDoc.selectSingleNode (xpath);
-	            if (node != null)
-	                return true;
-	        }
+	        Element userElm = (Element)userIndex.get (user);
+	        if (userElm != null && password != null)
+	            return password.equals (userElm.attributeValue (XML_ATT_PASSWORD));
 	    }   
     	
     	// If we get to here return false
@@ -160,9 +183,10 @@ public class ServerDataXML extends AbstractServerData {
 	 *
 	 * @see org.jogre.server.data.IServerData#addGame(org.jogre.server.data.GameInfo, boolean)
 	 */
-	public GameOver addGame (GameInfo gameInfo, boolean eloRatings) {
+	public synchronized GameOver addGame (GameInfo gameInfo, boolean eloRatings) {
 		// Declare GameOver object
 		GameOver gameOver = null;
+		GameSummary [] gameSummary = null;
 
 		// Update the game file
 		if (gameDoc != null) {
@@ -170,22 +194,8 @@ public class ServerDataXML extends AbstractServerData {
 			// Retrieve gameID
 			String gameKey = gameInfo.getGameKey();
 
-			// Retrieve game element for this game.
-			String xpath = "//game[@id='" + gameKey + "']";
-	        Node node = gameDoc.selectSingleNode (xpath);
-	        Element gameElm = null;
-			if (node != null)
-				gameElm = (Element)node;
-			else {
-				gameElm = DocumentHelper.createElement(XML_ELM_GAME);
-				gameElm.addAttribute (XML_ATT_ID, gameKey);
-				gameDoc.getRootElement().add (gameElm);
-			}
-
-			// Create game info as XML
-			Element gameInfoXML = GameInfoXML.flatten (gameInfo);
-			gameElm.add (gameInfoXML);
-			saveXMLFile (gameFile, gameDoc);	// save to file
+			// Add game info to the game file
+			addGameInfoXML (gameInfo);
 
 			// Retrieve players and results
 			String [] players = JogreUtils.convertToStringArray(gameInfo.getPlayers ());
@@ -193,7 +203,7 @@ public class ServerDataXML extends AbstractServerData {
 			int numPlayers = players.length;
 
 			// Loop through players at table and update them
-			GameSummary [] gameSummary = new GameSummary [numPlayers];
+			gameSummary = new GameSummary [numPlayers];
 			Element     [] gameSummaryXML = new Element [numPlayers];
 			for (int i = 0; i < numPlayers; i++) {
 				String curPlayer = players [i];
@@ -206,35 +216,7 @@ public class ServerDataXML extends AbstractServerData {
 					(gameKey, curPlayer, gameSummaryXML [i]);
 			}
 
-            // Check if scores need updating
-			// NOTE: (currently only support 2 player games)
-			if (eloRatings && numPlayers == EloRatingSystem.SUPPORTED_PLAYERS) {
-				// Retrieve old ratings
-				int [] oldRatings = {gameSummary [0].getRating(),
-						             gameSummary [1].getRating()};
-
-				// Find new ratings
-				EloRatingSystem elo = EloRatingSystem.getInstance (gameKey);
-				int [] newRatings = {
-					elo.getNewRating (oldRatings[0], oldRatings[1], results[0]),
-					elo.getNewRating (oldRatings[1], oldRatings[0], results[1])
-				};
-
-				// Update game summaries,
-				for (int i = 0; i < numPlayers; i++)
-					gameSummary[i].update (results[i], newRatings[i]);
-
-				// Create GameOver object with old/new ratings and return to users
-				gameOver = new GameOver (players, results, oldRatings, newRatings);
-			} else {
-				// No elo ratings - so everyone keeps old ratings
-				int [] oldRatings = new int [numPlayers];
-
-				for (int i = 0; i < numPlayers; i++)
-					oldRatings[i] = gameSummary [i].getRating();
-
-				gameOver = new GameOver (players, results, oldRatings, oldRatings);
-			}
+			gameOver = updateGameSummaries (gameKey, players, results, gameSummary, eloRatings);
 
 			// Update XML attributes
 			for (int i = 0; i < numPlayers; i++) {
@@ -245,41 +227,100 @@ public class ServerDataXML extends AbstractServerData {
 
 		// Save document to file.
 		saveXMLFile (userFile, userDoc);	// save to file
+		if (gameSummary != null)
+			updateRanks (gameSummary);
 
 		// Now return gameOver object.
 		return gameOver;
 	}
 
+	/**
+	 * Add game information to data and save the game summaries which have
+	 * already been updated.
+	 *
+	 * @see org.jogre.server.data.IServerData#addGame(org.jogre.server.data.GameInfo, org.jogre.server.data.GameSummary[])
+	 */
+	public synchronized void addGame (GameInfo gameInfo, GameSummary [] gameSummary) {
+		if (gameDoc == null)
+			return;
+
+		addGameInfoXML (gameInfo);
+		for (int i = 0; i < gameSummary.length; i++) {
+			Element gameSummaryXML = getGameSummaryXML (gameSummary [i].getGameKey(), gameSummary [i].getUsername());
+			gameSummaryXML.setAttributes (GameSummaryXML.flatten (gameSummary [i]).attributes());
+		}
+
+		saveXMLFile (userFile, userDoc);	// save to file
+		updateRanks (gameSummary);
+	}
+
+	/**
+	 * Add a game info to the game document and save it.
+	 *
+	 * @param gameInfo
+	 */
+	private void addGameInfoXML (GameInfo gameInfo) {
+		String gameKey = gameInfo.getGameKey();
+
+		// Retrieve game element for this game.
+		Element gameElm = (Element)gameIndex.get (gameKey);
+		if (gameElm == null) {
+			gameElm = DocumentHelper.createElement(XML_ELM_GAME);
+			gameElm.addAttribute (XML_ATT_ID, gameKey);
+			gameDoc.getRootElement().add (gameElm);
+			gameIndex.put (gameKey, gameElm);
+		}
+
+		// Create game info as XML
+		Element gameInfoXML = GameInfoXML.flatten (gameInfo);
+		gameElm.add (gameInfoXML);
+		saveXMLFile (gameFile, gameDoc);	// save to file
+	}
+
 	/**
 	 * Return a game summary.
 	 *
 	 * @see org.jogre.server.data.IServerData#getGameSummary(java.lang.String, java.lang.String)
 	 */
-	public GameSummary getGameSummary (String gameId, String username) {
+	public synchronized GameSummary getGameSummary (String gameId, String username) {
 		Element gameSummary = getGameSummaryXML (gameId, username);		// retrieve from XML document.
 		return GameSummaryXML.inflate (gameId, username, gameSummary);	// Convert to Java object.
 	}
 
+	/**
+	 * Save game summaries.
+	 *
+	 * @see org.jogre.server.data.IServerData#saveGameSummaries(java.util.List)
+	 */
+	public synchronized void saveGameSummaries (List gameSummaries) {
+		for (int i = 0; i < gameSummaries.size(); i++) {
+			GameSummary gameSummary = (GameSummary)gameSummaries.get(i);
+			Element gameSummaryElm = getGameSummaryXML (gameSummary.getGameKey(), gameSummary.getUsername());
+			gameSummaryElm.setAttributes (GameSummaryXML.flatten (gameSummary).attributes());
+			updateRank (gameSummary);
+		}
+
+		saveXMLFile (userFile, userDoc);	// save to file
+	}
+
 	/**
 	 * Update the server snapshot.
 	 *
 	 * @see org.jogre.server.data.IServerData#updateSnapshot(java.lang.String, int, int)
 	 */
-	public void updateSnapshot (String gameId, int numOfUsers, int numOfTables) {
+	public synchronized void updateSnapshot (String gameId, int numOfUsers, int numOfTables) {
 
 		// if a password is required - we cant log on
 		if (snapshotDoc != null) {
-			Element gameSnapShot;
-			String xpath = "//game[@id='" + gameId + "']";
-	        Node node = snapshotDoc.selectSingleNode (xpath);
-			if (node != null) {
-				gameSnapShot = (Element)node;
+			Element gameSnapShot = (Element)snapshotIndex.get (gameId);
+			if (gameSnapShot != null) {
 				gameSnapShot.addAttribute (XML_ATT_NUM_OF_USERS,  String.valueOf (numOfUsers));
 				gameSnapShot.addAttribute (XML_ATT_NUM_OF_TABLES, String.valueOf (numOfTables));
 			}
 			else {
-				snapshotDoc.getRootElement().add (
-					getGameSnapshotElm (gameId, numOfUsers, numOfTables));
+				gameSnapShot = getGameSnapshotElm (gameId, numOfUsers, numOfTables);
+				snapshotDoc.getRootElement().add (gameSnapShot);
+				snapshotIndex.put (gameId, gameSnapShot);
 			}
 
 			saveXMLFile (snapshotFile, snapshotDoc);
@@ -291,15 +332,18 @@ public class ServerDataXML extends AbstractServerData {
 	 *
 	 * @see org.jogre.server.data.IServerData#resetSnapshot(java.util.Vector)
 	 */
-	public void resetSnapshot (Vector gameKeys) {
+	public synchronized void resetSnapshot (Vector gameKeys) {
 		// Create new document
 		this.snapshotDoc = DocumentHelper.createDocument();
 		Element snapshotElm = DocumentHelper.createElement(XML_ELM_SNAPSHOTS);
 		snapshotDoc.add (snapshotElm);
+		snapshotIndex.clear ();
 
 		for (int i = 0; i < gameKeys.size(); i++) {
 			String gameId = (String)gameKeys.get(i);
-			snapshotElm.add (getGameSnapshotElm (gameId, 0, 0));
+			Element gameSnapShot = getGameSnapshotElm (gameId, 0, 0);
+			snapshotElm.add (gameSnapShot);
+			snapshotIndex.put (gameId, gameSnapShot);
 		}
 
 		saveXMLFile (snapshotFile, snapshotDoc);
@@ -319,16 +363,11 @@ public class ServerDataXML extends AbstractServerData {
 	 * 
 	 * @see org.jogre.server.data.IServerData#getUsers()
 	 */
-	public List getUsers() {
+	public synchronized List getUsers() {
 		List users = new ArrayList();
 		List userElms = userDoc.getRootElement().elements();
-		for (int i = 0; i < userElms.size(); i++) {
-			Element userElm = (Element)userElms.get(i);
-			User user = new User ();
-			user.setUsername (userElm.attributeValue("username"));
-			user.setPassword (userElm.attributeValue("password"));
-			users.add(user);
-		}
+		for (int i = 0; i < userElms.size(); i++)
+			users.add (inflateUser ((Element)userElms.get(i)));
 		
 		return users;
 	}
@@ -338,7 +377,7 @@ public class ServerDataXML extends AbstractServerData {
 	 * 
 	 * @see org.jogre.server.data.IServerData#getGameInfos()
 	 */
-	public List getGameInfos() {
+	public synchronized List getGameInfos() {
 		List games = new ArrayList ();
 		
 		Iterator it1 = gameDoc.getRootElement().elements().iterator();
@@ -361,7 +400,7 @@ public class ServerDataXML extends AbstractServerData {
 	 * 
 	 * @see org.jogre.server.data.IServerData#getGameSummarys()
 	 */
-	public List getGameSummarys() {
+	public synchronized List getGameSummarys() {
 		List gameSummaries = new ArrayList();
 		
 		Iterator it1 = userDoc.getRootElement().elements().iterator();
@@ -380,19 +419,166 @@ public class ServerDataXML extends AbstractServerData {
 		return gameSummaries;
 	}
 	
+	/**
+	 * Return a page of users in document order.  The cursor is the position
+	 * of the next user so a page can be out by a few users if users were
+	 * added or deleted since the last page.
+	 * 
+	 * @see org.jogre.server.data.IServerData#getUsers(java.lang.String, int)
+	 */
+	public DataPage getUsers (String cursor, int num) throws ServerDataException {
+		return getPage (ROWS_USERS, cursor, num);
+	}
+
+	/**
+	 * Return a page of game infos (grouped by game).
+	 * 
+	 * @see org.jogre.server.data.IServerData#getGameInfos(java.lang.String, int)
+	 */
+	public DataPage getGameInfos (String cursor, int num) throws ServerDataException {
+		return getPage (ROWS_GAME_INFOS, cursor, num);
+	}
+
+	/**
+	 * Return a page of game summaries (grouped by user).
+	 * 
+	 * @see org.jogre.server.data.IServerData#getGameSummarys(java.lang.String, int)
+	 */
+	public DataPage getGameSummarys (String cursor, int num) throws ServerDataException {
+		return getPage (ROWS_GAME_SUMMARIES, cursor, num);
+	}
+
+	/**
+	 * Pass every user to a row handler without building a list.
+	 * 
+	 * @see org.jogre.server.data.IServerData#getUsers(org.jogre.server.data.IRowHandler)
+	 */
+	public synchronized void getUsers (IRowHandler rowHandler) throws ServerDataException {
+		handleRows (ROWS_USERS, new int [2], -1, rowHandler);
+	}
+
+	/**
+	 * Pass every game info to a row handler without building a list (each
+	 * game element holds the game infos of one game key in the order they
+	 * were added).
+	 * 
+	 * @see org.jogre.server.data.IServerData#getGameInfos(org.jogre.server.data.IRowHandler)
+	 */
+	public synchronized void getGameInfos (IRowHandler rowHandler) throws ServerDataException {
+		handleRows (ROWS_GAME_INFOS, new int [2], -1, rowHandler);
+	}
+
+	/**
+	 * Pass every game summary to a row handler without building a list.
+	 * 
+	 * @see org.jogre.server.data.IServerData#getGameSummarys(org.jogre.server.data.IRowHandler)
+	 */
+	public synchronized void getGameSummarys (IRowHandler rowHandler) throws ServerDataException {
+		handleRows (ROWS_GAME_SUMMARIES, new int [2], -1, rowHandler);
+	}
+
+	/**
+	 * Return a page of rows.  The cursor is the position of the first row
+	 * i.e. the index of the user / game element followed by the index of
+	 * the child element.
+	 * 
+	 * @param rows     ROWS_USERS, ROWS_GAME_INFOS or ROWS_GAME_SUMMARIES.
+	 * @param cursor   Position of first row (null for the start).
+	 * @param num      Maximum number of rows.
+	 * @return
+	 * @throws ServerDataException
+	 */
+	private synchronized DataPage getPage (int rows, String cursor, int num) throws ServerDataException {
+		int [] from = new int [2];
+		if (cursor != null) {
+			int index = cursor.indexOf (CURSOR_SEPARATOR);
+			try {
+				from [0] = Integer.parseInt (cursor.substring (0, index));
+				from [1] = Integer.parseInt (cursor.substring (index + 1));
+			}
+			catch (RuntimeException rtEx) {		// no separator or number
+				throw new ServerDataException ("Invalid cursor: " + cursor);
+			}
+		}
+
+		final List page = new ArrayList ();
+		int [] next = handleRows (rows, from, Math.max (1, num), new IRowHandler () {
+			public void handleRow (Object row) {
+				page.add (row);
+			}
+		});
+
+		return new DataPage (page, next == null ? null : next [0] + CURSOR_SEPARATOR + next [1]);
+	}
+
+	/**
+	 * Pass a number of rows from a position to a row handler.
+	 * 
+	 * @param rows         ROWS_USERS, ROWS_GAME_INFOS or ROWS_GAME_SUMMARIES.
+	 * @param from         Position of first row.
+	 * @param num          Maximum number of rows (-1 for all).
+	 * @param rowHandler
+	 * @return             Position of the next row or null if there are none.
+	 * @throws ServerDataException
+	 */
+	private int [] handleRows (int rows, int [] from, int num, IRowHandler rowHandler) throws ServerDataException {
+		Document doc = (rows == ROWS_GAME_INFOS) ? gameDoc : userDoc;
+		List parentElms = doc.getRootElement().elements();
+
+		int inner = from [1];
+		for (int outer = Math.max (0, from [0]); outer < parentElms.size(); outer++) {
+			Element parentElm = (Element)parentElms.get(outer);
+			if (rows == ROWS_USERS) {
+				if (num-- == 0)
+					return new int [] {outer, 0};
+				rowHandler.handleRow (inflateUser (parentElm));
+				continue;
+			}
+
+			List childElms = parentElm.elements();
+			for (inner = Math.max (0, inner); inner < childElms.size(); inner++) {
+				if (num-- == 0)
+					return new int [] {outer, inner};
+
+				Element childElm = (Element)childElms.get(inner);
+				if (rows == ROWS_GAME_INFOS)
+					rowHandler.handleRow (GameInfoXML.inflate (parentElm.attributeValue(XML_ATT_ID), childElm));
+				else
+					rowHandler.handleRow (GameSummaryXML.inflate (childElm.attributeValue(XML_ATT_GAME), parentElm.attributeValue(XML_ATT_USERNAME), childElm));
+			}
+			inner = 0;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Create a user from a user element.
+	 * 
+	 * @param userElm
+	 * @return
+	 */
+	private User inflateUser (Element userElm) {
+		User user = new User ();
+		user.setUsername (userElm.attributeValue(XML_ATT_USERNAME));
+		user.setPassword (userElm.attributeValue(XML_ATT_PASSWORD));
+		return user;
+	}
+
 	/**
 	 * Add a new user.
 	 * 
 	 * @see org.jogre.server.data.IServerData#newUser(org.jogre.server.data.User)
 	 */
-	public void newUser (User user) throws ServerDataException {
+	public synchronized void newUser (User user) throws ServerDataException {
 		Element userElm = DocumentHelper.createElement(XML_ELM_USER);
 
 		// Check user doesn't exist 
-		if (userDoc.selectSingleNode ("users/user[@username='" + user.getUsername() + "']") == null) {		
+		if (!userIndex.containsKey (user.getUsername())) {
 			userElm.addAttribute("username", user.getUsername());
 			userElm.addAttribute("password", user.getPassword());
 			userDoc.getRootElement().add (userElm);
+			userIndex.put (user.getUsername(), userElm);
 
 			saveXMLFile (userFile, userDoc);
 			/* MANDAR NOTIFICACION AL SERVIDOR */
@@ -406,10 +592,13 @@ public class ServerDataXML extends AbstractServerData {
 	 * 
 	 * @see org.jogre.server.data.IServerData#deleteUser(org.jogre.server.data.User)
 	 */
-	public void deleteUser(User user) throws ServerDataException {
-		Object userObj = userDoc.selectSingleNode ("users/user[@username='" + user.getUsername() + "']");
-		if (userObj != null)
-			userDoc.getRootElement().remove((Element)userObj);
+	public synchronized void deleteUser(User user) throws ServerDataException {
+		Element userElm = (Element)userIndex.remove (user.getUsername());
+		if (userElm != null) {
+			userDoc.getRootElement().remove(userElm);
+			removeGameSummaries (user.getUsername());
+			removeRanks (user.getUsername());
+		}
 		saveXMLFile (userFile, userDoc);
 	}
 
@@ -418,10 +607,9 @@ public class ServerDataXML extends AbstractServerData {
 	 * 
 	 * @see org.jogre.server.data.IServerData#updateUser(org.jogre.server.data.User)
 	 */
-	public void updateUser(User user) throws ServerDataException {
-		Object userObj = userDoc.selectSingleNode ("users/user[@username='" + user.getUsername() + "']");
-		if (userObj != null) {
-			Element userElm = (Element)userObj;
+	public synchronized void updateUser(User user) throws ServerDataException {
+		Element userElm = (Element)userIndex.get (user.getUsername());
+		if (userElm != null) {
 			userElm.addAttribute("username", user.getUsername());
 			userElm.addAttribute("password", user.getPassword());
 			
@@ -435,7 +623,9 @@ public class ServerDataXML extends AbstractServerData {
 	 * @return
 	 */
 	public String getXMLLocation () {
-		String xmlLocation = ServerProperties.getInstance().getXMLLocation ();
+		String xmlLocation = this.xmlLocation;
+		if (xmlLocation == null)
+			xmlLocation = ServerProperties.getInstance().getXMLLocation ();
 		if (!xmlLocation.endsWith("/"))
 			xmlLocation = xmlLocation  + "/";
 		
@@ -489,6 +679,79 @@ public class ServerDataXML extends AbstractServerData {
 		catch (Exception e) {
 			e.printStackTrace();
 		}
+
+		buildIndexes ();
+	}
+
+	/**
+	 * Index the user, game summary, game and snapshot elements of the
+	 * documents.
+	 */
+	private void buildIndexes () {
+		userIndex.clear ();
+		summaryIndex.clear ();
+		gameIndex.clear ();
+		snapshotIndex.clear ();
+
+		if (userDoc != null) {
+			Iterator users = userDoc.getRootElement().elementIterator (XML_ELM_USER);
+			while (users.hasNext ()) {
+				Element userElm = (Element)users.next ();
+				String username = userElm.attributeValue (XML_ATT_USERNAME);
+				userIndex.put (username, userElm);
+
+				Iterator summaries = userElm.elementIterator ();
+				while (summaries.hasNext ()) {
+					Element summaryElm = (Element)summaries.next ();
+					putGameSummaryXML (summaryElm.attributeValue (XML_ATT_GAME), username, summaryElm);
+				}
+			}
+		}
+		if (gameDoc != null)
+			indexById (gameDoc, gameIndex);
+		if (snapshotDoc != null)
+			indexById (snapshotDoc, snapshotIndex);
+	}
+
+	/**
+	 * Index the game elements of a document on their id.
+	 *
+	 * @param document
+	 * @param index
+	 */
+	private void indexById (Document document, Map index) {
+		Iterator it = document.getRootElement().elementIterator (XML_ELM_GAME);
+		while (it.hasNext ()) {
+			Element elm = (Element)it.next ();
+			index.put (elm.attributeValue (XML_ATT_ID), elm);
+		}
+	}
+
+	/**
+	 * Put a game summary element in the index.
+	 *
+	 * @param gameId      Game id.
+	 * @param username    Username.
+	 * @param summaryElm  Game summary element.
+	 */
+	private void putGameSummaryXML (String gameId, String username, Element summaryElm) {
+		Map summaries = (Map)summaryIndex.get (gameId);
+		if (summaries == null) {
+			summaries = new HashMap ();
+			summaryIndex.put (gameId, summaries);
+		}
+		summaries.put (username, summaryElm);
+	}
+
+	/**
+	 * Remove every game summary element of a user from the index.
+	 *
+	 * @param username
+	 */
+	private void removeGameSummaries (String username) {
+		Iterator it = summaryIndex.values ().iterator ();
+		while (it.hasNext ())
+			((Map)it.next ()).remove (username);
 	}
 
 	/**
@@ -518,28 +781,25 @@ public class ServerDataXML extends AbstractServerData {
 	 * @return          Game summary XML.
 	 */
 	private Element getGameSummaryXML (String gameId, String username) {
-		// Retrieve game element for this game.
-		String xpath = "//user[@username='" + username + "']" +
-		               "/game_summary[@game='" + gameId + "']";
-        Node node = userDoc.selectSingleNode (xpath);
+		// Retrieve game summary element from the index.
+		Map summaries = (Map)summaryIndex.get (gameId);
         Element gameSummaryElm = null;
+		if (summaries != null)
+			gameSummaryElm = (Element)summaries.get (username);
 
-        // If it exists then cast to an Element otherwise create new.
-		if (node != null)
-			gameSummaryElm = (Element)node;
-		else {
+        // If it doesn't exist then create new.
+		if (gameSummaryElm == null) {
 			// Create new game summary in XML
 			int startRating = ServerProperties.getInstance().getStartRating (gameId);
 			gameSummaryElm = GameSummaryXML.flatten (
 				new GameSummary (gameId, username, startRating));
 
 			// and add to user object
-			xpath = "//user[@username='" + username + "']";
-			node = userDoc.selectSingleNode (xpath);
-			if (node != null)
-			   ((Element)node).add (gameSummaryElm);
-			else {
-   			}
+			Element userElm = (Element)userIndex.get (username);
+			if (userElm != null) {
+			   userElm.add (gameSummaryElm);
+			   putGameSummaryXML (gameId, username, gameSummaryElm);
+			}
 		}
 
 		return gameSummaryElm;
@@ -0,0 +1,488 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+
+import nanoxml.XMLElement;
+
+import org.jogre.common.comm.BinaryCodec;
+import org.jogre.common.util.JogreLogger;
+import org.jogre.server.OutboundQueue;
+import org.jogre.server.ServerConnectionThread;
+import org.jogre.server.controllers.TableWorkerPool;
+
+/**
+ * <p>A single non-blocking client connection.  This frames the newline
+ * delimited XML (or binary frames - see BinaryCodec) which arrive on the
+ * channel and queues each complete message for the ServerConnectionThread
+ * which handles it (which in this mode is never started as a thread).  The
+ * queue is parsed in order by one worker thread at a time so the selector
+ * thread never waits for the controllers / database.</p>
+ *
+ * <p>Outgoing messages are written straight to the channel if possible,
+ * otherwise they are queued and written by the selector thread when the
+ * channel becomes writable again.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class NIOConnection implements Runnable {
+
+	/** Logging */
+	JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** Maximum length of a single line before the client is disconnected. */
+	public static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+	/** Line terminator. */
+	private static final byte NEW_LINE = '\n';
+
+	/** Carriage return (stripped from the end of a line). */
+	private static final byte CARRIAGE_RETURN = '\r';
+
+	/** Maximum number of messages waiting to be parsed before the client is disconnected. */
+	public static final int MAX_INBOX_SIZE = 1000;
+
+	/** Number of messages a worker parses before giving others a turn. */
+	private static final int BATCH_SIZE = 16;
+
+	/** Queued once the channel has closed. */
+	private static final Object CLOSED = new Object ();
+
+	/** Channel to the client. */
+	private SocketChannel channel;
+
+	/** Selector thread which this connection is registered with. */
+	private NIOSelectorThread selectorThread;
+
+	/** Selection key (set when registered). */
+	private SelectionKey key = null;
+
+	/** Workers which parse the messages. */
+	private TableWorkerPool workers;
+
+	/** Messages (String lines, byte [] frames or CLOSED) waiting to be parsed. */
+	private LinkedList inbox = new LinkedList ();
+
+	/** True while a worker has been given this connection. */
+	private boolean parsing = false;
+
+	/** Connection thread which parses the messages. */
+	private ServerConnectionThread handler = null;
+
+	// States of the message being read
+	private static final int STATE_START  = 0;		// nothing read yet
+	private static final int STATE_LINE   = 1;		// line of XML
+	private static final int STATE_LENGTH = 2;		// length of a binary frame
+	private static final int STATE_FRAME  = 3;		// payload of a binary frame
+
+	/** Bytes of the current (incomplete) line or frame payload. */
+	private ByteArrayOutputStream line = new ByteArrayOutputStream ();
+
+	/** State of the message being read. */
+	private int state = STATE_START;
+
+	/** Length of the binary frame being read and its varint shift. */
+	private int frameLength, lengthShift;
+
+	/** Queue of encoded messages waiting to be written. */
+	private OutboundQueue outQueue;
+
+	/** Message which is part way through being written. */
+	private ByteBuffer current = null;
+
+	/** True if the connection should close once the out queue is empty. */
+	private volatile boolean closing = false;
+
+	/** True once the connection is closed. */
+	private boolean closed = false;
+
+	/**
+	 * Constructor which takes a channel and the selector thread which will
+	 * service it.
+	 *
+	 * @param channel         Channel to client.
+	 * @param selectorThread  Selector thread.
+	 * @param workers         Workers which parse the messages.
+	 * @param outQueue        Queue of messages waiting to be written.
+	 */
+	public NIOConnection (SocketChannel channel, NIOSelectorThread selectorThread,
+	                      TableWorkerPool workers, OutboundQueue outQueue) {
+		this.channel = channel;
+		this.selectorThread = selectorThread;
+		this.workers = workers;
+		this.outQueue = outQueue;
+	}
+
+	/**
+	 * Set the connection thread which parses messages from this connection.
+	 *
+	 * @param handler
+	 */
+	public void setHandler (ServerConnectionThread handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Return the connection thread which parses messages.
+	 *
+	 * @return
+	 */
+	public ServerConnectionThread getHandler () {
+		return handler;
+	}
+
+	/**
+	 * Return the queue of messages waiting to be written.
+	 *
+	 * @return
+	 */
+	public OutboundQueue getOutboundQueue () {
+		return outQueue;
+	}
+
+	/**
+	 * Return the channel.
+	 *
+	 * @return
+	 */
+	public SocketChannel getChannel () {
+		return channel;
+	}
+
+	/**
+	 * Set the selection key (called from the selector thread).
+	 *
+	 * @param key
+	 */
+	void setKey (SelectionKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Read bytes from the specified buffer (which has been filled from the
+	 * channel) and queue each complete line or binary frame.  Called from
+	 * the selector thread.
+	 *
+	 * @param buffer  Buffer which has been flipped for reading.
+	 * @throws IOException  If the client sends a message which is too long
+	 *                      or too many messages which haven't been parsed.
+	 */
+	void read (ByteBuffer buffer) throws IOException {
+		byte [] bytes = buffer.array ();
+		int i   = buffer.position ();
+		int end = buffer.limit ();
+
+		while (i < end && !closing) {
+			if (state == STATE_START) {
+				if (bytes [i] == BinaryCodec.FRAME_MARKER) {
+					state = STATE_LENGTH;
+					frameLength = 0;
+					lengthShift = 0;
+					i++;
+					continue;
+				}
+				state = STATE_LINE;
+			}
+
+			if (state == STATE_LINE) {
+				int start = i;
+				while (i < end && bytes [i] != NEW_LINE)
+					i++;
+				line.write (bytes, start, i - start);
+
+				if (i < end) {
+					i++;
+					state = STATE_START;
+					receiveLine ();
+				}
+			}
+			else if (state == STATE_LENGTH) {
+				int b = bytes [i++] & 0xFF;
+				frameLength |= (b & 0x7F) << lengthShift;
+				lengthShift += 7;
+
+				if ((b & 0x80) == 0) {
+					if (frameLength < 0 || frameLength > BinaryCodec.MAX_FRAME_LENGTH)
+						throw new IOException ("Frame too long (" + frameLength + " bytes)");
+					state = STATE_FRAME;
+				}
+				else if (lengthShift > 28)
+					throw new IOException ("Invalid frame length");
+			}
+			else {
+				int length = Math.min (end - i, frameLength - line.size ());
+				line.write (bytes, i, length);
+				i += length;
+			}
+
+			if (state == STATE_FRAME && line.size () == frameLength) {
+				state = STATE_START;
+				receiveFrame ();
+			}
+		}
+
+		if (line.size () > MAX_LINE_LENGTH)
+			throw new IOException ("Line too long (" + line.size() + " bytes)");
+	}
+
+	/**
+	 * Queue the current line for the connection thread.
+	 */
+	private void receiveLine () throws IOException {
+		byte [] bytes = line.toByteArray ();
+		int length = bytes.length;
+		if (length > 0 && bytes [length - 1] == CARRIAGE_RETURN)
+			length--;
+		line.reset ();
+
+		if (length > 0)
+			post (new String (bytes, 0, length));
+	}
+
+	/**
+	 * Queue the payload of the current binary frame for the connection
+	 * thread.
+	 */
+	private void receiveFrame () throws IOException {
+		byte [] payload = line.toByteArray ();
+		line.reset ();
+
+		post (payload);
+	}
+
+	/**
+	 * Queue a message to be parsed and give this connection to a worker if
+	 * one doesn't have it already.
+	 *
+	 * @param message   Line, frame or CLOSED.
+	 * @throws IOException  If too many messages are waiting.
+	 */
+	private void post (Object message) throws IOException {
+		synchronized (inbox) {
+			if (message != CLOSED && inbox.size () >= MAX_INBOX_SIZE)
+				throw new IOException ("Too many messages waiting to be parsed");
+
+			inbox.addLast (message);
+			if (parsing)
+				return;
+			parsing = true;
+		}
+		workers.execute (this);
+	}
+
+	/**
+	 * Parse the queued messages in order (run by a worker).  After a batch
+	 * the connection goes to the back of the worker queue.
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run () {
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			Object message;
+			synchronized (inbox) {
+				if (inbox.isEmpty ()) {
+					parsing = false;
+					return;
+				}
+				message = inbox.removeFirst ();
+			}
+
+			if (message == CLOSED) {
+				handler.channelClosed ();
+				continue;
+			}
+			else if (!handler.isLooping ())
+				continue;		// connection is closing
+
+			try {
+				if (message instanceof String)
+					handler.receive ((String)message);
+				else
+					handler.receive ((byte [])message);
+			}
+			catch (Exception genEx) {
+				logger.error ("run", "General Exception: ");
+				logger.stacktrace (genEx);
+				handler.stopLoop ();
+			}
+
+			checkLooping ();
+		}
+
+		workers.execute (this);
+	}
+
+	/**
+	 * If the connection thread has stopped then close after any remaining
+	 * messages are written.
+	 */
+	private void checkLooping () {
+		if (!handler.isLooping ()) {
+			synchronized (outQueue) {
+				closing = true;
+			}
+			selectorThread.requestUpdate (this);
+		}
+	}
+
+	/**
+	 * Write a message to the client.  This can be called from any thread.
+	 *
+	 * @param message   Flattened message (without the line terminator).
+	 */
+	public void write (String message) {
+		write ((message + "\n").getBytes (), null);
+	}
+
+	/**
+	 * Write an encoded message (including the line terminator) to the
+	 * client.  The array isn't copied or modified so the same bytes can be
+	 * written to many connections.  This can be called from any thread.
+	 *
+	 * @param line      Encoded message.
+	 * @param element   Message as XML (used if the out queue is full).
+	 */
+	public void write (byte [] line, XMLElement element) {
+		synchronized (outQueue) {
+			if (closed)
+				return;
+
+			int result = outQueue.offer (line, element);
+			if (result == OutboundQueue.DROPPED)
+				return;
+
+			if (result == OutboundQueue.OVERFLOW) {
+				handler.logSlowConsumer ();
+				outQueue.close ();
+				current = null;
+				closing = true;
+			}
+			else if (current != null || outQueue.getDepth () > 1)
+				return;			// selector thread is already writing
+			else {
+				// Nothing else is waiting so try and write straight away
+				try {
+					if (flush ())
+						return;
+				}
+				catch (IOException ioEx) {
+					logger.debug ("write", "Connection lost");
+					outQueue.clear ();
+					current = null;
+					closing = true;
+				}
+			}
+		}
+
+		// Selector thread must finish writing (or close the connection)
+		selectorThread.requestUpdate (this);
+	}
+
+	/**
+	 * Write as much of the out queue as the channel will accept.
+	 *
+	 * @return  True if the out queue is now empty.
+	 * @throws IOException
+	 */
+	private boolean flush () throws IOException {
+		while (true) {
+			if (current == null) {
+				byte [] line = outQueue.poll ();
+				if (line == null)
+					return true;
+				current = ByteBuffer.wrap (line);
+			}
+
+			channel.write (current);
+
+			if (current.hasRemaining ())
+				return false;			// channel is full
+
+			current = null;
+		}
+	}
+
+	/**
+	 * Called from the selector thread when the channel is writable or if
+	 * another thread has requested an update.  Sets the interest ops of the
+	 * key or closes the channel.
+	 *
+	 * @throws IOException
+	 */
+	void update () throws IOException {
+		boolean close;
+
+		synchronized (outQueue) {
+			if (closed || key == null)
+				return;
+
+			boolean empty = flush ();
+			close = closing && empty;
+
+			if (!close) {
+				int ops = empty ? 0 : SelectionKey.OP_WRITE;
+				if (!closing)
+					ops |= SelectionKey.OP_READ;
+				key.interestOps (ops);
+			}
+		}
+
+		if (close)
+			close ();
+	}
+
+	/**
+	 * Close the channel and clean up the connection thread.  Called from the
+	 * selector thread.
+	 */
+	void close () {
+		synchronized (outQueue) {
+			if (closed)
+				return;
+
+			closed = true;
+			outQueue.close ();
+			current = null;
+		}
+
+		if (key != null)
+			key.cancel ();
+
+		try {
+			channel.close ();
+		}
+		catch (IOException ioEx) {}
+
+		// Clean up once the messages which arrived before have been parsed
+		if (handler != null) {
+			try {
+				post (CLOSED);
+			}
+			catch (IOException ioEx) {}
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Vector;
+
+import org.jogre.common.util.JogreLogger;
+
+/**
+ * <p>I/O thread which services a number of non-blocking client connections
+ * using a single Selector.  Complete lines read from a connection are
+ * queued by the connection and parsed by a worker thread, so parsing never
+ * holds up the I/O of the other connections.</p>
+ *
+ * <p>Other threads never touch the Selector directly - new connections and
+ * interest changes are queued and the selector is woken up.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class NIOSelectorThread extends Thread {
+
+	/** Logging */
+	JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** Size of the read buffer. */
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	/** Selector for all the connections of this thread. */
+	private Selector selector;
+
+	/** Read buffer which is shared between all the connections. */
+	private ByteBuffer readBuffer = ByteBuffer.allocate (READ_BUFFER_SIZE);
+
+	/** New connections waiting to be registered. */
+	private Vector pendingRegistrations = new Vector ();
+
+	/** Connections which have requested an update. */
+	private Vector pendingUpdates = new Vector ();
+
+	/** When the boolean loop becomes false the Thread finishes. */
+	private boolean loop = true;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param name   Name of the thread.
+	 * @throws IOException  If the selector cannot be opened.
+	 */
+	public NIOSelectorThread (String name) throws IOException {
+		super (name);
+
+		this.selector = Selector.open ();
+	}
+
+	/**
+	 * Register a new connection with this thread.
+	 *
+	 * @param conn
+	 */
+	public void register (NIOConnection conn) {
+		pendingRegistrations.add (conn);
+		selector.wakeup ();
+	}
+
+	/**
+	 * Request that this thread updates a connection (i.e. finishes writing
+	 * its out queue or closes it).
+	 *
+	 * @param conn
+	 */
+	public void requestUpdate (NIOConnection conn) {
+		pendingUpdates.add (conn);
+		selector.wakeup ();
+	}
+
+	/**
+	 * Run method - runs until stopLoop () is called.
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run () {
+		logger.debug ("run", "Starting selector thread.");
+
+		while (loop) {
+			try {
+				processRegistrations ();
+				processUpdates ();
+
+				selector.select ();
+
+				Iterator it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = (SelectionKey)it.next();
+					it.remove ();
+
+					process (key);
+				}
+			}
+			catch (IOException ioEx) {
+				logger.error ("run", "IO Exception: ");
+				logger.stacktrace (ioEx);
+			}
+		}
+
+		// Close all the connections down
+		Iterator it = selector.keys().iterator();
+		while (it.hasNext())
+			((NIOConnection)((SelectionKey)it.next()).attachment()).close ();
+
+		try {
+			selector.close ();
+		}
+		catch (IOException ioEx) {}
+	}
+
+	/**
+	 * Process a key which has been selected.
+	 *
+	 * @param key
+	 */
+	private void process (SelectionKey key) {
+		NIOConnection conn = (NIOConnection)key.attachment();
+
+		try {
+			if (key.isReadable ()) {
+				readBuffer.clear ();
+				int numRead = conn.getChannel().read (readBuffer);
+				if (numRead == -1) {
+					logger.debug ("process", "Connection closed by client");
+					conn.close ();
+					return;
+				}
+
+				readBuffer.flip ();
+				conn.read (readBuffer);
+			}
+
+			if (key.isValid () && key.isWritable ())
+				conn.update ();
+		}
+		catch (CancelledKeyException ckEx) {
+			conn.close ();
+		}
+		catch (IOException ioEx) {
+			logger.debug ("process", "Connection lost");
+			conn.close ();
+		}
+	}
+
+	/**
+	 * Register any new connections with the selector.
+	 */
+	private void processRegistrations () {
+		while (!pendingRegistrations.isEmpty ()) {
+			NIOConnection conn = (NIOConnection)pendingRegistrations.remove (0);
+			try {
+				conn.getChannel().configureBlocking (false);
+				conn.setKey (conn.getChannel().register (selector, SelectionKey.OP_READ, conn));
+			}
+			catch (IOException ioEx) {
+				logger.error ("processRegistrations", "IO Exception: ");
+				logger.stacktrace (ioEx);
+				conn.close ();
+			}
+		}
+	}
+
+	/**
+	 * Update the interest ops of connections which have requested it.
+	 */
+	private void processUpdates () {
+		while (!pendingUpdates.isEmpty ()) {
+			NIOConnection conn = (NIOConnection)pendingUpdates.remove (0);
+			try {
+				conn.update ();
+			}
+			catch (CancelledKeyException ckEx) {
+				conn.close ();
+			}
+			catch (IOException ioEx) {
+				logger.debug ("processUpdates", "Connection lost");
+				conn.close ();
+			}
+		}
+	}
+
+	/**
+	 * Stop the loop.
+	 */
+	public void stopLoop () {
+		this.loop = false;
+		selector.wakeup ();
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.nio;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.jogre.common.util.JogreLogger;
+import org.jogre.server.ServerConnectionThread;
+import org.jogre.server.controllers.TableWorkerPool;
+
+/**
+ * <p>Non-blocking transport for the JogreServer.  Rather than creating a
+ * thread per client (which blocks reading its socket) this accepts
+ * connections on a ServerSocketChannel and shares them out between a small
+ * pool of NIOSelectorThread objects.  The messages which arrive are parsed
+ * by a separate pool of worker threads.</p>
+ *
+ * <p>This is selected using the "transport" attribute of the "server"
+ * element in the "server.xml" file.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class NIOServer {
+
+	/** Logging */
+	JogreLogger logger = new JogreLogger (this.getClass());
+
+	/** Server port we are listening on. */
+	private int serverPort;
+
+	/** Pool of I/O threads. */
+	private NIOSelectorThread [] selectorThreads;
+
+	/** Number of threads which parse messages. */
+	private int numOfWorkers;
+
+	/** Pool of threads which parse messages. */
+	private TableWorkerPool workers = null;
+
+	/** Channel which accepts the client connections. */
+	private ServerSocketChannel serverChannel = null;
+
+	/** Index of the next selector thread to use. */
+	private int nextThread = 0;
+
+	/**
+	 * Constructor which takes a port, the number of I/O threads and the
+	 * number of threads which parse messages.
+	 *
+	 * @param serverPort     Port to listen on.
+	 * @param numOfThreads   Number of I/O threads.
+	 * @param numOfWorkers   Number of threads which parse messages.
+	 */
+	public NIOServer (int serverPort, int numOfThreads, int numOfWorkers) {
+		this.serverPort = serverPort;
+		this.selectorThreads = new NIOSelectorThread [Math.max (1, numOfThreads)];
+		this.numOfWorkers = numOfWorkers;
+	}
+
+	/**
+	 * Bind to the server port and start the I/O threads.
+	 *
+	 * @throws IOException  If the port is already in use.
+	 */
+	public void bind () throws IOException {
+		serverChannel = ServerSocketChannel.open ();
+		serverChannel.socket().bind (new InetSocketAddress (serverPort));
+		workers = new TableWorkerPool ("NIOWorker", numOfWorkers);
+
+		for (int i = 0; i < selectorThreads.length; i++) {
+			selectorThreads [i] = new NIOSelectorThread ("NIOSelectorThread-" + i);
+			selectorThreads [i].start ();
+		}
+	}
+
+	/**
+	 * Accept client connections until the channel is closed.
+	 *
+	 * @throws IOException
+	 */
+	public void run () throws IOException {
+		while (serverChannel.isOpen ()) {
+			// listen for and accept the connection
+			SocketChannel channel = serverChannel.accept ();
+
+			// Share the connections out between the I/O threads
+			NIOSelectorThread selectorThread = selectorThreads [nextThread];
+			nextThread = (nextThread + 1) % selectorThreads.length;
+
+			NIOConnection conn = new NIOConnection (channel, selectorThread, workers, ServerConnectionThread.createOutboundQueue ());
+			conn.setHandler (new ServerConnectionThread (conn));
+
+			selectorThread.register (conn);
+		}
+	}
+
+	/**
+	 * Close the server channel and stop the I/O threads.
+	 */
+	public void close () {
+		for (int i = 0; i < selectorThreads.length; i++) {
+			if (selectorThreads [i] != null)
+				selectorThreads [i].stopLoop ();
+		}
+
+		try {
+			if (serverChannel != null)
+				serverChannel.close ();
+		}
+		catch (IOException ioEx) {}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.jogre.common.Table;
+import org.jogre.common.TableList;
+import org.jogre.common.User;
+import org.jogre.common.comm.CommChatClient;
+import org.jogre.common.comm.CommDisconnect;
+import org.jogre.common.comm.CommJoinTable;
+import org.jogre.common.comm.ITransmittable;
+import org.jogre.common.util.JogrePropertyHash;
+
+/**
+ * <p>Benchmark which compares the cost per recipient of broadcasting a
+ * message the old way (flatten for each recipient and again for the
+ * administrator copy, then println) with an EncodedMessage (flatten and
+ * encode once, then write the same bytes to each recipient).  The output
+ * streams discard everything so only the server side cost is measured.
+ * This is not a JUnit test so it must be run by hand e.g.</p>
+ *
+ * <code>java org.jogre.server.BroadcastBenchmark -recipients=2000 -rounds=20</code>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class BroadcastBenchmark {
+
+	private int numOfRecipients = 2000;
+	private int numOfRounds = 20;
+
+	/** Recipient streams (one per client as on the server). */
+	private PrintStream [] streams;
+
+	/** Stops the JIT removing the work. */
+	private long checksum = 0;
+
+	/**
+	 * Output stream which discards everything written to it.
+	 */
+	private static class NullOutputStream extends OutputStream {
+		public void write (int b) {}
+		public void write (byte [] b, int off, int len) {}
+	}
+
+	/**
+	 * Parse the command line arguments.
+	 *
+	 * @param args
+	 */
+	private void parseArguments (String [] args) {
+		for (int i = 0; i < args.length; i++) {
+			String value = args [i].substring (args [i].indexOf ("=") + 1);
+			if (args [i].startsWith ("-recipients="))
+				numOfRecipients = Integer.parseInt (value);
+			else if (args [i].startsWith ("-rounds="))
+				numOfRounds = Integer.parseInt (value);
+		}
+
+		streams = new PrintStream [numOfRecipients];
+		for (int i = 0; i < numOfRecipients; i++)
+			streams [i] = new PrintStream (new NullOutputStream ());
+	}
+
+	/**
+	 * Old fan-out - flatten for every recipient plus the admin copy.
+	 *
+	 * @param transObject
+	 */
+	private void sendEach (ITransmittable transObject) {
+		for (int i = 0; i < numOfRecipients; i++) {
+			streams [i].println (transObject.flatten().toString());
+			checksum += transObject.flatten().hashCode() & 1;	// admin copy
+		}
+	}
+
+	/**
+	 * New fan-out - encode once and write the same bytes to everyone.
+	 *
+	 * @param transObject
+	 */
+	private void sendEncoded (ITransmittable transObject) {
+		EncodedMessage message = new EncodedMessage (transObject);
+		byte [] bytes = message.getBytes ();
+		for (int i = 0; i < numOfRecipients; i++) {
+			streams [i].write (bytes, 0, bytes.length);
+			checksum += message.getElement().hashCode() & 1;	// admin copy
+		}
+	}
+
+	/**
+	 * Time both fan-outs of a message and print the cost per recipient.
+	 *
+	 * @param name
+	 * @param transObject
+	 */
+	private void run (String name, ITransmittable transObject) {
+		// Warm up
+		for (int i = 0; i < 5; i++) {
+			sendEach (transObject);
+			sendEncoded (transObject);
+		}
+
+		long each = 0, encoded = 0;
+		for (int i = 0; i < numOfRounds; i++) {
+			long start = System.nanoTime ();
+			sendEach (transObject);
+			each += System.nanoTime () - start;
+
+			start = System.nanoTime ();
+			sendEncoded (transObject);
+			encoded += System.nanoTime () - start;
+		}
+
+		long recipients = (long)numOfRecipients * numOfRounds;
+		System.out.println (pad (name, 16) +
+		                    pad (String.valueOf (each / recipients), 12) +
+		                    pad (String.valueOf (encoded / recipients), 12) +
+		                    (each / Math.max (1, encoded)) + "x");
+	}
+
+	/**
+	 * Pad a string to a width.
+	 */
+	private static String pad (String s, int width) {
+		StringBuffer sb = new StringBuffer (s);
+		while (sb.length () < width)
+			sb.append (' ');
+		return sb.toString ();
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 */
+	public static void main (String [] args) {
+		BroadcastBenchmark benchmark = new BroadcastBenchmark ();
+		benchmark.parseArguments (args);
+
+		// Table with 4 players for a join table message
+		TableList tableList = new TableList ();
+		Table table = tableList.addTable (new User ("bob", 1200, 10, 5, 2, 1), true, new JogrePropertyHash ());
+		table.addPlayer (new User ("dave", 1300, 12, 4, 1, 2));
+		table.addPlayer (new User ("john", 1100, 3, 9, 0, -3));
+		table.addPlayer (new User ("sharon", 1250, 8, 8, 4, 0));
+
+		System.out.println ("Recipients: " + benchmark.numOfRecipients + ", rounds: " + benchmark.numOfRounds);
+		System.out.println ("Message         Each (ns)   Once (ns)   Speed up");
+		benchmark.run ("disconnect", new CommDisconnect ("bob"));
+		benchmark.run ("chat_game", new CommChatClient ("Good game everyone, see you at the next table"));
+		benchmark.run ("join_table", new CommJoinTable ("sharon", table));
+		System.out.println ("(checksum " + benchmark.checksum + ")");
+	}
+}
@@ -0,0 +1,235 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Vector;
+
+/**
+ * <p>Load test which starts a JogreServer in this JVM, connects a number of
+ * idle lobby clients to it and then prints the number of live threads and
+ * the resident memory of the process.  This is not a JUnit test (it takes
+ * a while and needs a lot of file handles) so it must be run by hand from
+ * the "server" directory e.g.</p>
+ *
+ * <code>java org.jogre.server.ConnectionLoadTester -clients=5000 -transport=blocking -threads=virtual</code>
+ *
+ * <p>Arguments are -clients=x, -port=x, -transport=(blocking|nio)
+ * and -threads=(platform|virtual).
+ * The clients are shared out between all the hosted games and log on as
+ * guests.  The server.xml file isn't changed.  As the clients run in the
+ * same process the figures include their sockets, which are the same for
+ * every mode.</p>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ConnectionLoadTester {
+
+	private int numOfClients = 5000;
+	private int port = 17900;
+	private String transport = ServerProperties.XML_ATT_VAL_TRANSPORT_BLOCKING;
+	private String threads = ServerProperties.XML_ATT_VAL_THREADS_PLATFORM;
+
+	/**
+	 * Parse the command line arguments.
+	 *
+	 * @param args
+	 */
+	private void parseArguments (String [] args) {
+		for (int i = 0; i < args.length; i++) {
+			String value = args [i].substring (args [i].indexOf ("=") + 1);
+			if (args [i].startsWith ("-clients="))
+				numOfClients = Integer.parseInt (value);
+			else if (args [i].startsWith ("-port="))
+				port = Integer.parseInt (value);
+			else if (args [i].startsWith ("-transport="))
+				transport = value;
+			else if (args [i].startsWith ("-threads="))
+				threads = value;
+		}
+	}
+
+	/**
+	 * Start the server in a background thread.
+	 */
+	private void startServer () throws Exception {
+		final JogreServer server = JogreServer.getInstance ();
+
+		// Override properties in memory only
+		ServerProperties serverProps = ServerProperties.getInstance ();
+		serverProps.setTransport (transport);
+		serverProps.setThreads (threads);
+		serverProps.setUserValidation (ServerProperties.XML_ATT_VAL_USER_VALIATION_NONE);
+		serverProps.setMaxNumOfUsers (numOfClients);
+		server.setServerPort (port);
+
+		server.init ();
+
+		Thread serverThread = new Thread ("JogreServer") {
+			public void run () {
+				server.run ();
+			}
+		};
+		serverThread.setDaemon (true);
+		serverThread.start ();
+
+		Thread.sleep (2000);		// give the server time to bind
+	}
+
+	/**
+	 * Connect the clients and wait until they've all logged on.
+	 *
+	 * @return   Number of clients which logged on.
+	 */
+	private int connectClients () throws Exception {
+		Vector gameKeys = JogreServer.getInstance ().getGameList ().getGameKeys ();
+		Selector selector = Selector.open ();
+		ByteBuffer buffer = ByteBuffer.allocate (65536);
+		int numOfConnected = 0;
+
+		// Connect each client and send a connect message
+		for (int i = 0; i < numOfClients; i++) {
+			SocketChannel channel = SocketChannel.open (new InetSocketAddress ("localhost", port));
+			String gameID = (String)gameKeys.get (i % gameKeys.size ());
+			String message = "<game_connect username=\"load" + i + "\" gameID=\"" + gameID + "\"/>\n";
+			channel.write (ByteBuffer.wrap (message.getBytes ()));
+			channel.configureBlocking (false);
+			channel.register (selector, SelectionKey.OP_READ, new boolean [1]);
+
+			numOfConnected += drain (selector, buffer, 0);
+		}
+
+		// Keep reading (so the server never blocks writing) until everyone is on
+		long timeout = System.currentTimeMillis () + 60000;
+		while (numOfConnected < numOfClients && System.currentTimeMillis () < timeout)
+			numOfConnected += drain (selector, buffer, 100);
+
+		// Drain client sockets in the background while the figures are taken
+		final Selector drainSelector = selector;
+		final ByteBuffer drainBuffer = buffer;
+		Thread drainThread = new Thread ("drain") {
+			public void run () {
+				try {
+					while (true)
+						drain (drainSelector, drainBuffer, 100);
+				}
+				catch (Exception e) {}
+			}
+		};
+		drainThread.setDaemon (true);
+		drainThread.start ();
+
+		return numOfConnected;
+	}
+
+	/**
+	 * Read any waiting data from the clients.
+	 *
+	 * @return   Number of clients who have logged on since the last call.
+	 */
+	private static int drain (Selector selector, ByteBuffer buffer, long timeout) throws Exception {
+		int numOfConnected = 0;
+
+		if (selector.select (timeout) > 0) {
+			Iterator it = selector.selectedKeys ().iterator ();
+			while (it.hasNext ()) {
+				SelectionKey key = (SelectionKey)it.next ();
+				it.remove ();
+
+				buffer.clear ();
+				if (((SocketChannel)key.channel ()).read (buffer) > 0) {
+					// The first message back is the game (which means logged on)
+					boolean [] loggedOn = (boolean [])key.attachment ();
+					if (!loggedOn [0] && buffer.get (0) == '<' && buffer.get (1) == 'g') {
+						loggedOn [0] = true;
+						numOfConnected++;
+					}
+				}
+			}
+		}
+
+		return numOfConnected;
+	}
+
+	/**
+	 * Return the resident memory of this process in KB (Linux only).
+	 *
+	 * @return   Resident memory or -1 if it can't be read.
+	 */
+	private long getResidentMemory () {
+		File status = new File ("/proc/self/status");
+		if (status.exists ()) {
+			try {
+				BufferedReader reader = new BufferedReader (new FileReader (status));
+				String line;
+				while ((line = reader.readLine ()) != null) {
+					if (line.startsWith ("VmRSS:")) {
+						reader.close ();
+						return Long.parseLong (line.substring (6).trim ().split (" ") [0]);
+					}
+				}
+				reader.close ();
+			}
+			catch (Exception e) {}
+		}
+		return -1;
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 */
+	public static void main (String [] args) throws Exception {
+		ConnectionLoadTester tester = new ConnectionLoadTester ();
+		tester.parseArguments (args);
+		tester.startServer ();
+
+		long start = System.currentTimeMillis ();
+		int numOfConnected = tester.connectClients ();
+		long time = System.currentTimeMillis () - start;
+
+		System.gc ();
+		Thread.sleep (1000);
+
+		Runtime runtime = Runtime.getRuntime ();
+		System.out.println ("------------------------------------------------------------------");
+		System.out.println ("Transport:         " + tester.transport);
+		if (!ServerProperties.XML_ATT_VAL_TRANSPORT_NIO.equals (tester.transport))
+			System.out.println ("Threads:           " + tester.threads);
+		System.out.println ("Clients logged on: " + numOfConnected + " of " + tester.numOfClients + " in " + time + " ms");
+		System.out.println ("Live threads:      " + ManagementFactory.getThreadMXBean ().getThreadCount ());
+		System.out.println ("Heap used (KB):    " + (runtime.totalMemory () - runtime.freeMemory ()) / 1024);
+		System.out.println ("Resident (KB):     " + tester.getResidentMemory ());
+		System.out.println ("------------------------------------------------------------------");
+
+		System.exit (0);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import junit.framework.TestCase;
+import nanoxml.XMLElement;
+
+/**
+ * Test case for the outbound queue and its slow consumer policies.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class OutboundQueueTest extends TestCase {
+
+	/**
+	 * Create a message from a string.
+	 */
+	private XMLElement element (String xml) {
+		XMLElement element = new XMLElement ();
+		element.parseString (xml);
+		return element;
+	}
+
+	/**
+	 * Test the queue depth and bytes pending.
+	 */
+	public void testMetrics () {
+		OutboundQueue queue = new OutboundQueue (10, 1000, "disconnect");
+		assertEquals (OutboundQueue.QUEUED, queue.offer (new byte [10], null));
+		assertEquals (OutboundQueue.QUEUED, queue.offer (new byte [20], null));
+		assertEquals (2, queue.getDepth ());
+		assertEquals (30, queue.getBytesPending ());
+
+		assertEquals (10, queue.poll ().length);
+		assertEquals (1, queue.getDepth ());
+		assertEquals (20, queue.getBytesPending ());
+	}
+
+	/**
+	 * Test the policies once the queue is full.
+	 */
+	public void testPolicies () {
+		OutboundQueue queue = new OutboundQueue (2, 1000, "drop_chat,coalesce,disconnect");
+		XMLElement table1 = element ("<table tableNum=\"1\"/>");
+		XMLElement table2 = element ("<table tableNum=\"2\"/>");
+		queue.offer (new byte [1], table1);
+		queue.offer (new byte [2], table2);
+
+		// Chat is dropped
+		assertEquals (OutboundQueue.DROPPED, queue.offer (new byte [3], element ("<chat_game chat=\"hi\"/>")));
+		assertEquals (1, queue.getNumOfDropped ());
+
+		// Newer table 1 takes the place of the older one
+		assertEquals (OutboundQueue.QUEUED, queue.offer (new byte [4], table1));
+		assertEquals (1, queue.getNumOfCoalesced ());
+		assertEquals (4, queue.poll ().length);
+		assertEquals (2, queue.poll ().length);
+
+		// Anything else disconnects
+		queue.offer (new byte [1], null);
+		queue.offer (new byte [1], null);
+		assertEquals (OutboundQueue.OVERFLOW, queue.offer (new byte [1], null));
+
+		// Without the disconnect policy only chat is dropped
+		queue = new OutboundQueue (1, 1000, "");
+		queue.offer (new byte [1], null);
+		assertEquals (OutboundQueue.DROPPED, queue.offer (new byte [1], element ("<chat_game chat=\"hi\"/>")));
+		assertEquals (OutboundQueue.OVERFLOW, queue.offer (new byte [1], element ("<table tableNum=\"1\"/>")));
+		assertEquals (OutboundQueue.OVERFLOW, queue.offer (new byte [1], null));
+	}
+
+	/**
+	 * Test a coalesced delta keeps the sequence number of the one it
+	 * replaced so the client doesn't see a gap.
+	 */
+	public void testCoalesceDeltas () {
+		OutboundQueue queue = new OutboundQueue (2, 1000, "coalesce,disconnect");
+		queue.offer ("<table tableNum=\"1\" seq=\"5\"/>\n".getBytes (), element ("<table tableNum=\"1\" seq=\"5\"/>"));
+		queue.offer ("<user username=\"bob\" seq=\"6\"/>\n".getBytes (), element ("<user username=\"bob\" seq=\"6\"/>"));
+
+		XMLElement table = element ("<table tableNum=\"1\" seq=\"7\"/>");
+		assertEquals (OutboundQueue.QUEUED, queue.offer ((table.toString () + "\n").getBytes (), table));
+
+		XMLElement first = element (new String (queue.poll ()).trim ());
+		assertEquals (7, first.getIntAttribute ("seq"));
+		assertEquals (5, first.getIntAttribute ("seqFrom"));
+		assertNull (table.getAttribute ("seqFrom"));		// shared message isn't changed
+		assertEquals (6, element (new String (queue.poll ()).trim ()).getIntAttribute ("seq"));
+	}
+
+	/**
+	 * Test that other messages take the place of queued chat.
+	 */
+	public void testDropQueuedChat () {
+		OutboundQueue queue = new OutboundQueue (2, 1000, "drop_chat,disconnect");
+		queue.offer (new byte [1], element ("<chat_game>one</chat_game>"));
+		queue.offer (new byte [2], null);
+
+		assertEquals (OutboundQueue.QUEUED, queue.offer (new byte [3], null));
+		assertEquals (2, queue.poll ().length);
+		assertEquals (3, queue.poll ().length);
+		assertNull (queue.poll ());
+	}
+
+	/**
+	 * Test the byte limit (an empty queue always takes a message).
+	 */
+	public void testByteLimit () {
+		OutboundQueue queue = new OutboundQueue (100, 10, "disconnect");
+		assertEquals (OutboundQueue.QUEUED, queue.offer (new byte [50], null));
+		assertEquals (OutboundQueue.OVERFLOW, queue.offer (new byte [1], null));
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jogre.common.IGameOver;
+import org.jogre.server.data.GameInfo;
+import org.jogre.server.data.GameSummary;
+import org.jogre.server.data.IRowHandler;
+import org.jogre.server.data.ServerDataException;
+import org.jogre.server.data.journal.ServerDataJournal;
+
+/**
+ * Test case for rating games of more than two players and recalculating
+ * the ratings from the game infos.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class RatingRecalculatorTest extends TestCase implements IGameOver {
+
+	private static final String K_FACTOR = "0-2099=32,2100-2399=24,2490-3000=16";
+
+	private File folder;
+	private ServerDataJournal serverData;
+
+	protected void setUp () throws Exception {
+		ServerProperties.setUpFromFile ();		// start ratings / k factors
+
+		folder = File.createTempFile ("ratings", "");
+		folder.delete ();
+		serverData = new ServerDataJournal (folder, 10);
+	}
+
+	protected void tearDown () throws Exception {
+		serverData.close ();
+		File [] files = folder.listFiles ();
+		for (int i = 0; i < files.length; i++)
+			files [i].delete ();
+		folder.delete ();
+	}
+
+	/**
+	 * Test two player ratings are the same as before and the k factors.
+	 */
+	public void testTwoPlayers () {
+		EloRatingSystem elo = new EloRatingSystem ("chess", K_FACTOR);
+
+		int [] newRatings = elo.getNewRatings (new int [] {1600, 1650}, new int [] {WIN, LOSE});
+		assertEquals (elo.getNewRating (1600, 1650, WIN), newRatings [0]);
+		assertEquals (elo.getNewRating (1650, 1600, LOSE), newRatings [1]);
+		assertEquals (1618, newRatings [0]);
+
+		// 24 between ranges and outside them
+		newRatings = elo.getNewRatings (new int [] {2450, 2450}, new int [] {WIN, LOSE});
+		assertEquals (2462, newRatings [0]);
+		newRatings = elo.getNewRatings (new int [] {3500, 3500}, new int [] {DRAW, DRAW});
+		assertEquals (3500, newRatings [0]);
+		assertEquals (2212, elo.getNewRating (2200, 2200, WIN));
+	}
+
+	/**
+	 * Test a game of four players.
+	 */
+	public void testMultiPlayer () {
+		EloRatingSystem elo = new EloRatingSystem ("spades", K_FACTOR);
+
+		// Winner beats 3 (+16), losers lose 1 and draw 2 (-5)
+		int [] newRatings = elo.getNewRatings (new int [] {1200, 1200, 1200, 1200},
+		                                       new int [] {WIN, LOSE, LOSE, LOSE});
+		assertEquals (1216, newRatings [0]);
+		assertEquals (1195, newRatings [3]);
+
+		// Team game
+		newRatings = elo.getNewRatings (new int [] {1200, 1200, 1200, 1200},
+		                                new int [] {WIN, LOSE, WIN, LOSE});
+		assertEquals (newRatings [0], newRatings [2]);
+		assertTrue (newRatings [0] > 1200 && newRatings [1] < 1200);
+
+		// Unrated result
+		newRatings = elo.getNewRatings (new int [] {1200, 1300, 1400},
+		                                new int [] {WIN, USER_RESIGNS, LOSE});
+		assertEquals (1300, newRatings [1]);
+		assertEquals (1224, newRatings [0]);
+	}
+
+	/**
+	 * Test recalculating gives the same game summaries as adding the games.
+	 */
+	public void testRecalculate () throws Exception {
+		String [][] games = {
+			{"chess",  "bob dave",             "1 2"},
+			{"chess",  "dave sarah",           "3 3"},
+			{"spades", "bob dave sarah mike",  "1 2 1 2"},
+			{"chess",  "sarah bob",            "1 2"},
+			{"chess",  "mike",                 "1"},
+			{"spades", "bob dave sarah mike",  "2 1 2 1"},
+			{"chess",  "bob dave",             "2 1"}
+		};
+		for (int i = 0; i < games.length; i++) {
+			Date end = new Date (1000000L + i * 1000L);
+			serverData.addGame (new GameInfo (games [i][0], games [i][1], games [i][2], end, end, "", ""), true);
+		}
+		assertEquals (1, serverData.getGameSummary ("spades", "mike").getWins ());
+		assertEquals (1, serverData.getGameSummary ("spades", "mike").getLoses ());
+
+		List expected = serverData.getGameSummarys ();
+
+		// Spoil the game summaries
+		List spoilt = new ArrayList ();
+		for (int i = 0; i < expected.size (); i++) {
+			GameSummary gs = (GameSummary)expected.get (i);
+			spoilt.add (new GameSummary (gs.getGameKey (), gs.getUsername (), 100));
+		}
+		serverData.saveGameSummaries (spoilt);
+		assertEquals (100, serverData.getGameSummary ("chess", "bob").getRating ());
+
+		// A user without any games and a game without any game infos
+		List unplayed = new ArrayList ();
+		unplayed.add (new GameSummary ("chess", "zoe", 100, 3, 0, 0, 3));
+		unplayed.add (new GameSummary ("checkers", "zoe", 100, 0, 2, 0, -2));
+		serverData.saveGameSummaries (unplayed);
+
+		RatingRecalculator recalculator = new RatingRecalculator (serverData, 2);
+		recalculator.recalculate ();
+		assertEquals (games.length, recalculator.getNumOfGames ());
+		assertEquals (expected.size () + unplayed.size (), recalculator.getNumOfGameSummaries ());
+
+		int start = ServerProperties.getInstance ().getStartRating ("chess");
+		GameSummary zoe = serverData.getGameSummary ("chess", "zoe");
+		assertEquals (start, zoe.getRating ());
+		assertEquals (0, zoe.getWins ());
+		assertEquals (0, zoe.getStreak ());
+		assertEquals (0, serverData.getGameSummary ("checkers", "zoe").getLoses ());
+
+		for (int i = 0; i < expected.size (); i++) {
+			GameSummary gs = (GameSummary)expected.get (i);
+			GameSummary actual = serverData.getGameSummary (gs.getGameKey (), gs.getUsername ());
+			String key = gs.getGameKey () + " " + gs.getUsername ();
+			assertEquals (key, gs.getRating (), actual.getRating ());
+			assertEquals (key, gs.getWins (), actual.getWins ());
+			assertEquals (key, gs.getLoses (), actual.getLoses ());
+			assertEquals (key, gs.getDraws (), actual.getDraws ());
+			assertEquals (key, gs.getStreak (), actual.getStreak ());
+		}
+
+		// One game only
+		serverData.saveGameSummaries (spoilt);
+		new RatingRecalculator (serverData, 2).recalculate (new String [] {"spades"});
+		assertEquals (100, serverData.getGameSummary ("chess", "bob").getRating ());
+		assertTrue (serverData.getGameSummary ("spades", "bob").getRating () != 100);
+	}
+
+	/**
+	 * Test a game added while the game infos are read is played on top of
+	 * the recalculated game summaries instead of being lost.
+	 */
+	public void testGameAddedWhileRecalculating () throws Exception {
+		Date end = new Date (1000000L);
+		serverData.addGame (new GameInfo ("chess", "bob dave", "1 2", end, end, "", ""), true);
+		serverData.close ();
+
+		end = new Date (2000000L);
+		final GameInfo late = new GameInfo ("chess", "dave bob", "1 2", end, end, "", "");
+		final boolean [] added = new boolean [1];
+		serverData = new ServerDataJournal (folder, 10) {
+			public void getGameInfos (final IRowHandler rowHandler) throws ServerDataException {
+				final ServerDataJournal serverData = this;
+				super.getGameInfos (new IRowHandler () {
+					public void handleRow (Object row) throws ServerDataException {
+						rowHandler.handleRow (row);
+						if (!added [0]) {
+							added [0] = true;
+							RatingRecalculator.addGame (serverData, late, true);
+						}
+					}
+				});
+			}
+		};
+
+		RatingRecalculator recalculator = new RatingRecalculator (serverData, 2);
+		recalculator.recalculate (new String [] {"chess"});
+		assertTrue (added [0]);
+		assertEquals (2, recalculator.getNumOfGames ());
+
+		EloRatingSystem elo = EloRatingSystem.getInstance ("chess");
+		int start = ServerProperties.getInstance ().getStartRating ("chess");
+		int [] ratings = elo.getNewRatings (new int [] {start, start}, new int [] {WIN, LOSE});
+		ratings = elo.getNewRatings (new int [] {ratings [1], ratings [0]}, new int [] {WIN, LOSE});
+
+		GameSummary bob = serverData.getGameSummary ("chess", "bob");
+		assertEquals (ratings [1], bob.getRating ());
+		assertEquals (1, bob.getWins ());
+		assertEquals (1, bob.getLoses ());
+		assertEquals (ratings [0], serverData.getGameSummary ("chess", "dave").getRating ());
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server;
+
+import java.net.Socket;
+
+import junit.framework.TestCase;
+import nanoxml.XMLElement;
+
+/**
+ * Test case for the order a server connection parses its messages in.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ServerConnectionThreadTest extends TestCase {
+
+	/**
+	 * Connection which counts how often its user is removed.
+	 */
+	private static class TestConnection extends ServerConnectionThread {
+		private int numOfRemoves = 0;
+
+		public TestConnection () {
+			super ((Socket)null);
+		}
+
+		protected void removeUser () {
+			numOfRemoves++;
+		}
+	}
+
+	/**
+	 * Set up server properties.
+	 *
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	public void setUp () {
+		ServerProperties.setUpFromFile();
+	}
+
+	/**
+	 * A table message with an invalid table number is dropped and the
+	 * user is still removed when the client disconnects.
+	 */
+	public void testInvalidTableNumThenDisconnect () throws Exception {
+		TestConnection conn = new TestConnection ();
+
+		XMLElement message = new XMLElement ();
+		message.parseString ("<move table=\"abc\"/>");
+		conn.parse (message);
+		conn.cleanup ();
+		assertEquals (1, conn.numOfRemoves);
+
+		// Messages after it are still parsed
+		conn.parse (message);
+		conn.cleanup ();
+		assertEquals (2, conn.numOfRemoves);
+	}
+}
@@ -21,6 +21,8 @@ package org.jogre.server;
 
 import junit.framework.TestCase;
 
+import org.jogre.common.IJogre;
+
 /**
  * Test case for the server properties class.
  * 
@@ -50,6 +52,14 @@ public class ServerPropertiesTest extends TestCase {
 		serverProps.setMaxNumOfUsers(9); assertEquals (9, serverProps.getMaxNumOfUsers());
 		serverProps.setMaxNumOfTablesPerUser(4); assertEquals (4, serverProps.getMaxNumOfTablesPerUser());
 		serverProps.setUserValidation("password"); assertEquals ("password", serverProps.getUserValidation());
+		serverProps.setTransport("nio"); assertEquals ("nio", serverProps.getTransport()); assertTrue (serverProps.isTransportNIO());
+		serverProps.setTransport("blocking"); assertFalse (serverProps.isTransportNIO());
+		serverProps.setNumOfIOThreads(4); assertEquals (4, serverProps.getNumOfIOThreads());
+		serverProps.setThreads("virtual"); assertEquals ("virtual", serverProps.getThreads());
+		serverProps.setNumOfTableThreads(8); assertEquals (8, serverProps.getNumOfTableThreads());
+		serverProps.setOutQueueSize(50); assertEquals (50, serverProps.getOutQueueSize());
+		serverProps.setOutQueueBytes(4096); assertEquals (4096, serverProps.getOutQueueBytes());
+		serverProps.setSlowConsumerPolicy("drop_chat"); assertEquals ("drop_chat", serverProps.getSlowConsumerPolicy());
 	}
 	
 	/**
@@ -111,4 +121,29 @@ public class ServerPropertiesTest extends TestCase {
 		assertNotNull (serverProps.getDBUsername());
 		assertNotNull (serverProps.getDBPassword());
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Test the snapshot is kept until the properties change and a new one
+	 * replaces it when the administrator sets up new properties.
+	 *
+	 * @throws Exception
+	 */
+	public void testSnapshot () throws Exception {
+		ServerPropertiesSnapshot snapshot = serverProps.getSnapshot ();
+		assertSame (snapshot, serverProps.getSnapshot ());
+		assertEquals (serverProps.getStartRating ("chess"), snapshot.getGame ("chess").getStartRating ());
+		assertNull (snapshot.getGame ("unknown"));
+		assertEquals (IJogre.DEFAULT_ELO_START_RATING, serverProps.getStartRating ("unknown"));
+
+		serverProps.setMaxNumOfUsers (11);
+		assertNotSame (snapshot, serverProps.getSnapshot ());
+		assertEquals (11, serverProps.getSnapshot ().getMaxNumOfUsers ());
+
+		// Admin save
+		ServerProperties.setUpFromString (serverProps.toString ());
+		ServerProperties newServerProps = ServerProperties.getInstance ();
+		assertNotSame (serverProps, newServerProps);
+		assertEquals (11, newServerProps.getMaxNumOfUsers ());
+		assertEquals (serverProps.getCurrentlyHostedGames (), newServerProps.getCurrentlyHostedGames ());
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2005  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for the rank index.  Random updates are checked against
+ * sorting every rating.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class RankIndexTest extends TestCase {
+
+	private RankIndex rankIndex = new RankIndex ("chess");
+
+	/** Username -> Integer rating. */
+	private Map ratings = new HashMap ();
+
+	/**
+	 * Return the usernames sorted by rating (then username).
+	 */
+	private List sorted () {
+		List usernames = new ArrayList (ratings.keySet ());
+		Collections.sort (usernames, new Comparator () {
+			public int compare (Object o1, Object o2) {
+				int r1 = ((Integer)ratings.get (o1)).intValue ();
+				int r2 = ((Integer)ratings.get (o2)).intValue ();
+				if (r1 != r2)
+					return r2 - r1;
+				return ((String)o1).compareTo ((String)o2);
+			}
+		});
+		return usernames;
+	}
+
+	/**
+	 * Test simple ranks.
+	 */
+	public void testRanks () {
+		rankIndex.update ("bob", 1300);
+		rankIndex.update ("dave", 1200);
+		rankIndex.update ("sarah", 1400);
+		rankIndex.update ("mike", 1200);
+
+		assertEquals (1, rankIndex.getRank ("sarah").getRank ());
+		assertEquals (3, rankIndex.getRank ("dave").getRank ());
+		assertEquals (4, rankIndex.getRank ("mike").getRank ());
+		assertNull (rankIndex.getRank ("unknown"));
+
+		rankIndex.update ("mike", 1500);
+		assertEquals ("mike", ((Rank)rankIndex.getTop (1).get (0)).getUsername ());
+		assertEquals (4, rankIndex.getRank ("dave").getRank ());
+
+		rankIndex.remove ("sarah");
+		assertEquals (3, rankIndex.size ());
+		assertEquals (3, rankIndex.getTop (10).size ());
+		assertEquals (2, rankIndex.getAround ("mike", 1).size ());
+		assertEquals (0, rankIndex.getAround ("sarah", 1).size ());
+	}
+
+	/**
+	 * Test random updates and removes.
+	 */
+	public void testRandom () {
+		Random random = new Random (1);
+		for (int i = 0; i < 5000; i++) {
+			String username = "user" + random.nextInt (300);
+			if (random.nextInt (10) == 0) {
+				rankIndex.remove (username);
+				ratings.remove (username);
+			}
+			else {
+				int rating = 1000 + random.nextInt (400);
+				rankIndex.update (username, rating);
+				ratings.put (username, new Integer (rating));
+			}
+		}
+
+		List sorted = sorted ();
+		assertEquals (sorted.size (), rankIndex.size ());
+
+		List top = rankIndex.getTop (sorted.size ());
+		for (int i = 0; i < sorted.size (); i++) {
+			Rank rank = (Rank)top.get (i);
+			assertEquals (sorted.get (i), rank.getUsername ());
+			assertEquals (i + 1, rank.getRank ());
+		}
+
+		Iterator it = ratings.keySet ().iterator ();
+		while (it.hasNext ()) {
+			String username = (String)it.next ();
+			Rank rank = rankIndex.getRank (username);
+			assertEquals (sorted.indexOf (username) + 1, rank.getRank ());
+			assertEquals (((Integer)ratings.get (username)).intValue (), rank.getRating ());
+		}
+
+		// Around the first user
+		List around = rankIndex.getAround ((String)sorted.get (0), 2);
+		assertEquals (3, around.size ());
+		assertEquals (sorted.get (2), ((Rank)around.get (2)).getUsername ());
+	}
+}
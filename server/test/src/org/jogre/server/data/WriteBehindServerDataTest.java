@@ -0,0 +1,277 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.jogre.common.GameOver;
+import org.jogre.common.util.JogreUtils;
+import org.jogre.server.ServerProperties;
+
+/**
+ * Test case for the write behind server data.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class WriteBehindServerDataTest extends TestCase {
+
+	private MemoryServerData memory;
+	private WriteBehindServerData serverData;
+
+	protected void setUp () throws Exception {
+		ServerProperties.setUpFromFile ();		// start ratings
+		memory = new MemoryServerData ();
+	}
+
+	protected void tearDown () throws Exception {
+		if (serverData != null)
+			serverData.close (0);
+	}
+
+	private GameInfo gameInfo (String players) {
+		return new GameInfo ("chess", players, "1 2", new Date (), new Date (), "", "");
+	}
+
+	/**
+	 * Test only the latest snapshot of each game is written.
+	 */
+	public void testCoalesceSnapshots () throws Exception {
+		serverData = new WriteBehindServerData (memory, 10);
+
+		// Hold the writer in the first write
+		memory.pause ();
+		serverData.updateSnapshot ("chess", 1, 1);
+		memory.waitForWrite ();
+
+		serverData.updateSnapshot ("chess", 2, 1);
+		serverData.updateSnapshot ("go", 5, 0);
+		serverData.updateSnapshot ("chess", 3, 2);
+		memory.resume ();
+
+		assertTrue (serverData.flush (5000));
+		assertEquals (3, memory.writes.size ());
+		assertEquals ("chess 1 1", memory.writes.get (0));
+		assertTrue (memory.writes.contains ("chess 3 2"));
+		assertTrue (memory.writes.contains ("go 5 0"));
+	}
+
+	/**
+	 * Test the new ratings are returned straight away and match the ones
+	 * written.
+	 */
+	public void testAddGame () throws Exception {
+		serverData = new WriteBehindServerData (memory, 10);
+
+		memory.pause ();
+		GameOver gameOver = serverData.addGame (gameInfo ("bob dave"), true);
+		assertEquals (1200, gameOver.getOldRatings () [0]);
+		assertTrue (gameOver.getNewRatings () [0] > 1200);
+
+		// Read our own writes before they reach the server data
+		serverData.addGame (gameInfo ("bob sarah"), true);
+		GameSummary bob = serverData.getGameSummary ("chess", "bob");
+		assertEquals (2, bob.getWins ());
+		assertEquals (0, memory.getGameSummary ("chess", "bob").getWins ());
+
+		memory.resume ();
+		assertTrue (serverData.flush (5000));
+		assertEquals (2, memory.games.size ());
+		assertEquals (bob.getRating (), memory.getGameSummary ("chess", "bob").getRating ());
+		assertEquals (gameOver.getNewRatings () [1], memory.getGameSummary ("chess", "dave").getRating ());
+		assertEquals (0, serverData.getNumOfPendingGames ());
+	}
+
+	/**
+	 * Test failed writes are retried and the oldest game is dropped once
+	 * the queue is full.
+	 */
+	public void testRetry () throws Exception {
+		serverData = new WriteBehindServerData (memory, 2);
+		memory.failing = true;
+
+		serverData.addGame (gameInfo ("bob dave"), false);
+		serverData.addGame (gameInfo ("bob sarah"), false);
+		serverData.addGame (gameInfo ("dave sarah"), false);
+		serverData.updateSnapshot ("chess", 3, 1);
+		assertEquals (2, serverData.getNumOfPendingGames ());
+		assertEquals (1, serverData.getNumOfGamesDropped ());
+		assertFalse (serverData.flush (200));
+
+		memory.failing = false;
+		assertTrue (serverData.flush (10000));
+		assertEquals (2, memory.games.size ());
+		assertEquals ("bob sarah", ((GameInfo)memory.games.get (0)).getPlayers ());
+		assertEquals ("dave sarah", ((GameInfo)memory.games.get (1)).getPlayers ());
+		assertTrue (memory.writes.contains ("chess 3 1"));
+	}
+
+	/**
+	 * Test the game summaries of a dropped game are read again.
+	 */
+	public void testDropForgetsRatings () throws Exception {
+		serverData = new WriteBehindServerData (memory, 1);
+		memory.failing = true;
+
+		serverData.addGame (gameInfo ("bob dave"), true);
+		serverData.addGame (gameInfo ("sarah tom"), true);
+		assertEquals (1, serverData.getNumOfGamesDropped ());
+		assertEquals (0, serverData.getGameSummary ("chess", "bob").getWins ());
+		assertEquals (1200, serverData.getGameSummary ("chess", "dave").getRating ());
+
+		memory.failing = false;
+		assertTrue (serverData.flush (10000));
+		assertEquals (1, memory.games.size ());
+		assertEquals (1, memory.getGameSummary ("chess", "sarah").getWins ());
+	}
+
+	/**
+	 * Test a game which can never be written is dead lettered and doesn't
+	 * hold up the games after it.
+	 */
+	public void testInvalidGame () throws Exception {
+		File deadLetterFile = File.createTempFile ("dead_letter", ".xml");
+		deadLetterFile.deleteOnExit ();
+		serverData = new WriteBehindServerData (memory, 10, deadLetterFile);
+		memory.invalidPlayers = "bob dave";
+
+		serverData.addGame (gameInfo ("bob dave"), true);
+		serverData.addGame (gameInfo ("sarah tom"), true);
+		assertTrue (serverData.flush (5000));
+
+		assertEquals (1, memory.games.size ());
+		assertEquals (1, serverData.getNumOfGamesFailed ());
+		assertEquals (0, serverData.getGameSummary ("chess", "bob").getWins ());
+
+		BufferedReader in = new BufferedReader (new FileReader (deadLetterFile));
+		String line = in.readLine ();
+		in.close ();
+		assertTrue (line.indexOf ("bob dave") != -1);
+	}
+
+	/**
+	 * Server data held in memory which can be paused or made to fail.
+	 */
+	private static class MemoryServerData extends AbstractServerData {
+
+		private List games = new ArrayList ();
+		private List writes = new ArrayList ();
+		private Map summaries = new HashMap ();
+		private volatile boolean failing = false;
+		private volatile String invalidPlayers = null;
+		private boolean paused = false;
+		private boolean writing = false;
+
+		public synchronized void pause () {
+			paused = true;
+		}
+
+		public synchronized void resume () {
+			paused = false;
+			notifyAll ();
+		}
+
+		public synchronized void waitForWrite () throws InterruptedException {
+			while (!writing)
+				wait ();
+		}
+
+		private synchronized void write () throws ServerDataException {
+			writing = true;
+			notifyAll ();
+			while (paused) {
+				try {
+					wait ();
+				} catch (InterruptedException e) {}
+			}
+			if (failing)
+				throw new ServerDataException ("Database is down");
+		}
+
+		public GameOver addGame (GameInfo gameInfo, boolean eloRatings) throws ServerDataException {
+			write ();
+			synchronized (this) {
+				String [] players = JogreUtils.convertToStringArray (gameInfo.getPlayers ());
+				GameSummary [] gameSummary = new GameSummary [players.length];
+				for (int i = 0; i < players.length; i++) {
+					gameSummary [i] = getGameSummary (gameInfo.getGameKey (), players [i]);
+					summaries.put (players [i], gameSummary [i]);
+				}
+				games.add (gameInfo);
+				return updateGameSummaries (gameInfo.getGameKey (), players,
+					JogreUtils.convertToIntArray (gameInfo.getResults ()), gameSummary, eloRatings);
+			}
+		}
+
+		public void addGame (GameInfo gameInfo, GameSummary [] gameSummary) throws ServerDataException {
+			write ();
+			if (gameInfo.getPlayers ().equals (invalidPlayers))
+				throw new ServerDataException ("Invalid game", true);
+			synchronized (this) {
+				for (int i = 0; i < gameSummary.length; i++)
+					summaries.put (gameSummary [i].getUsername (), gameSummary [i].copy ());
+				games.add (gameInfo);
+			}
+		}
+
+		public synchronized GameSummary getGameSummary (String gameId, String username) {
+			GameSummary gs = (GameSummary)summaries.get (username);
+			if (gs == null)
+				return new GameSummary (gameId, username, 1200);
+			return new GameSummary (gameId, username, gs.getRating (), gs.getWins (),
+			                        gs.getLoses (), gs.getDraws (), gs.getStreak ());
+		}
+
+		public synchronized void saveGameSummaries (List gameSummaries) {
+			for (int i = 0; i < gameSummaries.size (); i++) {
+				GameSummary gameSummary = (GameSummary)gameSummaries.get (i);
+				summaries.put (gameSummary.getUsername (), gameSummary);
+			}
+		}
+
+		public void updateSnapshot (String gameId, int numOfUsers, int numOfTables) throws ServerDataException {
+			write ();
+			synchronized (this) {
+				writes.add (gameId + " " + numOfUsers + " " + numOfTables);
+			}
+		}
+
+		public String getType () { return "memory"; }
+		public boolean containsUser (String username) { return true; }
+		public boolean containsUser (String username, String password) { return true; }
+		public void resetSnapshot (Vector gameKeys) {}
+		public List getUsers () { return null; }
+		public List getGameSummarys () { return null; }
+		public List getGameInfos () { return games; }
+		public void newUser (User user) {}
+		public void deleteUser (User user) {}
+		public void updateUser (User user) {}
+	}
+}
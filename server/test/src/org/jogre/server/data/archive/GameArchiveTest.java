@@ -0,0 +1,157 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data.archive;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.jogre.server.data.IRowHandler;
+
+/**
+ * Test case for the game record archive.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class GameArchiveTest extends TestCase {
+
+	private File folder;
+	private GameArchive archive;
+
+	protected void setUp () throws Exception {
+		folder = File.createTempFile ("archive", "");
+		folder.delete ();
+		archive = new GameArchive (folder);
+	}
+
+	protected void tearDown () throws Exception {
+		archive.close ();
+		File [] files = folder.listFiles ();
+		for (int i = 0; files != null && i < files.length; i++)
+			files [i].delete ();
+		folder.delete ();
+	}
+
+	private GameRecord createRecord (String gameKey, int numOfMoves) {
+		GameRecord record = new GameRecord (gameKey);
+		for (int i = 0; i < numOfMoves; i++)
+			record.addMove (i * 37);
+		return record;
+	}
+
+	/**
+	 * Test records are read back by ID.
+	 */
+	public void testAppendRead () throws Exception {
+		GameRecord chess = createRecord ("chess", 100);
+		assertEquals (1, archive.append (chess));
+		assertEquals (2, archive.append (createRecord ("go", 0)));
+		assertEquals ("record:1", chess.getHistory ());
+		assertEquals (1, GameRecord.getId (chess.getHistory ()));
+		assertEquals (0, GameRecord.getId ("e4 e5"));
+
+		GameRecord read = archive.read (1);
+		assertEquals (chess.toString (), read.toString ());
+		assertEquals (1, read.getId ());
+		assertEquals (0, archive.read (2).getNumOfMoves ());
+		assertNull (archive.read (3));
+
+		// Varints of any int (including negatives)
+		GameRecord odd = new GameRecord ("dots");
+		int [] moves = {0, -1, 127, 128, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		for (int i = 0; i < moves.length; i++)
+			odd.addMove (moves [i]);
+		long id = archive.append (odd);
+		for (int i = 0; i < moves.length; i++)
+			assertEquals (moves [i], archive.read (id).getMove (i));
+
+		// Small moves take one or two bytes
+		assertTrue (new File (folder, "games.dat").length () < 250);
+	}
+
+	/**
+	 * Test a partly written record is cut off and a record without an index
+	 * entry is indexed when the archive is opened again.
+	 */
+	public void testRecover () throws Exception {
+		archive.append (createRecord ("chess", 10));
+		archive.append (createRecord ("chess", 20));
+		archive.close ();
+
+		// Lose the last index entry and write half a record
+		File indexFile = new File (folder, "games.idx");
+		RandomAccessFile index = new RandomAccessFile (indexFile, "rw");
+		index.setLength (index.length () - 4);
+		index.close ();
+		FileOutputStream out = new FileOutputStream (new File (folder, "games.dat").getPath (), true);
+		out.write (new byte [] {50, 5, 'c'});
+		out.close ();
+
+		archive = new GameArchive (folder);
+		assertEquals (2, archive.getNumOfRecords ());
+		assertEquals (20, archive.read (2).getNumOfMoves ());
+		assertEquals (3, archive.append (createRecord ("chess", 5)));
+		assertEquals (5, archive.read (3).getNumOfMoves ());
+	}
+
+	/**
+	 * Test a record with a negative length is cut off instead of the
+	 * recovery going back over the records.
+	 */
+	public void testCorruptLength () throws Exception {
+		archive.append (createRecord ("chess", 10));
+		archive.close ();
+
+		FileOutputStream out = new FileOutputStream (new File (folder, "games.dat").getPath (), true);
+		out.write (new byte [] {(byte)0xFF, (byte)0xFF, (byte)0xFF, (byte)0xFF, 0x0F, 1, 2, 3});
+		out.close ();
+
+		archive = new GameArchive (folder);
+		assertEquals (1, archive.getNumOfRecords ());
+		assertEquals (2, archive.append (createRecord ("chess", 5)));
+		assertEquals (5, archive.read (2).getNumOfMoves ());
+	}
+
+	/**
+	 * Test records are exported in order.
+	 */
+	public void testExport () throws Exception {
+		for (int i = 0; i < 50; i++)
+			archive.append (createRecord ("game" + i, i));
+
+		final List records = new ArrayList ();
+		archive.export (11, new IRowHandler () {
+			public void handleRow (Object row) {
+				records.add (row);
+			}
+		});
+
+		assertEquals (40, records.size ());
+		GameRecord first = (GameRecord)records.get (0);
+		assertEquals (11, first.getId ());
+		assertEquals ("game10", first.getGameKey ());
+		assertEquals (archive.read (50).toString (), records.get (39).toString ());
+	}
+}
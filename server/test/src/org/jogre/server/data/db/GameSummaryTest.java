@@ -99,6 +99,33 @@ public class GameSummaryTest extends JogreDatabaseTestCase {
 		assertEquals (1215, gameSummary.getRating());	
 	}
 	
+	/**
+	 * Test the recent form and rating history are kept up to date by each
+	 * result and saved / read with the rest of the game summary.
+	 */
+	public void testRecentFormAndRatingHistory () throws Exception {
+		insertFileIntoDb(TEST_DATA);		
+		GameSummary gameSummary = (GameSummary)iBatis.getObject(IDatabase.ST_SELECT_GAME_SUMMARY, new GameSummary("chess", "dave"));
+		assertEquals ("", gameSummary.getRecentForm());
+		assertEquals (14, gameSummary.getGamesPlayed());
+		
+		// 14 games played so the 20th, 30th ... go into the rating history
+		for (int i = 0; i < 206; i++)
+			gameSummary.update (GameSummary.WIN + i % 3, 1000 + i);
+		assertEquals ("LWDLWDLWDL", gameSummary.getRecentForm());
+		assertEquals (220, gameSummary.getGamesPlayed());
+		
+		String history = gameSummary.getRatingHistory();
+		assertTrue (history.startsWith ("1015 1025 "));
+		assertTrue (history.endsWith (" 1195 1205"));
+		assertEquals (GameSummary.MAX_RATING_HISTORY, history.split (" ").length);
+		
+		iBatis.update (IDatabase.ST_UPDATE_GAME_SUMMARY, gameSummary);
+		GameSummary saved = (GameSummary)iBatis.getObject(IDatabase.ST_SELECT_GAME_SUMMARY, new GameSummary("chess", "dave"));
+		assertEquals (gameSummary.getRecentForm(), saved.getRecentForm());
+		assertEquals (history, saved.getRatingHistory());
+	}
+	
 	/**
 	 * Test deleting a user: - IDatabase.ST_DELETE_GAME_SUMMARY
 	 */
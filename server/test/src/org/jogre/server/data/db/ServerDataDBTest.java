@@ -0,0 +1,192 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data.db;
+
+import java.util.Date;
+import java.util.Properties;
+
+import org.jogre.common.GameOver;
+import org.jogre.server.ServerProperties;
+import org.jogre.server.data.DataPage;
+import org.jogre.server.data.GameInfo;
+import org.jogre.server.data.GameSummary;
+import org.jogre.server.data.IRowHandler;
+import org.jogre.server.data.ServerDataException;
+
+/**
+ * Jogre database test case for adding a game with ServerDataDB.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ServerDataDBTest extends JogreDatabaseTestCase {
+
+	private static final String TEST_DATA = "test_data_game_summary.xml";
+
+	private ServerDataDB serverData;
+
+	/**
+	 * Set up the test data.
+	 *
+	 * @see org.jogre.server.data.db.JogreDatabaseTestCase#setUp()
+	 */
+	protected void setUp () throws Exception {
+		super.setUp ();
+		ServerProperties.setUpFromFile ();		// start ratings
+
+		emptyTable ("GAME_INFO");
+		insertFileIntoDb (TEST_DATA);
+		serverData = new ServerDataDB (iBatis);
+	}
+
+	/**
+	 * Test adding a game updates existing summaries and creates new ones.
+	 */
+	public void testAddGame () throws Exception {
+		long statements = iBatis.getNumOfStatements ();
+
+		// bob (1240) beats mike (new)
+		GameInfo gameInfo = new GameInfo ("chess", "bob mike", "1 2", new Date (), new Date (), "", "");
+		GameOver gameOver = serverData.addGame (gameInfo, true);
+
+		// Insert, select, two summaries and the batch
+		assertEquals (statements + 5, iBatis.getNumOfStatements ());
+		assertTrue (iBatis.getStatistics ().indexOf ("pool[") != -1);
+
+		assertEquals (1, dbunitConn.getRowCount ("GAME_INFO"));
+		assertEquals (6, dbunitConn.getRowCount ("GAME_SUMMARY"));
+		assertEquals (1240, gameOver.getOldRatings () [0]);
+
+		GameSummary bob = serverData.getGameSummary ("chess", "bob");
+		assertEquals (6, bob.getWins ());
+		assertEquals ("W", bob.getRecentForm ());
+		assertEquals (gameOver.getNewRatings () [0], bob.getRating ());
+
+		GameSummary mike = serverData.getGameSummary ("chess", "mike");
+		assertEquals (1, mike.getLoses ());
+		assertEquals ("L", mike.getRecentForm ());
+		assertEquals (gameOver.getNewRatings () [1], mike.getRating ());
+	}
+
+	/**
+	 * Test adding a game with game summaries which have already been
+	 * updated saves them as they are.
+	 */
+	public void testAddGameWithSummaries () throws Exception {
+		GameSummary bob = serverData.getGameSummary ("chess", "bob");
+		bob.update (GameSummary.WIN, 1250);
+		GameSummary mike = new GameSummary ("chess", "mike", 1190, 0, 1, 0, -1);
+
+		GameInfo gameInfo = new GameInfo ("chess", "bob mike", "1 2", new Date (), new Date (), "", "");
+		serverData.addGame (gameInfo, new GameSummary [] {bob, mike});
+
+		assertEquals (1, dbunitConn.getRowCount ("GAME_INFO"));
+		assertEquals (6, dbunitConn.getRowCount ("GAME_SUMMARY"));
+		assertEquals (1250, serverData.getGameSummary ("chess", "bob").getRating ());
+		assertEquals (1190, serverData.getGameSummary ("chess", "mike").getRating ());
+		assertEquals (1, serverData.getGameSummary ("chess", "mike").getLoses ());
+	}
+
+	/**
+	 * Test callers with the same connection properties share one IBatis
+	 * (and pool) and statements are counted for each thread.
+	 */
+	public void testSharedInstance () throws Exception {
+		Properties properties = getProperties ();
+		IBatis shared = IBatis.getSharedInstance (properties);
+		assertSame (shared, IBatis.getSharedInstance ((Properties)properties.clone ()));
+		assertNotSame (shared, iBatis);
+
+		IBatis.resetThreadStatistics ();
+		shared.getList (IDatabase.ST_SELECT_ALL_SNAP_SHOTS);
+		serverData.getGameSummary ("chess", "bob");
+		assertEquals (2, IBatis.getThreadNumOfStatements ());
+		assertTrue (IBatis.getThreadStatementTime () >= 0);
+	}
+
+	/**
+	 * Test nothing is saved (or ranked) if part of adding a game fails.
+	 */
+	public void testAddGameRollback () throws Exception {
+		assertNull (serverData.getRank ("chess", "zed"));		// reads the ranks
+
+		// Same new player twice fails on the second insert
+		GameInfo gameInfo = new GameInfo ("chess", "zed zed", "1 2", new Date (), new Date (), "", "");
+		try {
+			serverData.addGame (gameInfo, false);
+			fail ("Duplicate game summary was added");
+		}
+		catch (ServerDataException sdEx) {
+			assertTrue (sdEx.isPermanent ());
+		}
+
+		assertEquals (0, dbunitConn.getRowCount ("GAME_INFO"));
+		assertEquals (5, dbunitConn.getRowCount ("GAME_SUMMARY"));
+		assertNull (serverData.getRank ("chess", "zed"));
+	}
+
+	/**
+	 * Test paging through game summaries and game infos with keyset cursors
+	 * and streaming the game summaries.
+	 */
+	public void testPages () throws Exception {
+		DataPage page = serverData.getGameSummarys (null, 2);
+		assertEquals (2, page.getRows ().size ());
+		assertEquals ("chess/bob", page.getCursor ());
+
+		page = serverData.getGameSummarys (page.getCursor (), 2);
+		assertEquals ("dave", ((GameSummary)page.getRows ().get (0)).getUsername ());
+		assertEquals ("chess/sharon", page.getCursor ());
+
+		page = serverData.getGameSummarys (page.getCursor (), 2);
+		assertEquals (1, page.getRows ().size ());
+		assertEquals ("connect4", ((GameSummary)page.getRows ().get (0)).getGameKey ());
+		assertNull (page.getCursor ());
+
+		for (int i = 0; i < 3; i++)
+			serverData.addGame (new GameInfo ("chess", "bob dave", "1 2", new Date (), new Date (), "", ""), false);
+		page = serverData.getGameInfos (null, 2);
+		assertEquals (2, page.getRows ().size ());
+		page = serverData.getGameInfos (page.getCursor (), 2);
+		assertEquals (1, page.getRows ().size ());
+		assertNull (page.getCursor ());
+
+		final int [] count = new int [1];
+		serverData.getGameSummarys (new IRowHandler () {
+			public void handleRow (Object row) {
+				count [0]++;
+			}
+		});
+		assertEquals (5, count [0]);
+
+		// An exception from the row handler stops the rows
+		try {
+			serverData.getGameSummarys (new IRowHandler () {
+				public void handleRow (Object row) throws ServerDataException {
+					throw new ServerDataException ("stop");
+				}
+			});
+			fail ("Row handler exception was lost");
+		}
+		catch (ServerDataException sdEx) {
+			assertEquals ("stop", sdEx.getMessage ());
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data.journal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.jogre.common.GameOver;
+import org.jogre.server.ServerProperties;
+import org.jogre.server.data.GameInfo;
+import org.jogre.server.data.GameSummary;
+import org.jogre.server.data.ServerDataException;
+import org.jogre.server.data.User;
+
+/**
+ * Test case for the journal server data.
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ServerDataJournalTest extends TestCase {
+
+	private File folder;
+	private ServerDataJournal serverData;
+
+	protected void setUp () throws Exception {
+		ServerProperties.setUpFromFile ();		// start ratings
+
+		folder = File.createTempFile ("journal", "");
+		folder.delete ();
+		serverData = new ServerDataJournal (folder, 10);
+	}
+
+	protected void tearDown () throws Exception {
+		serverData.close ();
+		File [] files = folder.listFiles ();
+		for (int i = 0; i < files.length; i++)
+			files [i].delete ();
+		folder.delete ();
+	}
+
+	/**
+	 * Close the journal and open it again.
+	 */
+	private void reopen () throws ServerDataException {
+		serverData.close ();
+		serverData = new ServerDataJournal (folder, 10);
+	}
+
+	/**
+	 * Test everything is there after the journal is opened again.
+	 */
+	public void testReload () throws Exception {
+		serverData.newUser (new User ("bob", "pass"));
+		GameOver gameOver = serverData.addGame (
+			new GameInfo ("chess", "bob dave", "1 2", new Date (1000), new Date (2000), "", "e4\ne5"), true);
+		serverData.updateSnapshot ("chess", 2, 1);
+
+		try {
+			serverData.newUser (new User ("bob", "other"));
+			fail ("Duplicate user added");
+		}
+		catch (ServerDataException sdEx) {}
+
+		reopen ();
+
+		assertTrue (serverData.containsUser ("bob"));
+		assertEquals (2, serverData.getUsers ().size ());		// bob and default user
+
+		GameSummary bob = serverData.getGameSummary ("chess", "bob");
+		assertEquals (1, bob.getWins ());
+		assertEquals (gameOver.getNewRatings () [0], bob.getRating ());
+		assertEquals (2, serverData.getGameSummarys ().size ());
+
+		List gameInfos = serverData.getGameInfos ();
+		assertEquals (1, gameInfos.size ());
+		GameInfo gameInfo = (GameInfo)gameInfos.get (0);
+		assertEquals ("bob dave", gameInfo.getPlayers ());
+		assertEquals (2000, gameInfo.getEndTime ().getTime ());
+		assertEquals ("e4\ne5", gameInfo.getGameHistory ());
+	}
+
+	/**
+	 * Test the data journal is compacted and still loads.
+	 */
+	public void testCompact () throws Exception {
+		Vector gameKeys = new Vector ();
+		gameKeys.add ("chess");
+		serverData.resetSnapshot (gameKeys);
+
+		for (int i = 0; i < 3000; i++)
+			serverData.updateSnapshot ("chess", i % 50, i % 10);
+		serverData.addGame (new GameInfo ("chess", "bob dave", "1 2", new Date (), new Date (), "", ""), true);
+
+		File dataFile = new File (folder, "data.log");
+		reopen ();
+		assertTrue (dataFile.length () < 100 * 1000);
+		assertEquals (1, serverData.getGameSummary ("chess", "bob").getWins ());
+		assertEquals (1, serverData.getGameInfos ().size ());
+	}
+
+	/**
+	 * Test a partly written record is cut off.
+	 */
+	public void testPartialRecord () throws Exception {
+		serverData.newUser (new User ("bob", "pass"));
+		serverData.close ();
+
+		File dataFile = new File (folder, "data.log");
+		long length = dataFile.length ();
+		FileOutputStream out = new FileOutputStream (dataFile.getPath (), true);
+		out.write ("<user username=\"da".getBytes ());
+		out.close ();
+
+		reopen ();
+		assertEquals (length, dataFile.length ());
+		assertTrue (serverData.containsUser ("bob"));
+		assertFalse (serverData.containsUser ("da"));
+	}
+
+	/**
+	 * Test a compaction which stopped before the new journal was renamed.
+	 */
+	public void testInterruptedCompact () throws Exception {
+		serverData.newUser (new User ("bob", "pass"));
+		serverData.close ();
+
+		File dataFile = new File (folder, "data.log");
+		File compacted = new File (folder, "data.log.tmp");
+		FileOutputStream out = new FileOutputStream (compacted);
+		out.write ("<user username=\"sarah\"/>\n".getBytes ());
+		out.close ();
+		dataFile.renameTo (new File (folder, "data.log.old"));
+
+		reopen ();
+		assertTrue (serverData.containsUser ("sarah"));
+		assertFalse (serverData.containsUser ("bob"));
+		assertFalse (compacted.exists ());
+	}
+
+	/**
+	 * Test a journal which can't be opened fails instead of leaving the
+	 * server data without journals.
+	 */
+	public void testUnableToOpen () throws Exception {
+		File notFolder = new File (folder, "data.log");
+		try {
+			new ServerDataJournal (notFolder, 10);
+			fail ("Opened a journal in a file");
+		}
+		catch (ServerDataException sdEx) {
+			assertTrue (sdEx.getMessage ().indexOf (notFolder.toString ()) != -1);
+		}
+	}
+}
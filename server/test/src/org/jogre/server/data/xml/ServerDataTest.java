@@ -1,5 +1,16 @@
 package org.jogre.server.data.xml;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.jogre.common.GameOver;
+import org.jogre.server.data.DataPage;
+import org.jogre.server.data.GameInfo;
+import org.jogre.server.data.GameSummary;
+import org.jogre.server.data.IRowHandler;
+import org.jogre.server.data.IServerData;
+import org.jogre.server.data.Rank;
 import org.jogre.server.data.User;
 import org.jogre.server.ServerProperties;
 import org.jogre.server.data.ServerDataException;
@@ -59,6 +70,85 @@ public class ServerDataTest extends TestCase {
 		assertFalse(data.containsUser("testUser")); /* bug */
 	}
 	
+	/* Los resumenes se buscan en el indice, tambien despues de recargar los XML */
+	public void testGameSummary() throws ServerDataException {
+		GameOver gameOver = data.addGame(new GameInfo("chess", "test1 test2", "1 2", new Date(), new Date(), "", ""), true);
+		assertEquals(1, data.getGameSummary("chess", "test1").getWins());
+		assertEquals(gameOver.getNewRatings()[1], data.getGameSummary("chess", "test2").getRating());
+		
+		ServerDataXML reloaded = new ServerDataXML();
+		assertEquals(1, reloaded.getGameSummary("chess", "test2").getLoses());
+		assertTrue(reloaded.containsUser("test3"));
+	}
+	
+	/* El ranking se actualiza con cada partida y al borrar un usuario */
+	public void testRanks() throws ServerDataException {
+		data.addGame(new GameInfo("chess", "test1 test2", "1 2", new Date(), new Date(), "", ""), true);
+		Rank rank1 = data.getRank("chess", "test1");
+		assertEquals(data.getGameSummary("chess", "test1").getRating(), rank1.getRating());
+		assertTrue(rank1.getRank() < data.getRank("chess", "test2").getRank());
+		assertEquals(rank1.getRank(), ((Rank)data.getTopRanks("chess", rank1.getRank()).get(rank1.getRank() - 1)).getRank());
+		
+		data.addGame(new GameInfo("chess", "test2 test1", "1 2", new Date(), new Date(), "", ""), true);
+		assertTrue(data.getRank("chess", "test2").getRank() < data.getRank("chess", "test1").getRank());
+		List around = data.getRanksAround("chess", "test1", 1);
+		assertEquals("test1", ((Rank)around.get(1)).getUsername());
+		assertEquals(data.getRank("chess", "test1").getRank() - 1, ((Rank)around.get(0)).getRank());
+		
+		data.deleteUser(u1);
+		assertNull(data.getRank("chess", "test1"));
+	}
+	
+	/* Las páginas juntas deben dar las mismas filas que las listas completas */
+	public void testPages() throws ServerDataException {
+		data.addGame(new GameInfo("chess", "test1 test2", "1 2", new Date(), new Date(), "", ""), true);
+		assertPages(data.getUsers(), IServerData.DATA_USERS);
+		assertPages(data.getGameInfos(), IServerData.DATA_GAME_INFO);
+		assertPages(data.getGameSummarys(), IServerData.DATA_GAME_SUMMARY);
+		
+		final List users = new ArrayList();
+		data.getUsers(new IRowHandler() {
+			public void handleRow(Object row) { users.add(((User)row).getUsername()); }
+		});
+		assertEquals(data.getUsers().size(), users.size());
+		assertTrue(users.contains("test3"));
+		
+		try {
+			data.getUsers("x", 2);
+			fail("Invalid cursor was accepted");
+		}
+		catch (ServerDataException sdEx) {}
+	}
+	
+	private void assertPages(List all, String dataType) throws ServerDataException {
+		List rows = new ArrayList();
+		String cursor = null;
+		do {
+			DataPage page;
+			if (dataType.equals(IServerData.DATA_USERS))
+				page = data.getUsers(cursor, 2);
+			else if (dataType.equals(IServerData.DATA_GAME_INFO))
+				page = data.getGameInfos(cursor, 2);
+			else
+				page = data.getGameSummarys(cursor, 2);
+			assertTrue(page.getRows().size() <= 2);
+			rows.addAll(page.getRows());
+			cursor = page.getCursor();
+		} while (cursor != null);
+		
+		assertEquals(all.size(), rows.size());
+		for (int i = 0; i < all.size(); i++)
+			assertEquals(key(all.get(i)), key(rows.get(i)));
+	}
+	
+	private String key(Object row) {
+		if (row instanceof User)
+			return ((User)row).getUsername();
+		else if (row instanceof GameInfo)
+			return ((GameInfo)row).getGameKey() + " " + ((GameInfo)row).getId() + " " + ((GameInfo)row).getPlayers();
+		return ((GameSummary)row).getGameKey() + " " + ((GameSummary)row).getUsername();
+	}
+	
 	public void tearDown() throws ServerDataException {
 		data.deleteUser(u1);
 		data.deleteUser(u2);
@@ -0,0 +1,187 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Server
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.server.data.xml;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.Random;
+
+import org.dom4j.Document;
+import org.dom4j.io.SAXReader;
+import org.jogre.server.ServerProperties;
+import org.jogre.server.data.GameInfo;
+
+/**
+ * <p>Benchmark of ServerDataXML with a large number of registered users.
+ * It writes a users.xml file (every user has a chess game summary) to a
+ * temporary folder and then times:</p>
+ *
+ * <ul>
+ * <li>login - containsUser (with password) and getGameSummary.</li>
+ * <li>game over - addGame (this includes saving the files).</li>
+ * <li>the XPath queries which were used for the same lookups before the
+ *     indexes, for comparison.</li>
+ * </ul>
+ *
+ * <p>This is not a JUnit test so it must be run by hand from the server
+ * directory e.g.</p>
+ *
+ * <code>java org.jogre.server.data.xml.ServerDataXMLBenchmark -users=100000 -logins=10000 -games=20</code>
+ *
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class ServerDataXMLBenchmark {
+
+	private int numOfUsers = 100000;
+	private int numOfLogins = 10000;
+	private int numOfGames = 20;
+	private int numOfQueries = 200;
+
+	private Random random = new Random (1);
+
+	/** Stops the JIT removing the work. */
+	private long checksum = 0;
+
+	/**
+	 * Parse the command line arguments.
+	 *
+	 * @param args
+	 */
+	private void parseArguments (String [] args) {
+		for (int i = 0; i < args.length; i++) {
+			int value = Integer.parseInt (args [i].substring (args [i].indexOf ("=") + 1));
+			if (args [i].startsWith ("-users="))
+				numOfUsers = value;
+			else if (args [i].startsWith ("-logins="))
+				numOfLogins = value;
+			else if (args [i].startsWith ("-games="))
+				numOfGames = value;
+			else if (args [i].startsWith ("-queries="))
+				numOfQueries = value;
+		}
+	}
+
+	/**
+	 * Write the users file.
+	 *
+	 * @param folder
+	 */
+	private void writeUsers (File folder) throws Exception {
+		PrintWriter out = new PrintWriter (new FileWriter (new File (folder, "users.xml")));
+		out.println ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		out.println ("<users>");
+		for (int i = 0; i < numOfUsers; i++) {
+			out.println ("  <user username=\"user" + i + "\" password=\"pass" + i + "\">");
+			out.println ("    <game_summary game=\"chess\" rating=\"" + (1000 + i % 500) +
+			             "\" wins=\"1\" loses=\"1\" draws=\"0\" streak=\"0\"/>");
+			out.println ("  </user>");
+		}
+		out.println ("</users>");
+		out.close ();
+	}
+
+	private String randomUser () {
+		return "user" + random.nextInt (numOfUsers);
+	}
+
+	/**
+	 * Time logins and return micro seconds per login.
+	 */
+	private double login (ServerDataXML serverData) throws Exception {
+		long start = System.nanoTime ();
+		for (int i = 0; i < numOfLogins; i++) {
+			int user = random.nextInt (numOfUsers);
+			if (serverData.containsUser ("user" + user, "pass" + user))
+				checksum += serverData.getGameSummary ("chess", "user" + user).getRating ();
+		}
+		return (System.nanoTime () - start) / 1000.0 / numOfLogins;
+	}
+
+	/**
+	 * Time game overs and return milli seconds per game.
+	 */
+	private double gameOver (ServerDataXML serverData) throws Exception {
+		long start = System.nanoTime ();
+		for (int i = 0; i < numOfGames; i++) {
+			GameInfo gameInfo = new GameInfo ("chess", randomUser () + " " + randomUser (), "1 2",
+			                                  new Date (), new Date (), "", "");
+			checksum += serverData.addGame (gameInfo, true).getNewRatings () [0];
+		}
+		return (System.nanoTime () - start) / 1000000.0 / numOfGames;
+	}
+
+	/**
+	 * Time the XPath queries a login used to run and return micro seconds
+	 * per login.
+	 */
+	private double xpathLogin (Document userDoc) {
+		long start = System.nanoTime ();
+		for (int i = 0; i < numOfQueries; i++) {
+			int user = random.nextInt (numOfUsers);
+			if (userDoc.selectSingleNode ("//user[@username='user" + user + "' and @password='pass" + user + "']") != null)
+				checksum++;
+			if (userDoc.selectSingleNode ("//user[@username='user" + user + "']/game_summary[@game='chess']") != null)
+				checksum++;
+		}
+		return (System.nanoTime () - start) / 1000.0 / numOfQueries;
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args
+	 */
+	public static void main (String [] args) throws Exception {
+		ServerDataXMLBenchmark benchmark = new ServerDataXMLBenchmark ();
+		benchmark.parseArguments (args);
+
+		ServerProperties.setUpFromFile ();
+		ServerProperties.getInstance ().setUserValidation ("password");
+
+		File folder = File.createTempFile ("xmlbench", "");
+		folder.delete ();
+		folder.mkdirs ();
+		benchmark.writeUsers (folder);
+
+		long start = System.currentTimeMillis ();
+		ServerDataXML serverData = new ServerDataXML (folder.getPath ());
+		System.out.println ("Users: " + benchmark.numOfUsers + ", loaded in " +
+		                    (System.currentTimeMillis () - start) + " ms");
+
+		benchmark.login (serverData);		// warm up
+		System.out.println ("Login (indexed):   " + benchmark.login (serverData) + " us");
+
+		Document userDoc = new SAXReader ().read (new FileInputStream (new File (folder, "users.xml")));
+		benchmark.xpathLogin (userDoc);		// warm up
+		System.out.println ("Login (XPath):     " + benchmark.xpathLogin (userDoc) + " us");
+
+		System.out.println ("Game over (incl. saving files): " + benchmark.gameOver (serverData) + " ms");
+		System.out.println ("(checksum " + benchmark.checksum + ")");
+
+		File [] files = folder.listFiles ();
+		for (int i = 0; i < files.length; i++)
+			files [i].delete ();
+		folder.delete ();
+	}
+}
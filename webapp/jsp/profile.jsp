@@ -169,27 +169,29 @@
                             <tr height="25" valign="middle" bgcolor="#eeeeee">
                               <td><font face="arial" size="2" color="#555555"><b><bean:message key="game"/></b></font></td>
                               <td><font face="arial" size="2" color="#555555"><b><bean:message key="rating"/></b></font></td>
-                              <td><font face="arial" size="2" color="#555555"><b><bean:message key="streak"/></b></font></td>
+                              <td><font face="arial" size="2" color="#555555"><b><bean:message key="played"/></b></font></td>
                               <td><font face="arial" size="2" color="#555555"><b><bean:message key="wins"/></b></font></td>
                               <td><font face="arial" size="2" color="#555555"><b><bean:message key="loses"/></b></font></td>
                               <td><font face="arial" size="2" color="#555555"><b><bean:message key="draws"/></b></font></td>
                               <td><font face="arial" size="2" color="#555555"><b><bean:message key="streak"/></b></font></td>
+                              <td><font face="arial" size="2" color="#555555"><b><bean:message key="form"/></b></font></td>
                             </tr>
                             <logic:empty name="profileForm" property="gameSummaries">
                             <tr valign="bottom" bgcolor="#ffffff">
-                              <td colspan="7"><font face="arial" size="2" color="#777777"><bean:message key="error.no.games.played"/></td>
+                              <td colspan="8"><font face="arial" size="2" color="#777777"><bean:message key="error.no.games.played"/></td>
                             </tr>
                             </logic:empty>
                             <logic:notEmpty name="profileForm" property="gameSummaries">
                             <logic:iterate name="profileForm" property="gameSummaries" id="game">
                             <tr valign="bottom" bgcolor="#ffffff">
                               <td><font face="arial" size="2" color="#777777"><a href="/jogreweb/Game.do?gameKey=<bean:write name="game" property="gameKey" />" class="game"><img src="images/<bean:write name="game" property="gameKey" />_icon.gif" border="0"/> <bean:message name="game" property="gameKey" /></a></font></td>
-                              <td><font face="arial" size="2" color="#777777"><bean:write name="game" property="rating" /></font></td>
-                              <td><font face="arial" size="2" color="#777777"><bean:write name="game" property="streak" /></font></td>
+                              <td title="<bean:write name="game" property="ratingHistory" />"><font face="arial" size="2" color="#777777"><bean:write name="game" property="rating" /></font></td>
+                              <td><font face="arial" size="2" color="#777777"><bean:write name="game" property="gamesPlayed" /></font></td>
                               <td><font face="arial" size="2" color="#777777"><bean:write name="game" property="wins" /></font></td>
                               <td><font face="arial" size="2" color="#777777"><bean:write name="game" property="loses" /></font></td>
                               <td><font face="arial" size="2" color="#777777"><bean:write name="game" property="draws" /></font></td>
                               <td><font face="arial" size="2" color="#777777"><bean:write name="game" property="streak" /></font></td>
+                              <td><font face="arial" size="2" color="#777777"><tt><bean:write name="game" property="recentForm" /></tt></font></td>
                             </tr>
                             </logic:iterate>
                             </logic:notEmpty>
@@ -36,10 +36,16 @@ public interface IJogreWeb {
 	public static final String PROP_NEW_GAMES_LIST    = "new.games.list";
 	public static final String PROP_NUM_OF_TOP_GAMES  = "num.of.top.games";
 	public static final String PROP_SUPPORTED_LANGS   = "supported.langs";
+	public static final String PROP_LOBBY_CACHE_SECS  = "lobby.cache.seconds";
 	public static final String PROP_DATABASE_DRIVER   = "database.driver";
 	public static final String PROP_DATABASE_URL      = "database.url";
 	public static final String PROP_DATABASE_USERNAME = "database.username";
 	public static final String PROP_DATABASE_PASSWORD = "database.password";
+	public static final String PROP_DATABASE_JNDI     = "database.jndi";
+	public static final String PROP_DATABASE_POOL_MAX_ACTIVE = "database.pool.max.active";
+	public static final String PROP_DATABASE_POOL_MAX_IDLE   = "database.pool.max.idle";
+	public static final String PROP_DATABASE_POOL_WAIT       = "database.pool.wait";
+	public static final String PROP_ACTION_STATS_EVERY = "action.statistics.every";
 	public static final String PROP_JOGRE_SERVER_HOST = "jogre.server.host";
 	public static final String PROP_JOGRE_SERVER_PORT = "jogre.server.port";
 	
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.sql.SQLException;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.struts.action.Action;
 import org.apache.struts.action.ActionMessage;
@@ -30,6 +31,8 @@ import org.apache.struts.action.ActionMessages;
 import org.apache.struts.util.MessageResources;
 import org.jogre.server.data.db.IBatis;
 import org.jogre.server.data.db.IDatabase;
+import org.jogre.webapp.data.LobbyCache;
+import org.jogre.webapp.data.LobbySnapshot;
 import org.jogre.webapp.utility.WebAppProperties;
 
 /**
@@ -46,6 +49,9 @@ public abstract class AbstractJogreAction extends Action {
 	protected MessageResources resources = null;
 	protected ActionMessages   errors = null;
 
+	// Set once the database connection has been tested
+	private static boolean connectionTested = false;
+
 	/**
 	 * Initialise web properties, database connection and resources.
 	 */
@@ -58,9 +64,12 @@ public abstract class AbstractJogreAction extends Action {
 			// Load properties / database connection / resources
 			this.props = WebAppProperties.getInstance();
 			
-			// Init ibatis wrapper and test connection by selecting all snapshots
-			this.ibatis = IBatis.getInstance (props.getDatabaseProperties());
-			this.ibatis.getList (IDatabase.ST_SELECT_ALL_SNAP_SHOTS);
+			// Init ibatis wrapper and test connection (once) by selecting all snapshots
+			this.ibatis = IBatis.getSharedInstance (props.getDatabaseProperties());
+			if (!connectionTested) {
+				this.ibatis.getList (IDatabase.ST_SELECT_ALL_SNAP_SHOTS);
+				connectionTested = true;
+			}
 			
 			// Retrieve resources
 			this.resources = getResources(request);
@@ -75,4 +84,54 @@ public abstract class AbstractJogreAction extends Action {
 		if (errors.size() > 0)
 			saveErrors(request, errors);
 	}
+
+	/**
+	 * Return the shared lobby snapshot or null (and save an error) if it
+	 * cannot be read.
+	 * 
+	 * @param request
+	 * @return
+	 */
+	protected LobbySnapshot getLobby (HttpServletRequest request) {
+		try {
+			return LobbyCache.getInstance().getLobby (ibatis, resources, props);
+		}
+		catch (SQLException sqlEx) {
+			sqlEx.printStackTrace();
+			errors.add("sql.exception", new ActionMessage ("error.exception.sql", sqlEx.getMessage()));
+			saveErrors(request, errors);
+			return null;
+		}
+	}
+
+	/**
+	 * Set the ETag / Last-Modified headers of a page built from the lobby
+	 * snapshot and return true if the browser's copy is still current (in
+	 * which case a 304 has been sent and the action should return null).
+	 * The ETag includes the query string, user and locale as these also
+	 * change the page, so only If-None-Match is checked (If-Modified-Since
+	 * can't tell a page built for another user or locale).
+	 * 
+	 * @param request
+	 * @param response
+	 * @param lobby
+	 * @return
+	 */
+	protected boolean isNotModified (HttpServletRequest request, HttpServletResponse response, LobbySnapshot lobby) {
+		String variant = request.getQueryString() + " " + 
+		                 request.getSession().getAttribute("username") + " " +
+		                 getLocale(request);
+		String eTag = "\"" + lobby.getETag() + "-" + Integer.toHexString (variant.hashCode()) + "\"";
+
+		response.setHeader ("ETag", eTag);
+		response.setDateHeader ("Last-Modified", lobby.getLastModified());
+		response.setHeader ("Cache-Control", "private, max-age=0, must-revalidate");
+
+		String ifNoneMatch = request.getHeader ("If-None-Match");
+		boolean notModified = ifNoneMatch != null && ifNoneMatch.indexOf (eTag) != -1;
+
+		if (notModified)
+			response.setStatus (HttpServletResponse.SC_NOT_MODIFIED);
+		return notModified;
+	}
 }
\ No newline at end of file
@@ -19,10 +19,7 @@
  */
 package org.jogre.webapp.actions;
 
-import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -31,12 +28,8 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.struts.action.ActionForm;
 import org.apache.struts.action.ActionForward;
 import org.apache.struts.action.ActionMapping;
-import org.apache.struts.action.ActionMessage;
-import org.apache.struts.action.ActionMessages;
-import org.jogre.server.data.SnapShot;
-import org.jogre.server.data.db.IDatabase;
 import org.jogre.webapp.IJogreWeb;
-import org.jogre.webapp.data.OnlineGame;
+import org.jogre.webapp.data.LobbySnapshot;
 import org.jogre.webapp.forms.GameListForm;
 
 /**
@@ -69,8 +62,13 @@ public class GameListAction extends AbstractJogreAction {
 		if (errors.size() > 0)
 			return mapping.findForward (IJogreWeb.FORWARD_ERROR);
 		
+		// Games come from the shared lobby snapshot (null if not read)
+		LobbySnapshot lobby = getLobby (request);
+		if (lobby != null && isNotModified (request, response, lobby))
+			return null;
+		
 		// populate form
-		populateForm (mapping, request, form);
+		populateForm (mapping, request, form, lobby);
 		
 		return mapping.findForward (IJogreWeb.FORWARD_GAME_LIST);
 	}
@@ -81,65 +79,18 @@ public class GameListAction extends AbstractJogreAction {
 	 * @param mapping
 	 * @param request
 	 * @param form
+	 * @param lobby
 	 */
-	public void populateForm (ActionMapping mapping, HttpServletRequest request, ActionForm form) {
+	public void populateForm (ActionMapping mapping, HttpServletRequest request, ActionForm form, LobbySnapshot lobby) {
 		
 		// Retrieve form
 		GameListForm gameListForm = (GameListForm)form; 
 		List games = new ArrayList ();
-		ActionMessages errors = new ActionMessages ();
 		String reqGenre = request.getParameter("genre");
 
-		try {
-			// Select snapshots of games
-			List snapshots = ibatis.getList(IDatabase.ST_SELECT_ALL_SNAP_SHOTS);
-			
-			// Populate top / new games using snapshot info
-			for (int i = 0; i < snapshots.size(); i++) {
-				SnapShot snapshot = (SnapShot)snapshots.get(i);
-				String gameKey = snapshot.getGameKey();
-				if (props.isSupportedGame(gameKey) && isGameGenre (gameKey, reqGenre)) {
-					OnlineGame game = new OnlineGame (snapshot, resources);
-					// Add to games
-					games.add(game);
-				}
-			}
-			
-			// Sort table
-			sortGameList (request, gameListForm, games);	
-		}
-		catch (SQLException sqlEx) {
-			sqlEx.printStackTrace();
-			errors.add("sql.exception", new ActionMessage ("error.exception.sql", sqlEx.getMessage()));
-		}
-		catch (Exception genEx) {
-			genEx.printStackTrace();
-			errors.add("gen.exception", new ActionMessage ("error.exception.general", genEx.getMessage()));
-		}
-		
-		if (errors.size() > 0)
-			saveErrors(request, errors);
-		
-		// Update form
-		gameListForm.setGames(games);
-		if (reqGenre != null)
-			gameListForm.setGenre(reqGenre);
-	}
-	
-	/**
-	 * Sort game list.
-	 * 
-	 * Note: slightly hacky at minute (i.e. not SQL sort) - will improve if required.
-	 * 
-	 * @param request
-	 * @param gameListForm
-	 * @param games
-	 */
-	private void sortGameList (HttpServletRequest request, GameListForm gameListForm, List games) {
-		
-		// Declare 2 finals to be used in sort comparator
-		final String  col;			// column to sort
-		final int     dir;			// direction of sort		
+		// Declare column / direction to sort
+		String col;
+		int    dir;
 		if (null == gameListForm.getCol()) {
 			col = DEFAULT_COL;
 			dir = DEFAULT_DIR;
@@ -152,39 +103,15 @@ public class GameListAction extends AbstractJogreAction {
 				dir = DEFAULT_DIR;
 		}
 		
+		// Games of the genre are already sorted in the snapshot
+		if (lobby != null)
+			games = lobby.getGames (col, dir, reqGenre);
+		
 		// Update form with possible change in direction / previous column
 		gameListForm.setCol(col);
 		gameListForm.setDir(dir);
-		
-		// Now that we have figured out the new 
-		Collections.sort(games, new Comparator () {
-			public int compare (Object obj1, Object obj2) {
-				OnlineGame game1 = (OnlineGame)obj1;
-				OnlineGame game2 = (OnlineGame)obj2;					
-				if (col.equals("game")) 
-					return game1.getGameName().compareTo(game2.getGameName()) * dir;
-				else if (col.equals("genre")) 
-					return game1.getGameGenre().compareTo(game2.getGameGenre()) * dir;
-				else if (col.equals("players")) 
-					return new Integer (game1.getNumOfUsers()).compareTo(new Integer(game2.getNumOfUsers())) * dir;
-				else		// synopsis 
-					return game1.getGameSynopsis().compareTo(game2.getGameName()) * dir;
-			}				
-		});
-	}
-	
-	/**
-	 * Does this game belong to a requested genre?
-	 * 
-	 * @param gameKey    Game key
-	 * @param reqGenre   Requested genre to filter on.
-	 * @return         
-	 */
-	private boolean isGameGenre (String gameKey, String reqGenre) {
-		String gameGenre = resources.getMessage(gameKey + ".genre");
-		if (IJogreWeb.GENRE_ALL_GAMES.equals(reqGenre))
-			return true;
-		else 
-			return gameGenre.equals (reqGenre);
+		gameListForm.setGames(games);
+		if (reqGenre != null)
+			gameListForm.setGenre(reqGenre);
 	}
 }
\ No newline at end of file
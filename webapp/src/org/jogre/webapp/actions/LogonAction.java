@@ -56,7 +56,8 @@ public class LogonAction extends MainAction implements IJogreWeb {
 			return mapping.findForward (IJogreWeb.FORWARD_ERROR);
 		
 		// Populate form
-		super.populateForm (mapping, request, form);
+		checkLanguageChange(request, props);
+		super.populateForm (mapping, request, form, getLobby (request));
 		
 		// Check to see if user is logging on / logging off
 		MainForm jogreForm = (MainForm)form;
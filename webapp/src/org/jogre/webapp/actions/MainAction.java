@@ -19,7 +19,6 @@
  */
 package org.jogre.webapp.actions;
 
-import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -31,11 +30,9 @@ import javax.servlet.http.HttpSession;
 import org.apache.struts.action.ActionForm;
 import org.apache.struts.action.ActionForward;
 import org.apache.struts.action.ActionMapping;
-import org.apache.struts.action.ActionMessage;
 import org.jogre.client.awt.IJogreClientGUI;
-import org.jogre.server.data.SnapShot;
-import org.jogre.server.data.db.IDatabase;
 import org.jogre.webapp.IJogreWeb;
+import org.jogre.webapp.data.LobbySnapshot;
 import org.jogre.webapp.data.OnlineGame;
 import org.jogre.webapp.forms.MainForm;
 import org.jogre.webapp.utility.WebAppProperties;
@@ -66,8 +63,16 @@ public class MainAction extends AbstractJogreAction {
 		if (errors.size() > 0)
 			return mapping.findForward (IJogreWeb.FORWARD_ERROR);
 		
+		// Check to see if user is requesing a language change
+		checkLanguageChange(request, props);
+		
+		// Games come from the shared lobby snapshot (null if not read)
+		LobbySnapshot lobby = getLobby (request);
+		if (lobby != null && isNotModified (request, response, lobby))
+			return null;
+		
 		// populate form
-		populateForm (mapping, request, form);
+		populateForm (mapping, request, form, lobby);
 		
 		// Forward to JSP
 		return mapping.findForward (IJogreWeb.FORWARD_MAIN);
@@ -79,54 +84,33 @@ public class MainAction extends AbstractJogreAction {
 	 * @param mapping
 	 * @param request
 	 * @param form
+	 * @param lobby
 	 */
-	public void populateForm (ActionMapping mapping, HttpServletRequest request, ActionForm form) {
+	public void populateForm (ActionMapping mapping, HttpServletRequest request, ActionForm form, LobbySnapshot lobby) {
 		
 		// Retrieve form
 		MainForm mainForm = (MainForm)form;
 		List topGames = new ArrayList ();
 		List newGames = new ArrayList ();
 
-		try {			
-			// Check to see if user is requesing a language change
-			checkLanguageChange(request, props);
-						
-			// Select snapshots ordered by users 
-			SnapShot parameter = new SnapShot ();
-			parameter.setOrderBy("NUM_OF_USERS DESC");    // order by number of users
-			List snapshots = ibatis.getList(IDatabase.ST_SELECT_ALL_SNAP_SHOTS, parameter);
-			
-			// Populate top / new games using snapshot info
+		if (lobby != null) {
+			// Populate top / new games using snapshot games (ordered by users)
+			List games = lobby.getGames ();
 			int numOfTopGames = props.getInt (IJogreWeb.PROP_NUM_OF_TOP_GAMES);
 			
-			// Iterate through snapshots
-			for (int i = 0; i < snapshots.size(); i++) {
-				SnapShot snapshot = (SnapShot)snapshots.get(i);
-				String gameKey = snapshot.getGameKey();
-				if (props.isSupportedGame(gameKey)) {
-					OnlineGame game = new OnlineGame (snapshot, resources);
-					
-					// Update "top" games
-					if (topGames.size() < numOfTopGames)
-						topGames.add (game);
-					
-					// Update "new" games
-					if (props.isNewGame(gameKey))
-						newGames.add(game);
-				}
+			// Iterate through games
+			for (int i = 0; i < games.size(); i++) {
+				OnlineGame game = (OnlineGame)games.get(i);
+				
+				// Update "top" games
+				if (topGames.size() < numOfTopGames)
+					topGames.add (game);
+				
+				// Update "new" games
+				if (props.isNewGame(game.getGameKey()))
+					newGames.add(game);
 			}
 		}
-		catch (SQLException sqlEx) {
-			sqlEx.printStackTrace();
-			errors.add("sql.exception", new ActionMessage ("error.exception.sql", sqlEx.getMessage()));
-		}
-		catch (Exception genEx) {
-			genEx.printStackTrace();
-			errors.add("gen.exception", new ActionMessage ("error.exception.general", genEx.getMessage()));
-		}
-		
-		if (errors.size() > 0)
-			saveErrors(request, errors);
 		
 		// Update form
 		mainForm.setTopGames(topGames);
@@ -140,7 +124,7 @@ public class MainAction extends AbstractJogreAction {
 	 * @param request
 	 * @param props
 	 */
-	private void checkLanguageChange(HttpServletRequest request, WebAppProperties props) {
+	protected void checkLanguageChange(HttpServletRequest request, WebAppProperties props) {
 		// Check language change
 		String lang = request.getParameter("lang");
 		if (lang != null && props.isSupportedLang(lang)) {
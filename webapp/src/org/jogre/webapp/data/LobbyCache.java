@@ -0,0 +1,131 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Webapp
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.webapp.data;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.apache.struts.util.MessageResources;
+import org.jogre.server.data.SnapShot;
+import org.jogre.server.data.db.IBatis;
+import org.jogre.server.data.db.IDatabase;
+import org.jogre.webapp.IJogreWeb;
+import org.jogre.webapp.utility.WebAppProperties;
+
+/**
+ * Shared cache of the lobby snapshot.  The first request reads the
+ * snapshots from the database, after that requests are served from memory
+ * and once the snapshot is older than "lobby.cache.seconds" a single
+ * background thread reads it again while the old one is still served.
+ * 
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class LobbyCache {
+
+	/** Default number of seconds before the snapshot is read again. */
+	public static final int DEFAULT_CACHE_SECS = 10;
+
+	private static LobbyCache instance = null;
+
+	// Fields
+	private LobbySnapshot lobby = null;
+	private boolean refreshing = false;
+
+	/**
+	 * Private constructor.
+	 */
+	private LobbyCache () {}
+
+	/**
+	 * Return the instance of the lobby cache.
+	 * 
+	 * @return
+	 */
+	public static synchronized LobbyCache getInstance () {
+		if (instance == null)
+			instance = new LobbyCache ();
+		return instance;
+	}
+
+	/**
+	 * Return the lobby snapshot.  This only blocks the first time (or if
+	 * the last read failed), otherwise a stale snapshot is returned and
+	 * refreshed in the background.
+	 * 
+	 * @param ibatis      Database connection.
+	 * @param resources   Resources for the game names, genres etc.
+	 * @param props       Web properties.
+	 * @return
+	 * @throws SQLException
+	 */
+	public LobbySnapshot getLobby (IBatis ibatis, MessageResources resources, WebAppProperties props) throws SQLException {
+		LobbySnapshot current;
+		synchronized (this) {
+			current = lobby;
+			if (current == null) {
+				lobby = load (ibatis, resources, props, null);
+				return lobby;
+			}
+			long maxAge = props.getInt (IJogreWeb.PROP_LOBBY_CACHE_SECS, DEFAULT_CACHE_SECS) * 1000L;
+			if (refreshing || System.currentTimeMillis() - current.getLoadTime() < maxAge)
+				return current;
+			refreshing = true;
+		}
+
+		refresh (ibatis, resources, props, current);
+		return current;
+	}
+
+	/**
+	 * Read the snapshot again on a background thread.
+	 */
+	private void refresh (final IBatis ibatis, final MessageResources resources, final WebAppProperties props, final LobbySnapshot previous) {
+		Thread thread = new Thread ("LobbyCache") {
+			public void run () {
+				LobbySnapshot next = null;
+				try {
+					next = load (ibatis, resources, props, previous);
+				}
+				catch (Exception ex) {
+					ex.printStackTrace();		// keep serving the old snapshot
+				}
+				synchronized (LobbyCache.this) {
+					if (next != null)
+						lobby = next;
+					refreshing = false;
+				}
+			}
+		};
+		thread.setDaemon (true);
+		thread.start ();
+	}
+
+	/**
+	 * Read the snapshots ordered by number of users.
+	 */
+	private LobbySnapshot load (IBatis ibatis, MessageResources resources, WebAppProperties props, LobbySnapshot previous) throws SQLException {
+		SnapShot parameter = new SnapShot ();
+		parameter.setOrderBy("NUM_OF_USERS DESC");    // order by number of users
+		List snapshots = ibatis.getList(IDatabase.ST_SELECT_ALL_SNAP_SHOTS, parameter);
+
+		return new LobbySnapshot (snapshots, resources, props, previous);
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Webapp
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.webapp.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.struts.util.MessageResources;
+import org.jogre.server.data.SnapShot;
+import org.jogre.webapp.IJogreWeb;
+import org.jogre.webapp.utility.WebAppProperties;
+
+/**
+ * Immutable snapshot of the games in the lobby which is shared by every
+ * request until the LobbyCache replaces it.  The games are sorted once by
+ * each column (in both directions) when the snapshot is created so a
+ * request only has to filter on genre.
+ * 
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class LobbySnapshot {
+
+	/** Columns the game list can be sorted by. */
+	public static final String [] COLUMNS = {"game", "genre", "players", "synopsis"};
+
+	// Fields
+	private List games;				// OnlineGame's ordered by number of users
+	private Map sortedGames;		// column + direction -> sorted List
+	private long loadTime;
+	private long lastModified;
+	private String eTag;
+
+	/**
+	 * Constructor which takes the snapshots ordered by number of users.
+	 * 
+	 * @param snapshots     List of SnapShot objects.
+	 * @param resources     Resources for the game names, genres etc.
+	 * @param props         Web properties (supported games).
+	 * @param previous      Previous lobby snapshot (or null) - if nothing has
+	 *                      changed its last modified time is kept.
+	 */
+	public LobbySnapshot (List snapshots, MessageResources resources, WebAppProperties props, LobbySnapshot previous) {
+		this.loadTime = System.currentTimeMillis();
+
+		List games = new ArrayList ();
+		int hash = 17;
+		for (int i = 0; i < snapshots.size(); i++) {
+			SnapShot snapshot = (SnapShot)snapshots.get(i);
+			String gameKey = snapshot.getGameKey();
+			if (props.isSupportedGame(gameKey)) {
+				games.add (new OnlineGame (snapshot, resources));
+				hash = hash * 31 + gameKey.hashCode();
+				hash = hash * 31 + snapshot.getNumOfUsers();
+				hash = hash * 31 + snapshot.getNumOfTables();
+			}
+		}
+		this.games = Collections.unmodifiableList (games);
+		this.eTag = Integer.toHexString (hash);
+
+		// HTTP dates are only to the second
+		if (previous != null && previous.eTag.equals (eTag))
+			this.lastModified = previous.lastModified;
+		else
+			this.lastModified = loadTime / 1000 * 1000;
+
+		// Pre-sort each column in both directions
+		this.sortedGames = new HashMap ();
+		for (int i = 0; i < COLUMNS.length; i++) {
+			sortedGames.put (COLUMNS [i] + 1, sort (COLUMNS [i], 1));
+			sortedGames.put (COLUMNS [i] + -1, sort (COLUMNS [i], -1));
+		}
+	}
+
+	/**
+	 * Return a copy of the games sorted by a column.
+	 * 
+	 * @param col   Column to sort on.
+	 * @param dir   Direction (1 / -1).
+	 * @return
+	 */
+	private List sort (final String col, final int dir) {
+		List sorted = new ArrayList (games);
+		Collections.sort(sorted, new Comparator () {
+			public int compare (Object obj1, Object obj2) {
+				OnlineGame game1 = (OnlineGame)obj1;
+				OnlineGame game2 = (OnlineGame)obj2;
+				if (col.equals("game"))
+					return game1.getGameName().compareTo(game2.getGameName()) * dir;
+				else if (col.equals("genre"))
+					return game1.getGameGenre().compareTo(game2.getGameGenre()) * dir;
+				else if (col.equals("players"))
+					return (game1.getNumOfUsers() - game2.getNumOfUsers()) * dir;
+				else		// synopsis
+					return game1.getGameSynopsis().compareTo(game2.getGameSynopsis()) * dir;
+			}
+		});
+		return Collections.unmodifiableList (sorted);
+	}
+
+	/**
+	 * Return the supported games ordered by number of users.
+	 * 
+	 * @return  Unmodifiable list of OnlineGame objects.
+	 */
+	public List getGames () {
+		return games;
+	}
+
+	/**
+	 * Return the games of a genre sorted by a column.  Unknown columns are
+	 * sorted by game name.
+	 * 
+	 * @param col     Column to sort on.
+	 * @param dir     Direction (1 / -1).
+	 * @param genre   Genre or IJogreWeb.GENRE_ALL_GAMES.
+	 * @return        List of OnlineGame objects.
+	 */
+	public List getGames (String col, int dir, String genre) {
+		List sorted = (List)sortedGames.get (col + (dir < 0 ? -1 : 1));
+		if (sorted == null)
+			sorted = (List)sortedGames.get (COLUMNS [0] + (dir < 0 ? -1 : 1));
+
+		if (IJogreWeb.GENRE_ALL_GAMES.equals(genre))
+			return sorted;
+
+		List games = new ArrayList ();
+		for (int i = 0; i < sorted.size(); i++) {
+			OnlineGame game = (OnlineGame)sorted.get(i);
+			if (game.getGameGenre().equals(genre))
+				games.add (game);
+		}
+		return games;
+	}
+
+	/**
+	 * Return the time this snapshot was read from the database.
+	 * 
+	 * @return
+	 */
+	public long getLoadTime () {
+		return loadTime;
+	}
+
+	/**
+	 * Return the time the games last changed (to the second).
+	 * 
+	 * @return
+	 */
+	public long getLastModified () {
+		return lastModified;
+	}
+
+	/**
+	 * Return a tag which only changes when the games change.
+	 * 
+	 * @return
+	 */
+	public String getETag () {
+		return eTag;
+	}
+}
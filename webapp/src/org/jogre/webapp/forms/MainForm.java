@@ -137,7 +137,7 @@ public class MainForm extends AbstractJogreForm {
 	        	return errors;		// dont access database if simple validation errors
 	        
 	        try {
-				IBatis ibatis = IBatis.getInstance(WebAppProperties.getInstance().getDatabaseProperties());
+				IBatis ibatis = IBatis.getSharedInstance(WebAppProperties.getInstance().getDatabaseProperties());
 				User parameterUser = new User (username, password);
 				Object user = ibatis.getObject(IDatabase.ST_SELECT_USER, parameterUser);
 				if (user == null) 
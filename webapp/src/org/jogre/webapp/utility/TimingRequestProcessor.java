@@ -0,0 +1,140 @@
+/*
+ * JOGRE (Java Online Gaming Real-time Engine) - Webapp
+ * Copyright (C) 2004  Bob Marks (marksie531@yahoo.com)
+ * http://jogre.sourceforge.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.jogre.webapp.utility;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.struts.Globals;
+import org.apache.struts.action.ActionMapping;
+import org.apache.struts.action.RequestProcessor;
+import org.jogre.server.data.db.IBatis;
+import org.jogre.webapp.IJogreWeb;
+
+/**
+ * Request processor which times each request, from validating its form to
+ * forwarding, and the database statements it runs.  Every
+ * "action.statistics.every" requests of an action its totals are logged
+ * e.g.
+ * 
+ * <code>/Profile requests=1000 avg=2150us max=48210us statements=3.0 avgStatements=1780us</code>
+ * 
+ * @author  agent
+ * @version Beta 0.3
+ */
+public class TimingRequestProcessor extends RequestProcessor {
+
+	// Indexes into the statistics of an action
+	private static final int REQUESTS        = 0;
+	private static final int TIME            = 1;
+	private static final int MAX_TIME        = 2;
+	private static final int STATEMENTS      = 3;
+	private static final int STATEMENT_TIME  = 4;
+
+	// Action path -> long [] of statistics
+	private Map statistics = new HashMap ();
+
+	/**
+	 * Process the whole request (validation, action and forward) and record
+	 * how long it took against its action.
+	 * 
+	 * @see org.apache.struts.action.RequestProcessor#process(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	public void process (HttpServletRequest request, HttpServletResponse response)
+	throws IOException, ServletException
+	{
+		IBatis.resetThreadStatistics ();
+		long start = System.nanoTime ();
+		try {
+			super.process (request, response);
+		}
+		finally {
+			// Only requests which were mapped to an action are recorded
+			ActionMapping mapping = (ActionMapping)request.getAttribute (Globals.MAPPING_KEY);
+			if (mapping != null)
+				actionDone (mapping.getPath (), (System.nanoTime () - start) / 1000);
+		}
+	}
+
+	/**
+	 * Add a request to the statistics of an action and log them if required.
+	 * 
+	 * @param path   Path of action.
+	 * @param time   Time of request in microseconds.
+	 */
+	private void actionDone (String path, long time) {
+		long numOfStatements = IBatis.getThreadNumOfStatements ();
+		long statementTime = IBatis.getThreadStatementTime ();
+
+		String message = null;
+		synchronized (statistics) {
+			long [] stats = (long [])statistics.get (path);
+			if (stats == null) {
+				stats = new long [5];
+				statistics.put (path, stats);
+			}
+			stats [REQUESTS]++;
+			stats [TIME] += time;
+			stats [MAX_TIME] = Math.max (stats [MAX_TIME], time);
+			stats [STATEMENTS] += numOfStatements;
+			stats [STATEMENT_TIME] += statementTime;
+
+			int every = getLogEvery ();
+			if (every > 0 && stats [REQUESTS] % every == 0)
+				message = toString (path, stats);
+		}
+
+		if (message != null)
+			log.info (message);
+	}
+
+	/**
+	 * Return how many requests of an action between logging its statistics.
+	 * 
+	 * @return
+	 */
+	private int getLogEvery () {
+		try {
+			return WebAppProperties.getInstance().getInt (IJogreWeb.PROP_ACTION_STATS_EVERY, 0);
+		}
+		catch (IOException ioEx) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Return the statistics of an action as a String.
+	 */
+	private String toString (String path, long [] stats) {
+		long requests = stats [REQUESTS];
+		StringBuffer sb = new StringBuffer (path);
+		sb.append (" requests=").append (requests)
+		  .append (" avg=").append (stats [TIME] / requests).append ("us")
+		  .append (" max=").append (stats [MAX_TIME]).append ("us")
+		  .append (" statements=").append (stats [STATEMENTS] * 10 / requests / 10.0)
+		  .append (" avgStatements=").append (stats [STATEMENT_TIME] / requests).append ("us");
+		return sb.toString ();
+	}
+}
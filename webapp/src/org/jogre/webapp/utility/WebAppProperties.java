@@ -99,6 +99,22 @@ public class WebAppProperties implements IJogreWeb {
 	public int getInt (String key) {
 		return Integer.parseInt (get (key));
 	}
+
+	/**
+	 * Return an int property or a default if it is missing or not a number.
+	 * 
+	 * @param key
+	 * @param defaultValue
+	 * @return
+	 */
+	public int getInt (String key, int defaultValue) {
+		try {
+			return getInt (key);
+		}
+		catch (NumberFormatException nfEx) {
+			return defaultValue;
+		}
+	}
 	
 	/**
 	 * Return the database connection that the web application is pointing to.
@@ -112,9 +128,28 @@ public class WebAppProperties implements IJogreWeb {
 		dbProps.put ("username", properties.getProperty(PROP_DATABASE_USERNAME));
 		dbProps.put ("password", properties.getProperty(PROP_DATABASE_PASSWORD));
 		
+		// Optional container data source / pool sizes
+		putIfSet (dbProps, "jndi",            PROP_DATABASE_JNDI);
+		putIfSet (dbProps, "pool_max_active", PROP_DATABASE_POOL_MAX_ACTIVE);
+		putIfSet (dbProps, "pool_max_idle",   PROP_DATABASE_POOL_MAX_IDLE);
+		putIfSet (dbProps, "pool_wait",       PROP_DATABASE_POOL_WAIT);
+		
 		return dbProps;
 	}
 	
+	/**
+	 * Copy a property (if it isn't empty) to another set of properties.
+	 * 
+	 * @param props   Properties to copy to.
+	 * @param name    Name in the properties to copy to.
+	 * @param key     Key in "webapp.properties".
+	 */
+	private void putIfSet (Properties props, String name, String key) {
+		String value = get (key);
+		if (value != null && value.length() > 0)
+			props.put (name, value);
+	}
+	
 	/**
 	 * Return true / false if this is a supported game.
 	 * 